@@ -1,5 +1,8 @@
 package com.kotsin.execution.broker;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 public interface BrokerOrderService {
 
     enum Side { BUY, SELL }
@@ -46,4 +49,101 @@ public interface BrokerOrderService {
      * Square-off all open positions held by this client.
      */
     void squareOffAll() throws BrokerException;
+
+    /**
+     * Cancel a working order by the id its placement returned. An order that is no longer working
+     * (filled, rejected or already cancelled) is left alone.
+     */
+    default void cancelOrder(String exch, String orderId) throws BrokerException {
+        throw new BrokerException("cancelOrder not supported by " + getClass().getSimpleName());
+    }
+
+    // ---------------------------------------------------------------------
+    // Protective stops. A stop may only be in flight alongside its entry where the broker accepts it
+    // before the position exists and it cannot trigger against an unfilled entry; otherwise it is sent
+    // once the entry fills.
+    // ---------------------------------------------------------------------
+
+    /**
+     * True when a stop for this entry may be sent before the entry fills. Defaults to false.
+     */
+    default boolean acceptsStopBeforeFill(String exch, String exchType, boolean marketEntry) {
+        return false;
+    }
+
+    /**
+     * Completes once the order is fully filled, or exceptionally with a BrokerException when it is
+     * rejected or cancelled instead. Brokers without fill tracking fail at once.
+     */
+    default CompletableFuture<Void> whenFilled(String exch, String orderId) {
+        return CompletableFuture.failedFuture(
+                new BrokerException("whenFilled not supported by " + getClass().getSimpleName()));
+    }
+
+    // ---------------------------------------------------------------------
+    // Why an order is sent. Brokers with a shared request budget serve exits ahead of entries when
+    // the budget is tight; the plain overloads are entries. Defaults ignore the intent.
+    // ---------------------------------------------------------------------
+
+    enum Intent { ENTRY, EXIT }
+
+    default String placeMarketOrder(String scripCode,
+                                    String exch,
+                                    String exchType,
+                                    Side side,
+                                    int quantity,
+                                    Intent intent) throws BrokerException {
+        return placeMarketOrder(scripCode, exch, exchType, side, quantity);
+    }
+
+    default String placeLimitOrder(String scripCode,
+                                   String exch,
+                                   String exchType,
+                                   Side side,
+                                   int quantity,
+                                   double price,
+                                   Intent intent) throws BrokerException {
+        return placeLimitOrder(scripCode, exch, exchType, side, quantity, price);
+    }
+
+    // ---------------------------------------------------------------------
+    // Asynchronous submission: the returned future completes with the broker ack, or exceptionally
+    // with a BrokerException. Several legs can be in flight at once and awaited together.
+    // Defaults run the blocking call on the caller thread; brokers with a non-blocking client override.
+    // ---------------------------------------------------------------------
+
+    default CompletableFuture<OrderAck> placeMarketOrderAsync(String scripCode,
+                                                              String exch,
+                                                              String exchType,
+                                                              Side side,
+                                                              int quantity) {
+        return submitInline(exch, () -> placeMarketOrder(scripCode, exch, exchType, side, quantity));
+    }
+
+    default CompletableFuture<OrderAck> placeLimitOrderAsync(String scripCode,
+                                                             String exch,
+                                                             String exchType,
+                                                             Side side,
+                                                             int quantity,
+                                                             double price) {
+        return submitInline(exch, () -> placeLimitOrder(scripCode, exch, exchType, side, quantity, price));
+    }
+
+    default CompletableFuture<OrderAck> placeStopLossLimitOrderAsync(String scripCode,
+                                                                     String exch,
+                                                                     String exchType,
+                                                                     Side side,
+                                                                     int quantity,
+                                                                     double price) {
+        return submitInline(exch, () -> placeStopLossLimitOrder(scripCode, exch, exchType, side, quantity, price));
+    }
+
+    private static CompletableFuture<OrderAck> submitInline(String exch, Supplier<String> order) {
+        long start = System.nanoTime();
+        try {
+            return CompletableFuture.completedFuture(new OrderAck(order.get(), exch, System.nanoTime() - start));
+        } catch (BrokerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 } 
\ No newline at end of file
@@ -18,17 +18,23 @@ import java.time.Duration;
 import java.util.Base64;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
-import org.json.simple.JSONArray;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kotsin.execution.broker.codec.FivePaisaCodec;
 import com.kotsin.execution.model.NetPosition;
+import com.kotsin.execution.service.BrokerRateLimiterService;
+import com.kotsin.execution.service.PriorityRateLimiter.Priority;
 
 @Service
 @Slf4j
@@ -40,8 +46,6 @@ public class FivePaisaBrokerService implements BrokerOrderService {
             .callTimeout(Duration.ofSeconds(15))
             .build();
 
-    private final ReentrantLock loginLock = new ReentrantLock();
-    private volatile long tokenExpiryEpochSeconds = 0; // unix epoch seconds
 
     // ---------------------------------------------------------------------
     // Credentials injected from application.properties
@@ -67,7 +71,24 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     @Value("${fivepaisa.app-source:6}")
     private int appSource;
 
-    private String accessToken; // Bearer token for subsequent calls
+    // Bearer token lifecycle: refreshed in the background, read with one volatile load on the order path
+    private FivePaisaTokenManager tokens;
+    @Value("${fivepaisa.token.refresh-lead-minutes:30}")
+    private long tokenRefreshLeadMinutes;
+    @Value("${fivepaisa.token.prewarm-seconds:240}")
+    private long connectionPrewarmSeconds;
+    @Value("${trading.mode.live:true}")
+    private boolean liveTradingEnabled;
+
+    // Order-path payloads (PlaceOrderRequest, OrderStatus, NetPositionNetWise, OrderBook); built once credentials are injected
+    private static final MediaType JSON_TYPE = MediaType.parse("application/json");
+    private FivePaisaCodec codec;
+
+    // Order-API budget shared by placement, modify/cancel and status calls; served by priority
+    private final BrokerRateLimiterService rateLimiter;
+    // RMS rejections that mean "slow down" rather than a bad order
+    private static final Pattern THROTTLE_MESSAGE =
+            Pattern.compile("too many|rate limit|limit exceeded|throttl", Pattern.CASE_INSENSITIVE);
 
     // Metrics --------------------------------------------
     private final Counter requestTotal;
@@ -75,14 +96,47 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     private final Timer requestLatency;
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
-    private final ConcurrentMap<String, AtomicBoolean> pendingOrders = new ConcurrentHashMap<>(); // RemoteOrderID -> stillPending
-    private final ConcurrentMap<String, ScheduledFuture<?>> pollFutures = new ConcurrentHashMap<>();
-    private WebSocket orderWs;
+    private final ConcurrentMap<String, String> pendingOrders = new ConcurrentHashMap<>(); // RemoteOrderID -> Exch
+    // Orders placed by this service, RemoteOrderID -> ExchOrderID / lifecycle, kept from the placement
+    // reply and the status feed so a cancel needs no order-book lookup
+    private final Cache<String, PlacedOrder> placedOrders = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofDays(1))
+            .build();
+    // Callers waiting on an entry's fill (e.g. to send its protective stop), RemoteOrderID -> waiter
+    private final ConcurrentMap<String, CompletableFuture<Void>> fillWaiters = new ConcurrentHashMap<>();
+    private final List<Consumer<OrderStatusUpdate>> statusListeners = new CopyOnWriteArrayList<>();
+    private volatile WebSocket orderWs;
+    private final AtomicInteger orderWsGeneration = new AtomicInteger();
+    private volatile boolean orderWsConnected;
+    private volatile long lastStatusPollMs;
+
+    // Status reconciliation: one batched V2/OrderStatus call per cycle for every pending order;
+    // while the order WebSocket is up it pushes updates and the poll only runs as a safety net
+    @Value("${broker.order.status-poll-ms:2000}")
+    private long statusPollMs;
+    @Value("${broker.order.status-ws-fallback-ms:10000}")
+    private long statusWsFallbackMs;
+    // Cancel by RemoteOrderID: attempts before giving up, re-reading the order's status between them
+    @Value("${broker.order.cancel-attempts:3}")
+    private int cancelAttempts;
+
+    private record PlacedOrder(String exch, String exchOrderId, OrderStatusUpdate.State state) {
+        boolean terminal() {
+            return state.isTerminal();
+        }
+
+        PlacedOrder merge(PlacedOrder newer) {
+            // A terminal state is final; a status the feed could not classify changes nothing
+            OrderStatusUpdate.State next = terminal() || newer.state == OrderStatusUpdate.State.UNKNOWN ? state : newer.state;
+            return new PlacedOrder(exch, newer.exchOrderId != null ? newer.exchOrderId : exchOrderId, next);
+        }
+    }
 
     // ---------------------------------------------------------------------
-    // Spring injects MeterRegistry via constructor
-    public FivePaisaBrokerService(MeterRegistry registry) {
+    // Spring injects MeterRegistry and the rate limiter via constructor
+    public FivePaisaBrokerService(MeterRegistry registry, BrokerRateLimiterService rateLimiter) {
         this.meterRegistry = registry;
+        this.rateLimiter = rateLimiter;
         this.requestTotal = registry.counter("fivepaisa.requests.total");
         this.requestFailed = registry.counter("fivepaisa.requests.failed");
         this.requestLatency = registry.timer("fivepaisa.requests.latency");
@@ -91,25 +145,22 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     private final MeterRegistry meterRegistry;
 
     // ---------------------------------------------------------------------
-    // PRODUCTION FIX: Don't authenticate on startup (fastAnalytics might not be ready)
-    // Instead, authenticate lazily when first order is placed
+    // PRODUCTION FIX: Don't block startup on authentication (fastAnalytics might not be ready)
+    // With live trading on, the token manager logs in on the scheduler, retrying with backoff until
+    // the TOTP service answers; otherwise nothing logs in until a broker call needs a token
     @PostConstruct
     private void init() {
-        log.info("✅ FivePaisaBrokerService initialized. Authentication will occur on first order.");
-        // Schedule token refresh task
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                if (accessToken != null && !accessToken.isBlank()) {
-                    long now = System.currentTimeMillis() / 1000;
-                    if (now >= tokenExpiryEpochSeconds - 300) { // Refresh 5 min before expiry
-                        log.info("🔄 Refreshing 5Paisa token (expiring soon)");
-                        authenticate();
-                    }
-                }
-            } catch (Exception e) {
-                log.error("❌ Token refresh failed: {}", e.getMessage());
-            }
-        }, 5, 5, TimeUnit.MINUTES); // Check every 5 minutes
+        codec = new FivePaisaCodec(apiKey, loginId, appSource);
+        tokens = new FivePaisaTokenManager(this::login, this::decodeJwtExpiry, this::startOrderWebSocket,
+                this::prewarmConnection, scheduler, meterRegistry,
+                TimeUnit.MINUTES.toSeconds(tokenRefreshLeadMinutes), TimeUnit.SECONDS.toMillis(connectionPrewarmSeconds));
+        if (liveTradingEnabled) {
+            log.info("✅ FivePaisaBrokerService initialized. Authentication runs in the background.");
+            tokens.start();
+        } else {
+            log.info("✅ FivePaisaBrokerService initialized. Live trading off, authentication will occur on first broker call.");
+        }
+        scheduler.scheduleWithFixedDelay(this::reconcilePendingOrders, statusPollMs, statusPollMs, TimeUnit.MILLISECONDS);
     }
 
     // ---------------------------------------------------------------------
@@ -117,9 +168,14 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     // ---------------------------------------------------------------------
     @Override
     public String placeMarketOrder(String scripCode, String exch, String exchType, Side side, int quantity) throws BrokerException {
+        return placeMarketOrder(scripCode, exch, exchType, side, quantity, Intent.ENTRY);
+    }
+
+    @Override
+    public String placeMarketOrder(String scripCode, String exch, String exchType, Side side, int quantity,
+                                   Intent intent) throws BrokerException {
         try {
-            JSONObject payload = buildOrderPayload(scripCode, exch, exchType, side, quantity, 0, /*isIntraday*/ false);
-            return sendOrderRequest(exch, payload);
+            return sendOrderRequest(priorityOf(intent), exch, marketOrderPayload(scripCode, exch, exchType, side, quantity));
         } catch (Exception e) {
             throw new BrokerException("Market order failed", e);
         }
@@ -127,10 +183,14 @@ public class FivePaisaBrokerService implements BrokerOrderService {
 
     @Override
     public String placeLimitOrder(String scripCode, String exch, String exchType, Side side, int quantity, double price) throws BrokerException {
+        return placeLimitOrder(scripCode, exch, exchType, side, quantity, price, Intent.ENTRY);
+    }
+
+    @Override
+    public String placeLimitOrder(String scripCode, String exch, String exchType, Side side, int quantity, double price,
+                                  Intent intent) throws BrokerException {
         try {
-            boolean intraday = "D".equalsIgnoreCase(exchType) && "N".equalsIgnoreCase(exch);
-            JSONObject payload = buildOrderPayload(scripCode, exch, exchType, side, quantity, price, intraday);
-            return sendOrderRequest(exch, payload);
+            return sendOrderRequest(priorityOf(intent), exch, limitOrderPayload(scripCode, exch, exchType, side, quantity, price));
         } catch (Exception e) {
             throw new BrokerException("Limit order failed", e);
         }
@@ -144,22 +204,39 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     public String placeStopLossLimitOrder(String scripCode, String exch, String exchType, Side side,
                                           int quantity, double price) throws BrokerException {
         try {
-            boolean intraday = "D".equalsIgnoreCase(exchType) && "N".equalsIgnoreCase(exch);
-            JSONObject payload = buildOrderPayload(scripCode, exch, exchType, side, quantity, price, intraday);
-            // Inject SL fields
-            JSONObject body = (JSONObject) payload.get("body");
-            body.put("WithSL", "Y");
-            body.put("SLTriggerRate", price);
-            return sendOrderRequest(exch, payload);
+            return sendOrderRequest(Priority.STOP_LOSS, exch, stopLossLimitOrderPayload(scripCode, exch, exchType, side, quantity, price));
         } catch (Exception e) {
             throw new BrokerException("Stop-loss limit order failed", e);
         }
     }
 
+    // ASYNC: same payloads, built (with the token) on the caller thread and submitted with OkHttp enqueue
+    // once the rate limiter grants a permit — the caller thread never waits for either
+    @Override
+    public CompletableFuture<OrderAck> placeMarketOrderAsync(String scripCode, String exch, String exchType,
+                                                             Side side, int quantity) {
+        return sendOrderRequestAsync(Priority.ENTRY, exch, "Market order failed",
+                () -> marketOrderPayload(scripCode, exch, exchType, side, quantity));
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> placeLimitOrderAsync(String scripCode, String exch, String exchType,
+                                                            Side side, int quantity, double price) {
+        return sendOrderRequestAsync(Priority.ENTRY, exch, "Limit order failed",
+                () -> limitOrderPayload(scripCode, exch, exchType, side, quantity, price));
+    }
+
+    @Override
+    public CompletableFuture<OrderAck> placeStopLossLimitOrderAsync(String scripCode, String exch, String exchType,
+                                                                    Side side, int quantity, double price) {
+        return sendOrderRequestAsync(Priority.STOP_LOSS, exch, "Stop-loss limit order failed",
+                () -> stopLossLimitOrderPayload(scripCode, exch, exchType, side, quantity, price));
+    }
+
     @Override
     public void squareOffPosition(String scripCode, String exch, String exchType, Side currentSide, int remainingQty) throws BrokerException {
         Side exitSide = currentSide == Side.BUY ? Side.SELL : Side.BUY;
-        placeMarketOrder(scripCode, exch, exchType, exitSide, remainingQty);
+        placeMarketOrder(scripCode, exch, exchType, exitSide, remainingQty, Intent.EXIT);
     }
 
     // ---------------------------------------------------------------------
@@ -167,7 +244,7 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     // ---------------------------------------------------------------------
     public void modifyOrder(String exchOrderId, Double newPrice, Integer newQty) throws BrokerException {
         try {
-            ensureAuthenticated();
+            awaitPermit(Priority.STOP_LOSS);
             JSONObject head = new JSONObject();
             head.put("key", apiKey);
             JSONObject body = new JSONObject();
@@ -180,11 +257,14 @@ public class FivePaisaBrokerService implements BrokerOrderService {
 
             Request httpReq = new Request.Builder()
                     .url(BASE_URL + "V1/ModifyOrderRequest")
-                    .addHeader("Authorization", "Bearer " + accessToken)
+                    .addHeader("Authorization", "Bearer " + accessToken())
                     .post(RequestBody.create(req.toJSONString(), MediaType.parse("application/json")))
                     .build();
             try (Response res = http.newCall(httpReq).execute()) {
-                if (!res.isSuccessful()) throw new IOException("HTTP " + res.code());
+                if (!res.isSuccessful()) {
+                    noteThrottle(res.code(), null);
+                    throw new IOException("HTTP " + res.code());
+                }
             }
         } catch (Exception e) {
             throw new BrokerException("Modify order failed", e);
@@ -193,7 +273,7 @@ public class FivePaisaBrokerService implements BrokerOrderService {
 
     public void cancelOrder(String exchOrderId) throws BrokerException {
         try {
-            ensureAuthenticated();
+            awaitPermit(Priority.EXIT);
             JSONObject head = new JSONObject();
             head.put("key", apiKey);
             JSONObject body = new JSONObject();
@@ -204,33 +284,119 @@ public class FivePaisaBrokerService implements BrokerOrderService {
 
             Request httpReq = new Request.Builder()
                     .url(BASE_URL + "V1/CancelOrderRequest")
-                    .addHeader("Authorization", "Bearer " + accessToken)
+                    .addHeader("Authorization", "Bearer " + accessToken())
                     .post(RequestBody.create(req.toJSONString(), MediaType.parse("application/json")))
                     .build();
             try (Response res = http.newCall(httpReq).execute()) {
-                if (!res.isSuccessful()) throw new IOException("HTTP " + res.code());
+                if (!res.isSuccessful()) {
+                    noteThrottle(res.code(), null);
+                    throw new IOException("HTTP " + res.code());
+                }
             }
         } catch (Exception e) {
             throw new BrokerException("Cancel order failed", e);
         }
     }
 
+    /**
+     * Placement returns the RemoteOrderID, while CancelOrderRequest takes the ExchOrderID. The
+     * ExchOrderID comes from the placement reply or the status feed, so the cancel is a single
+     * EXIT-priority call. While the exchange has not assigned one yet, or a cancel call fails, this
+     * order's status on {@code exch} is re-read at EXIT priority and the cancel retried, up to
+     * broker.order.cancel-attempts; an order that turns out filled, rejected or cancelled is left alone.
+     */
+    @Override
+    public void cancelOrder(String exch, String orderId) throws BrokerException {
+        int attempts = Math.max(1, cancelAttempts);
+        BrokerException last = null;
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            PlacedOrder order = placedOrders.getIfPresent(orderId);
+            if (order == null) {
+                throw new BrokerException("Cancel order failed: " + exch + " order " + orderId + " was not placed by this session");
+            }
+            if (order.terminal()) {
+                log.info("Cancel skipped, order {} no longer working", orderId);
+                return;
+            }
+            if (order.exchOrderId() != null) {
+                try {
+                    cancelOrder(order.exchOrderId());
+                    placedOrders.asMap().computeIfPresent(orderId,
+                            (id, o) -> o.merge(new PlacedOrder(o.exch(), null, OrderStatusUpdate.State.CANCELLED)));
+                    return;
+                } catch (BrokerException e) {
+                    last = e;
+                }
+            } else {
+                last = new BrokerException("Cancel order failed: " + orderId + " has no exchange order id yet");
+            }
+            if (attempt < attempts) refreshOrderStatus(exch, orderId, attempt);
+        }
+        throw last;
+    }
+
+    /**
+     * 5paisa accepts a stop ahead of the position only for intraday orders, where the RMS checks
+     * margin; a delivery SELL stop without holdings is rejected. Only a market entry fills before its
+     * stop can trigger. Market entries go out as delivery (IsIntraday=false), so with the current
+     * payloads every stop waits for its entry's fill.
+     */
+    @Override
+    public boolean acceptsStopBeforeFill(String exch, String exchType, boolean marketEntry) {
+        return marketEntry && isIntraday(exch, exchType, true);
+    }
+
+    /**
+     * Completes from the status feed (push or poll) once the order is fully executed. An order this
+     * session did not place, or one that ends rejected or cancelled, fails the future.
+     */
+    @Override
+    public CompletableFuture<Void> whenFilled(String exch, String orderId) {
+        CompletableFuture<Void> fill = fillWaiters.computeIfAbsent(orderId, id -> new CompletableFuture<>());
+        // Registered first, so a terminal update racing this lookup settles the waiter one way or the other
+        PlacedOrder order = placedOrders.getIfPresent(orderId);
+        if (order == null) {
+            if (fillWaiters.remove(orderId, fill)) {
+                fill.completeExceptionally(new BrokerException(exch + " order " + orderId + " was not placed by this session"));
+            }
+        } else if (order.terminal() && fillWaiters.remove(orderId, fill)) {
+            settleFill(fill, orderId, order.state());
+        }
+        return fill;
+    }
+
+    private static void settleFill(CompletableFuture<Void> fill, String orderId, OrderStatusUpdate.State state) {
+        if (state == OrderStatusUpdate.State.FILLED) {
+            fill.complete(null);
+        } else {
+            fill.completeExceptionally(new BrokerException("Order " + orderId + " " + state + " before filling"));
+        }
+    }
+
+    /** Re-read one order's status at EXIT priority (after a short backoff) and fold it into placedOrders. */
+    private void refreshOrderStatus(String exch, String orderId, int attempt) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(100L * attempt);
+            awaitPermit(Priority.EXIT);
+            for (OrderStatusUpdate update : fetchOrderStatuses(Map.of(orderId, exch))) {
+                if (update.remoteOrderId() != null) publishStatus(update);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Status refresh for cancel of {} failed: {}", orderId, e.toString());
+        }
+    }
+
     // ---------------------------------------------------------------------
     // Square-off all positions using OrderBook V4
     // ---------------------------------------------------------------------
     @Override
     public void squareOffAll() throws BrokerException {
         try {
-            JSONObject book = fetchOrderBook();
-            JSONArray details = (JSONArray) book.get("OrderBookDetail");
-            if (details == null) return;
-            for (Object o : details) {
-                JSONObject ord = (JSONObject) o;
-                String status = String.valueOf(ord.get("OrderStatus"));
-                long pending = ((Number) ord.getOrDefault("PendingQty", 0)).longValue();
-                if (pending > 0 && "Pending".equalsIgnoreCase(status)) {
-                    String exchOrderId = String.valueOf(ord.get("ExchOrderID"));
-                    cancelOrder(exchOrderId);
+            for (FivePaisaCodec.OrderBookEntry ord : fetchOrderBook()) {
+                if (ord.pendingQty() > 0 && "Pending".equalsIgnoreCase(ord.orderStatus())) {
+                    cancelOrder(String.valueOf(ord.exchOrderId()));
                 }
             }
         } catch (Exception e) {
@@ -241,36 +407,34 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     // ---------------------------------------------------------------------
     // Authentication helpers
     // ---------------------------------------------------------------------
-    private void authenticate() {
-        loginLock.lock();
-        try {
-            long now = System.currentTimeMillis() / 1000;
-            if (now < tokenExpiryEpochSeconds - 60 && accessToken != null && !accessToken.isBlank()) {
-                return; // another thread already refreshed
-            }
-
-            String currentTotp = (totp != null && !totp.trim().isEmpty()) ? totp.trim() : fetchTotp();
-            String requestToken = totpLogin(currentTotp);
-            this.accessToken = getAccessToken(requestToken);
-            if (accessToken == null || accessToken.isBlank()) {
-                throw new IllegalStateException("AccessToken was blank – auth failed");
-            }
+    /** Full TOTP login flow; run by the token manager, never directly on the order path. */
+    private String login() throws Exception {
+        String currentTotp = (totp != null && !totp.trim().isEmpty()) ? totp.trim() : fetchTotp();
+        String requestToken = totpLogin(currentTotp);
+        return getAccessToken(requestToken);
+    }
 
-            this.tokenExpiryEpochSeconds = decodeJwtExpiry(accessToken);
-            log.info("✅ 5Paisa authentication successful, token exp {}", tokenExpiryEpochSeconds);
-            startOrderWebSocket();
-        } catch (Exception e) {
-            throw new IllegalStateException("Unable to authenticate with 5Paisa", e);
-        } finally {
-            loginLock.unlock();
-        }
+    private String accessToken() {
+        return tokens.token();
     }
 
-    private void ensureAuthenticated() {
-        long now = System.currentTimeMillis() / 1000;
-        if (accessToken == null || accessToken.isBlank() || now >= tokenExpiryEpochSeconds - 60) {
-            authenticate();
-        }
+    /**
+     * Open (or keep alive) a pooled TLS connection to the API host so the first order after an idle
+     * spell does not pay the handshake. Fire-and-forget; the response is discarded.
+     */
+    private void prewarmConnection() {
+        Request req = new Request.Builder().url(BASE_URL).head().build();
+        http.newCall(req).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                log.debug("Connection pre-warm failed: {}", e.toString());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
     }
 
     private String fetchTotp() throws IOException {
@@ -365,74 +529,46 @@ public class FivePaisaBrokerService implements BrokerOrderService {
     // ---------------------------------------------------------------------
     // Order helpers
     // ---------------------------------------------------------------------
-    private JSONObject buildOrderPayload(String scripCode, String exch, String exchType, Side side, int qty, double price, boolean isIntraday) {
-        JSONObject head = new JSONObject();
-        head.put("key", apiKey);
+    /** Market orders go out as delivery; limit and stop-loss orders are intraday on NSE derivatives. */
+    private static boolean isIntraday(String exch, String exchType, boolean market) {
+        return !market && "D".equalsIgnoreCase(exchType) && "N".equalsIgnoreCase(exch);
+    }
 
-        JSONObject body = new JSONObject();
-        body.put("ClientCode", loginId);
-        body.put("Exchange", exch);
-        body.put("ExchangeType", exchType);
-        body.put("ScripCode", scripCode);
-        if (price > 0) {
-            body.put("Price", price);
-        }
-        body.put("OrderType", side == Side.BUY ? "Buy" : "Sell");
-        body.put("Qty", qty);
-        body.put("DisQty", 0);
-        body.put("IsIntraday", isIntraday);
-        body.put("AHPlaced", "N");
-        body.put("RemoteOrderID", UUID.randomUUID().toString());
-        body.put("AppSource", appSource);
-        body.put("iOrderValidity", 0);
-
-        JSONObject req = new JSONObject();
-        req.put("head", head);
-        req.put("body", body);
-
-        // 🔍 DEBUG: Log full payload details before sending
-        if (log.isDebugEnabled()) {
-            log.debug("📝 BuildOrderPayload – Exchange: {}, Type: {}, Side: {}, Qty: {}, Price: {}, Intraday: {}, Scrip: {}",
-                    exch, exchType, side, qty, price, isIntraday, scripCode);
-            log.debug("📝 Payload JSON: {}", req.toJSONString());
-        }
-        return req;
+    private byte[] marketOrderPayload(String scripCode, String exch, String exchType, Side side, int quantity) {
+        return codec.placeOrder(scripCode, exch, exchType, side, quantity, 0, isIntraday(exch, exchType, true),
+                UUID.randomUUID().toString(), false);
+    }
+
+    private byte[] limitOrderPayload(String scripCode, String exch, String exchType, Side side, int quantity, double price) {
+        return codec.placeOrder(scripCode, exch, exchType, side, quantity, price, isIntraday(exch, exchType, false),
+                UUID.randomUUID().toString(), false);
+    }
+
+    private byte[] stopLossLimitOrderPayload(String scripCode, String exch, String exchType, Side side, int quantity, double price) {
+        // WithSL=Y, SLTriggerRate=price
+        return codec.placeOrder(scripCode, exch, exchType, side, quantity, price, isIntraday(exch, exchType, false),
+                UUID.randomUUID().toString(), true);
     }
 
-    private String sendOrderRequest(String exch, JSONObject payload) throws Exception {
-        ensureAuthenticated();
+    private Request placeOrderRequest(String exch, byte[] payload) {
         // 🔍 DEBUG: Log outgoing request
         if (log.isDebugEnabled()) {
-            log.debug("📤 Sending order request for exch {}: {}", exch, payload.toJSONString());
+            log.debug("📤 Sending order request for exch {}: {}", exch, new String(payload, StandardCharsets.UTF_8));
         }
 
-        Request req = new Request.Builder()
+        return new Request.Builder()
                 .url(BASE_URL + "V1/PlaceOrderRequest")
-                .addHeader("Authorization", "Bearer " + accessToken)
-                .post(RequestBody.create(payload.toJSONString(), MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + accessToken())
+                .post(RequestBody.create(payload, JSON_TYPE))
                 .build();
+    }
+
+    private String sendOrderRequest(Priority priority, String exch, byte[] payload) throws Exception {
+        awaitPermit(priority);
+        Request req = placeOrderRequest(exch, payload);
         long start = System.nanoTime();
         try (Response res = http.newCall(req).execute()) {
-            requestTotal.increment();
-            String respStr = res.body() != null ? res.body().string() : "";
-            if (!res.isSuccessful()) {
-                requestFailed.increment();
-                throw new IOException("HTTP " + res.code() + ": " + respStr);
-            }
-
-            JSONParser parser = new JSONParser();
-            JSONObject respJson = (JSONObject) parser.parse(respStr);
-            JSONObject head = (JSONObject) respJson.get("head");
-            JSONObject body = (JSONObject) respJson.get("body");
-
-            if (log.isDebugEnabled()) {
-                log.debug("📥 Broker raw response (HTTP {}): {}", res.code(), respStr);
-            }
-            decodeBrokerError(head, body);
-
-            String remoteId = String.valueOf(body.get("RemoteOrderID"));
-            trackPending(exch, remoteId);
-            return remoteId;
+            return readOrderResponse(exch, res);
         } catch (Exception e) {
             requestFailed.increment();
             if (log.isDebugEnabled()) {
@@ -444,58 +580,130 @@ public class FivePaisaBrokerService implements BrokerOrderService {
         }
     }
 
-    private void decodeBrokerError(JSONObject head, JSONObject body) throws IOException {
-        if (head == null) throw new IOException("Missing head in response");
-        String status = String.valueOf(head.get("status"));
-        if (!"0".equals(status)) {
-            throw new IOException("Broker head status=" + status);
-        }
-        if (body == null) return;
-        Number stat = (Number) body.get("Status");
-        if (stat != null && stat.intValue() != 0) {
-            String msg = String.valueOf(body.get("Message"));
-            throw new IOException("BrokerRMS " + msg);
+    /**
+     * Non-blocking twin of {@link #sendOrderRequest}. The request, bearer token included, is built on
+     * the caller thread, so a rare inline login never runs on the rate limiter's drainer and holds up
+     * other permit grants. Once a permit is granted (at once, or later on the limiter's thread) the
+     * prebuilt call is enqueued on OkHttp's dispatcher and the response is parsed on its callback thread.
+     */
+    private CompletableFuture<OrderAck> sendOrderRequestAsync(Priority priority, String exch, String failure,
+                                                              Callable<byte[]> payload) {
+        CompletableFuture<OrderAck> ack = new CompletableFuture<>();
+        Request req;
+        try {
+            req = placeOrderRequest(exch, payload.call());
+        } catch (Exception e) {
+            ack.completeExceptionally(new BrokerException(failure, e));
+            return ack;
         }
+        rateLimiter.acquireOrderPermitAsync(priority).whenComplete((permit, err) -> {
+            if (err != null) {
+                ack.completeExceptionally(new BrokerException(failure, err));
+            } else {
+                enqueueOrderRequest(exch, failure, req, ack);
+            }
+        });
+        return ack;
     }
 
-    // ---------------------------------------------------------------------
-    // Optional helper – fetch today's order book (V4) for future extensions
-    // ---------------------------------------------------------------------
-    public JSONObject fetchOrderBook() throws BrokerException {
-        ensureAuthenticated();
+    private void enqueueOrderRequest(String exch, String failure, Request req, CompletableFuture<OrderAck> ack) {
+        long start = System.nanoTime();
+        http.newCall(req).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(e);
+            }
 
-        JSONObject head = new JSONObject();
-        head.put("key", apiKey);
+            @Override
+            public void onResponse(Call call, Response res) {
+                try (res) {
+                    String remoteId = readOrderResponse(exch, res);
+                    long elapsed = System.nanoTime() - start;
+                    requestLatency.record(elapsed, TimeUnit.NANOSECONDS);
+                    ack.complete(new OrderAck(remoteId, exch, elapsed));
+                } catch (Exception e) {
+                    fail(e);
+                }
+            }
 
-        JSONObject body = new JSONObject();
-        body.put("ClientCode", loginId);
+            private void fail(Exception e) {
+                requestFailed.increment();
+                requestLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (log.isDebugEnabled()) {
+                    log.debug("❌ Broker request failed: {}", e.getMessage(), e);
+                }
+                ack.completeExceptionally(new BrokerException(failure, e));
+            }
+        });
+    }
 
-        JSONObject reqObj = new JSONObject();
-        reqObj.put("head", head);
-        reqObj.put("body", body);
+    private String readOrderResponse(String exch, Response res) throws Exception {
+        requestTotal.increment();
+        byte[] resp = res.body() != null ? res.body().bytes() : new byte[0];
+        if (!res.isSuccessful()) {
+            noteThrottle(res.code(), null);
+            throw new IOException("HTTP " + res.code() + ": " + new String(resp, StandardCharsets.UTF_8));
+        }
 
+        if (log.isDebugEnabled()) {
+            log.debug("📥 Broker raw response (HTTP {}): {}", res.code(), new String(resp, StandardCharsets.UTF_8));
+        }
+        FivePaisaCodec.OrderReply reply;
+        try {
+            reply = codec.decodeOrderReply(resp);
+        } catch (IOException e) {
+            noteThrottle(res.code(), e.getMessage());
+            throw e;
+        }
+        rateLimiter.onOrderSuccess();
+        String remoteId = String.valueOf(reply.remoteOrderId());
+        placedOrders.asMap().merge(remoteId,
+                new PlacedOrder(exch, OrderStatusUpdate.assignedExchOrderId(reply.exchOrderId()), OrderStatusUpdate.State.PENDING),
+                PlacedOrder::merge);
+        trackPending(exch, remoteId);
+        return remoteId;
+    }
+
+    /** Wait (bounded by broker.ratelimit.max-wait-ms) for an order-API permit of the given class. */
+    private void awaitPermit(Priority priority) throws IOException {
+        if (!rateLimiter.acquireOrderPermit(priority)) {
+            throw new IOException("Order API rate limit: no " + priority + " permit");
+        }
+    }
+
+    /** HTTP 429 or an RMS "too many requests"-style rejection backs the order-API rate off. */
+    private void noteThrottle(int httpCode, String message) {
+        if (httpCode == 429 || (message != null && THROTTLE_MESSAGE.matcher(message).find())) {
+            rateLimiter.onOrderThrottled();
+        }
+    }
+
+    private static Priority priorityOf(Intent intent) {
+        return intent == Intent.EXIT ? Priority.EXIT : Priority.ENTRY;
+    }
+
+    // ---------------------------------------------------------------------
+    // Fetch today's order book (V4)
+    // ---------------------------------------------------------------------
+    public List<FivePaisaCodec.OrderBookEntry> fetchOrderBook() throws BrokerException {
+        if (!rateLimiter.acquireOrderPermit(Priority.STATUS)) {
+            throw new BrokerException("Failed to fetch order book: rate limited");
+        }
         Request req = new Request.Builder()
                 .url(BASE_URL + "V4/OrderBook")
-                .addHeader("Authorization", "Bearer " + accessToken)
-                .post(RequestBody.create(reqObj.toJSONString(), MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + accessToken())
+                .post(RequestBody.create(codec.clientRequest(), JSON_TYPE))
                 .build();
 
         long startNano = System.nanoTime();
         try (Response res = http.newCall(req).execute()) {
             requestTotal.increment();
-            String resp = res.body() != null ? res.body().string() : "";
+            byte[] resp = res.body() != null ? res.body().bytes() : new byte[0];
             if (!res.isSuccessful()) {
-                requestFailed.increment();
-                throw new IOException("HTTP " + res.code() + ": " + resp);
+                noteThrottle(res.code(), null);
+                throw new IOException("HTTP " + res.code() + ": " + new String(resp, StandardCharsets.UTF_8));
             }
-
-            JSONParser parser = new JSONParser();
-            JSONObject respJson = (JSONObject) parser.parse(resp);
-            JSONObject headResp = (JSONObject) respJson.get("head");
-            JSONObject bodyResp = (JSONObject) respJson.get("body");
-            decodeBrokerError(headResp, bodyResp);
-
-            return (JSONObject) bodyResp.get("OrderBookDetail");
+            return codec.decodeOrderBook(resp);
         } catch (Exception e) {
             requestFailed.increment();
             throw new BrokerException("Failed to fetch order book", e);
@@ -504,7 +712,8 @@ public class FivePaisaBrokerService implements BrokerOrderService {
         }
     }
 
-    private void startOrderWebSocket() {
+    private void startOrderWebSocket(String accessToken) {
+        if (accessToken == null) return;
         try {
             String server = "C"; // default
             // decode again to find RedirectServer
@@ -522,7 +731,15 @@ public class FivePaisaBrokerService implements BrokerOrderService {
             };
             String url = "wss://" + host + "/feeds/api/chat?Value1=" + accessToken + "|" + loginId;
             Request req = new Request.Builder().url(url).build();
+            // A token refresh replaces the socket; only the latest one may flip state or reconnect
+            int generation = orderWsGeneration.incrementAndGet();
+            WebSocket previous = orderWs;
             orderWs = http.newWebSocket(req, new WebSocketListener() {
+                @Override
+                public void onOpen(WebSocket webSocket, Response response) {
+                    if (generation == orderWsGeneration.get()) orderWsConnected = true;
+                }
+
                 @Override
                 public void onMessage(WebSocket webSocket, String text) {
                     handleWsMessage(text);
@@ -530,16 +747,21 @@ public class FivePaisaBrokerService implements BrokerOrderService {
 
                 @Override
                 public void onClosed(WebSocket ws, int code, String reason) {
+                    if (generation != orderWsGeneration.get()) return;
+                    orderWsConnected = false;
                     log.warn("Order WS closed: {}", reason);
                     scheduleWsReconnect();
                 }
 
                 @Override
                 public void onFailure(WebSocket ws, Throwable t, Response r) {
+                    if (generation != orderWsGeneration.get()) return;
+                    orderWsConnected = false;
                     log.error("Order WS failure {}", t.toString());
                     scheduleWsReconnect();
                 }
             });
+            if (previous != null) previous.close(1000, "token refresh");
         } catch (Exception e) {
             log.warn("Failed to start order WebSocket: {}", e.toString());
             scheduleWsReconnect();
@@ -550,78 +772,90 @@ public class FivePaisaBrokerService implements BrokerOrderService {
         try {
             JSONParser p = new JSONParser();
             JSONObject obj = (JSONObject) p.parse(text);
-            String reqType = String.valueOf(obj.get("ReqType"));
-            String remoteId = String.valueOf(obj.get("RemoteOrderId"));
-            long pendingQty = ((Number) obj.getOrDefault("PendingQty", 0)).longValue();
-            if (pendingQty == 0) {
-                pendingOrders.remove(remoteId);
-                ScheduledFuture<?> f = pollFutures.remove(remoteId);
-                if (f != null) f.cancel(false);
-            }
+            OrderStatusUpdate update = OrderStatusUpdate.fromJson(obj, OrderStatusUpdate.Source.PUSH);
+            if (update.remoteOrderId() != null) publishStatus(update);
         } catch (Exception ignored) {
         }
     }
 
-    // ------------------ order polling helpers ---------------------------
+    // ------------------ order status reconciliation ---------------------
+    /**
+     * Register a consumer for every order status update, pushed or polled. Listeners are called on
+     * the broker's I/O threads and must hand off any slow work.
+     */
+    public void addOrderStatusListener(Consumer<OrderStatusUpdate> listener) {
+        statusListeners.add(listener);
+    }
+
+    /** Include an order in status reconciliation until it reaches a terminal state. Idempotent. */
+    public void watchOrder(String exch, String remoteId) {
+        if (remoteId != null) pendingOrders.putIfAbsent(remoteId, exch != null ? exch : "N");
+    }
+
+    public int getWatchedOrderCount() {
+        return pendingOrders.size();
+    }
+
     private void trackPending(String exch, String remoteId) {
-        pendingOrders.put(remoteId, new AtomicBoolean(true));
-        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> {
-            AtomicBoolean flag = pendingOrders.get(remoteId);
-            if (flag == null || !flag.get()) return;
+        watchOrder(exch, remoteId);
+    }
+
+    private void reconcilePendingOrders() {
+        if (pendingOrders.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        if (orderWsConnected && now - lastStatusPollMs < statusWsFallbackMs) return;
+        // Lowest priority: never queue behind orders, just try again next cycle
+        if (!rateLimiter.tryAcquireOrderPermit(Priority.STATUS)) return;
+        lastStatusPollMs = now;
+        try {
+            for (OrderStatusUpdate update : fetchOrderStatuses(Map.copyOf(pendingOrders))) {
+                if (update.remoteOrderId() != null) publishStatus(update);
+            }
+        } catch (Exception e) {
+            log.warn("Order status poll failed for {} pending orders: {}", pendingOrders.size(), e.toString());
+        }
+    }
+
+    private void publishStatus(OrderStatusUpdate update) {
+        if (update.isTerminal()) pendingOrders.remove(update.remoteOrderId());
+        placedOrders.asMap().computeIfPresent(update.remoteOrderId(),
+                (id, o) -> o.merge(new PlacedOrder(o.exch(), update.exchOrderId(), update.state())));
+        if (update.isTerminal()) {
+            CompletableFuture<Void> fill = fillWaiters.remove(update.remoteOrderId());
+            if (fill != null) settleFill(fill, update.remoteOrderId(), update.state());
+        }
+        for (Consumer<OrderStatusUpdate> listener : statusListeners) {
             try {
-                JSONObject status = fetchOrderStatus(exch, remoteId);
-                JSONArray lst = (JSONArray) status.get("OrdStatusResLst");
-                if (lst != null && !lst.isEmpty()) {
-                    JSONObject s = (JSONObject) lst.get(0);
-                    String st = String.valueOf(s.get("Status"));
-                    if (!"Pending".equalsIgnoreCase(st)) {
-                        pendingOrders.remove(remoteId);
-                        long pend = ((Number) ((JSONObject) lst.get(0)).getOrDefault("PendingQty", 0)).longValue();
-                        if (pend == 0) {
-                            pendingOrders.remove(remoteId);
-                            ScheduledFuture<?> f = pollFutures.remove(remoteId);
-                            if (f != null) f.cancel(false);
-                        }
-                    }
-                }
+                listener.accept(update);
             } catch (Exception e) {
-                log.debug("poll status error {}", e.toString());
+                log.warn("Order status listener failed for {}: {}", update.remoteOrderId(), e.toString());
             }
-        }, 2, 2, TimeUnit.SECONDS);
-        pollFutures.put(remoteId, future);
+        }
     }
 
-    private JSONObject fetchOrderStatus(String exch, String remoteId) throws Exception {
-        ensureAuthenticated();
-        JSONObject head = new JSONObject();
-        head.put("key", apiKey);
-        JSONObject inner = new JSONObject();
-        inner.put("Exch", exch);
-        inner.put("RemoteOrderID", remoteId);
-        org.json.simple.JSONArray arr = new org.json.simple.JSONArray();
-        arr.add(inner);
-        JSONObject body = new JSONObject();
-        body.put("ClientCode", loginId);
-        body.put("OrdStatusReqList", arr);
-        JSONObject reqObj = new JSONObject();
-        reqObj.put("head", head);
-        reqObj.put("body", body);
-
+    /** One V2/OrderStatus request covering every given RemoteOrderID -> Exch. */
+    private List<OrderStatusUpdate> fetchOrderStatuses(Map<String, String> orders) throws Exception {
         Request req = new Request.Builder()
                 .url(BASE_URL + "V2/OrderStatus")
-                .addHeader("Authorization", "Bearer " + accessToken)
-                .post(RequestBody.create(reqObj.toJSONString(), MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + accessToken())
+                .post(RequestBody.create(codec.orderStatus(orders), JSON_TYPE))
                 .build();
         try (Response res = http.newCall(req).execute()) {
-            String respStr = res.body() != null ? res.body().string() : "";
-            JSONParser parser = new JSONParser();
-            JSONObject full = (JSONObject) parser.parse(respStr);
-            return (JSONObject) full.get("body");
+            requestTotal.increment();
+            byte[] resp = res.body() != null ? res.body().bytes() : new byte[0];
+            if (!res.isSuccessful()) {
+                noteThrottle(res.code(), null);
+                throw new IOException("HTTP " + res.code() + ": " + new String(resp, StandardCharsets.UTF_8));
+            }
+            return codec.decodeOrderStatus(resp);
+        } catch (Exception e) {
+            requestFailed.increment();
+            throw e;
         }
     }
 
     private void scheduleWsReconnect() {
-        scheduler.schedule(this::startOrderWebSocket, 5, TimeUnit.SECONDS);
+        scheduler.schedule(() -> startOrderWebSocket(tokens.peek()), 5, TimeUnit.SECONDS);
     }
 
     // ---------------------------------------------------------------------
@@ -632,57 +866,25 @@ public class FivePaisaBrokerService implements BrokerOrderService {
      * Fetch today\'s net positions (all segments).
      */
     public java.util.List<NetPosition> fetchNetPositions() throws BrokerException {
-        ensureAuthenticated();
-
-        JSONObject head = new JSONObject();
-        head.put("key", apiKey);
-
-        JSONObject body = new JSONObject();
-        body.put("ClientCode", loginId);
-
-        JSONObject reqObj = new JSONObject();
-        reqObj.put("head", head);
-        reqObj.put("body", body);
-
+        if (!rateLimiter.acquireOrderPermit(Priority.STATUS)) {
+            throw new BrokerException("Failed to fetch net positions: rate limited");
+        }
         Request req = new Request.Builder()
                 .url(BASE_URL + "V2/NetPositionNetWise")
-                .addHeader("Authorization", "Bearer " + accessToken)
-                .post(RequestBody.create(reqObj.toJSONString(), MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + accessToken())
+                .post(RequestBody.create(codec.clientRequest(), JSON_TYPE))
                 .build();
 
         long startNano = System.nanoTime();
         try (Response res = http.newCall(req).execute()) {
             requestTotal.increment();
-            String resp = res.body() != null ? res.body().string() : "";
+            byte[] resp = res.body() != null ? res.body().bytes() : new byte[0];
             if (!res.isSuccessful()) {
-                requestFailed.increment();
-                throw new IOException("HTTP " + res.code() + ": " + resp);
-            }
-
-            JSONParser parser = new JSONParser();
-            JSONObject respJson = (JSONObject) parser.parse(resp);
-            JSONObject headResp = (JSONObject) respJson.get("head");
-            JSONObject bodyResp = (JSONObject) respJson.get("body");
-            decodeBrokerError(headResp, bodyResp);
-
-            org.json.simple.JSONArray arr = (org.json.simple.JSONArray) bodyResp.get("NetPositionDetail");
-            java.util.List<NetPosition> list = new java.util.ArrayList<>();
-            if (arr != null) {
-                for (Object o : arr) {
-                    JSONObject jo = (JSONObject) o;
-                    try {
-                        String scrip = String.valueOf(jo.get("ScripCode"));
-                        String ex = String.valueOf(jo.get("Exch"));
-                        String exType = String.valueOf(jo.get("ExchType"));
-                        long netQty = ((Number) jo.getOrDefault("NetQty", 0)).longValue();
-                        double buyAvg = jo.get("BuyAvgRate") != null ? ((Number) jo.get("BuyAvgRate")).doubleValue() : 0.0;
-                        double sellAvg = jo.get("SellAvgRate") != null ? ((Number) jo.get("SellAvgRate")).doubleValue() : 0.0;
-                        double mtm = jo.get("MTM") != null ? ((Number) jo.get("MTM")).doubleValue() : 0.0;
-                        list.add(new NetPosition(scrip, ex, exType, netQty, buyAvg, sellAvg, mtm));
-                    } catch (Exception ignored) { /* skip malformed row */ }
-                }
+                noteThrottle(res.code(), null);
+                throw new IOException("HTTP " + res.code() + ": " + new String(resp, StandardCharsets.UTF_8));
             }
 
+            java.util.List<NetPosition> list = codec.decodeNetPositions(resp);
             if (log.isDebugEnabled()) {
                 log.debug("📥 Fetched {} net positions", list.size());
             }
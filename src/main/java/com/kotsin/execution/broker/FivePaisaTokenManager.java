@@ -0,0 +1,199 @@
+package com.kotsin.execution.broker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keeps a valid 5paisa access token ready so the order path never logs in.
+ *
+ * The TOTP -> TOTPLogin -> GetAccessToken flow runs on the broker scheduler, {@code refreshLeadSec}
+ * before the JWT expiry; the current token keeps serving requests until its replacement is
+ * published, so there is always a usable token while the next one is fetched. Callers read it with
+ * a single volatile load. Only when no usable token exists at all (cold start before the first
+ * background login succeeded, or every refresh failed) does {@link #token()} log in inline.
+ */
+@Slf4j
+final class FivePaisaTokenManager {
+
+    /** Access token with its JWT expiry (epoch seconds) and the time it was obtained. */
+    record Token(String value, long expiresAtEpochSec, long issuedAtMs) {
+        boolean usableAt(long nowMs) {
+            return nowMs / 1000 < expiresAtEpochSec - EXPIRY_MARGIN_SEC;
+        }
+    }
+
+    // Never hand out a token this close to expiry
+    private static final long EXPIRY_MARGIN_SEC = 60;
+    // JWT without a readable exp: assume a short life and refresh early rather than re-login per call
+    private static final long UNKNOWN_EXPIRY_TTL_SEC = 3600;
+    private static final long MIN_RETRY_MS = 5_000;
+    private static final long MAX_RETRY_MS = 60_000;
+
+    private final Callable<String> login;
+    private final ToLongFunction<String> expiryOf;
+    private final Consumer<String> onRefresh;
+    private final Runnable prewarm;
+    private final ScheduledExecutorService scheduler;
+    private final long refreshLeadSec;
+    private final long prewarmIntervalMs;
+
+    private final ReentrantLock loginLock = new ReentrantLock();
+    private volatile Token current;
+    private long retryMs = MIN_RETRY_MS;
+
+    private final Timer refreshLatency;
+    private final Counter refreshFailed;
+    private final Counter inlineLogins;
+
+    /**
+     * @param login     runs the full login flow and returns the access token
+     * @param expiryOf  decodes the JWT expiry (epoch seconds, 0 if unknown)
+     * @param onRefresh called with each newly published token (e.g. to reconnect the order WebSocket)
+     * @param prewarm   opens/refreshes a pooled connection to the API host; must not block
+     */
+    FivePaisaTokenManager(Callable<String> login,
+                          ToLongFunction<String> expiryOf,
+                          Consumer<String> onRefresh,
+                          Runnable prewarm,
+                          ScheduledExecutorService scheduler,
+                          MeterRegistry registry,
+                          long refreshLeadSec,
+                          long prewarmIntervalMs) {
+        this.login = login;
+        this.expiryOf = expiryOf;
+        this.onRefresh = onRefresh;
+        this.prewarm = prewarm;
+        this.scheduler = scheduler;
+        this.refreshLeadSec = refreshLeadSec;
+        this.prewarmIntervalMs = prewarmIntervalMs;
+        this.refreshLatency = registry.timer("fivepaisa.token.refresh.latency");
+        this.refreshFailed = registry.counter("fivepaisa.token.refresh.failed");
+        this.inlineLogins = registry.counter("fivepaisa.token.inline.logins");
+        registry.gauge("fivepaisa.token.age.seconds", this, m -> m.ageSeconds(System.currentTimeMillis()));
+        registry.gauge("fivepaisa.token.ttl.seconds", this, m -> m.ttlSeconds(System.currentTimeMillis()));
+    }
+
+    /** First login in the background (the TOTP service may not be up yet), then keep the pool warm. */
+    void start() {
+        scheduler.schedule(this::refreshCycle, 0, TimeUnit.MILLISECONDS);
+        if (prewarmIntervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::prewarmIfAuthenticated, prewarmIntervalMs, prewarmIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Usable access token: a volatile read, or an inline login when none is available. */
+    String token() {
+        Token t = current;
+        if (t != null && t.usableAt(System.currentTimeMillis())) return t.value();
+        inlineLogins.increment();
+        return refresh(false).value();
+    }
+
+    /** Current token without ever logging in; null when there is none. */
+    String peek() {
+        Token t = current;
+        return t != null ? t.value() : null;
+    }
+
+    double ageSeconds(long nowMs) {
+        Token t = current;
+        return t != null ? (nowMs - t.issuedAtMs()) / 1000.0 : Double.NaN;
+    }
+
+    double ttlSeconds(long nowMs) {
+        Token t = current;
+        return t != null ? t.expiresAtEpochSec() - nowMs / 1000.0 : Double.NaN;
+    }
+
+    /**
+     * Log in and publish the new token. With {@code force=false}, a token published by another thread
+     * while this one waited for the lock is returned instead of logging in again.
+     */
+    Token refresh(boolean force) {
+        loginLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Token t = current;
+            if (!force && t != null && t.usableAt(now)) return t;
+
+            long start = System.nanoTime();
+            String value;
+            try {
+                value = login.call();
+            } catch (Exception e) {
+                refreshFailed.increment();
+                throw new IllegalStateException("Unable to authenticate with 5Paisa", e);
+            } finally {
+                refreshLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            if (value == null || value.isBlank()) {
+                refreshFailed.increment();
+                throw new IllegalStateException("AccessToken was blank – auth failed");
+            }
+            long exp = expiryOf.applyAsLong(value);
+            if (exp <= 0) exp = now / 1000 + UNKNOWN_EXPIRY_TTL_SEC;
+            Token fresh = new Token(value, exp, now);
+            current = fresh;
+            log.info("✅ 5Paisa authentication successful, token exp {}", exp);
+            try {
+                onRefresh.accept(value);
+            } catch (Exception e) {
+                log.warn("Token refresh hook failed: {}", e.toString());
+            }
+            prewarmIfAuthenticated();
+            return fresh;
+        } finally {
+            loginLock.unlock();
+        }
+    }
+
+    /**
+     * Delay until the next proactive refresh: the earlier of {@code refreshLeadSec} before expiry and
+     * half the remaining life, so a failed refresh still leaves time to retry. Tokens shorter than the
+     * lead refresh at half-life rather than at once, so a short-lived token cannot cause a login loop.
+     */
+    long nextRefreshDelayMs(Token t, long nowMs) {
+        long remainingMs = t.expiresAtEpochSec() * 1000 - nowMs;
+        long halfLifeMs = remainingMs / 2;
+        long leadMs = remainingMs - refreshLeadSec * 1000;
+        return Math.max(MIN_RETRY_MS, leadMs > 0 ? Math.min(leadMs, halfLifeMs) : halfLifeMs);
+    }
+
+    private void refreshCycle() {
+        long delay;
+        try {
+            delay = nextRefreshDelayMs(refresh(true), System.currentTimeMillis());
+            retryMs = MIN_RETRY_MS;
+            log.info("🔄 Next 5Paisa token refresh in {}s", delay / 1000);
+        } catch (Exception e) {
+            // Keep serving the current token (if still valid) and retry with backoff
+            delay = retryMs;
+            retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+            log.error("❌ Token refresh failed, retrying in {}ms: {}", delay, e.getMessage());
+        }
+        try {
+            scheduler.schedule(this::refreshCycle, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.debug("Token refresh not rescheduled: {}", e.toString());
+        }
+    }
+
+    private void prewarmIfAuthenticated() {
+        if (current == null) return;
+        try {
+            prewarm.run();
+        } catch (Exception e) {
+            log.debug("Connection pre-warm failed: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.kotsin.execution.broker;
+
+/**
+ * Broker acknowledgement of a submitted order: the order-id returned by the broker, the exchange it
+ * was routed to and the submit-to-ack round trip in nanoseconds.
+ */
+public record OrderAck(String orderId, String exch, long latencyNanos) {}
@@ -0,0 +1,108 @@
+package com.kotsin.execution.broker;
+
+import org.json.simple.JSONObject;
+
+/**
+ * One order's status as reported by the broker, from either the order WebSocket push or the
+ * batched V2/OrderStatus reconciliation poll. Fanned out to every registered status listener.
+ */
+public record OrderStatusUpdate(String remoteOrderId,
+                                String exch,
+                                String exchOrderId,
+                                String status,
+                                int orderQty,
+                                int pendingQty,
+                                double avgPrice,
+                                String message,
+                                Source source) {
+
+    public enum Source { PUSH, POLL }
+
+    public OrderStatusUpdate {
+        exchOrderId = assignedExchOrderId(exchOrderId);
+    }
+
+    /** The broker reports "0" until the exchange has assigned an ExchOrderID; that reads as none (null). */
+    static String assignedExchOrderId(String exchOrderId) {
+        return exchOrderId == null || exchOrderId.isBlank() || "0".equals(exchOrderId) ? null : exchOrderId;
+    }
+
+    /** Broker status text normalised to what the order path acts on. */
+    public enum State {
+        PENDING, PARTIAL, FILLED, REJECTED, CANCELLED, UNKNOWN;
+
+        public boolean isTerminal() {
+            return this == FILLED || this == REJECTED || this == CANCELLED;
+        }
+    }
+
+    public int filledQty() {
+        return Math.max(0, orderQty - pendingQty);
+    }
+
+    public State state() {
+        return classify(status);
+    }
+
+    /**
+     * True once the broker will not change the order any further (filled, rejected or cancelled).
+     * Decided by the status text alone: a push without a status says nothing, even with no pending qty.
+     */
+    public boolean isTerminal() {
+        return state().isTerminal();
+    }
+
+    /**
+     * The one mapping from 5paisa status text ("Fully Executed", "Rejected By 5P", "Trigger Pending",
+     * ...) to a State, shared by the status feed and order verification. Case-insensitive and by
+     * keyword, since the broker words the same state differently across endpoints.
+     */
+    public static State classify(String status) {
+        String s = status == null ? "" : status.trim().toUpperCase();
+        if (s.isEmpty()) return State.UNKNOWN;
+        if (s.contains("REJECT") || s.contains("FAIL")) return State.REJECTED;
+        if (s.contains("CANCEL")) return State.CANCELLED;
+        if (s.contains("PARTIAL")) return State.PARTIAL;
+        if (s.contains("EXECUTED") || s.contains("COMPLETE") || s.contains("FILLED") || s.contains("TRADED")) {
+            return State.FILLED;
+        }
+        if (s.contains("PENDING") || s.contains("OPEN") || s.contains("PLACED") || s.contains("MODIFIED")
+                || s.contains("XMITTED") || s.contains("TRIGGER")) {
+            return State.PENDING;
+        }
+        return State.UNKNOWN;
+    }
+
+    /**
+     * Build from a V2/OrderStatus OrdStatusResLst row or an order WebSocket message; the two use
+     * slightly different field names, so both spellings are accepted.
+     */
+    static OrderStatusUpdate fromJson(JSONObject row, Source source) {
+        Object remoteId = row.get("RemoteOrderID");
+        if (remoteId == null) remoteId = row.get("RemoteOrderId");
+        Object exchOrderId = row.get("ExchOrderID");
+        if (exchOrderId == null) exchOrderId = row.get("ExchOrderId");
+        return new OrderStatusUpdate(
+                remoteId != null ? remoteId.toString() : null,
+                row.get("Exch") != null ? row.get("Exch").toString() : null,
+                exchOrderId != null ? exchOrderId.toString() : null,
+                row.get("Status") != null ? row.get("Status").toString() : "",
+                intField(row, "OrderQty", "Qty"),
+                intField(row, "PendingQty", "PendingQty"),
+                doubleField(row, "OrderRate", "Rate"),
+                row.get("Message") != null ? row.get("Message").toString() : "",
+                source);
+    }
+
+    private static int intField(JSONObject row, String name, String alt) {
+        Object v = row.get(name);
+        if (!(v instanceof Number)) v = row.get(alt);
+        return v instanceof Number n ? n.intValue() : 0;
+    }
+
+    private static double doubleField(JSONObject row, String name, String alt) {
+        Object v = row.get(name);
+        if (!(v instanceof Number)) v = row.get(alt);
+        return v instanceof Number n ? n.doubleValue() : 0.0;
+    }
+}
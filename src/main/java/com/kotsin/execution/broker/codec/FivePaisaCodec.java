@@ -0,0 +1,327 @@
+package com.kotsin.execution.broker.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.kotsin.execution.broker.BrokerOrderService.Side;
+import com.kotsin.execution.broker.OrderStatusUpdate;
+import com.kotsin.execution.model.NetPosition;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoder/decoder for the 5paisa request and response shapes on the order path:
+ * PlaceOrderRequest, OrderStatus, NetPositionNetWise and OrderBook.
+ *
+ * Requests are written straight into a per-thread reusable byte buffer from a template whose
+ * constant part ({"head":{"key":..},"body":{"ClientCode":..) is encoded once per client; the
+ * only allocation per request is the exact-size copy handed to OkHttp (which may send it on another
+ * thread). Responses are read in one pass with Jackson's streaming parser into typed records;
+ * fields the order path does not use are skipped without materialising them.
+ */
+public final class FivePaisaCodec {
+
+    /** RemoteOrderID / broker ids of an accepted PlaceOrderRequest. */
+    public record OrderReply(String remoteOrderId, String brokerOrderId, String exchOrderId) {}
+
+    /** One OrderBook (V4) row, as much of it as cancellation and reconciliation need. */
+    public record OrderBookEntry(String exchOrderId,
+                                 String remoteOrderId,
+                                 String scripCode,
+                                 String orderStatus,
+                                 int qty,
+                                 int pendingQty,
+                                 double rate) {}
+
+    // Thread-safe once configured; parsers are per call
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final ThreadLocal<JsonByteWriter> SCRATCH = ThreadLocal.withInitial(() -> new JsonByteWriter(512));
+
+    private static final byte[] EXCHANGE = ascii(",\"Exchange\":");
+    private static final byte[] EXCHANGE_TYPE = ascii(",\"ExchangeType\":");
+    private static final byte[] SCRIP_CODE = ascii(",\"ScripCode\":");
+    private static final byte[] PRICE = ascii(",\"Price\":");
+    private static final byte[] BUY = ascii(",\"OrderType\":\"Buy\"");
+    private static final byte[] SELL = ascii(",\"OrderType\":\"Sell\"");
+    private static final byte[] QTY = ascii(",\"Qty\":");
+    private static final byte[] INTRADAY = ascii(",\"IsIntraday\":");
+    private static final byte[] REMOTE_ORDER_ID = ascii(",\"RemoteOrderID\":");
+    private static final byte[] WITH_SL = ascii(",\"WithSL\":\"Y\",\"SLTriggerRate\":");
+    private static final byte[] STATUS_LIST = ascii(",\"OrdStatusReqList\":[");
+    private static final byte[] STATUS_EXCH = ascii("{\"Exch\":");
+    private static final byte[] END = ascii("}}");
+
+    private final byte[] prefix;
+    private final byte[] orderSuffix;
+    private final byte[] clientRequest;
+
+    public FivePaisaCodec(String apiKey, String clientCode, int appSource) {
+        JsonByteWriter w = new JsonByteWriter(128);
+        w.raw(ascii("{\"head\":{\"key\":")).string(apiKey).raw(ascii("},\"body\":{\"ClientCode\":")).string(clientCode);
+        prefix = w.toByteArray();
+        orderSuffix = w.reset().raw(ascii(",\"DisQty\":0,\"AHPlaced\":\"N\",\"AppSource\":")).number(appSource)
+                .raw(ascii(",\"iOrderValidity\":0")).raw(END).toByteArray();
+        clientRequest = w.reset().raw(prefix).raw(END).toByteArray();
+    }
+
+    // ---------------------------------------------------------------------
+    // Requests
+    // ---------------------------------------------------------------------
+
+    /**
+     * V1/PlaceOrderRequest body. Price is omitted when {@code price <= 0} (market order);
+     * {@code withStopLoss} adds WithSL=Y with the price as SLTriggerRate.
+     */
+    public byte[] placeOrder(String scripCode, String exch, String exchType, Side side, int qty, double price,
+                             boolean intraday, String remoteOrderId, boolean withStopLoss) {
+        JsonByteWriter w = SCRATCH.get().reset().raw(prefix);
+        w.raw(EXCHANGE).string(exch);
+        w.raw(EXCHANGE_TYPE).string(exchType);
+        w.raw(SCRIP_CODE).string(scripCode);
+        if (price > 0) w.raw(PRICE).number(price);
+        w.raw(side == Side.BUY ? BUY : SELL);
+        w.raw(QTY).number(qty);
+        w.raw(INTRADAY).bool(intraday);
+        w.raw(REMOTE_ORDER_ID).string(remoteOrderId);
+        if (withStopLoss) w.raw(WITH_SL).number(price);
+        return w.raw(orderSuffix).toByteArray();
+    }
+
+    /** V2/OrderStatus body covering every RemoteOrderID -> Exch in one OrdStatusReqList. */
+    public byte[] orderStatus(Map<String, String> remoteIdToExch) {
+        JsonByteWriter w = SCRATCH.get().reset().raw(prefix).raw(STATUS_LIST);
+        boolean first = true;
+        for (Map.Entry<String, String> order : remoteIdToExch.entrySet()) {
+            if (!first) w.raw(',');
+            first = false;
+            w.raw(STATUS_EXCH).string(order.getValue()).raw(REMOTE_ORDER_ID).string(order.getKey()).raw('}');
+        }
+        return w.raw(']').raw(END).toByteArray();
+    }
+
+    /** Body for client-scoped queries (V2/NetPositionNetWise, V4/OrderBook); constant per client. */
+    public byte[] clientRequest() {
+        return clientRequest;
+    }
+
+    // ---------------------------------------------------------------------
+    // Responses
+    // ---------------------------------------------------------------------
+
+    /** PlaceOrderRequest response; broker-side rejections surface as IOException. */
+    public OrderReply decodeOrderReply(byte[] json) throws IOException {
+        String[] ids = new String[3];
+        readEnvelope(json, true, (field, p) -> {
+            switch (field) {
+                case "RemoteOrderID" -> ids[0] = text(p);
+                case "BrokerOrderID" -> ids[1] = text(p);
+                case "ExchOrderID" -> ids[2] = text(p);
+                default -> p.skipChildren();
+            }
+        });
+        return new OrderReply(ids[0], ids[1], ids[2]);
+    }
+
+    /** OrderStatus response rows. Like the broker's own status poll, the envelope status is not enforced. */
+    public List<OrderStatusUpdate> decodeOrderStatus(byte[] json) throws IOException {
+        List<OrderStatusUpdate> out = new ArrayList<>();
+        readEnvelope(json, false, (field, p) -> {
+            if ("OrdStatusResLst".equals(field)) readRows(p, out, FivePaisaCodec::statusRow);
+            else p.skipChildren();
+        });
+        return out;
+    }
+
+    public List<NetPosition> decodeNetPositions(byte[] json) throws IOException {
+        List<NetPosition> out = new ArrayList<>();
+        readEnvelope(json, true, (field, p) -> {
+            if ("NetPositionDetail".equals(field)) readRows(p, out, FivePaisaCodec::netPositionRow);
+            else p.skipChildren();
+        });
+        return out;
+    }
+
+    public List<OrderBookEntry> decodeOrderBook(byte[] json) throws IOException {
+        List<OrderBookEntry> out = new ArrayList<>();
+        readEnvelope(json, true, (field, p) -> {
+            if ("OrderBookDetail".equals(field)) readRows(p, out, FivePaisaCodec::orderBookRow);
+            else p.skipChildren();
+        });
+        return out;
+    }
+
+    // ---------------------------------------------------------------------
+    // Streaming helpers
+    // ---------------------------------------------------------------------
+
+    /** Receives each body field (parser on its value) other than Status/Message; must consume the value. */
+    private interface BodyField {
+        void read(String field, JsonParser p) throws IOException;
+    }
+
+    private interface RowReader<T> {
+        T read(JsonParser p) throws IOException;
+    }
+
+    /**
+     * Walk {"head":{..},"body":{..}}. With {@code checkStatus}, fail the way the broker service always
+     * has: missing head, head status != 0, or a non-zero body Status (RMS rejection).
+     */
+    private static void readEnvelope(byte[] json, boolean checkStatus, BodyField bodyField) throws IOException {
+        String headStatus = null;
+        boolean sawHead = false;
+        int bodyStatus = 0;
+        String message = null;
+        try (JsonParser p = JSON.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(p, "5paisa response is not a JSON object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String section = p.currentName();
+                JsonToken value = p.nextToken();
+                if (value != JsonToken.START_OBJECT) {
+                    p.skipChildren();
+                } else if ("head".equals(section)) {
+                    sawHead = true;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = p.currentName();
+                        p.nextToken();
+                        if ("status".equalsIgnoreCase(field)) headStatus = text(p);
+                        else p.skipChildren();
+                    }
+                } else if ("body".equals(section)) {
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = p.currentName();
+                        p.nextToken();
+                        switch (field) {
+                            case "Status" -> bodyStatus = p.currentToken().isScalarValue() ? p.getValueAsInt(0) : skip(p, 0);
+                            case "Message" -> message = text(p);
+                            default -> bodyField.read(field, p);
+                        }
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        if (!checkStatus) return;
+        if (!sawHead) throw new IOException("Missing head in response");
+        if (!"0".equals(headStatus)) throw new IOException("Broker head status=" + headStatus);
+        if (bodyStatus != 0) throw new IOException("BrokerRMS " + message);
+    }
+
+    private static <T> void readRows(JsonParser p, List<T> out, RowReader<T> reader) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return;
+        }
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+            if (t == JsonToken.START_OBJECT) out.add(reader.read(p));
+            else p.skipChildren();
+        }
+    }
+
+    private static OrderStatusUpdate statusRow(JsonParser p) throws IOException {
+        String remoteId = null, exch = null, exchOrderId = null, status = "", message = "";
+        int orderQty = 0, pendingQty = 0;
+        double rate = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            if (!p.nextToken().isScalarValue()) {
+                p.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "RemoteOrderID" -> remoteId = text(p);
+                case "Exch" -> exch = text(p);
+                case "ExchOrderID" -> exchOrderId = text(p);
+                case "Status" -> status = orEmpty(text(p));
+                case "OrderQty", "Qty" -> orderQty = p.getValueAsInt(0);
+                case "PendingQty" -> pendingQty = p.getValueAsInt(0);
+                case "OrderRate", "Rate" -> rate = p.getValueAsDouble(0);
+                case "Message" -> message = orEmpty(text(p));
+                default -> { }
+            }
+        }
+        return new OrderStatusUpdate(remoteId, exch, exchOrderId, status, orderQty, pendingQty, rate, message,
+                OrderStatusUpdate.Source.POLL);
+    }
+
+    private static NetPosition netPositionRow(JsonParser p) throws IOException {
+        String scrip = null, exch = null, exchType = null;
+        long netQty = 0;
+        double buyAvg = 0, sellAvg = 0, mtm = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            if (!p.nextToken().isScalarValue()) {
+                p.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "ScripCode" -> scrip = text(p);
+                case "Exch" -> exch = text(p);
+                case "ExchType" -> exchType = text(p);
+                case "NetQty" -> netQty = p.getValueAsLong(0);
+                case "BuyAvgRate" -> buyAvg = p.getValueAsDouble(0);
+                case "SellAvgRate" -> sellAvg = p.getValueAsDouble(0);
+                case "MTM" -> mtm = p.getValueAsDouble(0);
+                default -> { }
+            }
+        }
+        return new NetPosition(scrip, exch, exchType, netQty, buyAvg, sellAvg, mtm);
+    }
+
+    private static OrderBookEntry orderBookRow(JsonParser p) throws IOException {
+        String exchOrderId = null, remoteId = null, scrip = null, status = "";
+        int qty = 0, pendingQty = 0;
+        double rate = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            if (!p.nextToken().isScalarValue()) {
+                p.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "ExchOrderID" -> exchOrderId = text(p);
+                case "RemoteOrderID" -> remoteId = text(p);
+                case "ScripCode" -> scrip = text(p);
+                case "OrderStatus" -> status = orEmpty(text(p));
+                case "Qty" -> qty = p.getValueAsInt(0);
+                case "PendingQty" -> pendingQty = p.getValueAsInt(0);
+                case "Rate" -> rate = p.getValueAsDouble(0);
+                default -> { }
+            }
+        }
+        return new OrderBookEntry(exchOrderId, remoteId, scrip, status, qty, pendingQty, rate);
+    }
+
+    /** Scalar as text (numbers included, so ids survive either encoding); null for JSON null or structures. */
+    private static String text(JsonParser p) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) return null;
+        if (!t.isScalarValue()) {
+            p.skipChildren();
+            return null;
+        }
+        return p.getValueAsString();
+    }
+
+    private static int skip(JsonParser p, int value) throws IOException {
+        p.skipChildren();
+        return value;
+    }
+
+    private static String orEmpty(String s) {
+        return s != null ? s : "";
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
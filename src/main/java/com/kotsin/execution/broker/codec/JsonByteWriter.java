@@ -0,0 +1,131 @@
+package com.kotsin.execution.broker.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that writes JSON tokens directly as UTF-8.
+ *
+ * Meant to be reused (one per thread): {@link #reset()} keeps the backing array, so steady-state
+ * encoding allocates only the final {@link #toByteArray()} copy.
+ */
+final class JsonByteWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+
+    private byte[] buf;
+    private int len;
+
+    JsonByteWriter(int capacity) {
+        buf = new byte[capacity];
+    }
+
+    JsonByteWriter reset() {
+        len = 0;
+        return this;
+    }
+
+    int size() {
+        return len;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, len);
+    }
+
+    /** Append pre-encoded bytes (template fragments, field names). */
+    JsonByteWriter raw(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+        return this;
+    }
+
+    JsonByteWriter raw(char c) {
+        ensure(1);
+        buf[len++] = (byte) c;
+        return this;
+    }
+
+    /** Quoted, escaped JSON string; null is written as JSON null. */
+    JsonByteWriter string(String s) {
+        if (s == null) return raw(NULL);
+        ensure(s.length() + 2);
+        buf[len++] = '"';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                ensure(1);
+                buf[len++] = (byte) c;
+            } else if (c == '"' || c == '\\') {
+                ensure(2);
+                buf[len++] = '\\';
+                buf[len++] = (byte) c;
+            } else if (c < 0x20) {
+                ensure(6);
+                buf[len++] = '\\';
+                buf[len++] = 'u';
+                buf[len++] = '0';
+                buf[len++] = '0';
+                buf[len++] = HEX[c >> 4];
+                buf[len++] = HEX[c & 0xF];
+            } else {
+                // Non-ASCII is rare here (scrip codes, ids); let the JDK do the UTF-8 encoding
+                int end = i + 1;
+                while (end < s.length() && s.charAt(end) >= 0x80) end++;
+                raw(s.substring(i, end).getBytes(StandardCharsets.UTF_8));
+                i = end - 1;
+            }
+        }
+        ensure(1);
+        buf[len++] = '"';
+        return this;
+    }
+
+    JsonByteWriter number(long v) {
+        if (v == Long.MIN_VALUE) return raw(Long.toString(v).getBytes(StandardCharsets.US_ASCII));
+        ensure(20);
+        if (v < 0) {
+            buf[len++] = '-';
+            v = -v;
+        }
+        int start = len;
+        do {
+            buf[len++] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        // Digits were written least-significant first
+        for (int i = start, j = len - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+        return this;
+    }
+
+    /** Same text as {@link Double#toString(double)}, with an allocation-free path for whole numbers. */
+    JsonByteWriter number(double v) {
+        if (v == Math.rint(v) && Math.abs(v) < 1e7) {
+            if (v == 0 && 1 / v < 0) raw('-');
+            number((long) v);
+            ensure(2);
+            buf[len++] = '.';
+            buf[len++] = '0';
+            return this;
+        }
+        return raw(Double.toString(v).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    JsonByteWriter bool(boolean v) {
+        return raw(v ? TRUE : FALSE);
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
@@ -261,7 +261,41 @@ public class KafkaConfig {
 
         return factory;
     }
-    
+
+    // ========== CURATED SIGNAL BATCH CONSUMER (strategy topics) ==========
+
+    // BATCH-CONSUME: records per poll handed to the strategy consumers as one batch
+    @Value("${signal.kafka.batch.max-poll-records:100}")
+    private int curatedBatchMaxPollRecords;
+
+    @Bean("curatedSignalBatchConsumerFactory")
+    public ConsumerFactory<String, String> curatedSignalBatchConsumerFactory() {
+        Map<String, Object> configProps = new HashMap<>(curatedSignalConsumerFactory().getConfigurationProperties());
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, curatedBatchMaxPollRecords);
+        return new DefaultKafkaConsumerFactory<>(configProps);
+    }
+
+    /**
+     * BATCH-CONSUME: strategy signal consumers receive a whole poll, submit the accepted signals to
+     * SignalBufferService in one call and commit once per batch (instead of a synchronous commit per
+     * record). A failing record is reported via BatchListenerFailedException: the records before it
+     * are committed and it is dead-lettered to {topic}.DLQ at once, without retries. A retry would
+     * hold the partition (and every later signal on it) behind the backoff, and re-running the
+     * record's logic can persist its BacktestTrade a second time.
+     */
+    @Bean("curatedSignalBatchKafkaListenerContainerFactory")
+    public ConcurrentKafkaListenerContainerFactory<String, String> curatedSignalBatchKafkaListenerContainerFactory(
+            KafkaTemplate<String, Object> kafkaTemplate) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(curatedSignalBatchConsumerFactory());
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(
+            KafkaDLQConfig.deadLetterRecoverer(kafkaTemplate, 0), new FixedBackOff(0L, 0L)));
+        return factory;
+    }
+
     // ========== GENERIC KAFKA TEMPLATE (for TradeResultProducer) ==========
     
     @Bean
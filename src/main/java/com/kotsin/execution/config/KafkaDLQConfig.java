@@ -27,6 +27,8 @@ import org.springframework.util.backoff.FixedBackOff;
 @Configuration
 @Slf4j
 public class KafkaDLQConfig {
+
+    private static final int MAX_RETRIES = 5;
     
     /**
      * Configure DLQ error handler for all consumers
@@ -34,30 +36,11 @@ public class KafkaDLQConfig {
     @Bean
     public CommonErrorHandler errorHandler(KafkaTemplate<String, Object> kafkaTemplate) {
         
-        // Dead Letter Publishing Recoverer
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(
-                kafkaTemplate,
-                (record, ex) -> {
-                    String dlqTopic = record.topic() + ".DLQ";
-                    
-                    log.error("🚨 [DLQ] Message failed after retries | " +
-                            "topic={} partition={} offset={} key={} | " +
-                            "Sending to DLQ: {} | error: {}",
-                            record.topic(),
-                            record.partition(),
-                            record.offset(),
-                            record.key(),
-                            dlqTopic,
-                            ex.getMessage());
-                    
-                    // Return DLQ topic partition (same partition as source)
-                    return new org.apache.kafka.common.TopicPartition(dlqTopic, record.partition());
-                }
-        );
+        DeadLetterPublishingRecoverer recoverer = deadLetterRecoverer(kafkaTemplate, MAX_RETRIES);
         
         // Exponential backoff: start=1s, multiplier=2, max=30s, maxAttempts=5
         // Retry sequence: 1s, 2s, 4s, 8s, 16s, 30s (capped)
-        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(5);
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(MAX_RETRIES);
         backOff.setInitialInterval(1000);  // 1 second
         backOff.setMultiplier(2.0);
         backOff.setMaxInterval(30000);  // 30 seconds max
@@ -74,11 +57,40 @@ public class KafkaDLQConfig {
                     ex.getMessage());
         });
         
-        log.info("🚨 DLQ Error Handler configured | retries=5 backoff=exponential(1s→30s)");
+        log.info("🚨 DLQ Error Handler configured | retries={} backoff=exponential(1s→30s)", MAX_RETRIES);
         
         return errorHandler;
     }
     
+    /**
+     * Dead Letter Publishing Recoverer: failed records go to {original-topic}.DLQ, same partition.
+     * {@code retries} is the retry count of the error handler using it, so the log states how many
+     * delivery attempts the record had.
+     */
+    static DeadLetterPublishingRecoverer deadLetterRecoverer(KafkaTemplate<String, Object> kafkaTemplate, int retries) {
+        return new DeadLetterPublishingRecoverer(
+                kafkaTemplate,
+                (record, ex) -> {
+                    String dlqTopic = record.topic() + ".DLQ";
+                    
+                    log.error("🚨 [DLQ] Message failed, {} | attempts={} | " +
+                            "topic={} partition={} offset={} key={} | " +
+                            "Sending to DLQ: {} | error: {}",
+                            retries > 0 ? "routed to DLQ after retries" : "routed to DLQ (no retry)",
+                            retries + 1,
+                            record.topic(),
+                            record.partition(),
+                            record.offset(),
+                            record.key(),
+                            dlqTopic,
+                            ex.getMessage());
+                    
+                    // Return DLQ topic partition (same partition as source)
+                    return new org.apache.kafka.common.TopicPartition(dlqTopic, record.partition());
+                }
+        );
+    }
+    
     /**
      * Optional: Separate listener for DLQ monitoring/alerting
      */
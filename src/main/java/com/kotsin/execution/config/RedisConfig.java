@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -22,5 +23,17 @@ public class RedisConfig {
         template.setHashValueSerializer(s);
         return template;
     }
-}
 
+    /** Raw-byte values for keys whose format is chosen by a codec (virtual orders/positions). */
+    @Bean
+    public RedisTemplate<String, byte[]> executionBinaryRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        StringRedisSerializer s = new StringRedisSerializer();
+        template.setKeySerializer(s);
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(s);
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+}
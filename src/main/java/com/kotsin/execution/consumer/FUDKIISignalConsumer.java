@@ -1,9 +1,9 @@
 package com.kotsin.execution.consumer;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.kotsin.execution.consumer.decode.DecodedSignal;
+import com.kotsin.execution.consumer.decode.SignalFieldMapping;
+import com.kotsin.execution.consumer.decode.StreamingSignalDecoder;
 import com.kotsin.execution.model.BacktestTrade;
 import com.kotsin.execution.model.StrategySignal;
 import com.kotsin.execution.repository.BacktestTradeRepository;
@@ -21,6 +21,7 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.List;
 
 /**
  * FUDKIISignalConsumer - Consumes standalone FUDKII strategy signals
@@ -46,76 +47,97 @@ public class FUDKIISignalConsumer {
     private final BacktestEngine backtestEngine;
     private final BacktestTradeRepository backtestRepository;
     private final Cache<String, Boolean> processedSignalsCache;
-    private final SignalBufferService signalBufferService;
-
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final SignalBatchProcessor batchProcessor;
 
     @Value("${fudkii.min.trigger.score:50.0}")
     private double minTriggerScore;
 
+    // Streaming decode: gates reject before the rest of the payload is parsed; Greeks and option
+    // targets go straight into the builder, the rest is captured for the checks below
+    private final SignalFieldMapping fieldMapping = SignalFieldMapping.forStrategy("FUDKII")
+            .requireTrue("triggered")
+            .minimum("triggerScore", () -> minTriggerScore)
+            .capture("scripCode", "familyId", "companyName", "symbol", "triggerTime", "timestamp",
+                    "direction", "trend", "bbUpper", "bbLower", "superTrend", "triggerPrice", "entryPrice",
+                    "price", "stopLoss", "target1", "target2", "target3", "target4", "riskReward",
+                    "riskRewardRatio", "pivotSource", "atr30m", "oiChangeRatio", "oiLabel", "volumeT",
+                    "surgeT", "blockTradeVol", "blockTradePct", "oiBuildupPct", "optionAvailable",
+                    "optionScripCode", "optionStrike", "optionType", "optionLtp", "optionExpiry",
+                    "optionLotSize", "optionMultiplier", "optionSymbol", "optionExchange",
+                    "optionExchangeType", "optionIsITM")
+            .optionGreeks()
+            .bindText("exchange", "N", StrategySignal.StrategySignalBuilder::exchange)
+            .build();
+
     @KafkaListener(
             topics = "kotsin_FUDKII",
             groupId = "${app.kafka.consumer.fudkii-group-id:fudkii-executor}",
-            containerFactory = "curatedSignalKafkaListenerContainerFactory"
+            containerFactory = "curatedSignalBatchKafkaListenerContainerFactory"
     )
-    public void processFUDKIISignal(String payload, ConsumerRecord<?, ?> rec, Acknowledgment ack) {
+    public void processFUDKIISignals(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        batchProcessor.process("FUDKII", records, ack, this::processFUDKIISignal);
+    }
+
+    void processFUDKIISignal(String payload, ConsumerRecord<?, ?> rec,
+                             List<SignalBufferService.Submission> accepted) throws Exception {
         final String topic = rec.topic();
         final int partition = rec.partition();
         final long offset = rec.offset();
         final Instant receivedAt = Instant.now();
+        String idKey = null;
 
         try {
-            JsonNode root = objectMapper.readTree(payload);
+            DecodedSignal fields = StreamingSignalDecoder.decode(payload, fieldMapping);
+            if (fields.isRejected()) {
+                log.debug("fudkii_early_reject {} scrip={}", fields.getRejection(), fields.text("scripCode"));
+                return;
+            }
 
             // ========== Extract Core Fields ==========
-            String scripCode = root.path("scripCode").asText();
+            String scripCode = fields.text("scripCode");
             if (scripCode == null || scripCode.isEmpty()) {
-                scripCode = root.path("familyId").asText();
+                scripCode = fields.text("familyId");
             }
 
             if (scripCode == null || scripCode.isEmpty()) {
                 log.debug("fudkii_no_scripcode topic={} partition={} offset={}", topic, partition, offset);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // ========== Parse FUDKII Signal ==========
-            String companyName = root.path("companyName").asText(
-                    root.path("symbol").asText(scripCode));
+            String companyName = fields.text("companyName",
+                    fields.text("symbol", scripCode));
 
             // Only process triggered signals
-            boolean triggered = root.path("triggered").asBoolean(false);
+            boolean triggered = fields.bool("triggered", false);
             if (!triggered) {
                 log.debug("fudkii_not_triggered scrip={}", scripCode);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Parse triggerTime ISO string to epoch millis (primary), fallback to timestamp field
-            String triggerTimeStr = root.path("triggerTime").asText("");
+            String triggerTimeStr = fields.text("triggerTime", "");
             long timestamp;
             try {
                 Instant triggerInstant = Instant.parse(triggerTimeStr);
                 timestamp = triggerInstant.toEpochMilli();
             } catch (Exception e) {
-                timestamp = root.path("timestamp").asLong(System.currentTimeMillis());
+                timestamp = fields.lng("timestamp", System.currentTimeMillis());
             }
 
             // Get triggerScore (0-100)
-            double triggerScore = root.path("triggerScore").asDouble(0);
+            double triggerScore = fields.dbl("triggerScore", 0);
 
             // Check minimum trigger score threshold
             if (triggerScore < minTriggerScore) {
                 log.debug("fudkii_below_threshold scrip={} score={} min={}",
                         scripCode, triggerScore, minTriggerScore);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Direction
-            String direction = root.path("direction").asText();
-            String trend = root.path("trend").asText("");
+            String direction = fields.text("direction");
+            String trend = fields.text("trend", "");
             if (direction == null || direction.isEmpty()) {
                 direction = "UP".equalsIgnoreCase(trend) ? "BULLISH" : "BEARISH";
             }
@@ -123,51 +145,51 @@ public class FUDKIISignalConsumer {
             boolean shortSignal = "BEARISH".equalsIgnoreCase(direction);
 
             // BB-SuperTrend components (for logging/rationale only — no fallback)
-            double bbUpper = root.path("bbUpper").asDouble(0);
-            double bbLower = root.path("bbLower").asDouble(0);
-            double superTrend = root.path("superTrend").asDouble(0);
+            double bbUpper = fields.dbl("bbUpper", 0);
+            double bbLower = fields.dbl("bbLower", 0);
+            double superTrend = fields.dbl("superTrend", 0);
 
             // Get entry price (triggerPrice is the primary field in FUDKII signals)
-            double entryPrice = root.path("triggerPrice").asDouble(0);
+            double entryPrice = fields.dbl("triggerPrice", 0);
             if (entryPrice <= 0) {
-                entryPrice = root.path("entryPrice").asDouble(
-                        root.path("price").asDouble(0));
+                entryPrice = fields.dbl("entryPrice",
+                        fields.dbl("price", 0));
             }
 
             // Read pivot-enriched targets from Kafka (computed by PivotTargetCalculator in streaming candle)
             // No BB/ST fallback — trust pivot values as-is. null = DM, 0 = ERR.
-            double stopLoss = root.path("stopLoss").asDouble(0);
-            double target1 = root.path("target1").asDouble(0);
-            double target2 = root.path("target2").asDouble(0);
-            double target3 = root.path("target3").asDouble(0);
-            double target4 = root.path("target4").asDouble(0);
-            double riskReward = root.path("riskReward").asDouble(
-                    root.path("riskRewardRatio").asDouble(0));
-            boolean pivotSource = root.path("pivotSource").asBoolean(false);
-            double atr30m = root.path("atr30m").asDouble(0);
+            double stopLoss = fields.dbl("stopLoss", 0);
+            double target1 = fields.dbl("target1", 0);
+            double target2 = fields.dbl("target2", 0);
+            double target3 = fields.dbl("target3", 0);
+            double target4 = fields.dbl("target4", 0);
+            double riskReward = fields.dbl("riskReward",
+                    fields.dbl("riskRewardRatio", 0));
+            boolean pivotSource = fields.bool("pivotSource", false);
+            double atr30m = fields.dbl("atr30m", 0);
 
             // OI + Volume fields for cross-instrument ranking
-            double oiChangeRatio = root.path("oiChangeRatio").asDouble(0);
-            String oiLabel = root.path("oiLabel").asText("");
-            double volumeT = root.path("volumeT").asDouble(0);
-            double surgeTVal = root.path("surgeT").asDouble(0);
-            double blockTradeVol = root.path("blockTradeVol").asDouble(0);
-            double blockTradePct = root.path("blockTradePct").asDouble(0);
-            double oiBuildupPct = root.path("oiBuildupPct").asDouble(0);
+            double oiChangeRatio = fields.dbl("oiChangeRatio", 0);
+            String oiLabel = fields.text("oiLabel", "");
+            double volumeT = fields.dbl("volumeT", 0);
+            double surgeTVal = fields.dbl("surgeT", 0);
+            double blockTradeVol = fields.dbl("blockTradeVol", 0);
+            double blockTradePct = fields.dbl("blockTradePct", 0);
+            double oiBuildupPct = fields.dbl("oiBuildupPct", 0);
 
             // Option enrichment fields (from OptionDataEnricher in StreamingCandle)
-            boolean optionAvailable = root.path("optionAvailable").asBoolean(false);
-            String optionScripCode = root.path("optionScripCode").asText("");
-            double optionStrike = root.path("optionStrike").asDouble(0);
-            String optionType = root.path("optionType").asText("");
-            double optionLtp = root.path("optionLtp").asDouble(0);
-            String optionExpiry = root.path("optionExpiry").asText("");
-            int optionLotSize = root.path("optionLotSize").asInt(0);
-            int optionMultiplier = root.path("optionMultiplier").asInt(1);
-            String optionSymbol = root.path("optionSymbol").asText("");
-            String optionExchange = root.path("optionExchange").asText("");
-            String optionExchangeType = root.path("optionExchangeType").asText("");
-            boolean optionIsITM = root.path("optionIsITM").asBoolean(false);
+            boolean optionAvailable = fields.bool("optionAvailable", false);
+            String optionScripCode = fields.text("optionScripCode", "");
+            double optionStrike = fields.dbl("optionStrike", 0);
+            String optionType = fields.text("optionType", "");
+            double optionLtp = fields.dbl("optionLtp", 0);
+            String optionExpiry = fields.text("optionExpiry", "");
+            int optionLotSize = fields.integer("optionLotSize", 0);
+            int optionMultiplier = fields.integer("optionMultiplier", 1);
+            String optionSymbol = fields.text("optionSymbol", "");
+            String optionExchange = fields.text("optionExchange", "");
+            String optionExchangeType = fields.text("optionExchangeType", "");
+            boolean optionIsITM = fields.bool("optionIsITM", false);
 
             // ========== KII Score (for ranking only, no gate) ==========
             // KII_Score = (|OIChange%| + VolumeSurge%) / 2
@@ -180,15 +202,13 @@ public class FUDKIISignalConsumer {
             if (entryPrice <= 0 || stopLoss <= 0 || target1 <= 0) {
                 log.warn("fudkii_invalid_params scrip={} entry={} sl={} t1={} pivotSource={}",
                         scripCode, entryPrice, stopLoss, target1, pivotSource);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // ========== Idempotency Check ==========
-            String idKey = "FUDKII|" + scripCode + "|" + triggerTimeStr;
+            idKey = "FUDKII|" + scripCode + "|" + triggerTimeStr;
             if (processedSignalsCache.asMap().putIfAbsent(idKey, Boolean.TRUE) != null) {
                 log.info("fudkii_duplicate key={} scrip={}", idKey, scripCode);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
@@ -201,7 +221,7 @@ public class FUDKIISignalConsumer {
             String rationale = String.format("FUDKII: %s score=%.0f | BB[%.2f-%.2f] ST=%.2f | pivot=%s",
                     direction, triggerScore, bbLower, bbUpper, superTrend, pivotSource);
 
-            StrategySignal signal = StrategySignal.builder()
+            StrategySignal signal = fields.builder()
                     .scripCode(scripCode)
                     .companyName(companyName)
                     .instrumentSymbol(instrumentSymbol)
@@ -241,35 +261,8 @@ public class FUDKIISignalConsumer {
                     .optionExchange(optionExchange)
                     .optionExchangeType(optionExchangeType)
                     .optionIsITM(optionIsITM)
-                    .optionLtpDeferred(root.path("optionLtpDeferred").asBoolean(false))
-                    .greekDelta(root.path("greekDelta").asDouble(0))
-                    .greekGamma(root.path("greekGamma").asDouble(0))
-                    .greekTheta(root.path("greekTheta").asDouble(0))
-                    .greekVega(root.path("greekVega").asDouble(0))
-                    .greekRho(root.path("greekRho").asDouble(0))
-                    .greekIV(root.path("greekIV").asDouble(0))
-                    .greekDte(root.path("greekDte").asInt(0))
-                    .greekMoneynessType(root.path("greekMoneynessType").asText(null))
-                    .greekTheoreticalPrice(root.path("greekTheoreticalPrice").asDouble(0))
-                    .greekMispricing(root.path("greekMispricing").asDouble(0))
-                    .greekLeverage(root.path("greekLeverage").asDouble(0))
-                    .greekTimeValue(root.path("greekTimeValue").asDouble(0))
-                    .greekIntrinsicValue(root.path("greekIntrinsicValue").asDouble(0))
-                    .greekThetaImpaired(root.path("greekThetaImpaired").asBoolean(false))
-                    .greekSlMethod(root.path("greekSlMethod").asText(null))
-                    .greekSlIvFloor(root.path("greekSlIvFloor").asDouble(0))
-                    .greekGammaBoost(root.path("greekGammaBoost").asDouble(0))
-                    .optionSL(root.path("optionSL").asDouble(0))
-                    .optionT1(root.path("optionT1").asDouble(0))
-                    .optionT2(root.path("optionT2").asDouble(0))
-                    .optionT3(root.path("optionT3").asDouble(0))
-                    .optionT4(root.path("optionT4").asDouble(0))
-                    .optionRR(root.path("optionRR").asDouble(0))
-                    .optionRRpassed(root.path("optionRRpassed").asBoolean(false))
-                    .optionLotAllocation(root.path("optionLotAllocation").asText(null))
                     .positionSizeMultiplier(1.0)
                     .xfactorFlag(triggerScore >= 80)
-                    .exchange(root.path("exchange").asText("N"))
                     .build();
 
             signal.parseScripCode();
@@ -298,7 +291,6 @@ public class FUDKIISignalConsumer {
 
                 if (!tradingHoursService.shouldProcessTrade(exchange, receivedIst.toLocalDateTime())) {
                     log.info("fudkii_outside_hours scrip={} exch={}", scripCode, exchange);
-                    if (ack != null) ack.acknowledge();
                     return;
                 }
 
@@ -313,19 +305,16 @@ public class FUDKIISignalConsumer {
 
                 // Submit to SignalBufferService for cross-strategy dedup
                 // If FUKAA also fires for same scrip within 35s, FUKAA wins
-                signalBufferService.submitSignal("FUDKII", signal, virtualTrade,
-                        rationale, receivedIst.toLocalDateTime());
+                accepted.add(new SignalBufferService.Submission("FUDKII", signal, virtualTrade,
+                        rationale, receivedIst.toLocalDateTime()));
             }
 
-            // Acknowledge offset — bookmark this message as processed
-            if (ack != null) ack.acknowledge();
-
         } catch (Exception e) {
             log.error("fudkii_processing_error topic={} partition={} offset={} err={}",
                     topic, partition, offset, e.toString(), e);
-        } finally {
-            // Always acknowledge — even on error, don't replay failed messages forever
-            if (ack != null) ack.acknowledge();
+            // Reprocess on redelivery instead of dropping it as a duplicate
+            if (idKey != null) processedSignalsCache.invalidate(idKey);
+            throw e;
         }
     }
 }
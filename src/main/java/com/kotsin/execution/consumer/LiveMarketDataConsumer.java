@@ -1,10 +1,12 @@
 package com.kotsin.execution.consumer;
 
-import com.kotsin.execution.model.ActiveTrade;
 import com.kotsin.execution.model.Candlestick;
 import com.kotsin.execution.model.MarketData;
+import com.kotsin.execution.virtual.PriceProvider;
+import com.kotsin.execution.virtual.VirtualEngineService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
@@ -12,16 +14,14 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * 🛡️ Live market data consumer for forwardtesting-data.
  * Consumes MarketData POJO and forwards 1‑min bars to TradeManager.
  * - Uses event time (MarketData.Time) for minute bucketing when present
  * - Aggregates per-minute volume via TotalQty deltas
- * - Only forwards bars for relevant scrips (waiting or active)
+ * - Only forwards bars for relevant scrips (waiting or active, via TradeManager's token bitset)
+ * - Pushes every tick's LTP into PriceProvider's streaming cache
+ * - Pushes every tick's LTP into VirtualEngineService for tick-driven SL/TP/trailing
  */
 @Component
 @Slf4j
@@ -30,10 +30,14 @@ public class LiveMarketDataConsumer {
 
     private final com.kotsin.execution.logic.TradeManager tradeManager;
 
-    // Per-token minute volume aggregator state
-    private final Map<Integer, Long> lastCumQty = new ConcurrentHashMap<>();
-    private final Map<Integer, Long> windowStartByToken = new ConcurrentHashMap<>();
-    private final Map<Integer, Long> windowVol = new ConcurrentHashMap<>();
+    @Autowired(required = false)
+    private VirtualEngineService virtualEngine;
+
+    @Autowired(required = false)
+    private PriceProvider priceProvider;
+
+    // Per-token minute volume aggregator state (primitive, token-indexed)
+    private final TokenVolumeState volumeState = new TokenVolumeState(256);
 
     @KafkaListener(
             topics = "forwardtesting-data",
@@ -59,12 +63,18 @@ public class LiveMarketDataConsumer {
                 return;
             }
 
-            // Relevance check: only forward bars for waiting or active instrument
-            final ActiveTrade activeTrade = tradeManager.getCurrentTrade();
-            final List<String> waiting = tradeManager.getWaitingTrade();
-            final boolean isRelevant = waiting.contains(scripCode) ||
-                    (activeTrade != null && scripCode.equals(activeTrade.getScripCode()));
-            if (!isRelevant) {
+            // STREAMING-LTP: cache first, so anything the tick triggers reads this price
+            if (priceProvider != null && marketData.getLastRate() > 0) {
+                priceProvider.onTick(scripCode, marketData.getLastRate());
+            }
+
+            // TICK-DRIVEN: virtual positions react to every tick, independent of TradeManager relevance
+            if (virtualEngine != null && marketData.getLastRate() > 0) {
+                virtualEngine.onTick(scripCode, marketData.getLastRate());
+            }
+
+            // Relevance check: only forward bars for waiting or active instrument (token bitset, no allocation)
+            if (!tradeManager.isRelevantToken(token)) {
                 acknowledgment.acknowledge();
                 return;
             }
@@ -74,16 +84,7 @@ public class LiveMarketDataConsumer {
             final long windowStart = baseTs - (baseTs % 60_000L);
 
             // Minute volume via TotalQty deltas
-            final long cum = marketData.getTotalQuantity();
-            final Long prevWindow = windowStartByToken.put(token, windowStart);
-            final long prevCum = lastCumQty.getOrDefault(token, cum);
-            final long delta = Math.max(0, cum - prevCum);
-            lastCumQty.put(token, cum);
-            if (prevWindow == null || !prevWindow.equals(windowStart)) {
-                windowVol.put(token, delta);
-            } else {
-                windowVol.merge(token, delta, Long::sum);
-            }
+            final long minuteVolume = volumeState.addVolume(token, windowStart, marketData.getTotalQuantity());
 
             // Build bar
             final double open = marketData.getOpenRate();
@@ -97,12 +98,13 @@ public class LiveMarketDataConsumer {
                 return;
             }
 
+            // New bar per relevant tick: TradeManager keeps it in the candle history, so it cannot be reused
             Candlestick bar = new Candlestick();
             bar.setOpen(open);
             bar.setHigh(high);
             bar.setLow(low);
             bar.setClose(close);
-            bar.setVolume(windowVol.getOrDefault(token, 0L));
+            bar.setVolume(minuteVolume);
             bar.setWindowStartMillis(windowStart);
             bar.setExchange(marketData.getExchange());
             bar.setExchangeType(marketData.getExchangeType());
@@ -1,9 +1,9 @@
 package com.kotsin.execution.consumer;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.kotsin.execution.consumer.decode.DecodedSignal;
+import com.kotsin.execution.consumer.decode.SignalFieldMapping;
+import com.kotsin.execution.consumer.decode.StreamingSignalDecoder;
 import com.kotsin.execution.model.BacktestTrade;
 import com.kotsin.execution.model.StrategySignal;
 import com.kotsin.execution.repository.BacktestTradeRepository;
@@ -21,6 +21,7 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.List;
 
 /**
  * MereSignalConsumer - Consumes MERE (Mean Exhaustion Reversion Engine) strategy signals
@@ -45,151 +46,173 @@ public class MereSignalConsumer {
     private final BacktestEngine backtestEngine;
     private final BacktestTradeRepository backtestRepository;
     private final Cache<String, Boolean> processedSignalsCache;
-    private final SignalBufferService signalBufferService;
-
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final SignalBatchProcessor batchProcessor;
 
     @Value("${mere.min.trigger.score:60.0}")
     private double minTriggerScore;
 
+    // Streaming decode: gates reject before the rest of the payload is parsed; Greeks and option
+    // targets go straight into the builder, the rest is captured for the checks below
+    private final SignalFieldMapping fieldMapping = SignalFieldMapping.forStrategy("MERE")
+            .requireTrue("triggered")
+            .capture("scripCode", "familyId", "strategy", "companyName", "symbol", "triggerTime", "timestamp",
+                    "triggerScore", "mereScore", "autoExecute", "tradeStatus", "direction", "trend",
+                    "triggerPrice", "entryPrice", "price", "stopLoss", "equitySl", "target1", "equityT1",
+                    "target2", "equityT2", "target3", "target4", "riskReward", "riskRewardRatio",
+                    "pivotSource", "atr30m", "oiChangeRatio", "oiChangePct", "oiLabel", "oiInterpretation",
+                    "volumeT", "surgeT", "blockTradeVol", "blockTradePct", "oiBuildupPct", "optionAvailable",
+                    "optionScripCode", "optionStrike", "optionType", "optionLtp", "optionExpiry",
+                    "optionLotSize", "optionMultiplier", "optionSymbol", "optionExchange",
+                    "optionExchangeType", "optionIsITM", "mereL1Extension", "mereLayer1", "mereL2Exhaustion",
+                    "mereLayer2", "mereL3Options", "mereLayer3", "mereReasons", "entryReason",
+                    "confirmReasons")
+            .optionGreeks()
+            .bindText("exchange", "N", StrategySignal.StrategySignalBuilder::exchange)
+            .build();
+
     @KafkaListener(
             topics = {"kotsin_MERE", "kotsin_MERE_SCALP", "kotsin_MERE_SWING", "kotsin_MERE_POSITIONAL"},
             groupId = "${app.kafka.consumer.mere-group-id:mere-executor}",
-            containerFactory = "curatedSignalKafkaListenerContainerFactory"
+            containerFactory = "curatedSignalBatchKafkaListenerContainerFactory"
     )
-    public void processMERESignal(String payload, ConsumerRecord<?, ?> rec, Acknowledgment ack) {
+    public void processMERESignals(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        batchProcessor.process("MERE", records, ack, this::processMERESignal);
+    }
+
+    void processMERESignal(String payload, ConsumerRecord<?, ?> rec,
+                           List<SignalBufferService.Submission> accepted) throws Exception {
         final String topic = rec.topic();
         final int partition = rec.partition();
         final long offset = rec.offset();
         final Instant receivedAt = Instant.now();
+        String idKey = null;
 
         try {
-            JsonNode root = objectMapper.readTree(payload);
+            DecodedSignal fields = StreamingSignalDecoder.decode(payload, fieldMapping);
+            if (fields.isRejected()) {
+                log.debug("mere_early_reject {} scrip={}", fields.getRejection(), fields.text("scripCode"));
+                return;
+            }
 
             // ========== Extract Core Fields ==========
-            String scripCode = root.path("scripCode").asText();
+            String scripCode = fields.text("scripCode");
             if (scripCode == null || scripCode.isEmpty()) {
-                scripCode = root.path("familyId").asText();
+                scripCode = fields.text("familyId");
             }
 
             if (scripCode == null || scripCode.isEmpty()) {
                 log.debug("mere_no_scripcode topic={} partition={} offset={}", topic, partition, offset);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // ========== Parse MERE Signal ==========
             // Read variant (MERE_SCALP, MERE_SWING, MERE_POSITIONAL) from payload
-            String mereVariant = root.path("strategy").asText("MERE");
+            String mereVariant = fields.text("strategy", "MERE");
             if (!mereVariant.startsWith("MERE")) mereVariant = "MERE";
 
-            String companyName = root.path("companyName").asText(
-                    root.path("symbol").asText(scripCode));
+            String companyName = fields.text("companyName",
+                    fields.text("symbol", scripCode));
 
-            boolean triggered = root.path("triggered").asBoolean(false);
+            boolean triggered = fields.bool("triggered", false);
             if (!triggered) {
                 log.debug("mere_not_triggered scrip={}", scripCode);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Parse triggerTime
-            String triggerTimeStr = root.path("triggerTime").asText("");
+            String triggerTimeStr = fields.text("triggerTime", "");
             long timestamp;
             try {
                 Instant triggerInstant = Instant.parse(triggerTimeStr);
                 timestamp = triggerInstant.toEpochMilli();
             } catch (Exception e) {
-                timestamp = root.path("timestamp").asLong(System.currentTimeMillis());
+                timestamp = fields.lng("timestamp", System.currentTimeMillis());
             }
 
             // MERE score (uses triggerScore or mereScore)
-            double triggerScore = root.path("triggerScore").asDouble(
-                    root.path("mereScore").asDouble(0));
+            double triggerScore = fields.dbl("triggerScore",
+                    fields.dbl("mereScore", 0));
 
             // Check autoExecute flag — WATCHING signals (score 30-84) are display-only
-            boolean autoExecute = root.path("autoExecute").asBoolean(true);
-            String tradeStatus = root.path("tradeStatus").asText("ACTIVE");
+            boolean autoExecute = fields.bool("autoExecute", true);
+            String tradeStatus = fields.text("tradeStatus", "ACTIVE");
 
             if (!autoExecute) {
                 log.info("mere_watching_only scrip={} score={} status={}",
                         scripCode, triggerScore, tradeStatus);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             if (triggerScore < minTriggerScore) {
                 log.debug("mere_below_threshold scrip={} score={} min={}",
                         scripCode, triggerScore, minTriggerScore);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Direction
-            String direction = root.path("direction").asText();
+            String direction = fields.text("direction");
             if (direction == null || direction.isEmpty()) {
-                String trend = root.path("trend").asText("");
+                String trend = fields.text("trend", "");
                 direction = "UP".equalsIgnoreCase(trend) ? "BULLISH" : "BEARISH";
             }
             boolean longSignal = "BULLISH".equalsIgnoreCase(direction);
             boolean shortSignal = "BEARISH".equalsIgnoreCase(direction);
 
             // Trade parameters
-            double entryPrice = root.path("triggerPrice").asDouble(0);
+            double entryPrice = fields.dbl("triggerPrice", 0);
             if (entryPrice <= 0) {
-                entryPrice = root.path("entryPrice").asDouble(
-                        root.path("price").asDouble(0));
+                entryPrice = fields.dbl("entryPrice",
+                        fields.dbl("price", 0));
             }
 
-            double stopLoss = root.path("stopLoss").asDouble(
-                    root.path("equitySl").asDouble(0));
-            double target1 = root.path("target1").asDouble(
-                    root.path("equityT1").asDouble(0));
-            double target2 = root.path("target2").asDouble(
-                    root.path("equityT2").asDouble(0));
-            double target3 = root.path("target3").asDouble(0);
-            double target4 = root.path("target4").asDouble(0);
-            double riskReward = root.path("riskReward").asDouble(
-                    root.path("riskRewardRatio").asDouble(0));
-            boolean pivotSource = root.path("pivotSource").asBoolean(false);
-            double atr30m = root.path("atr30m").asDouble(0);
+            double stopLoss = fields.dbl("stopLoss",
+                    fields.dbl("equitySl", 0));
+            double target1 = fields.dbl("target1",
+                    fields.dbl("equityT1", 0));
+            double target2 = fields.dbl("target2",
+                    fields.dbl("equityT2", 0));
+            double target3 = fields.dbl("target3", 0);
+            double target4 = fields.dbl("target4", 0);
+            double riskReward = fields.dbl("riskReward",
+                    fields.dbl("riskRewardRatio", 0));
+            boolean pivotSource = fields.bool("pivotSource", false);
+            double atr30m = fields.dbl("atr30m", 0);
 
             // OI + Volume fields
-            double oiChangeRatio = root.path("oiChangeRatio").asDouble(
-                    root.path("oiChangePct").asDouble(0));
-            String oiLabel = root.path("oiLabel").asText(
-                    root.path("oiInterpretation").asText(""));
-            double volumeT = root.path("volumeT").asDouble(0);
-            double surgeTVal = root.path("surgeT").asDouble(0);
-            double blockTradeVol = root.path("blockTradeVol").asDouble(0);
-            double blockTradePct = root.path("blockTradePct").asDouble(0);
-            double oiBuildupPct = root.path("oiBuildupPct").asDouble(0);
+            double oiChangeRatio = fields.dbl("oiChangeRatio",
+                    fields.dbl("oiChangePct", 0));
+            String oiLabel = fields.text("oiLabel",
+                    fields.text("oiInterpretation", ""));
+            double volumeT = fields.dbl("volumeT", 0);
+            double surgeTVal = fields.dbl("surgeT", 0);
+            double blockTradeVol = fields.dbl("blockTradeVol", 0);
+            double blockTradePct = fields.dbl("blockTradePct", 0);
+            double oiBuildupPct = fields.dbl("oiBuildupPct", 0);
 
             // Option enrichment fields
-            boolean optionAvailable = root.path("optionAvailable").asBoolean(false);
-            String optionScripCode = root.path("optionScripCode").asText("");
-            double optionStrike = root.path("optionStrike").asDouble(0);
-            String optionType = root.path("optionType").asText("");
-            double optionLtp = root.path("optionLtp").asDouble(0);
-            String optionExpiry = root.path("optionExpiry").asText("");
-            int optionLotSize = root.path("optionLotSize").asInt(0);
-            int optionMultiplier = root.path("optionMultiplier").asInt(1);
-            String optionSymbol = root.path("optionSymbol").asText("");
-            String optionExchange = root.path("optionExchange").asText("");
-            String optionExchangeType = root.path("optionExchangeType").asText("");
-            boolean optionIsITM = root.path("optionIsITM").asBoolean(false);
+            boolean optionAvailable = fields.bool("optionAvailable", false);
+            String optionScripCode = fields.text("optionScripCode", "");
+            double optionStrike = fields.dbl("optionStrike", 0);
+            String optionType = fields.text("optionType", "");
+            double optionLtp = fields.dbl("optionLtp", 0);
+            String optionExpiry = fields.text("optionExpiry", "");
+            int optionLotSize = fields.integer("optionLotSize", 0);
+            int optionMultiplier = fields.integer("optionMultiplier", 1);
+            String optionSymbol = fields.text("optionSymbol", "");
+            String optionExchange = fields.text("optionExchange", "");
+            String optionExchangeType = fields.text("optionExchangeType", "");
+            boolean optionIsITM = fields.bool("optionIsITM", false);
 
             // ========== KII Score (for ranking) ==========
             double kiiScore = (Math.abs(oiChangeRatio) + surgeTVal * 100.0) / 2.0;
 
             // MERE-specific score breakdown
-            int mereL1 = root.path("mereL1Extension").asInt(root.path("mereLayer1").asInt(0));
-            int mereL2 = root.path("mereL2Exhaustion").asInt(root.path("mereLayer2").asInt(0));
-            int mereL3 = root.path("mereL3Options").asInt(root.path("mereLayer3").asInt(0));
-            String mereReasons = root.path("mereReasons").asText("");
-            String entryReason = root.path("entryReason").asText("");
-            String confirmReasons = root.path("confirmReasons").asText("");
+            int mereL1 = fields.integer("mereL1Extension", fields.integer("mereLayer1", 0));
+            int mereL2 = fields.integer("mereL2Exhaustion", fields.integer("mereLayer2", 0));
+            int mereL3 = fields.integer("mereL3Options", fields.integer("mereLayer3", 0));
+            String mereReasons = fields.text("mereReasons", "");
+            String entryReason = fields.text("entryReason", "");
+            String confirmReasons = fields.text("confirmReasons", "");
 
             log.info("mere_signal_accepted scrip={} score={} L1={} L2={} L3={} OI={}% surge={}x KII={} entry={} reason={}",
                     scripCode, triggerScore, mereL1, mereL2, mereL3,
@@ -199,15 +222,13 @@ public class MereSignalConsumer {
             if (entryPrice <= 0 || stopLoss <= 0 || target1 <= 0) {
                 log.warn("mere_invalid_params scrip={} entry={} sl={} t1={}",
                         scripCode, entryPrice, stopLoss, target1);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // ========== Idempotency Check ==========
-            String idKey = "MERE|" + scripCode + "|" + triggerTimeStr;
+            idKey = "MERE|" + scripCode + "|" + triggerTimeStr;
             if (processedSignalsCache.asMap().putIfAbsent(idKey, Boolean.TRUE) != null) {
                 log.info("mere_duplicate key={} scrip={}", idKey, scripCode);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
@@ -216,7 +237,7 @@ public class MereSignalConsumer {
                     direction, triggerScore, mereL1, mereL2, mereL3,
                     entryReason, mereReasons);
 
-            StrategySignal signal = StrategySignal.builder()
+            StrategySignal signal = fields.builder()
                     .scripCode(scripCode)
                     .companyName(companyName)
                     .instrumentSymbol(companyName)
@@ -256,35 +277,8 @@ public class MereSignalConsumer {
                     .optionExchange(optionExchange)
                     .optionExchangeType(optionExchangeType)
                     .optionIsITM(optionIsITM)
-                    .optionLtpDeferred(root.path("optionLtpDeferred").asBoolean(false))
-                    .greekDelta(root.path("greekDelta").asDouble(0))
-                    .greekGamma(root.path("greekGamma").asDouble(0))
-                    .greekTheta(root.path("greekTheta").asDouble(0))
-                    .greekVega(root.path("greekVega").asDouble(0))
-                    .greekRho(root.path("greekRho").asDouble(0))
-                    .greekIV(root.path("greekIV").asDouble(0))
-                    .greekDte(root.path("greekDte").asInt(0))
-                    .greekMoneynessType(root.path("greekMoneynessType").asText(null))
-                    .greekTheoreticalPrice(root.path("greekTheoreticalPrice").asDouble(0))
-                    .greekMispricing(root.path("greekMispricing").asDouble(0))
-                    .greekLeverage(root.path("greekLeverage").asDouble(0))
-                    .greekTimeValue(root.path("greekTimeValue").asDouble(0))
-                    .greekIntrinsicValue(root.path("greekIntrinsicValue").asDouble(0))
-                    .greekThetaImpaired(root.path("greekThetaImpaired").asBoolean(false))
-                    .greekSlMethod(root.path("greekSlMethod").asText(null))
-                    .greekSlIvFloor(root.path("greekSlIvFloor").asDouble(0))
-                    .greekGammaBoost(root.path("greekGammaBoost").asDouble(0))
-                    .optionSL(root.path("optionSL").asDouble(0))
-                    .optionT1(root.path("optionT1").asDouble(0))
-                    .optionT2(root.path("optionT2").asDouble(0))
-                    .optionT3(root.path("optionT3").asDouble(0))
-                    .optionT4(root.path("optionT4").asDouble(0))
-                    .optionRR(root.path("optionRR").asDouble(0))
-                    .optionRRpassed(root.path("optionRRpassed").asBoolean(false))
-                    .optionLotAllocation(root.path("optionLotAllocation").asText(null))
                     .positionSizeMultiplier(1.0)
                     .xfactorFlag(triggerScore >= 80)
-                    .exchange(root.path("exchange").asText("N"))
                     .build();
 
             signal.parseScripCode();
@@ -312,7 +306,6 @@ public class MereSignalConsumer {
 
                 if (!tradingHoursService.shouldProcessTrade(exchange, receivedIst.toLocalDateTime())) {
                     log.info("mere_outside_hours scrip={} exch={}", scripCode, exchange);
-                    if (ack != null) ack.acknowledge();
                     return;
                 }
 
@@ -326,17 +319,16 @@ public class MereSignalConsumer {
                         virtualTrade.getId(), scripCode, triggerScore);
 
                 // Submit as independent signal (MERE is counter-trend, should not compete with FUDKII/FUKAA)
-                signalBufferService.submitIndependentSignal(mereVariant, signal, virtualTrade,
-                        rationale, receivedIst.toLocalDateTime());
+                accepted.add(new SignalBufferService.Submission(mereVariant, signal, virtualTrade,
+                        rationale, receivedIst.toLocalDateTime()));
             }
 
-            if (ack != null) ack.acknowledge();
-
         } catch (Exception e) {
             log.error("mere_processing_error topic={} partition={} offset={} err={}",
                     topic, partition, offset, e.toString(), e);
-        } finally {
-            if (ack != null) ack.acknowledge();
+            // Reprocess on redelivery instead of dropping it as a duplicate
+            if (idKey != null) processedSignalsCache.invalidate(idKey);
+            throw e;
         }
     }
 }
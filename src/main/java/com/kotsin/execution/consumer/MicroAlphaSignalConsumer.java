@@ -1,9 +1,9 @@
 package com.kotsin.execution.consumer;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.kotsin.execution.consumer.decode.DecodedSignal;
+import com.kotsin.execution.consumer.decode.SignalFieldMapping;
+import com.kotsin.execution.consumer.decode.StreamingSignalDecoder;
 import com.kotsin.execution.model.BacktestTrade;
 import com.kotsin.execution.model.StrategySignal;
 import com.kotsin.execution.repository.BacktestTradeRepository;
@@ -21,6 +21,7 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.List;
 
 /**
  * MicroAlphaSignalConsumer - Consumes MicroAlpha conviction-scored signals.
@@ -42,10 +43,7 @@ public class MicroAlphaSignalConsumer {
     private final BacktestEngine backtestEngine;
     private final BacktestTradeRepository backtestRepository;
     private final Cache<String, Boolean> processedSignalsCache;
-    private final SignalBufferService signalBufferService;
-
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final SignalBatchProcessor batchProcessor;
 
     @Value("${microalpha.min.conviction:12.0}")
     private double minConviction;
@@ -53,113 +51,132 @@ public class MicroAlphaSignalConsumer {
     @Value("${microalpha.min.rr:1.0}")
     private double minRiskReward;
 
+    // Streaming decode: gates reject before the rest of the payload is parsed; Greeks and option
+    // targets go straight into the builder, the rest is captured for the checks below
+    private final SignalFieldMapping fieldMapping = SignalFieldMapping.forStrategy("MICROALPHA")
+            .requireTrue("triggered")
+            .capture("scripCode", "symbol", "direction", "absConviction", "conviction", "riskReward",
+                    "entryPrice", "stopLoss", "target", "tradingMode", "triggerTime", "timestamp",
+                    "optionAvailable", "optionScripCode", "optionStrike", "optionType", "optionLtp",
+                    "optionExpiry", "optionLotSize", "optionMultiplier", "optionSymbol", "optionExchange",
+                    "optionExchangeType", "optionIsITM", "futuresAvailable", "futuresScripCode", "futuresLtp",
+                    "futuresLotSize", "futuresMultiplier", "futuresSymbol", "futuresExchange",
+                    "futuresExchangeType")
+            .optionGreeks()
+            .bindText("exchange", "N", StrategySignal.StrategySignalBuilder::exchange)
+            .build();
+
     @KafkaListener(
             topics = "microalpha-signals",
             groupId = "${app.kafka.consumer.microalpha-group-id:microalpha-executor}",
-            containerFactory = "curatedSignalKafkaListenerContainerFactory"
+            containerFactory = "curatedSignalBatchKafkaListenerContainerFactory"
     )
-    public void processMicroAlphaSignal(String payload, ConsumerRecord<?, ?> rec, Acknowledgment ack) {
+    public void processMicroAlphaSignals(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        batchProcessor.process("MICROALPHA", records, ack, this::processMicroAlphaSignal);
+    }
+
+    void processMicroAlphaSignal(String payload, ConsumerRecord<?, ?> rec,
+                                 List<SignalBufferService.Submission> accepted) throws Exception {
         final String topic = rec.topic();
         final int partition = rec.partition();
         final long offset = rec.offset();
         final Instant receivedAt = Instant.now();
+        String idKey = null;
 
         try {
-            JsonNode root = objectMapper.readTree(payload);
+            DecodedSignal fields = StreamingSignalDecoder.decode(payload, fieldMapping);
+            if (fields.isRejected()) {
+                log.debug("microalpha_early_reject {} scrip={}", fields.getRejection(), fields.text("scripCode"));
+                return;
+            }
 
-            String scripCode = root.path("scripCode").asText();
+            String scripCode = fields.text("scripCode");
             if (scripCode == null || scripCode.isEmpty()) {
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
-            boolean triggered = root.path("triggered").asBoolean(false);
+            boolean triggered = fields.bool("triggered", false);
             if (!triggered) {
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Parse core fields
-            String companyName = root.path("symbol").asText(scripCode);
-            String direction = root.path("direction").asText("");
-            double conviction = root.path("absConviction").asDouble(
-                    root.path("conviction").asDouble(0));
-            double riskReward = root.path("riskReward").asDouble(0);
-            double entryPrice = root.path("entryPrice").asDouble(0);
-            double stopLoss = root.path("stopLoss").asDouble(0);
-            double target1 = root.path("target").asDouble(0);
-            String tradingMode = root.path("tradingMode").asText("UNKNOWN");
+            String companyName = fields.text("symbol", scripCode);
+            String direction = fields.text("direction", "");
+            double conviction = fields.dbl("absConviction",
+                    fields.dbl("conviction", 0));
+            double riskReward = fields.dbl("riskReward", 0);
+            double entryPrice = fields.dbl("entryPrice", 0);
+            double stopLoss = fields.dbl("stopLoss", 0);
+            double target1 = fields.dbl("target", 0);
+            String tradingMode = fields.text("tradingMode", "UNKNOWN");
 
             // Timestamp
-            String triggerTimeStr = root.path("triggerTime").asText("");
+            String triggerTimeStr = fields.text("triggerTime", "");
             long timestamp;
             try {
                 timestamp = Instant.parse(triggerTimeStr).toEpochMilli();
             } catch (Exception e) {
-                timestamp = root.path("timestamp").asLong(System.currentTimeMillis());
+                timestamp = fields.lng("timestamp", System.currentTimeMillis());
             }
 
             // Gates
             if (Math.abs(conviction) < minConviction) {
                 log.debug("microalpha_below_conviction scrip={} conv={} min={}",
                         scripCode, conviction, minConviction);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             boolean longSignal = "BULLISH".equalsIgnoreCase(direction);
             boolean shortSignal = "BEARISH".equalsIgnoreCase(direction);
             if (!longSignal && !shortSignal) {
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             if (entryPrice <= 0 || stopLoss <= 0 || target1 <= 0) {
                 log.warn("microalpha_invalid_params scrip={} entry={} sl={} t1={}",
                         scripCode, entryPrice, stopLoss, target1);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Idempotency
-            String idKey = "MICROALPHA|" + scripCode + "|" + triggerTimeStr;
+            idKey = "MICROALPHA|" + scripCode + "|" + triggerTimeStr;
             if (processedSignalsCache.asMap().putIfAbsent(idKey, Boolean.TRUE) != null) {
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Option enrichment
-            boolean optionAvailable = root.path("optionAvailable").asBoolean(false);
-            String optionScripCode = root.path("optionScripCode").asText("");
-            double optionStrike = root.path("optionStrike").asDouble(0);
-            String optionType = root.path("optionType").asText("");
-            double optionLtp = root.path("optionLtp").asDouble(0);
-            String optionExpiry = root.path("optionExpiry").asText("");
-            int optionLotSize = root.path("optionLotSize").asInt(0);
-            int optionMultiplier = root.path("optionMultiplier").asInt(1);
-            String optionSymbol = root.path("optionSymbol").asText("");
-            String optionExchange = root.path("optionExchange").asText("");
-            String optionExchangeType = root.path("optionExchangeType").asText("");
-            boolean optionIsITM = root.path("optionIsITM").asBoolean(false);
+            boolean optionAvailable = fields.bool("optionAvailable", false);
+            String optionScripCode = fields.text("optionScripCode", "");
+            double optionStrike = fields.dbl("optionStrike", 0);
+            String optionType = fields.text("optionType", "");
+            double optionLtp = fields.dbl("optionLtp", 0);
+            String optionExpiry = fields.text("optionExpiry", "");
+            int optionLotSize = fields.integer("optionLotSize", 0);
+            int optionMultiplier = fields.integer("optionMultiplier", 1);
+            String optionSymbol = fields.text("optionSymbol", "");
+            String optionExchange = fields.text("optionExchange", "");
+            String optionExchangeType = fields.text("optionExchangeType", "");
+            boolean optionIsITM = fields.bool("optionIsITM", false);
 
             // Futures fallback
-            boolean futuresAvailable = root.path("futuresAvailable").asBoolean(false);
+            boolean futuresAvailable = fields.bool("futuresAvailable", false);
             if (!optionAvailable && futuresAvailable) {
                 optionAvailable = true;
-                optionScripCode = root.path("futuresScripCode").asText("");
-                optionLtp = root.path("futuresLtp").asDouble(0);
-                optionLotSize = root.path("futuresLotSize").asInt(0);
-                optionMultiplier = root.path("futuresMultiplier").asInt(1);
-                optionSymbol = root.path("futuresSymbol").asText("");
-                optionExchange = root.path("futuresExchange").asText("");
-                optionExchangeType = root.path("futuresExchangeType").asText("");
+                optionScripCode = fields.text("futuresScripCode", "");
+                optionLtp = fields.dbl("futuresLtp", 0);
+                optionLotSize = fields.integer("futuresLotSize", 0);
+                optionMultiplier = fields.integer("futuresMultiplier", 1);
+                optionSymbol = fields.text("futuresSymbol", "");
+                optionExchange = fields.text("futuresExchange", "");
+                optionExchangeType = fields.text("futuresExchangeType", "");
             }
 
             String rationale = String.format(
                     "MICROALPHA: %s mode=%s conv=%.0f%% R:R=%.2f",
                     direction, tradingMode, conviction, riskReward);
 
-            StrategySignal signal = StrategySignal.builder()
+            StrategySignal signal = fields.builder()
                     .scripCode(scripCode)
                     .companyName(companyName)
                     .instrumentSymbol(companyName)
@@ -189,34 +206,7 @@ public class MicroAlphaSignalConsumer {
                     .optionExchange(optionExchange)
                     .optionExchangeType(optionExchangeType)
                     .optionIsITM(optionIsITM)
-                    .optionLtpDeferred(root.path("optionLtpDeferred").asBoolean(false))
-                    .greekDelta(root.path("greekDelta").asDouble(0))
-                    .greekGamma(root.path("greekGamma").asDouble(0))
-                    .greekTheta(root.path("greekTheta").asDouble(0))
-                    .greekVega(root.path("greekVega").asDouble(0))
-                    .greekRho(root.path("greekRho").asDouble(0))
-                    .greekIV(root.path("greekIV").asDouble(0))
-                    .greekDte(root.path("greekDte").asInt(0))
-                    .greekMoneynessType(root.path("greekMoneynessType").asText(null))
-                    .greekTheoreticalPrice(root.path("greekTheoreticalPrice").asDouble(0))
-                    .greekMispricing(root.path("greekMispricing").asDouble(0))
-                    .greekLeverage(root.path("greekLeverage").asDouble(0))
-                    .greekTimeValue(root.path("greekTimeValue").asDouble(0))
-                    .greekIntrinsicValue(root.path("greekIntrinsicValue").asDouble(0))
-                    .greekThetaImpaired(root.path("greekThetaImpaired").asBoolean(false))
-                    .greekSlMethod(root.path("greekSlMethod").asText(null))
-                    .greekSlIvFloor(root.path("greekSlIvFloor").asDouble(0))
-                    .greekGammaBoost(root.path("greekGammaBoost").asDouble(0))
-                    .optionSL(root.path("optionSL").asDouble(0))
-                    .optionT1(root.path("optionT1").asDouble(0))
-                    .optionT2(root.path("optionT2").asDouble(0))
-                    .optionT3(root.path("optionT3").asDouble(0))
-                    .optionT4(root.path("optionT4").asDouble(0))
-                    .optionRR(root.path("optionRR").asDouble(0))
-                    .optionRRpassed(root.path("optionRRpassed").asBoolean(false))
-                    .optionLotAllocation(root.path("optionLotAllocation").asText(null))
                     .positionSizeMultiplier(1.0)
-                    .exchange(root.path("exchange").asText("N"))
                     .build();
 
             signal.parseScripCode();
@@ -239,7 +229,6 @@ public class MicroAlphaSignalConsumer {
 
                 if (!tradingHoursService.shouldProcessTrade(exchange, receivedIst.toLocalDateTime())) {
                     log.info("microalpha_outside_hours scrip={} exch={}", scripCode, exchange);
-                    if (ack != null) ack.acknowledge();
                     return;
                 }
 
@@ -251,17 +240,16 @@ public class MicroAlphaSignalConsumer {
                 log.info("microalpha_live scrip={} conv={} rr={} → submitting to buffer",
                         scripCode, conviction, riskReward);
 
-                signalBufferService.submitSignal("MICROALPHA", signal, virtualTrade,
-                        rationale, receivedIst.toLocalDateTime());
+                accepted.add(new SignalBufferService.Submission("MICROALPHA", signal, virtualTrade,
+                        rationale, receivedIst.toLocalDateTime()));
             }
 
-            if (ack != null) ack.acknowledge();
-
         } catch (Exception e) {
             log.error("microalpha_processing_error topic={} partition={} offset={} err={}",
                     topic, partition, offset, e.toString(), e);
-        } finally {
-            if (ack != null) ack.acknowledge();
+            // Reprocess on redelivery instead of dropping it as a duplicate
+            if (idKey != null) processedSignalsCache.invalidate(idKey);
+            throw e;
         }
     }
 }
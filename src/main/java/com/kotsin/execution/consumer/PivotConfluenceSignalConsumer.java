@@ -1,9 +1,9 @@
 package com.kotsin.execution.consumer;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.kotsin.execution.consumer.decode.DecodedSignal;
+import com.kotsin.execution.consumer.decode.SignalFieldMapping;
+import com.kotsin.execution.consumer.decode.StreamingSignalDecoder;
 import com.kotsin.execution.model.BacktestTrade;
 import com.kotsin.execution.model.StrategySignal;
 import com.kotsin.execution.repository.BacktestTradeRepository;
@@ -22,6 +22,7 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.List;
 
 /**
  * PivotConfluenceSignalConsumer - Consumes multi-timeframe pivot confluence signals
@@ -51,12 +52,9 @@ public class PivotConfluenceSignalConsumer {
     private final BacktestEngine backtestEngine;
     private final BacktestTradeRepository backtestRepository;
     private final Cache<String, Boolean> processedSignalsCache;
-    private final SignalBufferService signalBufferService;
+    private final SignalBatchProcessor batchProcessor;
     private final RedisTemplate<String, String> redisTemplate;
 
-    private final ObjectMapper objectMapper = new ObjectMapper()
-            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
     @Value("${pivot.min.trigger.score:55.0}")
     private double minTriggerScore;
 
@@ -88,83 +86,108 @@ public class PivotConfluenceSignalConsumer {
         }
     }
 
+    // Streaming decode: gates reject before the rest of the payload is parsed; Greeks and option
+    // targets go straight into the builder, the rest is captured for the checks below
+    private final SignalFieldMapping fieldMapping = SignalFieldMapping.forStrategy("PIVOT_CONFLUENCE")
+            .requireTrue("triggered")
+            .minimum("score", () -> minTriggerScore)
+            .capture("scripCode", "familyId", "companyName", "symbol", "triggerTime", "timestamp",
+                    "riskReward", "riskRewardRatio", "direction", "htfDirection", "entryPrice",
+                    "pivotCurrentPrice", "stopLoss", "target", "target1", "target2", "target3", "target4",
+                    "htfStrength", "ltfConfirmed", "ltfAlignmentScore", "pivotNearbyLevels", "cprPosition",
+                    "smcInOrderBlock", "hasConfirmedRetest", "hasActiveBreakout", "optionAvailable",
+                    "optionScripCode", "optionStrike", "optionType", "optionLtp", "optionExpiry",
+                    "optionLotSize", "optionMultiplier", "optionSymbol", "optionExchange",
+                    "optionExchangeType", "optionIsITM", "futuresAvailable", "futuresScripCode", "futuresLtp",
+                    "futuresLotSize", "futuresMultiplier", "futuresSymbol", "futuresExchange",
+                    "futuresExchangeType", "mlAvailable", "mlConfidence", "mlPositionSizeMultiplier",
+                    "atr30m")
+            .optionGreeks()
+            .bindText("exchange", "N", StrategySignal.StrategySignalBuilder::exchange)
+            .build();
+
     @KafkaListener(
             topics = "pivot-confluence-signals",
             groupId = "${app.kafka.consumer.pivot-group-id:pivot-executor-v1}",
-            containerFactory = "curatedSignalKafkaListenerContainerFactory"
+            containerFactory = "curatedSignalBatchKafkaListenerContainerFactory"
     )
-    public void processPivotSignal(String payload, ConsumerRecord<?, ?> rec, Acknowledgment ack) {
+    public void processPivotSignals(List<ConsumerRecord<String, String>> records, Acknowledgment ack) {
+        batchProcessor.process("PIVOT_CONFLUENCE", records, ack, this::processPivotSignal);
+    }
+
+    void processPivotSignal(String payload, ConsumerRecord<?, ?> rec,
+                            List<SignalBufferService.Submission> accepted) throws Exception {
         final String topic = rec.topic();
         final int partition = rec.partition();
         final long offset = rec.offset();
         final Instant receivedAt = Instant.now();
+        String idKey = null;
 
         try {
-            JsonNode root = objectMapper.readTree(payload);
+            DecodedSignal fields = StreamingSignalDecoder.decode(payload, fieldMapping);
+            if (fields.isRejected()) {
+                log.debug("pivot_early_reject {} scrip={}", fields.getRejection(), fields.text("scripCode"));
+                return;
+            }
 
             // ========== Extract Core Fields ==========
-            String scripCode = root.path("scripCode").asText();
+            String scripCode = fields.text("scripCode");
             if (scripCode == null || scripCode.isEmpty()) {
-                scripCode = root.path("familyId").asText();
+                scripCode = fields.text("familyId");
             }
 
             if (scripCode == null || scripCode.isEmpty()) {
                 log.debug("pivot_no_scripcode topic={} partition={} offset={}", topic, partition, offset);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Only process triggered signals
-            boolean triggered = root.path("triggered").asBoolean(false);
+            boolean triggered = fields.bool("triggered", false);
             if (!triggered) {
                 log.debug("pivot_not_triggered scrip={}", scripCode);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // ========== Pause Check ==========
             if (isPaused()) {
                 log.info("pivot_paused scrip={} — auto-trade disabled, skipping", scripCode);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // ========== Parse Pivot Signal ==========
-            String companyName = root.path("companyName").asText(
-                    root.path("symbol").asText(scripCode));
+            String companyName = fields.text("companyName",
+                    fields.text("symbol", scripCode));
 
             // Parse triggerTime ISO string to epoch millis
-            String triggerTimeStr = root.path("triggerTime").asText("");
+            String triggerTimeStr = fields.text("triggerTime", "");
             long timestamp;
             try {
                 Instant triggerInstant = Instant.parse(triggerTimeStr);
                 timestamp = triggerInstant.toEpochMilli();
             } catch (Exception e) {
-                timestamp = root.path("timestamp").asLong(System.currentTimeMillis());
+                timestamp = fields.lng("timestamp", System.currentTimeMillis());
             }
 
             // Score & R:R gates
-            double score = root.path("score").asDouble(0);
-            double riskReward = root.path("riskReward").asDouble(
-                    root.path("riskRewardRatio").asDouble(0));
+            double score = fields.dbl("score", 0);
+            double riskReward = fields.dbl("riskReward",
+                    fields.dbl("riskRewardRatio", 0));
 
             if (score < minTriggerScore) {
                 log.debug("pivot_below_score scrip={} score={} min={}",
                         scripCode, score, minTriggerScore);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             if (riskReward < minRiskReward) {
                 log.debug("pivot_below_rr scrip={} rr={} min={}",
                         scripCode, riskReward, minRiskReward);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Direction
-            String direction = root.path("direction").asText("");
-            String htfDirection = root.path("htfDirection").asText("");
+            String direction = fields.text("direction", "");
+            String htfDirection = fields.text("htfDirection", "");
             if (direction.isEmpty()) {
                 direction = htfDirection;
             }
@@ -173,74 +196,71 @@ public class PivotConfluenceSignalConsumer {
 
             if (!longSignal && !shortSignal) {
                 log.debug("pivot_no_direction scrip={} dir={}", scripCode, direction);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // Entry, SL, Targets
-            double entryPrice = root.path("entryPrice").asDouble(
-                    root.path("pivotCurrentPrice").asDouble(0));
-            double stopLoss = root.path("stopLoss").asDouble(0);
-            double target1 = root.path("target").asDouble(
-                    root.path("target1").asDouble(0));
-            double target2 = root.path("target2").asDouble(0);
-            double target3 = root.path("target3").asDouble(0);
-            double target4 = root.path("target4").asDouble(0);
+            double entryPrice = fields.dbl("entryPrice",
+                    fields.dbl("pivotCurrentPrice", 0));
+            double stopLoss = fields.dbl("stopLoss", 0);
+            double target1 = fields.dbl("target",
+                    fields.dbl("target1", 0));
+            double target2 = fields.dbl("target2", 0);
+            double target3 = fields.dbl("target3", 0);
+            double target4 = fields.dbl("target4", 0);
 
             // HTF/LTF details (for rationale)
-            double htfStrength = root.path("htfStrength").asDouble(0);
-            boolean ltfConfirmed = root.path("ltfConfirmed").asBoolean(false);
-            double ltfAlignmentScore = root.path("ltfAlignmentScore").asDouble(0);
-            int pivotNearbyLevels = root.path("pivotNearbyLevels").asInt(0);
-            String cprPosition = root.path("cprPosition").asText("");
+            double htfStrength = fields.dbl("htfStrength", 0);
+            boolean ltfConfirmed = fields.bool("ltfConfirmed", false);
+            double ltfAlignmentScore = fields.dbl("ltfAlignmentScore", 0);
+            int pivotNearbyLevels = fields.integer("pivotNearbyLevels", 0);
+            String cprPosition = fields.text("cprPosition", "");
 
             // SMC
-            boolean smcInOrderBlock = root.path("smcInOrderBlock").asBoolean(false);
-            boolean hasConfirmedRetest = root.path("hasConfirmedRetest").asBoolean(false);
-            boolean hasActiveBreakout = root.path("hasActiveBreakout").asBoolean(false);
+            boolean smcInOrderBlock = fields.bool("smcInOrderBlock", false);
+            boolean hasConfirmedRetest = fields.bool("hasConfirmedRetest", false);
+            boolean hasActiveBreakout = fields.bool("hasActiveBreakout", false);
 
             // Option enrichment fields (from OptionDataEnricher in StreamingCandle)
-            boolean optionAvailable = root.path("optionAvailable").asBoolean(false);
-            String optionScripCode = root.path("optionScripCode").asText("");
-            double optionStrike = root.path("optionStrike").asDouble(0);
-            String optionType = root.path("optionType").asText("");
-            double optionLtp = root.path("optionLtp").asDouble(0);
-            String optionExpiry = root.path("optionExpiry").asText("");
-            int optionLotSize = root.path("optionLotSize").asInt(0);
-            int optionMultiplier = root.path("optionMultiplier").asInt(1);
-            String optionSymbol = root.path("optionSymbol").asText("");
-            String optionExchange = root.path("optionExchange").asText("");
-            String optionExchangeType = root.path("optionExchangeType").asText("");
-            boolean optionIsITM = root.path("optionIsITM").asBoolean(false);
+            boolean optionAvailable = fields.bool("optionAvailable", false);
+            String optionScripCode = fields.text("optionScripCode", "");
+            double optionStrike = fields.dbl("optionStrike", 0);
+            String optionType = fields.text("optionType", "");
+            double optionLtp = fields.dbl("optionLtp", 0);
+            String optionExpiry = fields.text("optionExpiry", "");
+            int optionLotSize = fields.integer("optionLotSize", 0);
+            int optionMultiplier = fields.integer("optionMultiplier", 1);
+            String optionSymbol = fields.text("optionSymbol", "");
+            String optionExchange = fields.text("optionExchange", "");
+            String optionExchangeType = fields.text("optionExchangeType", "");
+            boolean optionIsITM = fields.bool("optionIsITM", false);
 
             // Futures fallback fields (MCX instruments without options)
-            boolean futuresAvailable = root.path("futuresAvailable").asBoolean(false);
-            String futuresScripCode = root.path("futuresScripCode").asText("");
-            double futuresLtp = root.path("futuresLtp").asDouble(0);
-            int futuresLotSize = root.path("futuresLotSize").asInt(0);
-            int futuresMultiplier = root.path("futuresMultiplier").asInt(1);
-            String futuresSymbol = root.path("futuresSymbol").asText("");
-            String futuresExchange = root.path("futuresExchange").asText("");
-            String futuresExchangeType = root.path("futuresExchangeType").asText("");
+            boolean futuresAvailable = fields.bool("futuresAvailable", false);
+            String futuresScripCode = fields.text("futuresScripCode", "");
+            double futuresLtp = fields.dbl("futuresLtp", 0);
+            int futuresLotSize = fields.integer("futuresLotSize", 0);
+            int futuresMultiplier = fields.integer("futuresMultiplier", 1);
+            String futuresSymbol = fields.text("futuresSymbol", "");
+            String futuresExchange = fields.text("futuresExchange", "");
+            String futuresExchangeType = fields.text("futuresExchangeType", "");
 
             // ML enrichment
-            boolean mlAvailable = root.path("mlAvailable").asBoolean(false);
-            double mlConfidence = root.path("mlConfidence").asDouble(0);
-            double positionSizeMultiplier = root.path("mlPositionSizeMultiplier").asDouble(1.0);
+            boolean mlAvailable = fields.bool("mlAvailable", false);
+            double mlConfidence = fields.dbl("mlConfidence", 0);
+            double positionSizeMultiplier = fields.dbl("mlPositionSizeMultiplier", 1.0);
 
             // Validate trade parameters
             if (entryPrice <= 0 || stopLoss <= 0 || target1 <= 0) {
                 log.warn("pivot_invalid_params scrip={} entry={} sl={} t1={}",
                         scripCode, entryPrice, stopLoss, target1);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
             // ========== Idempotency Check ==========
-            String idKey = "PIVOT|" + scripCode + "|" + triggerTimeStr;
+            idKey = "PIVOT|" + scripCode + "|" + triggerTimeStr;
             if (processedSignalsCache.asMap().putIfAbsent(idKey, Boolean.TRUE) != null) {
                 log.info("pivot_duplicate key={} scrip={}", idKey, scripCode);
-                if (ack != null) ack.acknowledge();
                 return;
             }
 
@@ -269,7 +289,7 @@ public class PivotConfluenceSignalConsumer {
                 optionExchangeType = futuresExchangeType;
             }
 
-            StrategySignal signal = StrategySignal.builder()
+            StrategySignal signal = fields.builder()
                     .scripCode(scripCode)
                     .companyName(companyName)
                     .instrumentSymbol(instrumentSymbol)
@@ -288,7 +308,7 @@ public class PivotConfluenceSignalConsumer {
                     .target4(target4)
                     .riskRewardRatio(riskReward)
                     .pivotSource(true)
-                    .atr30m(root.path("atr30m").asDouble(0))
+                    .atr30m(fields.dbl("atr30m", 0))
                     .optionAvailable(optionAvailable)
                     .optionScripCode(optionScripCode)
                     .optionStrike(optionStrike)
@@ -301,35 +321,8 @@ public class PivotConfluenceSignalConsumer {
                     .optionExchange(optionExchange)
                     .optionExchangeType(optionExchangeType)
                     .optionIsITM(optionIsITM)
-                    .optionLtpDeferred(root.path("optionLtpDeferred").asBoolean(false))
-                    .greekDelta(root.path("greekDelta").asDouble(0))
-                    .greekGamma(root.path("greekGamma").asDouble(0))
-                    .greekTheta(root.path("greekTheta").asDouble(0))
-                    .greekVega(root.path("greekVega").asDouble(0))
-                    .greekRho(root.path("greekRho").asDouble(0))
-                    .greekIV(root.path("greekIV").asDouble(0))
-                    .greekDte(root.path("greekDte").asInt(0))
-                    .greekMoneynessType(root.path("greekMoneynessType").asText(null))
-                    .greekTheoreticalPrice(root.path("greekTheoreticalPrice").asDouble(0))
-                    .greekMispricing(root.path("greekMispricing").asDouble(0))
-                    .greekLeverage(root.path("greekLeverage").asDouble(0))
-                    .greekTimeValue(root.path("greekTimeValue").asDouble(0))
-                    .greekIntrinsicValue(root.path("greekIntrinsicValue").asDouble(0))
-                    .greekThetaImpaired(root.path("greekThetaImpaired").asBoolean(false))
-                    .greekSlMethod(root.path("greekSlMethod").asText(null))
-                    .greekSlIvFloor(root.path("greekSlIvFloor").asDouble(0))
-                    .greekGammaBoost(root.path("greekGammaBoost").asDouble(0))
-                    .optionSL(root.path("optionSL").asDouble(0))
-                    .optionT1(root.path("optionT1").asDouble(0))
-                    .optionT2(root.path("optionT2").asDouble(0))
-                    .optionT3(root.path("optionT3").asDouble(0))
-                    .optionT4(root.path("optionT4").asDouble(0))
-                    .optionRR(root.path("optionRR").asDouble(0))
-                    .optionRRpassed(root.path("optionRRpassed").asBoolean(false))
-                    .optionLotAllocation(root.path("optionLotAllocation").asText(null))
                     .positionSizeMultiplier(positionSizeMultiplier > 0 ? positionSizeMultiplier : 1.0)
                     .xfactorFlag(score >= 80 && riskReward >= 2.0)
-                    .exchange(root.path("exchange").asText("N"))
                     .build();
 
             signal.parseScripCode();
@@ -363,7 +356,6 @@ public class PivotConfluenceSignalConsumer {
 
                 if (!tradingHoursService.shouldProcessTrade(exchange, receivedIst.toLocalDateTime())) {
                     log.info("pivot_outside_hours scrip={} exch={}", scripCode, exchange);
-                    if (ack != null) ack.acknowledge();
                     return;
                 }
 
@@ -377,17 +369,16 @@ public class PivotConfluenceSignalConsumer {
                         virtualTrade.getId(), scripCode, score, riskReward);
 
                 // Submit to SignalBufferService for fund allocation & execution
-                signalBufferService.submitSignal("PIVOT_CONFLUENCE", signal, virtualTrade,
-                        rationale, receivedIst.toLocalDateTime());
+                accepted.add(new SignalBufferService.Submission("PIVOT_CONFLUENCE", signal, virtualTrade,
+                        rationale, receivedIst.toLocalDateTime()));
             }
 
-            if (ack != null) ack.acknowledge();
-
         } catch (Exception e) {
             log.error("pivot_processing_error topic={} partition={} offset={} err={}",
                     topic, partition, offset, e.toString(), e);
-        } finally {
-            if (ack != null) ack.acknowledge();
+            // Reprocess on redelivery instead of dropping it as a duplicate
+            if (idKey != null) processedSignalsCache.invalidate(idKey);
+            throw e;
         }
     }
 }
@@ -0,0 +1,57 @@
+package com.kotsin.execution.consumer;
+
+import com.kotsin.execution.service.SignalBufferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs one Kafka poll of a curated strategy topic through the consumer's per-record handler.
+ *
+ * Signals accepted from the poll are handed to SignalBufferService in one call, then the poll's
+ * offsets are committed once. If a record fails, the signals accepted before it are still submitted
+ * and a BatchListenerFailedException points the batch factory's error handler at that record:
+ * offsets before it are committed and it is dead-lettered without retries. Records after it are
+ * redelivered, so delivery stays at-least-once.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SignalBatchProcessor {
+
+    private final SignalBufferService signalBufferService;
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        /** Process one record; live signals are added to {@code accepted} instead of being submitted. */
+        void handle(String payload, ConsumerRecord<?, ?> rec,
+                    List<SignalBufferService.Submission> accepted) throws Exception;
+    }
+
+    public void process(String strategy, List<ConsumerRecord<String, String>> records,
+                        Acknowledgment ack, RecordHandler handler) {
+        List<SignalBufferService.Submission> accepted = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, String> rec = records.get(i);
+            try {
+                handler.handle(rec.value(), rec, accepted);
+            } catch (Exception e) {
+                signalBufferService.submitSignals(accepted);
+                throw new BatchListenerFailedException(strategy + " record failed at offset " + rec.offset(), e, i);
+            }
+        }
+
+        signalBufferService.submitSignals(accepted);
+        if (ack != null) ack.acknowledge();
+
+        if (records.size() > 1) {
+            log.debug("{}_batch records={} accepted={}", strategy.toLowerCase(), records.size(), accepted.size());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.kotsin.execution.consumer;
+
+import java.util.Arrays;
+
+/**
+ * Per-token minute-volume state for LiveMarketDataConsumer, in primitive arrays.
+ *
+ * Open addressing (linear probing) keyed by MarketData token, with the last cumulative quantity,
+ * the current minute's window start and the volume accumulated in that window stored side by side.
+ * Replaces three boxed Map&lt;Integer, Long&gt; lookups per tick; no allocation except on growth.
+ */
+final class TokenVolumeState {
+
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] tokens;
+    private long[] lastCumQty;
+    private long[] windowStart;
+    private long[] windowVol;
+    private int size;
+
+    TokenVolumeState(int expectedTokens) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedTokens * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Fold a tick's cumulative traded quantity into its minute window and return the window's volume.
+     * The first tick of a token contributes 0; a new window starts from the tick's delta.
+     */
+    synchronized long addVolume(int token, long tickWindowStart, long cumQty) {
+        int slot = find(token);
+        if (tokens[slot] == FREE) {
+            tokens[slot] = token;
+            lastCumQty[slot] = cumQty;
+            windowStart[slot] = tickWindowStart;
+            windowVol[slot] = 0;
+            if (++size * 2 > tokens.length) grow();
+            return 0;
+        }
+        long delta = Math.max(0, cumQty - lastCumQty[slot]);
+        lastCumQty[slot] = cumQty;
+        if (windowStart[slot] != tickWindowStart) {
+            windowStart[slot] = tickWindowStart;
+            windowVol[slot] = delta;
+        } else {
+            windowVol[slot] += delta;
+        }
+        return windowVol[slot];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Slot holding {@code token}, or the free slot where it would go. */
+    private int find(int token) {
+        int mask = tokens.length - 1;
+        int slot = mix(token) & mask;
+        while (tokens[slot] != FREE && tokens[slot] != token) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldTokens = tokens;
+        long[] oldCum = lastCumQty;
+        long[] oldStart = windowStart;
+        long[] oldVol = windowVol;
+        allocate(oldTokens.length << 1);
+        for (int i = 0; i < oldTokens.length; i++) {
+            if (oldTokens[i] == FREE) continue;
+            int slot = find(oldTokens[i]);
+            tokens[slot] = oldTokens[i];
+            lastCumQty[slot] = oldCum[i];
+            windowStart[slot] = oldStart[i];
+            windowVol[slot] = oldVol[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        tokens = new int[capacity];
+        Arrays.fill(tokens, FREE);
+        lastCumQty = new long[capacity];
+        windowStart = new long[capacity];
+        windowVol = new long[capacity];
+    }
+
+    // Tokens are dense exchange IDs; spread them so neighbouring tokens do not cluster
+    private static int mix(int token) {
+        int h = token * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
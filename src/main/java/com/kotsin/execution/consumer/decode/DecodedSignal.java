@@ -0,0 +1,113 @@
+package com.kotsin.execution.consumer.decode;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.io.NumberInput;
+import com.kotsin.execution.model.StrategySignal.StrategySignalBuilder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Result of one {@link StreamingSignalDecoder} pass: the pre-filled StrategySignal builder, the captured
+ * scalars, and the early-reject reason if a gate failed (in which case the remaining fields were not parsed).
+ *
+ * Accessors follow JsonNode.path(field).asX(default): missing or null fields return the default, strings are
+ * parsed leniently, booleans read as 1/0.
+ */
+public final class DecodedSignal {
+
+    private final StrategySignalBuilder builder;
+    private final Map<String, Object> values = new HashMap<>(32);
+    private String rejection;
+
+    DecodedSignal(StrategySignalBuilder builder) {
+        this.builder = builder;
+    }
+
+    /** Builder with the mapping's bindings already applied; the consumer adds the derived fields. */
+    public StrategySignalBuilder builder() {
+        return builder;
+    }
+
+    public boolean isRejected() {
+        return rejection != null;
+    }
+
+    /** e.g. "below_threshold triggerScore=42.0 min=50.0"; null when not rejected. */
+    public String getRejection() {
+        return rejection;
+    }
+
+    public String text(String field) {
+        return text(field, "");
+    }
+
+    public String text(String field, String defaultValue) {
+        Object v = values.get(field);
+        return v != null ? v.toString() : defaultValue;
+    }
+
+    public double dbl(String field, double defaultValue) {
+        Object v = values.get(field);
+        if (v instanceof Number n) return n.doubleValue();
+        if (v instanceof Boolean b) return b ? 1.0 : 0.0;
+        if (v instanceof String s) return NumberInput.parseAsDouble(s, defaultValue);
+        return defaultValue;
+    }
+
+    public int integer(String field, int defaultValue) {
+        Object v = values.get(field);
+        if (v instanceof Number n) return n.intValue();
+        if (v instanceof Boolean b) return b ? 1 : 0;
+        if (v instanceof String s) return NumberInput.parseAsInt(s, defaultValue);
+        return defaultValue;
+    }
+
+    public long lng(String field, long defaultValue) {
+        Object v = values.get(field);
+        if (v instanceof Number n) return n.longValue();
+        if (v instanceof Boolean b) return b ? 1L : 0L;
+        if (v instanceof String s) return NumberInput.parseAsLong(s, defaultValue);
+        return defaultValue;
+    }
+
+    public boolean bool(String field, boolean defaultValue) {
+        Object v = values.get(field);
+        if (v instanceof Boolean b) return b;
+        if (v instanceof Long n) return n != 0;
+        if (v instanceof String s) {
+            String t = s.trim();
+            if ("true".equals(t)) return true;
+            if ("false".equals(t)) return false;
+        }
+        return defaultValue;
+    }
+
+    void put(String field, Object value) {
+        if (value != null) values.put(field, value);
+    }
+
+    void reject(String reason) {
+        this.rejection = reason;
+    }
+
+    /** Current scalar token as String / Boolean / Long / Double; null for JSON null. */
+    static Object scalar(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NUMBER_INT:
+                return p.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                        ? (Object) p.getDoubleValue() : (Object) p.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.kotsin.execution.consumer.decode;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.kotsin.execution.model.StrategySignal.StrategySignalBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Declarative field mapping for one curated strategy topic, consumed by {@link StreamingSignalDecoder}.
+ *
+ * Each top-level JSON field maps to one of:
+ * - a gate: checked as soon as the field is parsed; a failing gate stops the parse (early reject)
+ * - a builder binding: written straight into the StrategySignal builder (defaults applied up front)
+ * - a capture: kept as a scalar on {@link DecodedSignal} for consumer logic (fallbacks, validation, logs)
+ * Anything else is skipped without materializing its value.
+ *
+ * Built once per consumer and shared across records; value conversions mirror JsonNode.asX(default).
+ */
+public final class SignalFieldMapping {
+
+    @FunctionalInterface
+    interface Binding {
+        /** Consume the current scalar token; returns a reject reason, or null to keep parsing. */
+        String read(String field, JsonParser p, StrategySignalBuilder builder, DecodedSignal out) throws IOException;
+    }
+
+    private final String strategy;
+    private final Map<String, Binding> bindings;
+    private final List<Consumer<StrategySignalBuilder>> defaults;
+
+    private SignalFieldMapping(Builder b) {
+        this.strategy = b.strategy;
+        this.bindings = Map.copyOf(b.bindings);
+        this.defaults = List.copyOf(b.defaults);
+    }
+
+    public static Builder forStrategy(String strategy) {
+        return new Builder(strategy);
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    Binding binding(String field) {
+        return bindings.get(field);
+    }
+
+    void applyDefaults(StrategySignalBuilder builder) {
+        for (Consumer<StrategySignalBuilder> d : defaults) d.accept(builder);
+    }
+
+    public static final class Builder {
+        private final String strategy;
+        private final Map<String, Binding> bindings = new HashMap<>();
+        private final List<Consumer<StrategySignalBuilder>> defaults = new ArrayList<>();
+
+        private Builder(String strategy) {
+            this.strategy = strategy;
+        }
+
+        /** Reject as soon as {@code field} parses as false. The value is also captured. */
+        public Builder requireTrue(String field) {
+            bindings.put(field, (f, p, b, out) -> {
+                boolean v = p.getValueAsBoolean(false);
+                out.put(f, v);
+                return v ? null : "not_triggered " + f + "=false";
+            });
+            return this;
+        }
+
+        /** Reject as soon as {@code field} parses below {@code min} (read per record, so @Value-injected). */
+        public Builder minimum(String field, DoubleSupplier min) {
+            bindings.put(field, (f, p, b, out) -> {
+                double v = p.getValueAsDouble(0);
+                out.put(f, v);
+                double floor = min.getAsDouble();
+                return v < floor ? "below_threshold " + f + "=" + v + " min=" + floor : null;
+            });
+            return this;
+        }
+
+        /** Keep these fields on the DecodedSignal for the consumer to read. */
+        public Builder capture(String... fields) {
+            for (String field : fields) {
+                bindings.putIfAbsent(field, (f, p, b, out) -> {
+                    out.put(f, DecodedSignal.scalar(p));
+                    return null;
+                });
+            }
+            return this;
+        }
+
+        public Builder bindDouble(String field, ObjDoubleConsumer<StrategySignalBuilder> setter) {
+            bindings.put(field, (f, p, b, out) -> {
+                setter.accept(b, p.getValueAsDouble(0));
+                return null;
+            });
+            return this;
+        }
+
+        public Builder bindInt(String field, ObjIntConsumer<StrategySignalBuilder> setter) {
+            bindings.put(field, (f, p, b, out) -> {
+                setter.accept(b, p.getValueAsInt(0));
+                return null;
+            });
+            return this;
+        }
+
+        public Builder bindBoolean(String field, BiConsumer<StrategySignalBuilder, Boolean> setter) {
+            bindings.put(field, (f, p, b, out) -> {
+                setter.accept(b, p.getValueAsBoolean(false));
+                return null;
+            });
+            return this;
+        }
+
+        public Builder bindText(String field, String defaultValue, BiConsumer<StrategySignalBuilder, String> setter) {
+            bindings.put(field, (f, p, b, out) -> {
+                setter.accept(b, p.getValueAsString(defaultValue));
+                return null;
+            });
+            if (defaultValue != null) defaults.add(b -> setter.accept(b, defaultValue));
+            return this;
+        }
+
+        /** Greek and option-target block published by the streaming candle's OptionDataEnricher. */
+        public Builder optionGreeks() {
+            return bindBoolean("optionLtpDeferred", StrategySignalBuilder::optionLtpDeferred)
+                    .bindDouble("greekDelta", StrategySignalBuilder::greekDelta)
+                    .bindDouble("greekGamma", StrategySignalBuilder::greekGamma)
+                    .bindDouble("greekTheta", StrategySignalBuilder::greekTheta)
+                    .bindDouble("greekVega", StrategySignalBuilder::greekVega)
+                    .bindDouble("greekRho", StrategySignalBuilder::greekRho)
+                    .bindDouble("greekIV", StrategySignalBuilder::greekIV)
+                    .bindInt("greekDte", StrategySignalBuilder::greekDte)
+                    .bindText("greekMoneynessType", null, StrategySignalBuilder::greekMoneynessType)
+                    .bindDouble("greekTheoreticalPrice", StrategySignalBuilder::greekTheoreticalPrice)
+                    .bindDouble("greekMispricing", StrategySignalBuilder::greekMispricing)
+                    .bindDouble("greekLeverage", StrategySignalBuilder::greekLeverage)
+                    .bindDouble("greekTimeValue", StrategySignalBuilder::greekTimeValue)
+                    .bindDouble("greekIntrinsicValue", StrategySignalBuilder::greekIntrinsicValue)
+                    .bindBoolean("greekThetaImpaired", StrategySignalBuilder::greekThetaImpaired)
+                    .bindText("greekSlMethod", null, StrategySignalBuilder::greekSlMethod)
+                    .bindDouble("greekSlIvFloor", StrategySignalBuilder::greekSlIvFloor)
+                    .bindDouble("greekGammaBoost", StrategySignalBuilder::greekGammaBoost)
+                    .bindDouble("optionSL", StrategySignalBuilder::optionSL)
+                    .bindDouble("optionT1", StrategySignalBuilder::optionT1)
+                    .bindDouble("optionT2", StrategySignalBuilder::optionT2)
+                    .bindDouble("optionT3", StrategySignalBuilder::optionT3)
+                    .bindDouble("optionT4", StrategySignalBuilder::optionT4)
+                    .bindDouble("optionRR", StrategySignalBuilder::optionRR)
+                    .bindBoolean("optionRRpassed", StrategySignalBuilder::optionRRpassed)
+                    .bindText("optionLotAllocation", null, StrategySignalBuilder::optionLotAllocation);
+        }
+
+        public SignalFieldMapping build() {
+            return new SignalFieldMapping(this);
+        }
+    }
+}
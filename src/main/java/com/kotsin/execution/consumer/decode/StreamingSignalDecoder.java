@@ -0,0 +1,58 @@
+package com.kotsin.execution.consumer.decode;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.kotsin.execution.model.StrategySignal;
+
+import java.io.IOException;
+
+/**
+ * Single-pass decoder for curated strategy signal payloads (FUDKII, FUDKOI, FUKAA, MERE, MCX-BB,
+ * MCX-BB-T1, MicroAlpha, Pivot).
+ *
+ * Walks the top-level object with Jackson's streaming parser instead of building a JsonNode tree:
+ * mapped fields are written into a fresh StrategySignal builder or captured for the consumer, unmapped
+ * fields (including nested objects/arrays) are skipped, and a failing gate (e.g. triggered=false,
+ * score below minimum) returns immediately without parsing the rest of the payload.
+ *
+ * Gates only fire on fields that are present; the consumer keeps its own checks for missing fields
+ * and fallbacks (e.g. MERE's mereScore).
+ */
+public final class StreamingSignalDecoder {
+
+    // Thread-safe once configured; parsers are per call
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private StreamingSignalDecoder() {
+    }
+
+    public static DecodedSignal decode(String payload, SignalFieldMapping mapping) throws IOException {
+        // Fresh builder per record: Lombok builders cannot be reset, a reused one would leak fields across signals
+        StrategySignal.StrategySignalBuilder builder = StrategySignal.builder();
+        mapping.applyDefaults(builder);
+        DecodedSignal out = new DecodedSignal(builder);
+
+        try (JsonParser p = JSON.createParser(payload)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(p, mapping.getStrategy() + " payload is not a JSON object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                SignalFieldMapping.Binding binding = mapping.binding(field);
+                if (binding == null || value == JsonToken.VALUE_NULL || value.isStructStart()) {
+                    p.skipChildren();
+                    continue;
+                }
+                String rejection = binding.read(field, p, builder, out);
+                if (rejection != null) {
+                    out.reject(rejection);
+                    return out;
+                }
+            }
+        }
+        return out;
+    }
+}
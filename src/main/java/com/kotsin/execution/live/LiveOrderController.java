@@ -1,8 +1,11 @@
 package com.kotsin.execution.live;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.kotsin.execution.broker.BrokerException;
 import com.kotsin.execution.broker.BrokerOrderService;
 import com.kotsin.execution.broker.FivePaisaBrokerService;
+import com.kotsin.execution.broker.OrderAck;
+import com.kotsin.execution.service.TelegramNotificationService;
 import com.kotsin.execution.service.WalletService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -10,8 +13,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Live Order Controller - Handles real broker orders via 5Paisa API.
@@ -35,6 +42,7 @@ public class LiveOrderController {
 
     private final FivePaisaBrokerService brokerService;
     private final WalletService walletService;
+    private final TelegramNotificationService telegramNotificationService;
 
     // Track live positions for SL/TP management
     private final ConcurrentHashMap<String, LivePosition> positions = new ConcurrentHashMap<>();
@@ -87,19 +95,49 @@ public class LiveOrderController {
                 ? BrokerOrderService.Side.BUY
                 : BrokerOrderService.Side.SELL;
 
-            String orderId;
             double fillPrice = req.limitPrice != null ? req.limitPrice : 0;
 
             // Place order with broker using numeric scripCode
-            if ("LIMIT".equalsIgnoreCase(req.type) && req.limitPrice != null && req.limitPrice > 0) {
-                orderId = brokerService.placeLimitOrder(
-                    numericScripCode, exch, exchType, side, req.qty, req.limitPrice);
+            boolean isLimit = "LIMIT".equalsIgnoreCase(req.type) && req.limitPrice != null && req.limitPrice > 0;
+            CompletableFuture<OrderAck> entryLeg = isLimit
+                ? brokerService.placeLimitOrderAsync(numericScripCode, exch, exchType, side, req.qty, req.limitPrice)
+                : brokerService.placeMarketOrderAsync(numericScripCode, exch, exchType, side, req.qty);
+            // Optional exchange-resident stop. It only goes out with the entry where the broker accepts it
+            // before the position exists and it cannot trigger against an unfilled entry; otherwise it
+            // is placed once the entry fills
+            boolean slRequested = Boolean.TRUE.equals(req.slOrder) && req.sl != null && req.sl > 0;
+            boolean slWithEntry = slRequested && brokerService.acceptsStopBeforeFill(exch, exchType, !isLimit);
+            BrokerOrderService.Side stopSide = side == BrokerOrderService.Side.BUY
+                ? BrokerOrderService.Side.SELL
+                : BrokerOrderService.Side.BUY;
+            CompletableFuture<OrderAck> slLeg = slWithEntry
+                ? brokerService.placeStopLossLimitOrderAsync(numericScripCode, exch, exchType, stopSide, req.qty, req.sl)
+                : null;
+            String orderId;
+            try {
+                orderId = await(entryLeg).orderId();
+            } catch (BrokerException e) {
+                // No position to protect: withdraw the stop so a failed entry leaves no orphan
+                if (slLeg != null) cancelOrphanSlOrder(numericScripCode, exch, slLeg);
+                throw e;
+            }
+            if (isLimit) {
                 log.info("✅ LIMIT order placed: orderId={}, scripCode={}, price={}", orderId, numericScripCode, req.limitPrice);
             } else {
-                orderId = brokerService.placeMarketOrder(
-                    numericScripCode, exch, exchType, side, req.qty);
                 log.info("✅ MARKET order placed: orderId={}, scripCode={}", orderId, numericScripCode);
             }
+            String slOrderId = null;
+            String slOrderError = null;
+            if (slLeg != null) {
+                try {
+                    slOrderId = await(slLeg).orderId();
+                    log.info("✅ SL order placed: orderId={}, scripCode={}, trigger={}", slOrderId, numericScripCode, req.sl);
+                } catch (BrokerException e) {
+                    // Entry is live; report the missing stop rather than failing the whole request
+                    slOrderError = e.getMessage();
+                    log.error("❌ SL order failed for {}: {}", numericScripCode, e.getMessage(), e);
+                }
+            }
 
             // Record in wallet
             walletService.recordOrder(req.scripCode, req.side, req.qty, fillPrice, "LIVE");
@@ -119,7 +157,11 @@ public class LiveOrderController {
             pos.setTrailingType(req.trailingType);
             pos.setTrailingValue(req.trailingValue);
             pos.setLastOrderId(orderId);
+            if (slOrderId != null) pos.getSlOrderIds().add(slOrderId);
             pos.setCreatedAt(System.currentTimeMillis());
+            if (slRequested && !slWithEntry) {
+                placeSlOrderAfterFill(pos, req.scripCode, numericScripCode, exch, exchType, stopSide, orderId, req.qty, req.sl);
+            }
 
             log.info("📊 Position tracked: scripCode={}, netQty={}, sl={}, tp1={}",
                 req.scripCode, pos.getQty(), pos.getSl(), pos.getTp1());
@@ -135,6 +177,9 @@ public class LiveOrderController {
             response.put("sl", req.sl != null ? req.sl : 0);
             response.put("tp1", req.tp1 != null ? req.tp1 : 0);
             response.put("tp2", req.tp2 != null ? req.tp2 : 0);
+            if (slOrderId != null) response.put("slOrderId", slOrderId);
+            if (slOrderError != null) response.put("slOrderError", slOrderError);
+            if (slRequested && !slWithEntry) response.put("slOrderStatus", "PENDING_FILL");
             response.put("ts", System.currentTimeMillis());
             return ResponseEntity.ok(response);
 
@@ -178,10 +223,12 @@ public class LiveOrderController {
                 ? BrokerOrderService.Side.SELL
                 : BrokerOrderService.Side.BUY;
             int qtyToClose = Math.abs(pos.getQty());
+            // Withdraw the exchange-resident stop first so it cannot fire against a closed position
+            cancelSlOrders(pos);
 
             // Place exit order
             String orderId = brokerService.placeMarketOrder(
-                scripCode, pos.getExch(), pos.getExchType(), exitSide, qtyToClose);
+                scripCode, pos.getExch(), pos.getExchType(), exitSide, qtyToClose, BrokerOrderService.Intent.EXIT);
 
             log.info("✅ Position closed: orderId={}, qty={}, side={}", orderId, qtyToClose, exitSide);
 
@@ -302,6 +349,94 @@ public class LiveOrderController {
         ));
     }
 
+    /**
+     * Cancel the exchange-resident stops placed for a position. The broker retries a cancel it cannot
+     * complete yet; one that still fails raises an operator alert, and the close goes ahead.
+     */
+    private void cancelSlOrders(LivePosition pos) {
+        List<String> slOrderIds;
+        synchronized (pos) {
+            pos.setSlGeneration(pos.getSlGeneration() + 1);
+            slOrderIds = List.copyOf(pos.getSlOrderIds());
+            pos.getSlOrderIds().clear();
+        }
+        for (String slOrderId : slOrderIds) {
+            cancelSlOrder(pos.getScripCode(), pos.getExch(), slOrderId);
+        }
+    }
+
+    /**
+     * Place the stop once the entry has filled, without holding the request. A close before the fill
+     * skips it; a close while the stop is in flight cancels it on arrival.
+     */
+    private void placeSlOrderAfterFill(LivePosition pos, String scripCode, String numericScripCode, String exch,
+                                       String exchType, BrokerOrderService.Side stopSide, String entryOrderId,
+                                       int qty, double trigger) {
+        int generation;
+        synchronized (pos) {
+            generation = pos.getSlGeneration();
+        }
+        brokerService.whenFilled(exch, entryOrderId)
+            .thenCompose(filled -> {
+                synchronized (pos) {
+                    if (pos.getSlGeneration() != generation) return CompletableFuture.<OrderAck>completedFuture(null);
+                }
+                return brokerService.placeStopLossLimitOrderAsync(numericScripCode, exch, exchType, stopSide, qty, trigger);
+            })
+            .whenComplete((ack, ex) -> {
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    log.error("❌ SL order not placed for {}: {}", scripCode, cause.getMessage());
+                    return;
+                }
+                if (ack == null) return;
+                boolean current;
+                synchronized (pos) {
+                    current = pos.getSlGeneration() == generation;
+                    if (current) pos.getSlOrderIds().add(ack.orderId());
+                }
+                if (current) {
+                    log.info("✅ SL order placed after fill: orderId={}, scripCode={}, trigger={}", ack.orderId(), scripCode, trigger);
+                } else {
+                    // Closed while the stop was in flight; the cancel blocks, so not on the broker's I/O thread
+                    CompletableFuture.runAsync(() -> cancelSlOrder(scripCode, exch, ack.orderId()));
+                }
+            });
+    }
+
+    /** The entry failed: cancel its stop leg if that one was placed. */
+    private void cancelOrphanSlOrder(String scripCode, String exch, CompletableFuture<OrderAck> slLeg) {
+        String slOrderId;
+        try {
+            slOrderId = await(slLeg).orderId();
+        } catch (BrokerException e) {
+            return; // never placed
+        }
+        cancelSlOrder(scripCode, exch, slOrderId);
+    }
+
+    private void cancelSlOrder(String scripCode, String exch, String slOrderId) {
+        try {
+            brokerService.cancelOrder(exch, slOrderId);
+            log.info("✅ SL order cancelled: orderId={}, scripCode={}", slOrderId, scripCode);
+        } catch (BrokerException e) {
+            log.error("❌ SL order cancel failed for {} (orderId={}): {}", scripCode, slOrderId, e.getMessage());
+            telegramNotificationService.sendAlert(String.format(
+                "Live SL order %s on %s could not be cancelled and may still be working: %s. Cancel it manually.",
+                slOrderId, scripCode, e.getMessage()));
+        }
+    }
+
+    /** Wait for a submitted leg, rethrowing the broker failure itself. */
+    private static OrderAck await(CompletableFuture<OrderAck> leg) {
+        try {
+            return leg.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
     // ========== DTOs ==========
 
     @Data
@@ -312,6 +447,7 @@ public class LiveOrderController {
         public int qty;
         public Double limitPrice;
         public Double sl;
+        public Boolean slOrder;  // also place sl as a resting stop-loss order at the broker
         public Double tp1;
         public Double tp2;
         public Double tp1ClosePercent;
@@ -352,6 +488,9 @@ public class LiveOrderController {
         private Double trailingValue;
         private boolean trailingActive = false;
         private String lastOrderId;
+        private List<String> slOrderIds = new CopyOnWriteArrayList<>();
+        @JsonIgnore
+        private int slGeneration; // bumped when the stops are cancelled; a stop still in flight is then withdrawn
         private long createdAt;
         private long updatedAt;
     }
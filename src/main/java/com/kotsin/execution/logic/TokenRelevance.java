@@ -0,0 +1,52 @@
+package com.kotsin.execution.logic;
+
+import java.util.Collection;
+
+/**
+ * Bitset of instrument tokens that TradeManager currently cares about (waiting + active trades).
+ *
+ * Written only when the watchlist changes, by publishing a freshly built word array; read on every
+ * market-data tick with one volatile load, a bounds check and a bit test — no locking, no allocation.
+ * Scrip codes that are not numeric tokens are ignored: ticks are keyed by token, so they never match.
+ */
+public final class TokenRelevance {
+
+    private static final long[] EMPTY = new long[0];
+
+    private volatile long[] words = EMPTY;
+
+    public boolean contains(int token) {
+        long[] w = words;
+        int idx = token >>> 6;
+        return token >= 0 && idx < w.length && (w[idx] & (1L << token)) != 0;
+    }
+
+    /** Replace the set with the tokens of {@code scripCodes}. */
+    public synchronized void rebuild(Collection<String> scripCodes) {
+        int max = -1;
+        for (String code : scripCodes) max = Math.max(max, parse(code));
+        if (max < 0) {
+            words = EMPTY;
+            return;
+        }
+        long[] w = new long[(max >>> 6) + 1];
+        for (String code : scripCodes) {
+            int token = parse(code);
+            if (token >= 0) w[token >>> 6] |= 1L << token;
+        }
+        words = w;
+    }
+
+    private static int parse(String scripCode) {
+        // Must be exactly String.valueOf(token): no sign, no leading zeros
+        if (scripCode == null || scripCode.isEmpty() || scripCode.length() > 10) return -1;
+        if (scripCode.length() > 1 && scripCode.charAt(0) == '0') return -1;
+        long v = 0;
+        for (int i = 0; i < scripCode.length(); i++) {
+            char c = scripCode.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v <= Integer.MAX_VALUE ? (int) v : -1;
+    }
+}
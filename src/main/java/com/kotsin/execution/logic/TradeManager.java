@@ -7,6 +7,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
 import com.kotsin.execution.service.*;
 import com.kotsin.execution.broker.BrokerOrderService;
+import com.kotsin.execution.broker.OrderAck;
+import com.kotsin.execution.tracking.service.SignalLatencyTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -19,6 +21,8 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -33,14 +37,20 @@ public class TradeManager {
     private final BrokerOrderService brokerOrderService;
     private final HistoricalDataClient historicalDataClient;
     private final RedisTemplate<String, String> executionStringRedisTemplate;
+    private final SignalLatencyTracker latencyTracker;
 
     @Value("${trade.options.slippage.ticks.exit:1}")
     private int optionSlippageTicksExit;
 
+    @Value("${trade.broker.protective-stop.enabled:false}")
+    private boolean protectiveStopEnabled;
+
     /** Waiting trades keyed by scripCode (unique per instrument). */
     private final Map<String, ActiveTrade> waitingTrades = new ConcurrentHashMap<>();
     /** Single active trade at a time (per current design). */
     private final AtomicReference<ActiveTrade> activeTrade = new AtomicReference<>();
+    /** Tokens of waiting + active trades, for the per-tick relevance check in LiveMarketDataConsumer. */
+    private final TokenRelevance relevantTokens = new TokenRelevance();
     /** Cooldown: prevent same-scrip re-entry within 5 minutes of exit. */
     private final Map<String, Instant> exitCooldown = new ConcurrentHashMap<>();
     private static final long COOLDOWN_MINUTES = 5;
@@ -124,7 +134,8 @@ public class TradeManager {
                     activeTrade.set(bestTrade);
                     // FIX: Only remove the executed trade, not all waiting trades
                     // This preserves other valid signals for future evaluation
-                    waitingTrades.remove(bestTrade);
+                    waitingTrades.remove(bestTrade.getScripCode());
+                    refreshRelevantTokens();
                     log.info("Removed executed trade from waiting list. Remaining: {}", waitingTrades.size());
                 }
             } else {
@@ -180,6 +191,7 @@ public class TradeManager {
 
         ActiveTrade trade = createBulletproofTrade(signal, signalReceivedTime);
         waitingTrades.put(trade.getScripCode(), trade);
+        refreshRelevantTokens();
         log.info("Added/Updated trade for {} to watchlist. Total watchlist size: {}", trade.getScripCode(), waitingTrades.size());
 
         // Preload 1-min history for the signal date; keep canonical key as companyName
@@ -239,18 +251,38 @@ public class TradeManager {
             String orderExType = metaStr(meta, "orderExchangeType", exchType);
             BrokerOrderService.Side side = trade.isBullish() ? BrokerOrderService.Side.BUY : BrokerOrderService.Side.SELL;
 
-            String orderId;
             boolean isOptionOrMcx = "M".equalsIgnoreCase(orderEx) || "D".equalsIgnoreCase(orderExType);
+            long submitStart = System.nanoTime();
+            CompletableFuture<OrderAck> entryLeg;
             if (isOptionOrMcx) {
                 double limit = entryPrice;
                 Object olpEntry = trade.getMetadata().get("orderLimitPriceEntry");
                 if (!(olpEntry instanceof Number)) olpEntry = trade.getMetadata().get("orderLimitPrice");
                 if (olpEntry instanceof Number n) limit = n.doubleValue();
-                orderId = brokerOrderService.placeLimitOrder(orderScrip, orderEx, orderExType, side, trade.getPositionSize(), limit);
+                entryLeg = brokerOrderService.placeLimitOrderAsync(orderScrip, orderEx, orderExType, side, trade.getPositionSize(), limit);
             } else {
-                orderId = brokerOrderService.placeMarketOrder(orderScrip, orderEx, orderExType, side, trade.getPositionSize());
+                entryLeg = brokerOrderService.placeMarketOrderAsync(orderScrip, orderEx, orderExType, side, trade.getPositionSize());
+            }
+            // The stop only rides along with the entry where the broker accepts it before the position
+            // exists and it cannot trigger against an unfilled entry; otherwise it follows the fill
+            boolean stopWithEntry = brokerOrderService.acceptsStopBeforeFill(orderEx, orderExType, !isOptionOrMcx);
+            CompletableFuture<OrderAck> stopLeg = stopWithEntry ? submitProtectiveStop(trade, trade.getPositionSize()) : null;
+            String orderId;
+            try {
+                orderId = awaitLeg(entryLeg).orderId();
+            } catch (RuntimeException entryFailed) {
+                // No position to protect: withdraw the stop so it cannot open one
+                if (recordProtectiveStop(trade, stopLeg)) cancelProtectiveStop(trade);
+                throw entryFailed;
             }
+            latencyTracker.record(SignalLatencyTracker.BROKER_SUBMIT, trade.getStrategyName(), orderEx,
+                    System.nanoTime() - submitStart);
             trade.addMetadata("brokerOrderId", orderId);
+            if (stopWithEntry) {
+                recordProtectiveStop(trade, stopLeg);
+            } else {
+                protectAfterFill(trade, orderEx, orderId, trade.getPositionSize());
+            }
             log.info("Broker order placed: id={} scrip={} side={} qty={} exch={} exType={}", orderId, orderScrip, side, trade.getPositionSize(), orderEx, orderExType);
             // Paper trading: record fill price for P&L (simulated at limit/market used) and publish entry
             double fill = ("M".equalsIgnoreCase(orderEx) || "D".equalsIgnoreCase(orderExType)) ?
@@ -275,6 +307,144 @@ public class TradeManager {
         }
     }
 
+    /**
+     * Place the exchange-resident stop-loss leg covering {@code qty} of an open trade and keep its id
+     * for {@link #cancelProtectiveStop}.
+     */
+    private void placeProtectiveStop(ActiveTrade trade, int qty) {
+        recordProtectiveStop(trade, submitProtectiveStop(trade, qty));
+    }
+
+    /**
+     * Send the stop-loss leg covering {@code qty}; null when disabled or when no stop price in
+     * order-instrument terms is known (option/MCX orders need an explicit {@code orderStopLossPrice};
+     * the signal's stop refers to the underlying).
+     */
+    private CompletableFuture<OrderAck> submitProtectiveStop(ActiveTrade trade, int qty) {
+        if (!protectiveStopEnabled || qty <= 0) return null;
+        Map<String, Object> meta = trade.getMetadata();
+        String orderScrip = metaStr(meta, "orderScripCode", trade.getScripCode());
+        String exch = metaStr(meta, "exchange", "N");
+        String orderEx = metaStr(meta, "orderExchange", exch);
+        String orderExType = metaStr(meta, "orderExchangeType", metaStr(meta, "exchangeType", defaultExchType(exch)));
+        boolean isOptionOrMcx = "M".equalsIgnoreCase(orderEx) || "D".equalsIgnoreCase(orderExType);
+        Object explicit = meta.get("orderStopLossPrice");
+        double stop = 0;
+        if (explicit instanceof Number n) stop = n.doubleValue();
+        else if (!isOptionOrMcx && trade.getStopLoss() != null) stop = trade.getStopLoss();
+        if (stop <= 0) return null;
+        BrokerOrderService.Side stopSide = trade.isBullish() ? BrokerOrderService.Side.SELL : BrokerOrderService.Side.BUY;
+        trade.addMetadata("protectiveStopTrigger", stop);
+        return brokerOrderService.placeStopLossLimitOrderAsync(orderScrip, orderEx, orderExType, stopSide, qty, stop);
+    }
+
+    /**
+     * Send the stop leg once the entry has filled, without holding the caller. An exit before the fill
+     * skips it; an exit while the stop is in flight withdraws it on arrival (see {@link #stopGeneration}).
+     */
+    private void protectAfterFill(ActiveTrade trade, String orderEx, String entryOrderId, int qty) {
+        if (!protectiveStopEnabled) return;
+        int generation;
+        synchronized (trade) {
+            generation = stopGeneration(trade);
+        }
+        brokerOrderService.whenFilled(orderEx, entryOrderId)
+                .thenCompose(filled -> {
+                    CompletableFuture<OrderAck> leg = null;
+                    synchronized (trade) {
+                        if (stopGeneration(trade) == generation) leg = submitProtectiveStop(trade, qty);
+                    }
+                    return leg != null ? leg : CompletableFuture.<OrderAck>completedFuture(null);
+                })
+                .whenComplete((ack, ex) -> adoptProtectiveStop(trade, generation, ack, ex));
+    }
+
+    private void adoptProtectiveStop(ActiveTrade trade, int generation, OrderAck ack, Throwable ex) {
+        if (ex != null) {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            synchronized (trade) {
+                trade.addMetadata("protectiveStopError", cause.toString());
+            }
+            log.error("Protective stop not placed for {}: {}", trade.getScripCode(), cause.toString());
+            return;
+        }
+        if (ack == null) return;
+        boolean current;
+        synchronized (trade) {
+            current = stopGeneration(trade) == generation;
+            if (current) trade.addMetadata("protectiveStopOrderId", ack.orderId());
+        }
+        if (current) {
+            log.info("Protective stop placed after fill: id={} scrip={} trigger={}", ack.orderId(), trade.getScripCode(),
+                    trade.getMetadata().get("protectiveStopTrigger"));
+        } else {
+            // The position was exited while the stop was in flight; the cancel blocks, so not on the broker's I/O thread
+            CompletableFuture.runAsync(() -> withdrawProtectiveStop(trade, ack.orderId()));
+        }
+    }
+
+    /** Bumped each time the stop is withdrawn, so a stop leg sent for the earlier position is not adopted. */
+    private static int stopGeneration(ActiveTrade trade) {
+        return trade.getMetadata().get("protectiveStopGen") instanceof Number n ? n.intValue() : 0;
+    }
+
+    /**
+     * Wait for a submitted stop leg and keep its id on the trade; true when it was placed. A failure is
+     * recorded on the trade, not thrown: the position is live.
+     */
+    private boolean recordProtectiveStop(ActiveTrade trade, CompletableFuture<OrderAck> stopLeg) {
+        if (stopLeg == null) return false;
+        try {
+            String stopId = awaitLeg(stopLeg).orderId();
+            trade.addMetadata("protectiveStopOrderId", stopId);
+            log.info("Protective stop placed: id={} scrip={} trigger={}", stopId, trade.getScripCode(),
+                    trade.getMetadata().get("protectiveStopTrigger"));
+            return true;
+        } catch (Exception ex) {
+            trade.addMetadata("protectiveStopError", ex.toString());
+            log.error("Protective stop failed for {}: {}", trade.getScripCode(), ex.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Withdraw the protective stop before an internal exit reduces or closes the position, so it
+     * cannot fire against quantity that is no longer held. The broker retries a cancel it cannot
+     * complete yet; one that still fails leaves a working stop, so it raises an operator alert.
+     */
+    private void cancelProtectiveStop(ActiveTrade trade) {
+        Object stopId;
+        synchronized (trade) {
+            trade.addMetadata("protectiveStopGen", stopGeneration(trade) + 1);
+            stopId = trade.getMetadata().remove("protectiveStopOrderId");
+        }
+        if (stopId != null) withdrawProtectiveStop(trade, stopId.toString());
+    }
+
+    private void withdrawProtectiveStop(ActiveTrade trade, String stopId) {
+        String orderEx = metaStr(trade.getMetadata(), "orderExchange", metaStr(trade.getMetadata(), "exchange", "N"));
+        try {
+            brokerOrderService.cancelOrder(orderEx, stopId);
+            log.info("Protective stop cancelled: id={} scrip={}", stopId, trade.getScripCode());
+        } catch (Exception ex) {
+            trade.addMetadata("protectiveStopCancelError", ex.toString());
+            log.error("Protective stop cancel failed for {} (id={}): {}", trade.getScripCode(), stopId, ex.toString());
+            telegramNotificationService.sendAlert(String.format(
+                    "Protective stop %s on %s (%s) could not be cancelled and may still be working: %s. Cancel it manually.",
+                    stopId, trade.getCompanyName(), trade.getScripCode(), ex.getMessage()));
+        }
+    }
+
+    /** Wait for a submitted leg, surfacing the broker failure rather than the CompletionException wrapper. */
+    private static OrderAck awaitLeg(CompletableFuture<OrderAck> leg) {
+        try {
+            return leg.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
     private ActiveTrade createBulletproofTrade(StrategySignal signal, LocalDateTime receivedTime) {
         String tradeId = "BT_" + signal.getNumericScripCode() + "_" + System.currentTimeMillis();
         
@@ -361,6 +531,22 @@ public class TradeManager {
         return activeTrade.get();
     }
 
+    /** Allocation-free relevance check for a market-data token (waiting or active trade). */
+    public boolean isRelevantToken(int token) {
+        return relevantTokens.contains(token);
+    }
+
+    /** Call after every change to waitingTrades or activeTrade. */
+    private void refreshRelevantTokens() {
+        // Snapshot under the same lock as the publish, so the newest snapshot is the one that sticks
+        synchronized (relevantTokens) {
+            List<String> scripCodes = new ArrayList<>(waitingTrades.keySet());
+            ActiveTrade at = activeTrade.get();
+            if (at != null) scripCodes.add(at.getScripCode());
+            relevantTokens.rebuild(scripCodes);
+        }
+    }
+
     public List<String> getWaitingTrade() {
         List<String> scripCodeList = new ArrayList<>();
         for (ActiveTrade t : waitingTrades.values()) {
@@ -489,6 +675,7 @@ public class TradeManager {
 
     /** Full exit: close position, publish result, clear active trade. */
     private void exitTrade(ActiveTrade trade, double exitPrice, String reason) {
+        cancelProtectiveStop(trade);
         // Place exit order via broker
         try {
             Map<String, Object> meta = trade.getMetadata();
@@ -522,9 +709,11 @@ public class TradeManager {
                 Object olpExit = trade.getMetadata().get("orderLimitPriceExit");
                 if (!(olpExit instanceof Number)) olpExit = trade.getMetadata().get("orderLimitPrice");
                 if (olpExit instanceof Number n) limit = n.doubleValue();
-                exitOrderId = brokerOrderService.placeLimitOrder(orderScrip, orderEx, orderExType, sideToClose, trade.getPositionSize(), limit);
+                exitOrderId = brokerOrderService.placeLimitOrder(orderScrip, orderEx, orderExType, sideToClose, trade.getPositionSize(), limit,
+                        BrokerOrderService.Intent.EXIT);
             } else {
-                exitOrderId = brokerOrderService.placeMarketOrder(orderScrip, orderEx, orderExType, sideToClose, trade.getPositionSize());
+                exitOrderId = brokerOrderService.placeMarketOrder(orderScrip, orderEx, orderExType, sideToClose, trade.getPositionSize(),
+                        BrokerOrderService.Intent.EXIT);
             }
             trade.addMetadata("exitOrderId", exitOrderId);
             log.info("Exit order placed: id={} scrip={} reason={}", exitOrderId, orderScrip, reason);
@@ -556,6 +745,7 @@ public class TradeManager {
         exitCooldown.put(trade.getScripCode(), Instant.now());
         // Remove from waiting to prevent immediate re-entry
         waitingTrades.remove(trade.getScripCode());
+        refreshRelevantTokens();
         log.info("Trade EXITED: {} reason={} exitPrice={} PnL={}",
                  trade.getScripCode(), reason, exitPrice,
                  (trade.isBullish() ? exitPrice - trade.getEntryPrice() : trade.getEntryPrice() - exitPrice));
@@ -563,6 +753,8 @@ public class TradeManager {
 
     /** Publish partial exit (T1) event to Kafka. */
     private void publishPartialExit(ActiveTrade trade, double exitPrice, int qty, String reason) {
+        // The stop covers the full quantity: withdraw it, then re-arm it for what is left
+        cancelProtectiveStop(trade);
         try {
             double fillEntry = trade.getEntryPrice();
             Object fe = trade.getMetadata().get("fillEntryPrice");
@@ -578,17 +770,20 @@ public class TradeManager {
             String exch = metaStr(meta2, "exchange", "N");
             String exType = metaStr(meta2, "exchangeType", defaultExchType(exch));
             BrokerOrderService.Side sideToClose = trade.isBullish() ? BrokerOrderService.Side.SELL : BrokerOrderService.Side.BUY;
-            String exitOrderId = brokerOrderService.placeMarketOrder(orderScrip, exch, exType, sideToClose, qty);
+            String exitOrderId = brokerOrderService.placeMarketOrder(orderScrip, exch, exType, sideToClose, qty,
+                    BrokerOrderService.Intent.EXIT);
             trade.addMetadata("partialExitOrderId", exitOrderId);
             log.info("Partial exit order: id={} scrip={} qty={} reason={} pnl={}", exitOrderId, orderScrip, qty, reason, pnl);
         } catch (Exception ex) {
             log.error("Partial exit failed for {}: {}", trade.getScripCode(), ex.getMessage());
         }
+        placeProtectiveStop(trade, trade.getPositionSize() - qty);
     }
 
     /** Force-exit trade at current market price. Used by SWITCH and EOD. */
     public void forceExitTrade(ActiveTrade trade, String reason) {
         double exitPrice = trade.getCurrentPrice() != null ? trade.getCurrentPrice() : trade.getEntryPrice();
+        cancelProtectiveStop(trade);
 
         // Place exit order via broker
         try {
@@ -597,7 +792,8 @@ public class TradeManager {
             String exch = metaStr(meta, "exchange", "N");
             String exType = metaStr(meta, "exchangeType", defaultExchType(exch));
             BrokerOrderService.Side sideToClose = trade.isBullish() ? BrokerOrderService.Side.SELL : BrokerOrderService.Side.BUY;
-            String exitOrderId = brokerOrderService.placeMarketOrder(orderScrip, exch, exType, sideToClose, trade.getPositionSize());
+            String exitOrderId = brokerOrderService.placeMarketOrder(orderScrip, exch, exType, sideToClose, trade.getPositionSize(),
+                    BrokerOrderService.Intent.EXIT);
             trade.addMetadata("exitOrderId", exitOrderId);
         } catch (Exception ex) {
             log.error("Force exit broker order failed for {}: {}", trade.getScripCode(), ex.getMessage());
@@ -620,6 +816,7 @@ public class TradeManager {
         activeTrade.set(null);
         exitCooldown.put(trade.getScripCode(), Instant.now());
         waitingTrades.remove(trade.getScripCode());
+        refreshRelevantTokens();
         log.info("FORCE_EXIT {} reason={} exitPrice={} pnl={}", trade.getScripCode(), reason, exitPrice, pnl);
     }
 
@@ -636,6 +833,7 @@ public class TradeManager {
         if (!waitingTrades.isEmpty()) {
             log.info("EOD clearing {} stale waiting trades", waitingTrades.size());
             waitingTrades.clear();
+            refreshRelevantTokens();
         }
         if (!exitCooldown.isEmpty()) {
             exitCooldown.clear();
@@ -1,10 +1,14 @@
 package com.kotsin.execution.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.kotsin.execution.tracking.model.SignalLatency;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.util.List;
 
@@ -160,6 +164,13 @@ public class StrategySignal {
     private String optionLotAllocation;  // e.g. "40,30,20,10" or "100,0,0,0" (theta impaired)
     private boolean optionLtpDeferred;   // true = swap succeeded but LTP deferred to batch resolution
     private double leftoverCapital;      // Capital remaining after lot rounding (cascades to next rank)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private SignalLatency latency;       // Per-hop latency since Kafka receipt (set at SignalBufferService intake)
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long optionLtpResolvedAt;    // Epoch ms the deferred option LTP was resolved (0 = not resolved here)
     // Cross-instrument futures SL/targets
     private double futuresSL;
     private double futuresT1;
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kotsin.execution.virtual.PriceProvider;
 import com.kotsin.execution.virtual.VirtualEngineService;
+import com.kotsin.execution.virtual.VirtualPositionBook;
 import com.kotsin.execution.virtual.VirtualWalletRepository;
 import com.kotsin.execution.virtual.model.VirtualOrder;
 import com.kotsin.execution.virtual.model.VirtualPosition;
@@ -36,6 +37,9 @@ public class CuratedSignalConsumer {
     @Autowired
     private VirtualWalletRepository walletRepo;
 
+    @Autowired
+    private VirtualPositionBook positionBook;
+
     @Autowired
     private PriceProvider priceProvider;
 
@@ -177,11 +181,10 @@ public class CuratedSignalConsumer {
             VirtualOrder executed = virtualEngine.createOrder(order);
 
             // Update the position with signalId
-            walletRepo.getPosition(signal.getScripCode()).ifPresent(position -> {
+            positionBook.modify(signal.getScripCode(), position -> {
                 position.setSignalId(signal.getSignalId());
                 position.setSignalType("BREAKOUT_RETEST");
                 position.setPositionSizeMultiplier(multiplier);
-                walletRepo.savePosition(position);
             });
 
             log.info("PAPER TRADE ENTRY | {} | side={} | qty={} | price={} | SL={} | TP={} | signalId={}",
@@ -66,10 +66,16 @@ public class RiskMonitorService {
             Map<String, Double> walletPnl = new HashMap<>();
             double totalUnrealizedPnl = 0;
 
+            // BULK-LTP: one round of parallel price I/O for all open positions
+            Map<String, Double> ltps = priceProvider.getLtps(positions.stream()
+                    .filter(p -> p.getQtyOpen() > 0)
+                    .map(VirtualPosition::getScripCode)
+                    .toList());
+
             for (VirtualPosition position : positions) {
                 if (position.getQtyOpen() <= 0) continue;
 
-                Double ltp = priceProvider.getLtp(position.getScripCode());
+                Double ltp = ltps.get(position.getScripCode());
                 if (ltp == null) continue;
 
                 double positionPnl;
@@ -0,0 +1,204 @@
+package com.kotsin.execution.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Sizes SignalBufferService's batch window from observed signal arrivals instead of fixed
+ * time-of-day windows.
+ *
+ * Every submitted signal is recorded per exchange. A batch is first checked after {@code floor-ms};
+ * at each check the window asks how likely it is that another signal arrives within the next
+ * {@code check-interval-ms}, per exchange, from the recent inter-arrival gaps conditioned on the
+ * time since that exchange's last signal (Poisson on the lookback rate when history is thin).
+ * Below {@code min-arrival-probability} waiting is not worth the latency and the batch closes;
+ * during bursts it keeps extending up to {@code ceiling-ms}.
+ *
+ * Metrics: signal.batch.window.ms and signal.batch.size per close reason,
+ * signal.batch.window.decisions per decision, signal.batch.arrival.rate.per.min per exchange.
+ */
+@Component
+@Slf4j
+public class AdaptiveBatchWindow {
+
+    static final String REASON_CEILING = "CEILING";
+    static final String REASON_LOW_BENEFIT = "LOW_MARGINAL_BENEFIT";
+    static final String REASON_FIXED = "FIXED_TIME_OF_DAY";
+    static final String DECISION_EXTEND = "EXTEND";
+
+    private static final int HISTORY = 64;
+    private static final int MIN_SAMPLES = 8;
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final long floorMs;
+    private final long ceilingMs;
+    private final long checkIntervalMs;
+    private final double minArrivalProbability;
+    private final long lookbackMs;
+    private final LongSupplier clock;
+
+    private final Map<String, ArrivalHistory> arrivals = new ConcurrentHashMap<>();
+    private final Map<String, Counter> decisions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AdaptiveBatchWindow(MeterRegistry registry,
+                               @Value("${signal.batch.adaptive.enabled:true}") boolean enabled,
+                               @Value("${signal.batch.adaptive.floor-ms:1000}") long floorMs,
+                               @Value("${signal.batch.adaptive.ceiling-ms:8000}") long ceilingMs,
+                               @Value("${signal.batch.adaptive.check-interval-ms:500}") long checkIntervalMs,
+                               @Value("${signal.batch.adaptive.min-arrival-probability:0.25}") double minArrivalProbability,
+                               @Value("${signal.batch.adaptive.lookback-ms:600000}") long lookbackMs) {
+        this(registry, enabled, floorMs, ceilingMs, checkIntervalMs, minArrivalProbability, lookbackMs,
+                System::currentTimeMillis);
+    }
+
+    AdaptiveBatchWindow(MeterRegistry registry, boolean enabled, long floorMs, long ceilingMs,
+                        long checkIntervalMs, double minArrivalProbability, long lookbackMs, LongSupplier clock) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.floorMs = Math.max(0, floorMs);
+        this.ceilingMs = Math.max(this.floorMs, ceilingMs);
+        this.checkIntervalMs = Math.max(50, checkIntervalMs);
+        this.minArrivalProbability = minArrivalProbability;
+        this.lookbackMs = Math.max(1000, lookbackMs);
+        this.clock = clock;
+    }
+
+    /** Record a signal arrival on {@code exchange} ("N" when unset). */
+    public void recordArrival(String exchange) {
+        String key = exchange == null || exchange.isEmpty() ? "N" : exchange.toUpperCase();
+        arrivals.computeIfAbsent(key, this::newHistory).record(clock.getAsLong());
+    }
+
+    /** Window policy for the signal batch; {@code fixedWindowMs} is used when adaptation is disabled. */
+    public <K, V> BatchAccumulator.WindowPolicy<K, V> policy(LongSupplier fixedWindowMs) {
+        return new BatchAccumulator.WindowPolicy<>() {
+            @Override
+            public long firstCheckMs(BatchAccumulator.Batch<K, V> batch) {
+                return enabled ? floorMs : fixedWindowMs.getAsLong();
+            }
+
+            @Override
+            public long extendMs(BatchAccumulator.Batch<K, V> batch) {
+                if (!enabled) {
+                    recordClose(batch, REASON_FIXED);
+                    return 0;
+                }
+                long age = clock.getAsLong() - batch.createdAtMillis();
+                long step = Math.min(checkIntervalMs, ceilingMs - age);
+                if (step <= 0) {
+                    recordClose(batch, REASON_CEILING);
+                    return 0;
+                }
+                double p = arrivalProbability(step);
+                if (p < minArrivalProbability) {
+                    recordClose(batch, REASON_LOW_BENEFIT);
+                    return 0;
+                }
+                decision(DECISION_EXTEND).increment();
+                log.debug("BATCH_window_extend ageMs={} size={} pNextArrival={} stepMs={}",
+                        age, batch.entries().size(), String.format("%.2f", p), step);
+                return step;
+            }
+        };
+    }
+
+    /** Probability that at least one exchange sees another signal within {@code horizonMs}. */
+    double arrivalProbability(long horizonMs) {
+        long now = clock.getAsLong();
+        double none = 1.0;
+        for (ArrivalHistory h : arrivals.values()) {
+            none *= 1.0 - h.probabilityWithin(now, horizonMs);
+        }
+        return 1.0 - none;
+    }
+
+    private void recordClose(BatchAccumulator.Batch<?, ?> batch, String reason) {
+        long windowMs = clock.getAsLong() - batch.createdAtMillis();
+        int size = batch.entries().size();
+        DistributionSummary.builder("signal.batch.window.ms").baseUnit("milliseconds")
+                .tag("reason", reason).register(registry).record(windowMs);
+        DistributionSummary.builder("signal.batch.size").tag("reason", reason)
+                .register(registry).record(size);
+        decision(reason).increment();
+        log.info("BATCH_window_closed windowMs={} size={} reason={}", windowMs, size, reason);
+    }
+
+    private Counter decision(String decision) {
+        return decisions.computeIfAbsent(decision,
+                d -> registry.counter("signal.batch.window.decisions", "decision", d));
+    }
+
+    private ArrivalHistory newHistory(String exchange) {
+        ArrivalHistory h = new ArrivalHistory();
+        registry.gauge("signal.batch.arrival.rate.per.min", Tags.of("exchange", exchange), h,
+                x -> x.ratePerMinute(clock.getAsLong()));
+        return h;
+    }
+
+    /** Last {@link #HISTORY} arrival times of one exchange; lock-free, written on the intake path. */
+    private final class ArrivalHistory {
+        private final AtomicLongArray times = new AtomicLongArray(HISTORY);
+        private final AtomicLong count = new AtomicLong();
+
+        void record(long at) {
+            long i = count.getAndIncrement();
+            times.set((int) (i % HISTORY), at);
+        }
+
+        /** Arrival times within the lookback, ascending. */
+        long[] recent(long now) {
+            int n = (int) Math.min(count.get(), HISTORY);
+            long[] out = new long[n];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                long t = times.get(i);
+                if (t > 0 && now - t <= lookbackMs) out[k++] = t;
+            }
+            long[] recent = Arrays.copyOf(out, k);
+            Arrays.sort(recent);
+            return recent;
+        }
+
+        double ratePerMinute(long now) {
+            return recent(now).length * 60_000.0 / lookbackMs;
+        }
+
+        /**
+         * P(next arrival within {@code horizonMs} | none for the time since the last one), from the
+         * empirical gap distribution; Poisson on the lookback rate when there are too few gaps.
+         */
+        double probabilityWithin(long now, long horizonMs) {
+            long[] t = recent(now);
+            if (t.length == 0) return 0.0;
+            long sinceLast = now - t[t.length - 1];
+            if (t.length > MIN_SAMPLES) {
+                int survivors = 0, hits = 0;
+                for (int i = 1; i < t.length; i++) {
+                    long gap = t[i] - t[i - 1];
+                    if (gap > sinceLast) {
+                        survivors++;
+                        if (gap <= sinceLast + horizonMs) hits++;
+                    }
+                }
+                if (survivors >= MIN_SAMPLES / 2) return (double) hits / survivors;
+            }
+            double ratePerMs = (double) t.length / lookbackMs;
+            return 1.0 - Math.exp(-ratePerMs * horizonMs);
+        }
+    }
+}
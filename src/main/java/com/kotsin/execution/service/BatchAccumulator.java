@@ -0,0 +1,186 @@
+package com.kotsin.execution.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free accumulator for time-windowed batches (SignalBufferService's shared signal batch).
+ *
+ * The open batch lives in an AtomicReference and producers add to its ConcurrentHashMap without a
+ * monitor; the first producer to win the CAS on the batch's timer flag arms the close timer.
+ * Closing swaps the reference to null (the next add opens a fresh batch), seals the batch so no new
+ * producer can enter it, waits out the producers already inside their put, and only then hands it
+ * to the close handler — an entry is never lost between batches nor evaluated twice.
+ *
+ * When a batch closes is decided by a {@link WindowPolicy}: a first check after the initial window,
+ * then either close or keep waiting and check again.
+ */
+public final class BatchAccumulator<K, V> {
+
+    /** Decides when an open batch closes. */
+    public interface WindowPolicy<K, V> {
+        /** Delay from a batch's first entry to its first close check. */
+        long firstCheckMs(Batch<K, V> batch);
+
+        /** At a check: ms to keep the batch open before checking again, or {@code <= 0} to close it now. */
+        long extendMs(Batch<K, V> batch);
+    }
+
+    /** One window's worth of entries. */
+    public static final class Batch<K, V> {
+        private static final int SEALED = Integer.MIN_VALUE;
+
+        private final long createdAtMillis = System.currentTimeMillis();
+        private final ConcurrentHashMap<K, V> entries = new ConcurrentHashMap<>();
+        // SEALED bit | number of producers currently inside add()
+        private final AtomicInteger state = new AtomicInteger();
+        private final AtomicBoolean timerArmed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timer;
+
+        public Map<K, V> entries() {
+            return entries;
+        }
+
+        public long createdAtMillis() {
+            return createdAtMillis;
+        }
+
+        private boolean isSealed() {
+            return state.get() < 0;
+        }
+
+        private boolean enter() {
+            for (;;) {
+                int s = state.get();
+                if (s < 0) return false;
+                if (state.compareAndSet(s, s + 1)) return true;
+            }
+        }
+
+        private void exit() {
+            state.decrementAndGet();
+        }
+
+        /** Seal and wait for producers already inside. False if someone else sealed it first. */
+        private boolean seal() {
+            for (;;) {
+                int s = state.get();
+                if (s < 0) return false;
+                if (state.compareAndSet(s, s | SEALED)) break;
+            }
+            // Producers inside only hold the batch for one map put
+            while (state.get() != SEALED) Thread.onSpinWait();
+            return true;
+        }
+    }
+
+    private final AtomicReference<Batch<K, V>> current = new AtomicReference<>();
+    private final ScheduledExecutorService scheduler;
+    private final WindowPolicy<K, V> policy;
+    private final Consumer<Batch<K, V>> onClose;
+
+    /**
+     * @param policy  decides when each batch closes
+     * @param onClose runs on the scheduler thread with the sealed batch
+     */
+    public BatchAccumulator(ScheduledExecutorService scheduler, WindowPolicy<K, V> policy,
+                            Consumer<Batch<K, V>> onClose) {
+        this.scheduler = scheduler;
+        this.policy = policy;
+        this.onClose = onClose;
+    }
+
+    /** Fixed window, evaluated when a batch receives its first entry. */
+    public BatchAccumulator(ScheduledExecutorService scheduler, LongSupplier windowMs,
+                            Consumer<Batch<K, V>> onClose) {
+        this(scheduler, new WindowPolicy<>() {
+            @Override
+            public long firstCheckMs(Batch<K, V> batch) {
+                return windowMs.getAsLong();
+            }
+
+            @Override
+            public long extendMs(Batch<K, V> batch) {
+                return 0;
+            }
+        }, onClose);
+    }
+
+    /**
+     * Add (or replace) {@code key} in the open batch, opening one if needed.
+     *
+     * @return the window in ms if this call armed the batch timer, -1 otherwise
+     */
+    public long add(K key, V value) {
+        for (;;) {
+            Batch<K, V> batch = current.get();
+            if (batch == null) {
+                Batch<K, V> fresh = new Batch<>();
+                if (!current.compareAndSet(null, fresh)) continue;
+                batch = fresh;
+            }
+            if (!batch.enter()) {
+                current.compareAndSet(batch, null); // Closing — make sure the next round opens a new one
+                continue;
+            }
+            try {
+                batch.entries.put(key, value);
+            } finally {
+                batch.exit();
+            }
+            if (!batch.timerArmed.compareAndSet(false, true)) return -1;
+
+            long window = Math.max(0, policy.firstCheckMs(batch));
+            final Batch<K, V> armed = batch;
+            try {
+                armed.timer = scheduler.schedule(() -> check(armed), window, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down — closeNow() flushes the open batch
+            }
+            return window;
+        }
+    }
+
+    /** Entries in the currently open batch (0 if none). */
+    public int openSize() {
+        Batch<K, V> batch = current.get();
+        return batch != null ? batch.entries.size() : 0;
+    }
+
+    /** Detach and seal the open batch immediately (shutdown flush). Null if there is none. */
+    public Batch<K, V> closeNow() {
+        Batch<K, V> batch = current.getAndSet(null);
+        if (batch == null || !batch.seal()) return null;
+        ScheduledFuture<?> timer = batch.timer;
+        if (timer != null) timer.cancel(false);
+        return batch;
+    }
+
+    private void check(Batch<K, V> batch) {
+        if (batch.isSealed()) return;
+        long more = policy.extendMs(batch);
+        if (more > 0) {
+            try {
+                batch.timer = scheduler.schedule(() -> check(batch), more, TimeUnit.MILLISECONDS);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Shutting down — close now rather than strand the batch
+            }
+        }
+        close(batch);
+    }
+
+    private void close(Batch<K, V> batch) {
+        current.compareAndSet(batch, null);
+        if (batch.seal()) onClose.accept(batch);
+    }
+}
@@ -1,10 +1,17 @@
 package com.kotsin.execution.service;
 
 import com.google.common.util.concurrent.RateLimiter;
+import com.kotsin.execution.service.PriorityRateLimiter.Priority;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -16,36 +23,58 @@ import java.util.concurrent.TimeUnit;
  * - Position updates
  * - Market data requests
  * 
- * Uses Google Guava RateLimiter for smooth, thread-safe rate limiting
+ * Uses Google Guava RateLimiter for smooth, thread-safe rate limiting. Order-API calls share one
+ * {@link PriorityRateLimiter} instead: exits and stop-loss changes are served ahead of entries, and
+ * entries ahead of status polls; permits can be awaited without blocking, and the rate backs off
+ * when the broker throttles (HTTP 429 / RMS rate messages) and recovers as calls go through.
  */
 @Service
 @Slf4j
 public class BrokerRateLimiterService {
     
     // Rate limiters (permits per second)
-    private RateLimiter orderLimiter;
+    private PriorityRateLimiter orderLimiter;
     private RateLimiter quoteLimiter;
     private RateLimiter positionLimiter;
     private RateLimiter marketDataLimiter;
     
     // Configuration (adjust based on broker's actual limits)
-    private static final double ORDERS_PER_SECOND = 50.0; // Conservative: 50/sec (brokers allow 100-200/sec)
+    // Order API: conservative 50/sec (brokers allow 100-200/sec); adaptive below this ceiling
+    @Value("${broker.ratelimit.orders-per-second:50}")
+    private double ordersPerSecond;
+    @Value("${broker.ratelimit.order-burst:10}")
+    private double orderBurst;
+    @Value("${broker.ratelimit.max-wait-ms:5000}")
+    private long orderMaxWaitMs;
     private static final double QUOTES_PER_SECOND = 500.0; // 500/sec  
     private static final double POSITIONS_PER_SECOND = 20.0; // 20/sec
     private static final double MARKET_DATA_PER_SECOND = 100.0; // 100/sec
     
     // Timeout for acquiring permits (prevent infinite blocking)
     private static final long ACQUIRE_TIMEOUT_SECONDS = 5;
+
+    private final MeterRegistry meterRegistry;
+    // Completes queued order permits; continuations (request enqueue) run here and must not block
+    private final ScheduledExecutorService permitScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "broker-ratelimit");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public BrokerRateLimiterService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
     
     @PostConstruct
     public void init() {
-        orderLimiter = RateLimiter.create(ORDERS_PER_SECOND);
+        orderLimiter = new PriorityRateLimiter("orders", ordersPerSecond, orderBurst, orderMaxWaitMs,
+                permitScheduler, meterRegistry);
         quoteLimiter = RateLimiter.create(QUOTES_PER_SECOND);
         positionLimiter = RateLimiter.create(POSITIONS_PER_SECOND);
         marketDataLimiter = RateLimiter.create(MARKET_DATA_PER_SECOND);
         
         log.info("🚦 Rate limiters initialized | orders={}/s quotes={}/s positions={}/s marketData={}/s",
-                ORDERS_PER_SECOND, QUOTES_PER_SECOND, POSITIONS_PER_SECOND, MARKET_DATA_PER_SECOND);
+                ordersPerSecond, QUOTES_PER_SECOND, POSITIONS_PER_SECOND, MARKET_DATA_PER_SECOND);
     }
     
     /**
@@ -55,13 +84,49 @@ public class BrokerRateLimiterService {
      * @return true if permit acquired, false if timeout
      */
     public boolean acquireOrderPermit() {
-        boolean acquired = orderLimiter.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return acquireOrderPermit(Priority.ENTRY);
+    }
+
+    /**
+     * Acquire order-API permit for a request class, blocking up to the configured max wait
+     */
+    public boolean acquireOrderPermit(Priority priority) {
+        boolean acquired = orderLimiter.acquire(priority, orderMaxWaitMs, TimeUnit.MILLISECONDS);
         if (!acquired) {
-            log.error("🚦 ❌ ORDER rate limit timeout after {}s | Current rate: {}/s",
-                    ACQUIRE_TIMEOUT_SECONDS, orderLimiter.getRate());
+            log.error("🚦 ❌ ORDER {} rate limit timeout after {}ms | Current rate: {}/s",
+                    priority, orderMaxWaitMs, orderLimiter.getRate());
         }
         return acquired;
     }
+
+    /**
+     * Non-blocking order-API permit: completes when granted (continuations run on the limiter
+     * thread), or fails with TimeoutException after the configured max wait
+     */
+    public CompletableFuture<Void> acquireOrderPermitAsync(Priority priority) {
+        return orderLimiter.acquire(priority);
+    }
+
+    /**
+     * Order-API permit only if one is free right now (e.g. for polls that can skip a cycle)
+     */
+    public boolean tryAcquireOrderPermit(Priority priority) {
+        return orderLimiter.tryAcquire(priority);
+    }
+
+    /**
+     * Broker signalled throttling on the order API: back the rate off
+     */
+    public void onOrderThrottled() {
+        orderLimiter.onThrottled();
+    }
+
+    /**
+     * Order-API call accepted: let the rate recover towards the configured ceiling
+     */
+    public void onOrderSuccess() {
+        orderLimiter.onSuccess();
+    }
     
     /**
      * Acquire permit for quote fetching
@@ -103,7 +168,7 @@ public class BrokerRateLimiterService {
      * Acquire permit with custom timeout
      */
     public boolean acquireOrderPermitWithTimeout(long timeout, TimeUnit unit) {
-        boolean acquired = orderLimiter.tryAcquire(timeout, unit);
+        boolean acquired = orderLimiter.acquire(Priority.ENTRY, timeout, unit);
         if (!acquired) {
             log.warn("🚦 ⚠️ ORDER rate limit timeout after {} {}",
                     timeout, unit);
@@ -130,6 +195,11 @@ public class BrokerRateLimiterService {
         orderLimiter.setRate(permitsPerSecond);
         log.info("🚦 Order rate limit adjusted to {}/s", permitsPerSecond);
     }
+
+    @PreDestroy
+    public void shutdown() {
+        permitScheduler.shutdownNow();
+    }
     
     public record RateLimiterStats(
             double orderRate,
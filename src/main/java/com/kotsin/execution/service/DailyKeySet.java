@@ -0,0 +1,47 @@
+package com.kotsin.execution.service;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Set of keys that only holds the current day's entries.
+ *
+ * The first access on a new day swaps in an empty set, so yesterday's keys are dropped in one step
+ * and memory stays bounded by a single day's worth — no date suffix in the keys, no cleanup pass.
+ */
+public final class DailyKeySet {
+
+    private record Day(LocalDate date, Set<String> keys) {}
+
+    private final Supplier<LocalDate> today;
+    private final AtomicReference<Day> current;
+
+    public DailyKeySet(Supplier<LocalDate> today) {
+        this.today = today;
+        this.current = new AtomicReference<>(new Day(today.get(), ConcurrentHashMap.newKeySet()));
+    }
+
+    public boolean contains(String key) {
+        return day().keys().contains(key);
+    }
+
+    /** @return true if {@code key} was not yet set today */
+    public boolean add(String key) {
+        return day().keys().add(key);
+    }
+
+    public int size() {
+        return day().keys().size();
+    }
+
+    private Day day() {
+        LocalDate date = today.get();
+        Day cur = current.get();
+        if (!date.isAfter(cur.date())) return cur;
+        Day next = new Day(date, ConcurrentHashMap.newKeySet());
+        return current.compareAndSet(cur, next) ? next : current.get();
+    }
+}
@@ -0,0 +1,105 @@
+package com.kotsin.execution.service;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrent map whose entries expire after a per-entry TTL, evicted by a hashed time wheel.
+ *
+ * Each put also files the key in the wheel slot of its expiry tick. {@link #sweep()} (run
+ * periodically by the owner, e.g. on a scheduler) only visits the slots whose ticks have passed since
+ * the previous sweep, so eviction costs O(1) amortised per entry and never scans the whole map.
+ * Readers never see an expired entry even between sweeps.
+ *
+ * A TTL longer than the wheel span ({@code slots × tickMs}) still works: the key is simply
+ * re-filed when its slot comes round early.
+ */
+public final class ExpiringMap<K, V> {
+
+    private record Entry<V>(V value, long expiresAtMillis) {}
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<K>[] wheel;
+    private final long tickMs;
+    private final LongSupplier clock;
+    // Last fully elapsed tick already swept
+    private long sweptTick;
+
+    public ExpiringMap(int slots, long tickMs) {
+        this(slots, tickMs, System::currentTimeMillis);
+    }
+
+    @SuppressWarnings("unchecked")
+    ExpiringMap(int slots, long tickMs, LongSupplier clock) {
+        this.wheel = new Queue[Math.max(1, slots)];
+        for (int i = 0; i < wheel.length; i++) wheel[i] = new ConcurrentLinkedQueue<>();
+        this.tickMs = Math.max(1, tickMs);
+        this.clock = clock;
+        this.sweptTick = clock.getAsLong() / this.tickMs - 1;
+    }
+
+    /** Insert or replace {@code key}, expiring {@code ttlMs} from now. */
+    public void put(K key, V value, long ttlMs) {
+        long expiresAt = clock.getAsLong() + Math.max(0, ttlMs);
+        entries.put(key, new Entry<>(value, expiresAt));
+        wheel[slotOf(expiresAt)].add(key);
+    }
+
+    /** Live value for {@code key}, or null if absent or expired. */
+    public V get(K key) {
+        Entry<V> e = entries.get(key);
+        if (e == null) return null;
+        if (e.expiresAtMillis() <= clock.getAsLong()) {
+            entries.remove(key, e);
+            return null;
+        }
+        return e.value();
+    }
+
+    /** Remove {@code key}; returns its live value, or null if absent or expired. Its wheel slot is skipped on sweep. */
+    public V remove(K key) {
+        Entry<V> e = entries.remove(key);
+        if (e == null || e.expiresAtMillis() <= clock.getAsLong()) return null;
+        return e.value();
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /** Entries held, including any expired since the last sweep. */
+    public int size() {
+        return entries.size();
+    }
+
+    /** Evict everything whose expiry tick has fully passed since the previous sweep. */
+    public synchronized void sweep() {
+        long now = clock.getAsLong();
+        long lastDone = now / tickMs - 1;
+        // After a long pause, one full rotation visits every slot
+        long from = Math.max(sweptTick + 1, lastDone - wheel.length + 1);
+        for (long t = from; t <= lastDone; t++) {
+            int slot = (int) (t % wheel.length);
+            Queue<K> bucket = wheel[slot];
+            for (int n = bucket.size(); n > 0; n--) {
+                K key = bucket.poll();
+                if (key == null) break;
+                Entry<V> e = entries.get(key);
+                if (e == null) continue;
+                if (e.expiresAtMillis() <= now) {
+                    entries.remove(key, e);
+                } else if (slotOf(e.expiresAtMillis()) == slot) {
+                    bucket.add(key); // Due on a later rotation
+                }
+                // Otherwise the key was re-put and is filed under its new slot
+            }
+        }
+        sweptTick = Math.max(sweptTick, lastDone);
+    }
+
+    private int slotOf(long atMillis) {
+        return (int) ((atMillis / tickMs) % wheel.length);
+    }
+}
@@ -2,10 +2,9 @@ package com.kotsin.execution.service;
 
 import com.kotsin.execution.broker.BrokerOrderService;
 import com.kotsin.execution.broker.FivePaisaBrokerService;
+import com.kotsin.execution.broker.OrderStatusUpdate;
 import com.kotsin.execution.model.ActiveTrade;
 import lombok.extern.slf4j.Slf4j;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -22,10 +21,10 @@ import java.util.function.Consumer;
  * CRITICAL PRODUCTION COMPONENT - Ensures orders are filled correctly.
  *
  * Features:
- * 1. Order status polling with retry
+ * 1. Order status from the broker's consolidated status feed (WebSocket push, batched poll fallback)
  * 2. Exponential backoff for failed orders
  * 3. Webhook handling for real-time updates (via broker WebSocket)
- * 4. Scheduled verification of pending orders
+ * 4. Scheduled re-registration of pending orders with the status feed
  * 5. Partial fill detection
  * 6. Order rejection handling with retry
  *
@@ -57,12 +56,28 @@ public class OrderVerificationService {
     @Value("${broker.order.verification-timeout-ms:30000}")
     private long verificationTimeoutMs;
 
+    private static final int MAX_VERIFICATION_ATTEMPTS = 10;
+
     // Pending orders awaiting verification
     private final Map<String, PendingOrder> pendingOrders = new ConcurrentHashMap<>();
 
     // Scheduled executor for delayed verification
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
 
+    /**
+     * Subscribe to the broker's status feed instead of polling per order: one reconciliation
+     * loop in FivePaisaBrokerService serves every pending order.
+     */
+    @jakarta.annotation.PostConstruct
+    void subscribeToOrderStatus() {
+        brokerService.addOrderStatusListener(update -> {
+            if (pendingOrders.containsKey(update.remoteOrderId())) {
+                // Off the broker's I/O thread: callbacks and retries may place orders
+                scheduler.execute(() -> applyStatus(update));
+            }
+        });
+    }
+
     /**
      * Track an order for verification
      *
@@ -109,12 +124,8 @@ public class OrderVerificationService {
         log.info("📝 [ORDER-VERIFY] Tracking order: id={}, scrip={}, type={}, qty={}",
                 orderId, trade.getScripCode(), orderType, trade.getPositionSize());
 
-        // Schedule verification after 5 seconds (allows broker to process)
-        scheduler.schedule(
-                () -> verifyOrder(orderId),
-                5,
-                TimeUnit.SECONDS
-        );
+        // Status arrives through the broker's consolidated feed
+        brokerService.watchOrder(exchange, orderId);
 
         // Schedule timeout check
         scheduler.schedule(
@@ -145,98 +156,53 @@ public class OrderVerificationService {
     }
 
     /**
-     * Verify order status with broker
+     * Apply a broker status update to the order it belongs to
      */
-    private void verifyOrder(String orderId) {
+    private void applyStatus(OrderStatusUpdate update) {
+        String orderId = update.remoteOrderId();
         PendingOrder pending = pendingOrders.get(orderId);
         if (pending == null) {
             log.debug("[ORDER-VERIFY] Order {} already processed", orderId);
             return;
         }
 
-        try {
-            log.debug("🔍 [ORDER-VERIFY] Checking status for order: {}", orderId);
-
-            // Fetch order book to check status
-            JSONObject orderBook = brokerService.fetchOrderBook();
-            OrderStatus status = parseOrderStatus(orderBook, orderId, pending);
-
-            if (status == null) {
-                log.warn("⚠️ [ORDER-VERIFY] Order {} not found in order book", orderId);
-                scheduleRetry(orderId, pending);
-                return;
-            }
-
-            log.info("✅ [ORDER-VERIFY] Order {} status: {} (filled: {}/{})",
-                    orderId, status.status, status.filledQty, status.totalQty);
-
-            // Handle based on status
-            switch (status.status.toUpperCase()) {
-                case "COMPLETE":
-                case "FULLY EXECUTED":
-                    handleSuccess(orderId, pending, status);
-                    break;
-
-                case "PARTIALLY EXECUTED":
-                case "PARTIAL FILL":
-                    handlePartialFill(orderId, pending, status);
-                    break;
-
-                case "REJECTED":
-                case "CANCELLED":
-                case "FAILED":
-                    handleRejection(orderId, pending, status);
-                    break;
-
-                case "PENDING":
-                case "OPEN":
-                    // Still pending, schedule another check
-                    scheduleRetry(orderId, pending);
-                    break;
-
-                default:
+        OrderStatus status = new OrderStatus();
+        status.orderId = orderId;
+        status.status = update.status() != null ? update.status() : "";
+        status.totalQty = update.orderQty();
+        status.filledQty = update.filledQty();
+        status.avgPrice = update.avgPrice();
+        status.message = update.message();
+
+        log.info("✅ [ORDER-VERIFY] Order {} status: {} (filled: {}/{}, via {})",
+                orderId, status.status, status.filledQty, status.totalQty, update.source());
+
+        // Handle based on status, normalised the same way the broker's feed decides terminal orders
+        switch (update.state()) {
+            case FILLED:
+                handleSuccess(orderId, pending, status);
+                break;
+
+            case PARTIAL:
+                handlePartialFill(orderId, pending, status);
+                break;
+
+            case REJECTED:
+            case CANCELLED:
+                handleRejection(orderId, pending, status);
+                break;
+
+            case PENDING:
+                // Still pending; the next feed update (or the timeout) resolves it
+                break;
+
+            default:
+                // Still watched; the next update, the re-watch cap or the timeout resolves it
+                if (status.status.isBlank()) {
+                    log.debug("[ORDER-VERIFY] Order {} update without a status", orderId);
+                } else {
                     log.warn("⚠️ [ORDER-VERIFY] Unknown status: {}", status.status);
-                    scheduleRetry(orderId, pending);
-            }
-
-        } catch (Exception e) {
-            log.error("🚨 [ORDER-VERIFY] Error verifying order {}: {}", orderId, e.getMessage(), e);
-            scheduleRetry(orderId, pending);
-        }
-    }
-
-    /**
-     * Parse order status from broker order book response
-     */
-    private OrderStatus parseOrderStatus(JSONObject orderBook, String orderId, PendingOrder pending) {
-        try {
-            JSONArray details = (JSONArray) orderBook.get("OrderBookDetail");
-            if (details == null || details.isEmpty()) {
-                return null;
-            }
-
-            for (Object obj : details) {
-                JSONObject order = (JSONObject) obj;
-                String remoteId = String.valueOf(order.get("RemoteOrderID"));
-
-                if (orderId.equals(remoteId)) {
-                    OrderStatus status = new OrderStatus();
-                    status.orderId = orderId;
-                    status.status = String.valueOf(order.get("OrderStatus"));
-                    status.totalQty = ((Number) order.getOrDefault("Qty", 0)).intValue();
-                    status.filledQty = status.totalQty - ((Number) order.getOrDefault("PendingQty", 0)).intValue();
-                    status.avgPrice = order.get("Rate") != null
-                            ? ((Number) order.get("Rate")).doubleValue()
-                            : 0.0;
-                    status.message = String.valueOf(order.getOrDefault("Message", ""));
-                    return status;
                 }
-            }
-
-            return null;  // Order not found
-        } catch (Exception e) {
-            log.error("🚨 [ORDER-VERIFY] Error parsing order book: {}", e.getMessage());
-            return null;
         }
     }
 
@@ -360,7 +326,9 @@ public class OrderVerificationService {
                     exchange,       // FIXED: From stored context
                     exchangeType,   // FIXED: From stored context
                     side,           // FIXED: From stored context
-                    pending.quantity
+                    pending.quantity,
+                    "EXIT".equalsIgnoreCase(pending.orderType)
+                            ? BrokerOrderService.Intent.EXIT : BrokerOrderService.Intent.ENTRY
             );
 
             log.info("✅ [ORDER-VERIFY] Retry order placed: old={}, new={}, exchange={}, type={}",
@@ -380,13 +348,7 @@ public class OrderVerificationService {
             );
             newPending.retryCount = pending.retryCount;  // Preserve retry count
             pendingOrders.put(newOrderId, newPending);
-
-            // Schedule verification for new order
-            scheduler.schedule(
-                    () -> verifyOrder(newOrderId),
-                    5,
-                    TimeUnit.SECONDS
-            );
+            brokerService.watchOrder(exchange, newOrderId);
 
         } catch (Exception e) {
             log.error("🚨 [ORDER-VERIFY] Retry failed: {}", e.getMessage(), e);
@@ -394,29 +356,6 @@ public class OrderVerificationService {
         }
     }
 
-    /**
-     * Schedule retry with backoff
-     */
-    private void scheduleRetry(String orderId, PendingOrder pending) {
-        if (pending.verificationAttempts >= 10) {
-            log.error("🚨 [ORDER-VERIFY] Max verification attempts reached for order: {}", orderId);
-            handleTimeout(orderId);
-            return;
-        }
-
-        pending.verificationAttempts++;
-        long delay = 2000 * pending.verificationAttempts;  // 2s, 4s, 6s...
-
-        log.debug("🔄 [ORDER-VERIFY] Scheduling retry for order {} in {}ms (attempt {})",
-                orderId, delay, pending.verificationAttempts);
-
-        scheduler.schedule(
-                () -> verifyOrder(orderId),
-                delay,
-                TimeUnit.MILLISECONDS
-        );
-    }
-
     /**
      * Handle verification timeout
      */
@@ -444,7 +383,10 @@ public class OrderVerificationService {
     }
 
     /**
-     * Scheduled job to check all pending orders (runs every 10 seconds)
+     * Scheduled job (every 10 seconds) making sure every pending order is still watched by the
+     * broker's status feed, e.g. after the feed dropped it on a status we keep waiting on.
+     * Makes no broker calls itself. An order still unresolved after MAX_VERIFICATION_ATTEMPTS
+     * checks is given up on as a timeout.
      */
     @Scheduled(fixedDelay = 10000)
     public void verifyAllPendingOrders() {
@@ -454,8 +396,14 @@ public class OrderVerificationService {
 
         log.debug("🔍 [ORDER-VERIFY] Checking {} pending orders", pendingOrders.size());
 
-        for (String orderId : pendingOrders.keySet()) {
-            verifyOrder(orderId);
+        for (PendingOrder pending : pendingOrders.values()) {
+            if (pending.verificationAttempts >= MAX_VERIFICATION_ATTEMPTS) {
+                log.error("🚨 [ORDER-VERIFY] Max verification attempts reached for order: {}", pending.orderId);
+                handleTimeout(pending.orderId);
+                continue;
+            }
+            pending.verificationAttempts++;
+            brokerService.watchOrder(pending.exchange, pending.orderId);
         }
     }
 
@@ -0,0 +1,145 @@
+package com.kotsin.execution.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * One stage of the signal pipeline: a bounded queue drained by a fixed set of worker threads.
+ *
+ * Backpressure is explicit: {@link #offer} waits at most {@code offerTimeoutMs} for queue space and
+ * otherwise sheds the work (returns false, counted), so a slow downstream dependency shows up as
+ * queue depth and shed counts instead of an unbounded pile of tasks. Items are processed in FIFO
+ * order; a single-worker stage is therefore strictly sequential.
+ *
+ * Metrics (tag {@code stage}): signal.pipeline.stage.latency, signal.pipeline.stage.queue.wait,
+ * signal.pipeline.stage.queue.depth, signal.pipeline.stage.shed, signal.pipeline.stage.errors.
+ */
+@Slf4j
+public final class PipelineStage {
+
+    private record Task(Runnable work, long enqueuedAtNanos) {}
+
+    private final String name;
+    private final BlockingQueue<Task> queue;
+    private final long offerTimeoutMs;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean accepting = true;
+
+    private final Timer latency;
+    private final Timer queueWait;
+    private final Counter shed;
+    private final Counter errors;
+
+    public PipelineStage(String name, int workerCount, int capacity, long offerTimeoutMs, MeterRegistry registry) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.offerTimeoutMs = Math.max(0, offerTimeoutMs);
+
+        Tags tags = Tags.of("stage", name);
+        this.latency = Timer.builder("signal.pipeline.stage.latency").tags(tags).register(registry);
+        this.queueWait = Timer.builder("signal.pipeline.stage.queue.wait").tags(tags).register(registry);
+        this.shed = registry.counter("signal.pipeline.stage.shed", tags);
+        this.errors = registry.counter("signal.pipeline.stage.errors", tags);
+        registry.gaugeCollectionSize("signal.pipeline.stage.queue.depth", tags, queue);
+
+        for (int i = 1; i <= Math.max(1, workerCount); i++) {
+            Thread t = new Thread(this::runWorker, "pipeline-" + name + "-" + i);
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    /** Queue {@code work}; false if the stage is shut down or stayed full for the offer timeout. */
+    public boolean offer(Runnable work) {
+        if (accepting) {
+            try {
+                if (queue.offer(new Task(work, System.nanoTime()), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        shed.increment();
+        return false;
+    }
+
+    /**
+     * Queue {@code work} and expose its result. When shed, the future fails with
+     * RejectedExecutionException.
+     */
+    public <R> CompletableFuture<R> submit(Supplier<R> work) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        boolean queued = offer(() -> {
+            try {
+                result.complete(work.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        if (!queued) result.completeExceptionally(new RejectedExecutionException("pipeline stage " + name + " saturated"));
+        return result;
+    }
+
+    /** Stop accepting work, let the workers drain the queue, run any leftovers on the caller. */
+    public void shutdown(long awaitMs) {
+        accepting = false;
+        long deadline = System.currentTimeMillis() + awaitMs;
+        for (Thread t : workers) {
+            try {
+                t.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Task left;
+        while ((left = queue.poll()) != null) run(left);
+    }
+
+    private void runWorker() {
+        while (accepting || !queue.isEmpty()) {
+            Task task;
+            try {
+                task = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task != null) run(task);
+        }
+    }
+
+    private void run(Task task) {
+        long start = System.nanoTime();
+        queueWait.record(start - task.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        try {
+            task.work().run();
+        } catch (Throwable t) {
+            errors.increment();
+            log.error("PIPELINE_STAGE_ERROR stage={} err={}", name, t.getMessage(), t);
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
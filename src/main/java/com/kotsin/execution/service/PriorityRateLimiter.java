@@ -0,0 +1,263 @@
+package com.kotsin.execution.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Token-bucket rate limiter shared by several request classes, served in priority order.
+ *
+ * {@link #tryAcquire} never blocks. {@link #acquire} returns a permit future that completes at once
+ * when a token is free, or is queued and completed by the drainer on {@code scheduler} when one
+ * refills — the caller's continuation runs there, so nothing blocks a thread while waiting. Queued
+ * work is released strictly by priority (exits and stop-loss changes, then entries, then status
+ * polls), FIFO within a priority, and a request never jumps ahead of queued work of equal or higher
+ * priority. Waiters not served within {@code maxWaitMs} fail with a TimeoutException.
+ *
+ * The rate adapts AIMD-style: {@link #onThrottled()} (broker 429 / RMS throttling) halves it, down to
+ * a floor; {@link #onSuccess()} adds back a small step once the last throttle is a few seconds old.
+ *
+ * Metrics (tag {@code limiter}): broker.ratelimit.wait (per {@code class}, percentile histogram),
+ * broker.ratelimit.rate, broker.ratelimit.queue.depth, broker.ratelimit.throttled, broker.ratelimit.timeouts.
+ */
+@Slf4j
+public final class PriorityRateLimiter {
+
+    public enum Priority {
+        EXIT(0), STOP_LOSS(0), ENTRY(1), STATUS(2);
+
+        private final int rank;
+
+        Priority(int rank) {
+            this.rank = rank;
+        }
+    }
+
+    private record Waiter(Priority priority, CompletableFuture<Void> permit, long enqueuedAtNanos, long deadlineNanos) {}
+
+    private static final int RANKS = 3;
+    private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+    // Throttle signals arriving together (one burst of 429s) count once
+    private static final long THROTTLE_DEBOUNCE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long RECOVERY_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final long maxWaitNanos;
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Waiter>[] queues = new ArrayDeque[RANKS];
+
+    private double maxRate;
+    private double minRate;
+    private double rate;
+    private final double burst;
+    private double tokens;
+    private long refilledAtNanos;
+    private long lastThrottleNanos;
+    private boolean drainScheduled;
+
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private final Counter throttled;
+    private final Counter timeouts;
+
+    public PriorityRateLimiter(String name, double permitsPerSecond, double burst, long maxWaitMs,
+                               ScheduledExecutorService scheduler, MeterRegistry registry) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.maxRate = permitsPerSecond;
+        this.minRate = permitsPerSecond / 16;
+        this.rate = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAtNanos = System.nanoTime();
+        for (int i = 0; i < RANKS; i++) queues[i] = new ArrayDeque<>();
+
+        Tags tags = Tags.of("limiter", name);
+        for (Priority p : Priority.values()) {
+            waitTimers.put(p, Timer.builder("broker.ratelimit.wait")
+                    .tags(tags)
+                    .tag("class", p.name())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        this.throttled = registry.counter("broker.ratelimit.throttled", tags);
+        this.timeouts = registry.counter("broker.ratelimit.timeouts", tags);
+        registry.gauge("broker.ratelimit.rate", tags, this, PriorityRateLimiter::getRate);
+        registry.gauge("broker.ratelimit.queue.depth", tags, this, PriorityRateLimiter::queued);
+    }
+
+    /** Take a permit only if one is free now and no request of equal or higher priority is waiting. */
+    public boolean tryAcquire(Priority priority) {
+        synchronized (this) {
+            if (!takeLocked(priority, System.nanoTime())) return false;
+        }
+        waitTimers.get(priority).record(0, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    /** Permit future: immediate when free, otherwise queued by priority (see class doc). */
+    public CompletableFuture<Void> acquire(Priority priority) {
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (!takeLocked(priority, now)) {
+                CompletableFuture<Void> permit = new CompletableFuture<>();
+                queues[priority.rank].addLast(new Waiter(priority, permit, now, now + maxWaitNanos));
+                scheduleDrainLocked();
+                return permit;
+            }
+        }
+        waitTimers.get(priority).record(0, TimeUnit.NANOSECONDS);
+        return GRANTED;
+    }
+
+    /**
+     * Blocking form for synchronous callers: wait up to {@code timeout} for a permit. A caller that
+     * gives up withdraws its place, so no token is spent on it; if the permit was granted just as it
+     * gave up, the token is already spent and the caller keeps it.
+     */
+    public boolean acquire(Priority priority, long timeout, TimeUnit unit) {
+        CompletableFuture<Void> permit = acquire(priority);
+        try {
+            permit.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return grantedBeforeWithdraw(permit);
+        } catch (ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return grantedBeforeWithdraw(permit);
+        }
+    }
+
+    /** Withdraw a waiting permit; true when the drainer had already granted it, so the token is the caller's. */
+    private static boolean grantedBeforeWithdraw(CompletableFuture<Void> permit) {
+        return !permit.cancel(false) && !permit.isCompletedExceptionally();
+    }
+
+    /** The broker reported throttling: halve the rate (down to the floor) and drop any saved burst. */
+    public void onThrottled() {
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (lastThrottleNanos != 0 && now - lastThrottleNanos < THROTTLE_DEBOUNCE_NANOS) return;
+            lastThrottleNanos = now;
+            refillLocked(now);
+            rate = Math.max(minRate, rate / 2);
+            tokens = Math.min(tokens, 0);
+        }
+        throttled.increment();
+        log.warn("🚦 {} throttled by broker, rate lowered to {}/s", name, String.format("%.2f", getRate()));
+    }
+
+    /** A broker call went through: recover towards the configured rate once throttling has calmed down. */
+    public synchronized void onSuccess() {
+        if (rate >= maxRate) return;
+        long now = System.nanoTime();
+        if (now - lastThrottleNanos < RECOVERY_COOLDOWN_NANOS) return;
+        refillLocked(now);
+        rate = Math.min(maxRate, rate + maxRate / 50);
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    /** Change the configured ceiling (and the current rate) at runtime. */
+    public synchronized void setRate(double permitsPerSecond) {
+        refillLocked(System.nanoTime());
+        maxRate = permitsPerSecond;
+        minRate = permitsPerSecond / 16;
+        rate = permitsPerSecond;
+    }
+
+    public synchronized int queued() {
+        int n = 0;
+        for (ArrayDeque<Waiter> q : queues) n += q.size();
+        return n;
+    }
+
+    private boolean takeLocked(Priority priority, long now) {
+        for (int r = 0; r <= priority.rank; r++) {
+            if (!queues[r].isEmpty()) return false;
+        }
+        refillLocked(now);
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    private void refillLocked(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledAtNanos) * rate / 1e9);
+        refilledAtNanos = now;
+    }
+
+    private void scheduleDrainLocked() {
+        if (drainScheduled) return;
+        drainScheduled = true;
+        long delayNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / rate * 1e9);
+        scheduler.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        long now;
+        synchronized (this) {
+            drainScheduled = false;
+            now = System.nanoTime();
+            refillLocked(now);
+            for (ArrayDeque<Waiter> q : queues) {
+                // Same max wait for everyone, so deadlines are ordered within a queue
+                while (!q.isEmpty() && (q.peekFirst().permit().isDone() || q.peekFirst().deadlineNanos() <= now)) {
+                    Waiter w = q.pollFirst();
+                    if (!w.permit().isDone()) expired.add(w);
+                }
+            }
+            for (int r = 0; r < RANKS && tokens >= 1; r++) {
+                while (tokens >= 1 && !queues[r].isEmpty()) {
+                    Waiter w = queues[r].pollFirst();
+                    if (w.permit().isDone()) continue; // caller gave up
+                    tokens -= 1;
+                    granted.add(w);
+                }
+            }
+            if (queued() > 0) scheduleDrainLocked();
+        }
+        // Complete outside the lock: continuations run on this thread
+        for (Waiter w : expired) {
+            timeouts.increment();
+            w.permit().completeExceptionally(new TimeoutException(
+                    name + " " + w.priority() + " permit not granted within " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms"));
+        }
+        int refunded = 0;
+        for (Waiter w : granted) {
+            if (!w.permit().complete(null)) {
+                refunded++; // withdrawn after it was picked: hand the token back
+                continue;
+            }
+            waitTimers.get(w.priority()).record(now - w.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (refunded > 0) {
+            synchronized (this) {
+                refillLocked(System.nanoTime());
+                tokens = Math.min(burst, tokens + refunded);
+                if (queued() > 0) scheduleDrainLocked();
+            }
+        }
+    }
+}
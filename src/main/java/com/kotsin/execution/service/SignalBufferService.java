@@ -14,10 +14,14 @@ import com.kotsin.execution.service.LotSizeLookupService;
 import com.kotsin.execution.options.BlackScholesCalculator;
 import com.kotsin.execution.options.OptionGreeks;
 import com.kotsin.execution.options.OptionGreeks.OptionType;
+import com.kotsin.execution.tracking.service.SignalLatencyTracker;
 import com.kotsin.execution.wallet.service.FundAllocationService;
 import com.kotsin.execution.wallet.service.SignalQueueService;
 import com.kotsin.execution.wallet.service.StrategyWalletResolver;
 import com.kotsin.execution.wallet.service.WalletTransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +36,7 @@ import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * SignalBufferService - Unified cross-strategy signal batching with priority-based dedup.
@@ -39,7 +44,9 @@ import java.util.concurrent.*;
  * All strategies (FUKAA, FUDKII, FUDKOI, MERE) go into a single shared batch.
  * Priority: FUKAA > FUDKOI > FUDKII > MERE — same scrip only trades under highest-priority strategy.
  *
- * Dynamic batch windows (time-of-day aware):
+ * Adaptive batch window (AdaptiveBatchWindow): closes early when further signals are unlikely,
+ * holds up to the ceiling during bursts. With signal.batch.adaptive.enabled=false the
+ * time-of-day windows apply:
  *   Opening session (9:00–10:00 IST): 3s  — high signal density, fast price moves
  *   Rest of day NSE (10:00–15:25):    5s  — sparse signals, less urgency
  *   After NSE close (15:25+):         2s  — only MCX/CDS active, fast movers
@@ -47,14 +54,20 @@ import java.util.concurrent.*;
  * Flow:
  * 1. Consumer calls submitSignal(source, signal, metadata)
  * 2. Signal added directly to shared batch (no per-scrip buffer delay)
- * 3. When batch timer fires: group by strategy, process in priority order,
- *    cross-strategy dedup, fund allocation, execute
+ * 3. When batch timer fires, the batch moves through bounded pipeline stages (PipelineStage):
+ *    enrich (option swaps, pre-resolved LTP/Greeks, bulk price prefetch) →
+ *    rank (group by strategy, priority order, strategy-specific scores) →
+ *    allocate (cross-strategy dedup, fund allocation, capital cascade) →
+ *    execute (route + paper/live execution).
+ *    Rank and allocate are single-worker so dedup and cascade see batches in order. A stage that
+ *    stays full sheds the batch (trades marked PIPELINE_BACKPRESSURE_*) instead of queueing without bound.
  */
 @Service
 @Slf4j
 public class SignalBufferService {
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4, r -> {
+    // Batch window timers only — evaluation runs on the pipeline stages
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
         Thread t = new Thread(r, "signal-buffer-timer");
         t.setDaemon(true);
         return t;
@@ -96,6 +109,15 @@ public class SignalBufferService {
     @Autowired(required = false)
     private BlackScholesCalculator blackScholesCalculator;
 
+    @Autowired
+    private AdaptiveBatchWindow batchWindow;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SignalLatencyTracker latencyTracker;
+
     @Value("${option.greek.sl.iv.multiplier:1.5}")
     private double greekSlIvMultiplier;
 
@@ -125,11 +147,38 @@ public class SignalBufferService {
     @Value("${option.producer.base.url:http://localhost:8208}")
     private String optionProducerBaseUrl;
 
-    @Value("${option.swap.retry.count:5}")
-    private int optionSwapRetryCount;
+    // ITM→OTM swap changes which instrument is traded; opt-in
+    @Value("${option.swap.enabled:false}")
+    private boolean optionSwapEnabled;
 
-    @Value("${option.swap.retry.delay.ms:400}")
-    private int optionSwapRetryDelayMs;
+    // Max wait for the swapped option's first tick (replaces the old 5 × 400ms sleep-poll)
+    @Value("${option.swap.ltp.timeout.ms:2000}")
+    private long optionSwapLtpTimeoutMs;
+
+    // ASYNC-SWAP: option swap API calls run here, never on the batch timer or Kafka consumer threads
+    private final AtomicInteger optionSwapThreadSeq = new AtomicInteger();
+    private final ExecutorService optionSwapExecutor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "option-swap-" + optionSwapThreadSeq.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    // PRE-RESOLVE: max wait at batch fire for option swaps and pre-resolutions that are still running
+    @Value("${signal.batch.prep.max-wait-ms:500}")
+    private long prepMaxWaitMs;
+
+    // PRE-RESOLVE: execution re-resolves a pre-resolved option LTP older than this
+    @Value("${signal.batch.prep.ltp-max-age-ms:1000}")
+    private long prepLtpMaxAgeMs;
+
+    // PRE-RESOLVE: option LTP/spot/Greeks for batch candidates, resolved while the window is open.
+    // Bounded queue: when saturated, a candidate is simply resolved at execution instead
+    private final ThreadPoolExecutor optionPrepExecutor = new ThreadPoolExecutor(4, 4,
+            30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), r -> {
+        Thread t = new Thread(r, "option-prep");
+        t.setDaemon(true);
+        return t;
+    }, new ThreadPoolExecutor.AbortPolicy());
 
     @Value("${trading.mode.live:true}")
     private boolean liveTradeEnabled;
@@ -143,6 +192,33 @@ public class SignalBufferService {
     @Value("${strategy.wallet.enabled:false}")
     private boolean strategyWalletEnabled;
 
+    // PIPELINE: stage sizing. Enrich, rank and allocate are fixed at one worker (batches stay in order)
+    @Value("${signal.pipeline.execute.workers:2}")
+    private int executeWorkers;
+
+    @Value("${signal.pipeline.execute.max-wait-ms:10000}")
+    private long executeMaxWaitMs;
+
+    @Value("${signal.pipeline.enrich.capacity:16}")
+    private int enrichCapacity;
+
+    @Value("${signal.pipeline.rank.capacity:16}")
+    private int rankCapacity;
+
+    @Value("${signal.pipeline.allocate.capacity:16}")
+    private int allocateCapacity;
+
+    @Value("${signal.pipeline.execute.capacity:64}")
+    private int executeCapacity;
+
+    @Value("${signal.pipeline.offer-timeout-ms:200}")
+    private long pipelineOfferTimeoutMs;
+
+    private PipelineStage enrichStage;
+    private PipelineStage rankStage;
+    private PipelineStage allocateStage;
+    private PipelineStage executeStage;
+
     // ========== Cross-Instrument Batch ==========
 
     static class ResolvedSignal {
@@ -153,23 +229,46 @@ public class SignalBufferService {
         String rationale;
         LocalDateTime receivedTimeIst;
         double rankScore;
+        // ASYNC-SWAP: ITM→OTM swap in flight since intake; applied and cleared before execution
+        CompletableFuture<OptionSwap> optionSwap;
+        // PRE-RESOLVE: deferred option LTP/Greeks being resolved since intake
+        CompletableFuture<OptionPrep> optionPrep;
     }
 
-    static class TimeframeBatch {
-        final long createdAtMillis = System.currentTimeMillis();
-        final ConcurrentHashMap<String, ResolvedSignal> resolvedSignals = new ConcurrentHashMap<>();
-        volatile ScheduledFuture<?> batchTimerFuture;
+    // LOCK-FREE-INTAKE: shared batch keyed "source|scripCode"; submitters never block each other or the
+    // evaluating timer thread
+    private BatchAccumulator<String, ResolvedSignal> batches;
+
+    @PostConstruct
+    void initBatching() {
+        // ADAPTIVE-WINDOW: batch closes on observed arrival rate (fixed time-of-day window when disabled)
+        batches = new BatchAccumulator<>(scheduler,
+                batchWindow.policy(() -> getDynamicBatchWindowSeconds() * 1000L), this::evaluateBatch);
+
+        // PIPELINE: bounded hand-offs between evaluation stages; intake depth = open batch size
+        enrichStage = new PipelineStage("enrich", 1, enrichCapacity, pipelineOfferTimeoutMs, meterRegistry);
+        rankStage = new PipelineStage("rank", 1, rankCapacity, pipelineOfferTimeoutMs, meterRegistry);
+        allocateStage = new PipelineStage("allocate", 1, allocateCapacity, pipelineOfferTimeoutMs, meterRegistry);
+        executeStage = new PipelineStage("execute", executeWorkers, executeCapacity, pipelineOfferTimeoutMs, meterRegistry);
+        meterRegistry.gauge("signal.pipeline.stage.queue.depth", Tags.of("stage", "intake"), batches,
+                BatchAccumulator::openSize);
+
+        // Dedup housekeeping off the evaluation path: each sweep only visits the elapsed wheel slots
+        scheduler.scheduleAtFixedRate(recentlyExecutedScrips::sweep, 1, 1, TimeUnit.SECONDS);
+        meterRegistry.gauge("signal.dedup.recent.size", recentlyExecutedScrips, ExpiringMap::size);
     }
 
-    private volatile TimeframeBatch currentBatch;
-    private final Object batchLock = new Object();
+    /** Strategy group of a batch in execution order, produced by the rank stage. */
+    private record RankedStrategy(String strategyKey, List<ResolvedSignal> signals) {}
 
-    // Cross-strategy dedup — scripCode → strategyKey, prevents same scrip executing in multiple strategies
-    private final ConcurrentHashMap<String, CrossBatchEntry> recentlyExecutedScrips = new ConcurrentHashMap<>();
+    // Cross-strategy dedup — scripCode → strategyKey, prevents same scrip executing in multiple strategies.
+    // Entries live 2 × the dynamic window; evicted by a 1s time wheel swept on the scheduler
+    private final ExpiringMap<String, CrossBatchEntry> recentlyExecutedScrips = new ExpiringMap<>(64, 1000);
 
-    // Opening batch tracking: "FUDKII:N:2026-02-26" → true = opening batch already fired for this strategy+exchange+date
-    private final ConcurrentHashMap<String, Boolean> openingBatchFired = new ConcurrentHashMap<>();
+    // Opening batch tracking: "FUDKII:N" = opening batch already fired today for this strategy+exchange.
+    // Rolls over at IST midnight
     private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private final DailyKeySet openingBatchFired = new DailyKeySet(() -> LocalDate.now(IST));
 
     // Per-exchange first 30m candle close times
     private static final LocalTime NSE_FIRST_30M_CLOSE = LocalTime.of(9, 45);
@@ -190,13 +289,17 @@ public class SignalBufferService {
 
     static class CrossBatchEntry {
         final String strategyKey;
-        final long timestamp;
         CrossBatchEntry(String strategyKey) {
             this.strategyKey = strategyKey;
-            this.timestamp = System.currentTimeMillis();
         }
     }
 
+    /** Record a fill for cross-batch dedup, held for 2 × the current dynamic window. */
+    private void markExecuted(String scripCode, String strategyKey) {
+        recentlyExecutedScrips.put(scripCode, new CrossBatchEntry(strategyKey),
+                getDynamicBatchWindowSeconds() * 2000L);
+    }
+
     // ========== NSE No-Trade Window (3:15 PM – 3:25 PM IST) ==========
     // NSE positions close at 15:25 — block new entries 10 min before
     private static final LocalTime NSE_NO_TRADE_START = LocalTime.of(15, 15);
@@ -238,6 +341,10 @@ public class SignalBufferService {
                 source, scripCode, signal.getDirection(), signal.getConfidence(),
                 signal.getOiChangeRatio(), signal.getOiLabel(), signal.getSurgeT());
 
+        // LATENCY: per-hop breakdown travels on the signal; consumer hop = Kafka receipt → here
+        signal.setLatency(latencyTracker.start(source, signal.getExchange(),
+                receivedIst != null ? receivedIst.atZone(IST).toInstant() : null));
+
         // Build ResolvedSignal and add directly to shared batch (no per-scrip buffer delay)
         double rankScore = computeRankScoreForCategory(source, signal);
 
@@ -250,13 +357,47 @@ public class SignalBufferService {
         resolved.receivedTimeIst = receivedIst;
         resolved.rankScore = rankScore;
 
+        // ASYNC-SWAP: stale ITM option — start the OTM swap now so it resolves during the batch window
+        if (optionSwapEnabled && signal.isOptionAvailable() && signal.isOptionIsITM()) {
+            resolved.optionSwap = swapToOTMOptionAsync(signal, scripCode, source);
+        }
+
         if (batchEnabled) {
             addToBatch(scripCode, source, signal, virtualTrade, rationale, receivedIst, resolved);
         } else {
-            executeSignal(scripCode, source, signal, virtualTrade, receivedIst, 0);
+            // PIPELINE: unbatched signals go straight to the execute stage (swap applied on its worker)
+            boolean queued = executeStage.offer(() -> {
+                latencyTracker.lap(signal.getLatency(), SignalLatencyTracker.BUFFER_WAIT);
+                if (resolved.optionSwap != null) {
+                    long swapStart = System.nanoTime();
+                    applyOptionSwap(resolved, System.currentTimeMillis() + optionSwapLtpTimeoutMs);
+                    latencyTracker.record(signal.getLatency(), SignalLatencyTracker.OPTION_RESOLUTION,
+                            System.nanoTime() - swapStart);
+                }
+                executeSignal(scripCode, source, signal, virtualTrade, receivedIst, 0);
+            });
+            if (!queued) shed(List.of(resolved), executeStage);
         }
     }
 
+    /** A signal accepted by a consumer, waiting to be handed over with the rest of its Kafka poll. */
+    public record Submission(String source, StrategySignal signal, BacktestTrade virtualTrade,
+                             String rationale, LocalDateTime receivedIst) {
+    }
+
+    /**
+     * BATCH-CONSUME: submit every signal accepted from one Kafka poll in a single call, before the
+     * consumer commits the poll's offsets. Each signal takes the same path as {@link #submitSignal}.
+     */
+    public void submitSignals(List<Submission> submissions) {
+        if (submissions.isEmpty()) return;
+        for (Submission s : submissions) {
+            submitSignal(s.source(), s.signal(), s.virtualTrade(), s.rationale(), s.receivedIst());
+        }
+        log.info("SIGNAL_submit_batch count={} sources={}", submissions.size(),
+                submissions.stream().map(Submission::source).distinct().toList());
+    }
+
     /**
      * Submit a signal for an independent strategy category (e.g., FUDKOI, MERE).
      * Now unified — delegates to the shared batch just like submitSignal().
@@ -270,7 +411,8 @@ public class SignalBufferService {
     // ========== Cross-Instrument Batch ==========
 
     /**
-     * Compute dynamic batch window based on time of day (IST).
+     * Compute dynamic batch window based on time of day (IST). Used as the batch window when
+     * signal.batch.adaptive.enabled=false, and as the scale for dedup expiry and option pre-resolution.
      *   Opening session (9:00–10:00): 3s — high density, co-arriving signals
      *   Rest of day NSE (10:00–15:25): 5s — sparse signals
      *   After NSE close (15:25+): 2s — only MCX/CDS, fast movers
@@ -296,26 +438,22 @@ public class SignalBufferService {
         // Use strategy-qualified key: "FUKAA|12345" so same scrip from different strategies coexists in batch
         String batchKey = source + "|" + scripCode;
 
+        // PRE-RESOLVE: fetch option/spot prices and compute Greeks now, in parallel with the window
+        if (resolved.optionSwap == null) {
+            String numericScrip = signal.getNumericScripCode() != null ? signal.getNumericScripCode() : scripCode;
+            resolved.optionPrep = preResolveOption(signal, numericScrip);
+        }
+
         log.info("BATCH_add scrip={} source={} rankScore={} oiRatio={} oiLabel={} surgeT={}",
                 scripCode, source, String.format("%.2f", resolved.rankScore),
                 signal.getOiChangeRatio(), signal.getOiLabel(), signal.getSurgeT());
 
-        synchronized (batchLock) {
-            if (currentBatch == null) {
-                currentBatch = new TimeframeBatch();
-            }
-            currentBatch.resolvedSignals.put(batchKey, resolved);
-
-            // Start batch timer if not already running
-            if (currentBatch.batchTimerFuture == null) {
-                int windowSec = getDynamicBatchWindowSeconds();
-                final TimeframeBatch batch = currentBatch;
-                batch.batchTimerFuture = scheduler.schedule(
-                        () -> evaluateBatch(batch),
-                        windowSec, TimeUnit.SECONDS
-                );
-                log.info("BATCH_timer_started windowSec={} firstScrip={} source={}", windowSec, scripCode, source);
-            }
+        batchWindow.recordArrival(signal.getExchange());
+
+        // First entry of a batch arms its timer (CAS inside the accumulator)
+        long firstCheckMs = batches.add(batchKey, resolved);
+        if (firstCheckMs >= 0) {
+            log.info("BATCH_timer_started firstCheckMs={} firstScrip={} source={}", firstCheckMs, scripCode, source);
         }
     }
 
@@ -373,38 +511,157 @@ public class SignalBufferService {
      * - P&L recycled to wallet when trades close
      *
      * Falls back to legacy single-winner behavior if fund allocation is disabled.
+     *
+     * Runs on the batch timer thread: only logs the candidates and hands the batch to the enrich stage.
      */
-    private void evaluateBatch(TimeframeBatch batch) {
-        synchronized (batchLock) {
-            if (currentBatch == batch) {
-                currentBatch = null; // Reset for next batch
-            }
-        }
-
-        if (batch.resolvedSignals.isEmpty()) {
+    private void evaluateBatch(BatchAccumulator.Batch<String, ResolvedSignal> batch) {
+        if (batch.entries().isEmpty()) {
             log.warn("BATCH_empty no signals to evaluate");
             return;
         }
 
-        int candidateCount = batch.resolvedSignals.size();
-
         // Log all candidates for audit
-        for (Map.Entry<String, ResolvedSignal> entry : batch.resolvedSignals.entrySet()) {
+        for (Map.Entry<String, ResolvedSignal> entry : batch.entries().entrySet()) {
             ResolvedSignal r = entry.getValue();
+            latencyTracker.lap(r.signal.getLatency(), SignalLatencyTracker.BUFFER_WAIT);
             log.info("BATCH_candidate scrip={} source={} rankScore={} oiRatio={} surgeT={} dir={} exchange={}",
                     r.scripCode, r.source, String.format("%.2f", r.rankScore),
                     r.signal.getOiChangeRatio(), r.signal.getSurgeT(),
                     r.signal.getDirection(), r.signal.getExchange());
         }
 
+        if (!enrichStage.offer(() -> enrichBatch(batch))) {
+            shed(batch.entries().values(), enrichStage);
+        }
+    }
+
+    /** Enrich stage: finish option swaps and pre-resolutions, warm prices, then route to rank or legacy. */
+    private void enrichBatch(BatchAccumulator.Batch<String, ResolvedSignal> batch) {
+        List<ResolvedSignal> resolving = batch.entries().values().stream()
+                .filter(r -> r.optionSwap != null || r.optionPrep != null)
+                .toList();
+        long resolveStart = System.nanoTime();
+        // One shared bound for both: evaluation never waits longer than signal.batch.prep.max-wait-ms
+        long deadline = System.currentTimeMillis() + prepMaxWaitMs;
+        // ASYNC-SWAP: collect option swaps started at intake (usually already resolved)
+        applyOptionSwaps(batch.entries().values(), deadline);
+        // PRE-RESOLVE: deferred option LTP/Greeks computed during the window
+        applyOptionPreps(batch.entries().values(), deadline);
+        long resolveNanos = System.nanoTime() - resolveStart;
+        for (ResolvedSignal r : resolving) {
+            latencyTracker.record(r.signal.getLatency(), SignalLatencyTracker.OPTION_RESOLUTION, resolveNanos);
+        }
+
         // Use centralized fund allocation if strategy wallets are enabled
         if (strategyWalletEnabled && fundAllocationService != null) {
-            evaluateBatchWithFundAllocation(batch);
+            // BULK-LTP: warm the price cache for every underlying and option in the batch with one
+            // parallel round, so the per-signal LTP validation at execution reads from memory.
+            // Without the cache the prices would only be fetched twice
+            if (priceProvider.isCacheEnabled()) {
+                prefetchBatchPrices(batch);
+            }
+            if (!rankStage.offer(() -> rankBatch(batch))) {
+                shed(batch.entries().values(), rankStage);
+            }
             return;
         }
 
         // Legacy behavior: single winner per batch
-        evaluateBatchLegacy(batch);
+        if (!allocateStage.offer(() -> evaluateBatchLegacy(batch))) {
+            shed(batch.entries().values(), allocateStage);
+        }
+    }
+
+    /**
+     * Mark every trade of a shed batch FAILED. A batch is shed whole: dropping only part of it would
+     * change which signal wins the ranking.
+     */
+    private void shed(Collection<ResolvedSignal> signals, PipelineStage stage) {
+        log.warn("PIPELINE_SHED stage={} depth={} signals={}", stage.name(), stage.depth(), signals.size());
+        for (ResolvedSignal r : signals) {
+            if (r.optionSwap != null) r.optionSwap.cancel(false);
+            if (r.optionPrep != null) r.optionPrep.cancel(false);
+            if (r.virtualTrade != null) {
+                r.virtualTrade.setStatus(BacktestTrade.TradeStatus.FAILED);
+                r.virtualTrade.setExitReason("PIPELINE_BACKPRESSURE_" + stage.name().toUpperCase());
+                backtestRepository.save(r.virtualTrade);
+            }
+        }
+    }
+
+    /**
+     * The execute stage rejected a signal (queue full) or did not finish it within
+     * signal.pipeline.execute.max-wait-ms. Raised on the allocate worker so the rest of the batch is shed
+     * together; {@code inFlight} is the signal still running on the execute stage, if any.
+     */
+    private static final class ExecuteStageBackpressure extends RuntimeException {
+        final ResolvedSignal inFlight;
+
+        ExecuteStageBackpressure(ResolvedSignal inFlight) {
+            super(null, null, false, false);
+            this.inFlight = inFlight;
+        }
+    }
+
+    /** Shed every signal of a batch that has not been settled yet (its trade is still PENDING). */
+    private void shedUnsettled(Collection<ResolvedSignal> signals, ExecuteStageBackpressure cause) {
+        List<ResolvedSignal> unsettled = signals.stream()
+                .filter(r -> r != cause.inFlight)
+                .filter(r -> r.virtualTrade == null || r.virtualTrade.getStatus() == BacktestTrade.TradeStatus.PENDING)
+                .toList();
+        if (cause.inFlight != null) {
+            log.warn("PIPELINE_EXECUTE_SLOW scrip={} source={} still executing after {}ms",
+                    cause.inFlight.scripCode, cause.inFlight.source, executeMaxWaitMs);
+        }
+        shed(unsettled, executeStage);
+    }
+
+    /**
+     * Allocate stage → execute stage hand-off; blocks the allocate worker (at most
+     * signal.pipeline.execute.max-wait-ms) until the trade resolves, since the fill (or LTP rejection)
+     * decides where the cascade capital goes.
+     *
+     * @throws ExecuteStageBackpressure if the execute stage is full or the execution overran the wait
+     */
+    private boolean executeInStage(ResolvedSignal r, double allocatedCapital) {
+        CompletableFuture<Boolean> execution = executeStage.submit(() -> executeSignal(r.scripCode, r.source,
+                r.signal, r.virtualTrade, r.receivedTimeIst, allocatedCapital));
+        try {
+            return execution.get(executeMaxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ExecuteStageBackpressure(r);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw new ExecuteStageBackpressure(null);
+            } else {
+                log.error("PIPELINE_EXECUTE_ERROR scrip={} source={} err={}",
+                        r.scripCode, r.source, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Resolve the underlying and option LTPs of all batch signals in one bulk PriceProvider call. The
+     * result is only used to fill the LTP cache: execution re-reads each price (a cache hit) so it
+     * validates against the newest tick, not the one seen here.
+     */
+    private void prefetchBatchPrices(BatchAccumulator.Batch<String, ResolvedSignal> batch) {
+        Set<String> scrips = new HashSet<>();
+        for (ResolvedSignal r : batch.entries().values()) {
+            StrategySignal sig = r.signal;
+            scrips.add(sig.getNumericScripCode() != null ? sig.getNumericScripCode() : r.scripCode);
+            if (sig.getOptionScripCode() != null && !sig.getOptionScripCode().isEmpty()) {
+                scrips.add(sig.getOptionScripCode());
+            }
+        }
+        long start = System.currentTimeMillis();
+        Map<String, Double> ltps = priceProvider.getLtps(scrips);
+        log.info("BATCH_PRICE_PREFETCH scrips={} resolved={} took={}ms",
+                scrips.size(), ltps.size(), System.currentTimeMillis() - start);
     }
 
     /**
@@ -413,20 +670,14 @@ public class SignalBufferService {
      * Process strategies in priority order: FUKAA → FUDKOI → FUDKII → MERE.
      * Same scrip only trades under the highest-priority strategy that fired for it.
      * Uses strategy-specific ranking (surgeT for FUKAA, OI for FUDKOI, KII for FUDKII).
+     *
+     * Rank stage: builds the per-strategy plan in priority order; dedup and allocation happen on the
+     * allocate stage, against the executions of every earlier batch.
      */
-    private void evaluateBatchWithFundAllocation(TimeframeBatch batch) {
-        // Clean up expired cross-batch dedup entries (2 × current dynamic window)
-        long expiryMs = getDynamicBatchWindowSeconds() * 2000L;
-        long now = System.currentTimeMillis();
-        recentlyExecutedScrips.entrySet().removeIf(e -> (now - e.getValue().timestamp) > expiryMs);
-
-        // Clean up old opening batch tracking entries (keep only today)
-        String todayStr = LocalDate.now(IST).toString();
-        openingBatchFired.keySet().removeIf(k -> !k.endsWith(todayStr));
-
+    private void rankBatch(BatchAccumulator.Batch<String, ResolvedSignal> batch) {
         // Group by strategy key (derived from source)
         Map<String, List<ResolvedSignal>> byStrategy = new LinkedHashMap<>();
-        for (ResolvedSignal r : batch.resolvedSignals.values()) {
+        for (ResolvedSignal r : batch.entries().values()) {
             String strategyKey = StrategyWalletResolver.resolveStrategyKey(r.source, null);
             if (strategyKey == null) strategyKey = r.source; // fallback
             byStrategy.computeIfAbsent(strategyKey, k -> new ArrayList<>()).add(r);
@@ -442,8 +693,7 @@ public class SignalBufferService {
             if (!orderedStrategies.contains(key)) orderedStrategies.add(key);
         }
 
-        Set<String> executedScrips = new HashSet<>();
-
+        List<RankedStrategy> plan = new ArrayList<>(orderedStrategies.size());
         for (String strategyKey : orderedStrategies) {
             List<ResolvedSignal> signals = byStrategy.get(strategyKey);
 
@@ -451,6 +701,32 @@ public class SignalBufferService {
             for (ResolvedSignal r : signals) {
                 r.rankScore = computeStrategySpecificRank(strategyKey, r);
             }
+            plan.add(new RankedStrategy(strategyKey, signals));
+        }
+
+        if (!allocateStage.offer(() -> allocateBatch(plan))) {
+            shed(batch.entries().values(), allocateStage);
+        }
+    }
+
+    /**
+     * Allocate stage: cross-strategy dedup, fund allocation and capital cascade over a ranked plan.
+     * Executions run on the execute stage; single worker, so batches never interleave here.
+     */
+    private void allocateBatch(List<RankedStrategy> plan) {
+        try {
+            allocatePlan(plan);
+        } catch (ExecuteStageBackpressure e) {
+            shedUnsettled(plan.stream().flatMap(p -> p.signals().stream()).toList(), e);
+        }
+    }
+
+    private void allocatePlan(List<RankedStrategy> plan) {
+        Set<String> executedScrips = new HashSet<>();
+
+        for (RankedStrategy ranked : plan) {
+            String strategyKey = ranked.strategyKey();
+            List<ResolvedSignal> signals = ranked.signals();
 
             // Filter out scrips already executed by higher-priority strategy
             List<ResolvedSignal> eligible = new ArrayList<>();
@@ -512,8 +788,10 @@ public class SignalBufferService {
                     .toList();
 
             // Get allocations from centralized service (slot-based confidence sizing)
+            long allocStart = System.nanoTime();
             Map<String, Double> allocations = fundAllocationService.computeBatchAllocation(
                     strategyKey, requests);
+            recordAllocationLatency(eligible, System.nanoTime() - allocStart);
 
             // Execute allocated signals with LTP validation and capital cascade
             double cascadeCapital = 0; // Capital from rejected signals, passed to next in rank
@@ -537,11 +815,10 @@ public class SignalBufferService {
 
                     cascadeCapital = 0; // Reset cascade — this signal gets it
 
-                    boolean filled = executeSignal(r.scripCode, r.source, r.signal, r.virtualTrade,
-                            r.receivedTimeIst, totalCapital);
+                    boolean filled = executeInStage(r, totalCapital);
                     if (filled) {
                         executedScrips.add(r.scripCode);
-                        recentlyExecutedScrips.put(r.scripCode, new CrossBatchEntry(strategyKey));
+                        markExecuted(r.scripCode, strategyKey);
                         // Cascade leftover capital from lot rounding to next rank
                         double leftover = r.signal.getLeftoverCapital();
                         if (leftover > 0) {
@@ -580,6 +857,13 @@ public class SignalBufferService {
         }
     }
 
+    /** LATENCY: one computeBatchAllocation call serves every signal it sized. */
+    private void recordAllocationLatency(List<ResolvedSignal> signals, long nanos) {
+        for (ResolvedSignal r : signals) {
+            latencyTracker.record(r.signal.getLatency(), SignalLatencyTracker.ALLOCATION, nanos);
+        }
+    }
+
     /**
      * Compute strategy-specific rank score.
      * FUDKII: KII_Score = (|OIChange%| + surgeT×100) / 2 (from signal.kiiScore)
@@ -660,7 +944,6 @@ public class SignalBufferService {
     private boolean isOpeningBatch(String strategyKey, List<ResolvedSignal> signals) {
         if (signals.isEmpty()) return false;
         LocalDateTime now = LocalDateTime.now(IST);
-        LocalDate today = now.toLocalDate();
         LocalTime nowTime = now.toLocalTime();
 
         // Check each exchange represented in the signals
@@ -671,8 +954,7 @@ public class SignalBufferService {
         }
 
         for (String exch : exchanges) {
-            String key = strategyKey + ":" + exch + ":" + today;
-            if (openingBatchFired.containsKey(key)) continue;
+            if (openingBatchFired.contains(strategyKey + ":" + exch)) continue;
 
             // Determine first 30m close time for this exchange
             LocalTime first30mClose;
@@ -701,14 +983,12 @@ public class SignalBufferService {
      */
     private void executeOpeningBatchTop3(String strategyKey, List<ResolvedSignal> signals,
                                           Set<String> executedScrips) {
-        LocalDate today = LocalDate.now(IST);
-
         // Mark opening batch as fired for each exchange in these signals
         Set<String> exchanges = new HashSet<>();
         for (ResolvedSignal r : signals) {
             String exch = r.signal.getExchange() != null ? r.signal.getExchange() : "N";
             exchanges.add(exch);
-            openingBatchFired.put(strategyKey + ":" + exch + ":" + today, true);
+            openingBatchFired.add(strategyKey + ":" + exch);
         }
 
         // Sort by KII_Score (rankScore already set to KII by computeStrategySpecificRank)
@@ -754,8 +1034,10 @@ public class SignalBufferService {
                 .toList();
 
         // Get fund allocations for the top N (slot-based confidence sizing)
+        long allocStart = System.nanoTime();
         Map<String, Double> allocations = fundAllocationService.computeBatchAllocation(
                 strategyKey, requests);
+        recordAllocationLatency(winners, System.nanoTime() - allocStart);
 
         // Execute top N with LTP validation and capital cascade
         double openingCascadeCapital = 0;
@@ -777,11 +1059,10 @@ public class SignalBufferService {
 
                 openingCascadeCapital = 0;
 
-                boolean filled = executeSignal(r.scripCode, r.source, r.signal, r.virtualTrade,
-                        r.receivedTimeIst, totalCapital);
+                boolean filled = executeInStage(r, totalCapital);
                 if (filled) {
                     executedScrips.add(r.scripCode);
-                    recentlyExecutedScrips.put(r.scripCode, new CrossBatchEntry(strategyKey));
+                    markExecuted(r.scripCode, strategyKey);
                     double leftover = r.signal.getLeftoverCapital();
                     if (leftover > 0) {
                         openingCascadeCapital = leftover;
@@ -820,20 +1101,28 @@ public class SignalBufferService {
 
     /**
      * Legacy batch evaluation: single winner per batch (fallback when strategy wallets disabled).
+     * Runs on the allocate stage.
      */
-    private void evaluateBatchLegacy(TimeframeBatch batch) {
-        int candidateCount = batch.resolvedSignals.size();
+    private void evaluateBatchLegacy(BatchAccumulator.Batch<String, ResolvedSignal> batch) {
+        try {
+            pickLegacyWinner(batch);
+        } catch (ExecuteStageBackpressure e) {
+            shedUnsettled(batch.entries().values(), e);
+        }
+    }
+
+    private void pickLegacyWinner(BatchAccumulator.Batch<String, ResolvedSignal> batch) {
+        int candidateCount = batch.entries().size();
 
         if (candidateCount == 1) {
-            ResolvedSignal only = batch.resolvedSignals.values().iterator().next();
+            ResolvedSignal only = batch.entries().values().iterator().next();
             log.info("BATCH_single_signal scrip={} source={} rankScore={} → executing directly",
                     only.scripCode, only.source, String.format("%.2f", only.rankScore));
-            executeSignal(only.scripCode, only.source, only.signal, only.virtualTrade,
-                    only.receivedTimeIst, 0);
+            executeInStage(only, 0);
             return;
         }
 
-        ResolvedSignal best = batch.resolvedSignals.values().stream()
+        ResolvedSignal best = batch.entries().values().stream()
                 .max(Comparator.comparingDouble(r -> r.rankScore))
                 .orElse(null);
 
@@ -847,10 +1136,9 @@ public class SignalBufferService {
                 best.signal.getOiChangeRatio(), best.signal.getOiLabel(),
                 best.signal.getSurgeT(), candidateCount);
 
-        executeSignal(best.scripCode, best.source, best.signal, best.virtualTrade,
-                best.receivedTimeIst, 0);
+        executeInStage(best, 0);
 
-        for (Map.Entry<String, ResolvedSignal> entry : batch.resolvedSignals.entrySet()) {
+        for (Map.Entry<String, ResolvedSignal> entry : batch.entries().entrySet()) {
             ResolvedSignal r = entry.getValue();
             if (r != best && r.virtualTrade != null) {
                 r.virtualTrade.setStatus(BacktestTrade.TradeStatus.FAILED);
@@ -1018,12 +1306,16 @@ public class SignalBufferService {
             // as optionAvailable=true. No swap logic needed here.
             // Deferred LTP: when swap succeeded but LTP wasn't available during enrichment (Kafka round-trip),
             // resolve it now from OptionProducer's LivePriceCache (by batch time, ticks have arrived).
+            // A pre-resolved LTP is only used while it is fresh; otherwise it is resolved again here.
             if (signal.isOptionAvailable() && signal.getOptionLotSize() > 0) {
-                if (signal.isOptionLtpDeferred() || signal.getOptionLtp() <= 0) {
+                if (signal.isOptionLtpDeferred() || signal.getOptionLtp() <= 0 || isResolvedOptionLtpStale(signal)) {
+                    long resolveStart = System.nanoTime();
                     if (!resolveDeferredOptionLtp(signal, numericScrip)) {
                         log.warn("DEFERRED_LTP_FAILED scrip={} optionScrip={} — falling to equity",
                             numericScrip, signal.getOptionScripCode());
                     }
+                    latencyTracker.record(signal.getLatency(), SignalLatencyTracker.OPTION_RESOLUTION,
+                            System.nanoTime() - resolveStart);
                 }
             }
             if (signal.isOptionAvailable() && signal.getOptionLtp() > 0 && signal.getOptionLotSize() > 0) {
@@ -1136,6 +1428,8 @@ public class SignalBufferService {
             order.setInstrumentSymbol(signal.getInstrumentSymbol() != null
                     ? signal.getInstrumentSymbol() : companyName);
 
+            // LATENCY: the order's tracking entry picks the breakdown up by signalId
+            latencyTracker.attachToOrder(order.getSignalId(), signal.getLatency());
             VirtualOrder executed = virtualEngine.createOrder(order);
             log.info("{}_paper_trade scrip={} status={} qty={} capital={} entry={} SL={} T1={}",
                     source, numericScrip, executed.getStatus(), qty,
@@ -1150,38 +1444,59 @@ public class SignalBufferService {
 
     // ========== Real-Time OTM Option Swap via OptionProducer (port 8208) ==========
 
+    /** New OTM option returned by the swap API, plus its first observed LTP. */
+    record OptionSwap(String scripCode, double strike, String type, String expiry, String symbol,
+                      String lotSize, String exchange, String exchangeType, double spot, double ltp) {
+        OptionSwap withLtp(double newLtp) {
+            return new OptionSwap(scripCode, strike, type, expiry, symbol, lotSize, exchange, exchangeType, spot, newLtp);
+        }
+    }
+
     /**
-     * When OPTION-GATE detects an ITM option at execution time, call OptionProducer's
-     * swap API to dynamically find the correct OTM option, subscribe to it, and update
-     * the signal with fresh option data (scripCode, strike, LTP, lotSize, etc.).
+     * When a signal arrives with a stale ITM option, call OptionProducer's swap API to find the
+     * correct OTM option and subscribe to it, then wait for that option's first price.
      *
      * This is the SAME API that Streaming Candle's OptionDataEnricher uses — we're just
      * calling it at execution time as a safety net when enrichment data is stale.
      *
-     * @return true if swap succeeded and signal was updated with new OTM option data
+     * ASYNC-SWAP: runs as a stage off the batch timer — the HTTP call on the option-swap pool, the LTP
+     * wait on PriceProvider's price-arrival notification (no sleep-polling). Started at intake, so it
+     * resolves while the batch window is still open; the signal itself is only updated by
+     * {@link #applyOptionSwap} on the thread that executes it.
+     *
+     * @return future of the new OTM option, or of null if the swap failed or produced no price
      */
     @SuppressWarnings("unchecked")
-    private boolean swapToOTMOption(StrategySignal signal, double currentSpot, boolean isBullish,
-                                     String numericScrip, String source) {
+    private CompletableFuture<OptionSwap> swapToOTMOptionAsync(StrategySignal signal, String numericScrip,
+                                                               String source) {
         String url = optionProducerBaseUrl + "/api/ws/swap-option";
         String symbolRoot = signal.getCompanyName();
         // Extract symbol root from option symbol (e.g. "IEX 30MAR 120 CE" → "IEX")
         if (signal.getOptionSymbol() != null && !signal.getOptionSymbol().isEmpty()) {
             symbolRoot = signal.getOptionSymbol().split("\\s+")[0];
         }
+        boolean isBullish = signal.isLongSignal();
+        double signalEntry = signal.getEntryPrice();
+        String oldOptionScripCode = signal.getOptionScripCode();
+        String exchange = signal.getExchange() != null ? signal.getExchange() : "N";
+        String exchangeType = signal.getExchangeType() != null ? signal.getExchangeType() : "D";
+        String underlyingSymbol = symbolRoot;
 
-        log.info("[OPTION-SWAP] Requesting OTM swap: symbol={} spot={} bullish={} oldOption={} exchange={} source={}",
-                symbolRoot, String.format("%.2f", currentSpot), isBullish,
-                signal.getOptionScripCode(), signal.getExchange(), source);
+        return CompletableFuture.supplyAsync(() -> {
+            Double ltpNow = priceProvider.getLtp(numericScrip);
+            double currentSpot = ltpNow != null && ltpNow > 0 ? ltpNow : signalEntry;
+
+            log.info("[OPTION-SWAP] Requesting OTM swap: symbol={} spot={} bullish={} oldOption={} exchange={} source={}",
+                    underlyingSymbol, String.format("%.2f", currentSpot), isBullish,
+                    oldOptionScripCode, exchange, source);
 
-        try {
             Map<String, Object> swapReq = new LinkedHashMap<>();
-            swapReq.put("underlyingSymbolRoot", symbolRoot);
+            swapReq.put("underlyingSymbolRoot", underlyingSymbol);
             swapReq.put("currentSpotPrice", currentSpot);
             swapReq.put("bullish", isBullish);
-            swapReq.put("oldOptionScripCode", signal.getOptionScripCode());
-            swapReq.put("exchange", signal.getExchange() != null ? signal.getExchange() : "N");
-            swapReq.put("exchangeType", signal.getExchangeType() != null ? signal.getExchangeType() : "D");
+            swapReq.put("oldOptionScripCode", oldOptionScripCode);
+            swapReq.put("exchange", exchange);
+            swapReq.put("exchangeType", exchangeType);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -1191,80 +1506,107 @@ public class SignalBufferService {
 
             if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
                 log.warn("[OPTION-SWAP] API returned non-200: {} scrip={}", response.getStatusCode(), numericScrip);
-                return false;
+                return null;
             }
 
             Map<String, Object> body = response.getBody();
             if (!Boolean.TRUE.equals(body.get("success"))) {
                 log.warn("[OPTION-SWAP] API returned failure: {} scrip={}", body.get("message"), numericScrip);
-                return false;
+                return null;
             }
 
             Map<String, Object> newOpt = (Map<String, Object>) body.get("newOption");
             if (newOpt == null) {
                 log.warn("[OPTION-SWAP] API returned no newOption data scrip={}", numericScrip);
-                return false;
+                return null;
             }
 
-            // Extract new option metadata
-            String newScripCode = String.valueOf(newOpt.get("scripCode"));
-            String newStrike = String.valueOf(newOpt.get("strikeRate"));
-            String newType = String.valueOf(newOpt.get("scripType"));
-            String newExpiry = String.valueOf(newOpt.get("expiry"));
-            String newSymbol = String.valueOf(newOpt.getOrDefault("companyName", ""));
-            String newLotSize = String.valueOf(newOpt.getOrDefault("lotSize", "1"));
-            String newExch = String.valueOf(newOpt.getOrDefault("exch", signal.getExchange()));
-            String newExchType = String.valueOf(newOpt.getOrDefault("exchType", "D"));
-
-            // Wait for LTP: OptionProducer subscribes to the new option, need to wait for tick
-            Double newLtp = null;
-            for (int i = 0; i < optionSwapRetryCount; i++) {
-                Thread.sleep(optionSwapRetryDelayMs);
-                newLtp = priceProvider.getLtp(newScripCode);
-                if (newLtp != null && newLtp > 0) break;
-            }
-
-            if (newLtp == null || newLtp <= 0) {
-                log.warn("[OPTION-SWAP] No LTP received for new option after {}ms: newScripCode={} scrip={}",
-                        optionSwapRetryCount * optionSwapRetryDelayMs, newScripCode, numericScrip);
-                return false;
-            }
+            OptionSwap swap = new OptionSwap(
+                    String.valueOf(newOpt.get("scripCode")),
+                    Double.parseDouble(String.valueOf(newOpt.get("strikeRate"))),
+                    String.valueOf(newOpt.get("scripType")),
+                    String.valueOf(newOpt.get("expiry")),
+                    String.valueOf(newOpt.getOrDefault("companyName", "")),
+                    String.valueOf(newOpt.getOrDefault("lotSize", "1")),
+                    String.valueOf(newOpt.getOrDefault("exch", exchange)),
+                    String.valueOf(newOpt.getOrDefault("exchType", "D")),
+                    currentSpot, 0);
 
             // Verify new option is actually OTM
-            double strikeVal = Double.parseDouble(newStrike);
-            boolean stillITM = "CE".equals(newType) ? strikeVal < currentSpot : strikeVal > currentSpot;
+            boolean stillITM = "CE".equals(swap.type()) ? swap.strike() < currentSpot : swap.strike() > currentSpot;
             if (stillITM) {
                 log.warn("[OPTION-SWAP] Swapped option is still ITM: strike={} spot={} type={} scrip={}",
-                        newStrike, currentSpot, newType, numericScrip);
-                return false;
+                        swap.strike(), currentSpot, swap.type(), numericScrip);
+                return null;
             }
+            return swap;
+        }, optionSwapExecutor).thenCompose(swap -> {
+            if (swap == null) return CompletableFuture.completedFuture(null);
+            // OptionProducer subscribes to the new option — complete on its first tick
+            return priceProvider.awaitLtp(swap.scripCode(), optionSwapLtpTimeoutMs).thenApply(newLtp -> {
+                if (newLtp == null || newLtp <= 0) {
+                    log.warn("[OPTION-SWAP] No LTP received for new option after {}ms: newScripCode={} scrip={}",
+                            optionSwapLtpTimeoutMs, swap.scripCode(), numericScrip);
+                    return null;
+                }
+                return swap.withLtp(newLtp);
+            });
+        }).exceptionally(e -> {
+            log.error("[OPTION-SWAP] Failed for scrip={}: {}", numericScrip, e.getMessage());
+            return null;
+        });
+    }
 
-            // Log before updating so we can see old → new
-            double oldStrike = signal.getOptionStrike();
-            String oldScripCode = signal.getOptionScripCode();
-
-            // Update signal with new OTM option data
-            signal.setOptionScripCode(newScripCode);
-            signal.setOptionStrike(strikeVal);
-            signal.setOptionType(newType);
-            signal.setOptionLtp(newLtp);
-            signal.setOptionExpiry(newExpiry);
-            signal.setOptionSymbol(newSymbol);
-            signal.setOptionExchange(newExch);
-            signal.setOptionExchangeType(newExchType);
-            signal.setOptionIsITM(false);
-            try { signal.setOptionLotSize(Integer.parseInt(newLotSize)); } catch (NumberFormatException e) { /* keep existing */ }
-
-            log.info("[OPTION-SWAP] SUCCESS: scrip={} strike={} → {} scripCode={} → {} ltp={} type={} source={}",
-                    numericScrip, oldStrike, strikeVal, oldScripCode, newScripCode,
-                    String.format("%.2f", newLtp), newType, source);
-
-            return true;
+    /**
+     * Wait (in parallel, bounded by one shared deadline) for the option swaps started at intake and
+     * apply the completed ones. A swap still running at the deadline is abandoned; its signal keeps
+     * the original option.
+     */
+    private void applyOptionSwaps(Collection<ResolvedSignal> signals, long deadline) {
+        for (ResolvedSignal r : signals) {
+            if (r.optionSwap != null) applyOptionSwap(r, deadline);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("[OPTION-SWAP] Failed for scrip={}: {}", numericScrip, e.getMessage());
-            return false;
+    private void applyOptionSwap(ResolvedSignal r, long deadline) {
+        OptionSwap swap;
+        try {
+            swap = r.optionSwap.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            r.optionSwap.cancel(false);
+            log.warn("[OPTION-SWAP] Still pending at execution, keeping original option: scrip={} source={}",
+                    r.scripCode, r.source);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            return;
+        } finally {
+            r.optionSwap = null;
         }
+        if (swap == null) return;
+
+        StrategySignal signal = r.signal;
+        // Log before updating so we can see old → new
+        double oldStrike = signal.getOptionStrike();
+        String oldScripCode = signal.getOptionScripCode();
+
+        // Update signal with new OTM option data
+        signal.setOptionScripCode(swap.scripCode());
+        signal.setOptionStrike(swap.strike());
+        signal.setOptionType(swap.type());
+        signal.setOptionLtp(swap.ltp());
+        signal.setOptionExpiry(swap.expiry());
+        signal.setOptionSymbol(swap.symbol());
+        signal.setOptionExchange(swap.exchange());
+        signal.setOptionExchangeType(swap.exchangeType());
+        signal.setOptionIsITM(false);
+        try { signal.setOptionLotSize(Integer.parseInt(swap.lotSize())); } catch (NumberFormatException e) { /* keep existing */ }
+
+        log.info("[OPTION-SWAP] SUCCESS: scrip={} strike={} → {} scripCode={} → {} ltp={} type={} source={}",
+                r.scripCode, oldStrike, swap.strike(), oldScripCode, swap.scripCode(),
+                String.format("%.2f", swap.ltp()), swap.type(), r.source);
     }
 
     // ========== Option Routing via Dashboard Backend StrategyTradeExecutor ==========
@@ -1453,11 +1795,15 @@ public class SignalBufferService {
                     numericScrip, signal.getOptionScripCode(), signal.getOptionSymbol(),
                     lots, qty, optionLtp, url);
 
+            long submitStart = System.nanoTime();
             ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, request, Map.class);
+            latencyTracker.record(signal.getLatency(), SignalLatencyTracker.BROKER_SUBMIT,
+                    System.nanoTime() - submitStart);
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
                 Object success = response.getBody().get("success");
                 if (Boolean.TRUE.equals(success)) {
+                    latencyTracker.complete(signal.getLatency(), numericScrip);
                     log.info("OPTION_FILLED scrip={} optionScrip={} lots={} qty={} via StrategyTradeExecutor tradeId={}",
                             numericScrip, signal.getOptionScripCode(), lots, qty,
                             response.getBody().get("tradeId"));
@@ -1475,6 +1821,150 @@ public class SignalBufferService {
         }
     }
 
+    /**
+     * Option LTP, underlying spot and Greeks for a deferred-LTP signal, resolved ahead of execution.
+     * {@code resolvedAt} is when the LTP was last read or confirmed current (epoch ms).
+     */
+    record OptionPrep(Double ltp, double spot, LocalDate expiry, int dte, boolean dteGated, OptionGreeks greeks,
+                      long resolvedAt) {
+        OptionPrep confirmedAt(long at) {
+            return new OptionPrep(ltp, spot, expiry, dte, dteGated, greeks, at);
+        }
+    }
+
+    /** True if the option LTP was resolved earlier (pre-resolution) and is now older than the max age. */
+    private boolean isResolvedOptionLtpStale(StrategySignal signal) {
+        return isOptionLtpStale(signal.getOptionLtpResolvedAt(), System.currentTimeMillis(), prepLtpMaxAgeMs);
+    }
+
+    static boolean isOptionLtpStale(long resolvedAt, long now, long maxAgeMs) {
+        return resolvedAt > 0 && now - resolvedAt > maxAgeMs;
+    }
+
+    /**
+     * PRE-RESOLVE: a prep that finished while the window was open, checked against the option's latest
+     * cached tick at batch fire. Still the same price: the prep is current as of {@code firedAt}. Moved
+     * since: null, the Greeks are recomputed from the new tick.
+     */
+    static OptionPrep confirmAtFire(OptionPrep prep, PriceProvider.CachedLtp latest, long firedAt) {
+        if (latest == null || latest.ltp() <= 0 || (prep.ltp() != null && latest.ltp() == prep.ltp())) {
+            return prep.confirmedAt(firedAt);
+        }
+        return null;
+    }
+
+    /**
+     * Bring a finished prep up to date at batch fire (see {@link #confirmAtFire}), so the window's
+     * length does not turn it stale and execution reuses it instead of resolving inline again.
+     * Without the price cache there is no tick to compare against; the prep is kept as it was.
+     */
+    private OptionPrep refreshAtFire(StrategySignal signal, String numericScrip, OptionPrep prep) {
+        if (!priceProvider.isCacheEnabled()) return prep;
+        PriceProvider.CachedLtp latest = priceProvider.getCached(signal.getOptionScripCode());
+        OptionPrep confirmed = confirmAtFire(prep, latest, System.currentTimeMillis());
+        return confirmed != null ? confirmed : prepareDeferredOption(signal, numericScrip, latest.ltp());
+    }
+
+    /**
+     * PRE-RESOLVE: while the batch window is still open, wait for the deferred option's first tick
+     * (price-arrival notification, bounded by the window) and then fetch the spot and compute Greeks on
+     * the option-prep pool. Returns null when the signal has nothing to resolve; anything not resolved
+     * by batch fire is resolved inline at execution as before.
+     */
+    private CompletableFuture<OptionPrep> preResolveOption(StrategySignal signal, String numericScrip) {
+        if (!signal.isOptionAvailable() || signal.getOptionLotSize() <= 0) return null;
+        if (!signal.isOptionLtpDeferred() && signal.getOptionLtp() > 0) return null;
+        if (signal.getOptionScripCode() == null || signal.getOptionScripCode().isEmpty()) return null;
+        long windowMs = getDynamicBatchWindowSeconds() * 1000L;
+        return priceProvider.awaitLtp(signal.getOptionScripCode(), windowMs)
+                .thenApplyAsync(ltp -> prepareDeferredOption(signal, numericScrip, ltp), optionPrepExecutor);
+    }
+
+    /**
+     * Wait (bounded by one shared deadline) for the pre-resolutions started at intake and apply the
+     * finished ones, so ranking, lot costing and execution read resolved option data. Unfinished ones
+     * are left to the inline resolution in handlePaperTrade.
+     */
+    private void applyOptionPreps(Collection<ResolvedSignal> signals, long deadline) {
+        int applied = 0, pending = 0;
+        for (ResolvedSignal r : signals) {
+            CompletableFuture<OptionPrep> prep = r.optionPrep;
+            if (prep == null) continue;
+            r.optionPrep = null;
+            try {
+                OptionPrep resolved = prep.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (resolved.ltp() == null || resolved.ltp() <= 0) {
+                    pending++; // No tick yet — execution makes its own attempt
+                    continue;
+                }
+                String numericScrip = r.signal.getNumericScripCode() != null ? r.signal.getNumericScripCode() : r.scripCode;
+                resolveDeferredOptionLtp(r.signal, numericScrip, refreshAtFire(r.signal, numericScrip, resolved));
+                applied++;
+            } catch (TimeoutException e) {
+                pending++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Includes a saturated option-prep pool — execution resolves inline
+                log.warn("BATCH_PREP_ERROR scrip={}: {}", r.scripCode, e.getMessage());
+            }
+        }
+        if (applied + pending > 0) {
+            log.info("BATCH_PREP_APPLIED resolved={} unresolved={}", applied, pending);
+        }
+    }
+
+    /**
+     * Spot lookup and Black-Scholes part of the deferred resolution, given the option LTP. Reads the
+     * signal but never modifies it, so it can run on the option-prep pool.
+     */
+    private OptionPrep prepareDeferredOption(StrategySignal signal, String numericScrip, Double ltp) {
+        long resolvedAt = System.currentTimeMillis();
+        if (ltp == null || ltp <= 0 || blackScholesCalculator == null) {
+            return new OptionPrep(ltp, 0, null, 0, false, null, resolvedAt);
+        }
+
+        // Get fresh underlying spot price
+        Double spotLtp = priceProvider.getLtp(numericScrip);
+        double spotPrice = spotLtp != null && spotLtp > 0 ? spotLtp : signal.getEntryPrice();
+
+        double strike = signal.getOptionStrike();
+        String optType = signal.getOptionType();
+        String expiryStr = signal.getOptionExpiry();
+        if (strike <= 0 || optType == null || expiryStr == null || spotPrice <= 0) {
+            return new OptionPrep(ltp, spotPrice, null, 0, false, null, resolvedAt);
+        }
+
+        LocalDate expiry;
+        try {
+            expiry = LocalDate.parse(expiryStr, java.time.format.DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (Exception e) {
+            try {
+                expiry = LocalDate.parse(expiryStr, java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+            } catch (Exception e2) {
+                log.warn("DEFERRED_GREEKS cannot parse expiry '{}': {}", expiryStr, e2.getMessage());
+                return new OptionPrep(ltp, spotPrice, null, 0, false, null, resolvedAt);
+            }
+        }
+
+        OptionType bsType = "CE".equals(optType) ? OptionType.CALL : OptionType.PUT;
+        int dte = (int) java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), expiry);
+        double intrinsic = bsType == OptionType.CALL
+            ? Math.max(0, spotPrice - strike) : Math.max(0, strike - spotPrice);
+        if (dte < greekMinDte && intrinsic <= 0) {
+            return new OptionPrep(ltp, spotPrice, expiry, dte, true, null, resolvedAt); // DTE gate rejects, no Greeks needed
+        }
+
+        try {
+            OptionGreeks greeks = blackScholesCalculator.calculateGreeks(spotPrice, strike, expiry, bsType, ltp);
+            return new OptionPrep(ltp, spotPrice, expiry, dte, false, greeks, resolvedAt);
+        } catch (Exception e) {
+            log.error("DEFERRED_GREEKS_ERROR scrip={}: {}", numericScrip, e.getMessage());
+            return new OptionPrep(ltp, spotPrice, expiry, dte, false, null, resolvedAt);
+        }
+    }
+
     /**
      * Resolve deferred option LTP and compute Greeks at batch evaluation time.
      * Called when Streaming Candle's OptionDataEnricher found the correct OTM option via swap
@@ -1486,8 +1976,14 @@ public class SignalBufferService {
     private boolean resolveDeferredOptionLtp(StrategySignal signal, String numericScrip) {
         String optionScripCode = signal.getOptionScripCode();
         if (optionScripCode == null || optionScripCode.isEmpty()) return false;
-
         Double ltp = priceProvider.getLtp(optionScripCode);
+        return resolveDeferredOptionLtp(signal, numericScrip, prepareDeferredOption(signal, numericScrip, ltp));
+    }
+
+    /** Apply a resolved {@link OptionPrep}: option LTP, Greeks and Greek-aware SL/targets. */
+    private boolean resolveDeferredOptionLtp(StrategySignal signal, String numericScrip, OptionPrep prep) {
+        String optionScripCode = signal.getOptionScripCode();
+        Double ltp = prep.ltp();
 
         if (ltp == null || ltp <= 0) {
             log.info("DEFERRED_LTP_STILL_MISSING scrip={} optionScrip={}", numericScrip, optionScripCode);
@@ -1497,6 +1993,7 @@ public class SignalBufferService {
 
         signal.setOptionLtp(ltp);
         signal.setOptionLtpDeferred(false);
+        signal.setOptionLtpResolvedAt(prep.resolvedAt());
         log.info("DEFERRED_LTP_RESOLVED scrip={} optionScrip={} LTP={}",
             numericScrip, optionScripCode, String.format("%.2f", ltp));
 
@@ -1505,49 +2002,24 @@ public class SignalBufferService {
             log.debug("DEFERRED_GREEKS_SKIP BlackScholesCalculator not available");
             return true; // LTP resolved, trade with legacy delta=0.5 path
         }
+        if (prep.expiry() == null) {
+            log.debug("DEFERRED_GREEKS_SKIP missing fields: strike={} type={} expiry={} spot={}",
+                signal.getOptionStrike(), signal.getOptionType(), signal.getOptionExpiry(), prep.spot());
+            return true;
+        }
 
         try {
-            double strike = signal.getOptionStrike();
-            String optType = signal.getOptionType();
-            String expiryStr = signal.getOptionExpiry();
-
-            // Get fresh underlying spot price
-            Double spotPrice = priceProvider.getLtp(numericScrip);
-            if (spotPrice == null || spotPrice <= 0) spotPrice = (double) signal.getEntryPrice();
-
-            if (strike <= 0 || optType == null || expiryStr == null || spotPrice <= 0) {
-                log.debug("DEFERRED_GREEKS_SKIP missing fields: strike={} type={} expiry={} spot={}",
-                    strike, optType, expiryStr, spotPrice);
-                return true;
-            }
-
-            LocalDate expiry;
-            try {
-                expiry = LocalDate.parse(expiryStr, java.time.format.DateTimeFormatter.ISO_LOCAL_DATE);
-            } catch (Exception e) {
-                try {
-                    expiry = LocalDate.parse(expiryStr, java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-                } catch (Exception e2) {
-                    log.warn("DEFERRED_GREEKS cannot parse expiry '{}': {}", expiryStr, e2.getMessage());
-                    return true;
-                }
-            }
-
-            OptionType bsType = "CE".equals(optType) ? OptionType.CALL : OptionType.PUT;
-            int dte = (int) java.time.temporal.ChronoUnit.DAYS.between(LocalDate.now(), expiry);
+            int dte = prep.dte();
 
             // DTE gate: reject OTM with DTE < minimum
-            if (dte < greekMinDte) {
-                double intrinsic = bsType == OptionType.CALL
-                    ? Math.max(0, spotPrice - strike) : Math.max(0, strike - spotPrice);
-                if (intrinsic <= 0) {
-                    log.warn("DEFERRED_DTE_GATE dte={} < {} for OTM option scrip={}", dte, greekMinDte, optionScripCode);
-                    signal.setOptionAvailable(false);
-                    return false;
-                }
+            if (prep.dteGated()) {
+                log.warn("DEFERRED_DTE_GATE dte={} < {} for OTM option scrip={}", dte, greekMinDte, optionScripCode);
+                signal.setOptionAvailable(false);
+                return false;
             }
+            if (prep.greeks() == null) return true; // Greeks failed — tradeable with legacy delta=0.5
 
-            OptionGreeks greeks = blackScholesCalculator.calculateGreeks(spotPrice, strike, expiry, bsType, ltp);
+            OptionGreeks greeks = prep.greeks();
 
             double delta = greeks.getDelta();
             double absDelta = Math.abs(delta);
@@ -1652,11 +2124,17 @@ public class SignalBufferService {
         }
 
         // Flush any active batch
-        TimeframeBatch batch = currentBatch;
-        if (batch != null && !batch.resolvedSignals.isEmpty()) {
-            log.info("SignalBufferService flushing active batch with {} signals", batch.resolvedSignals.size());
+        BatchAccumulator.Batch<String, ResolvedSignal> batch = batches.closeNow();
+        if (batch != null && !batch.entries().isEmpty()) {
+            log.info("SignalBufferService flushing active batch with {} signals", batch.entries().size());
             evaluateBatch(batch);
         }
+        // Drain upstream first: each stage's leftovers feed the next one, still accepting
+        for (PipelineStage stage : List.of(enrichStage, rankStage, allocateStage, executeStage)) {
+            stage.shutdown(5000);
+        }
+        optionSwapExecutor.shutdownNow();
+        optionPrepExecutor.shutdownNow();
 
         log.info("SignalBufferService shutdown complete.");
     }
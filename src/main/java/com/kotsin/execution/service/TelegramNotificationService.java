@@ -3,6 +3,8 @@ package com.kotsin.execution.service;
 import com.kotsin.execution.model.ActiveTrade;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.FormBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -10,6 +12,8 @@ import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -33,13 +37,35 @@ public class TelegramNotificationService {
                 trade.getCompanyName(), trade.getScripCode(),
                 trade.getEntryPrice(), trade.getStopLoss(), trade.getTarget1()
         );
-        String url = "https://api.telegram.org/bot" + botToken + "/sendMessage";
-        FormBody body = new FormBody.Builder()
-                .add("chat_id", chatId)
-                .add("text", text)
-                .build();
-        Request req = new Request.Builder().url(url).post(body).build();
-        try (Response resp = http.newCall(req).execute()) {
+        send(text);
+    }
+
+    /**
+     * Operator alert for something that needs a human, e.g. a broker order left working. Sent in the
+     * background, so it can be raised from the order path without delaying it.
+     */
+    public void sendAlert(String message) {
+        if (botToken == null || botToken.isBlank() || chatId == null || chatId.isBlank()) {
+            log.debug("Telegram not configured; skipping alert.");
+            return;
+        }
+        http.newCall(request("ALERT: " + message)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                log.warn("Telegram alert error: {}", e.toString());
+            }
+
+            @Override
+            public void onResponse(Call call, Response resp) {
+                try (resp) {
+                    if (!resp.isSuccessful()) log.warn("Telegram alert failed: HTTP {}", resp.code());
+                }
+            }
+        });
+    }
+
+    private void send(String text) {
+        try (Response resp = http.newCall(request(text)).execute()) {
             if (!resp.isSuccessful()) {
                 log.warn("Telegram send failed: HTTP {}", resp.code());
             }
@@ -47,4 +73,13 @@ public class TelegramNotificationService {
             log.warn("Telegram send error: {}", e.toString());
         }
     }
+
+    private Request request(String text) {
+        String url = "https://api.telegram.org/bot" + botToken + "/sendMessage";
+        FormBody body = new FormBody.Builder()
+                .add("chat_id", chatId)
+                .add("text", text)
+                .build();
+        return new Request.Builder().url(url).post(body).build();
+    }
 }
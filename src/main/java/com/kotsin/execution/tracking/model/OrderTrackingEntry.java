@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Tracks complete lifecycle of an order from creation to completion.
@@ -61,6 +62,9 @@ public class OrderTrackingEntry {
     // Position reference (after fill)
     private String positionId;
 
+    // Signal latency per hop in ms (consumer_parse, buffer_wait, ..., signal_to_fill); null for manual orders
+    private Map<String, Double> latencyBreakdownMs;
+
     // Timestamps
     private Instant createdAt;
     private Instant lastUpdatedAt;
@@ -0,0 +1,62 @@
+package com.kotsin.execution.tracking.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-signal latency breakdown, carried on the StrategySignal from Kafka receipt to fill.
+ * Hop durations accumulate (a hop measured twice, e.g. option resolution at batch and inline, adds up).
+ */
+public class SignalLatency {
+
+    private final String strategy;
+    private final String exchange;
+    // nanoTime-based origin: Kafka receipt, back-dated by the consumer hop
+    private final long originNanos;
+    private long markNanos;
+    private final Map<String, Double> hopsMs = new LinkedHashMap<>();
+
+    public SignalLatency(String strategy, String exchange, long originNanos, long markNanos) {
+        this.strategy = strategy;
+        this.exchange = exchange;
+        this.originNanos = originNanos;
+        this.markNanos = markNanos;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public String getExchange() {
+        return exchange;
+    }
+
+    public long getOriginNanos() {
+        return originNanos;
+    }
+
+    /** Nanos since the previous mark; moves the mark to {@code now}. */
+    public synchronized long lap(long now) {
+        long elapsed = now - markNanos;
+        markNanos = now;
+        return elapsed;
+    }
+
+    public synchronized void mark(long now) {
+        markNanos = now;
+    }
+
+    public synchronized void add(String hop, long nanos) {
+        hopsMs.merge(hop, Math.round(nanos / 10_000.0) / 100.0, Double::sum);
+    }
+
+    /** Hop → ms, in the order the hops were first recorded. */
+    public synchronized Map<String, Double> snapshot() {
+        return new LinkedHashMap<>(hopsMs);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return hopsMs.toString();
+    }
+}
@@ -28,6 +28,7 @@ public class OrderStatusTracker {
 
     private final OrderTrackingRepository repository;
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final SignalLatencyTracker latencyTracker;
 
     /**
      * Track new order creation
@@ -49,6 +50,7 @@ public class OrderStatusTracker {
         entry.setStopLoss(order.getSl());
         entry.setTarget1(order.getTp1());
         entry.setTarget2(order.getTp2());
+        entry.setLatencyBreakdownMs(latencyTracker.breakdown(order.getSignalId()));
 
         OrderStatusEvent event = OrderStatusEvent.orderCreated(
                 order.getId(),
@@ -82,6 +84,8 @@ public class OrderStatusTracker {
 
         OrderTrackingEntry entry = entryOpt.get();
         entry.markFilled(order.getEntryPrice(), Instant.now());
+        Map<String, Double> latency = latencyTracker.orderFilled(order.getSignalId(), order.getScripCode());
+        if (latency != null) entry.setLatencyBreakdownMs(latency);
 
         OrderStatusEvent event = OrderStatusEvent.orderFilled(
                 order.getId(),
@@ -155,6 +159,9 @@ public class OrderStatusTracker {
         }
 
         entry.markRejected(reason);
+        if (entry.getLatencyBreakdownMs() == null) {
+            entry.setLatencyBreakdownMs(latencyTracker.breakdown(order.getSignalId()));
+        }
 
         OrderStatusEvent event = OrderStatusEvent.orderRejected(
                 order.getId(),
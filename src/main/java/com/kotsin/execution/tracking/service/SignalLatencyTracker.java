@@ -0,0 +1,130 @@
+package com.kotsin.execution.tracking.service;
+
+import com.kotsin.execution.service.ExpiringMap;
+import com.kotsin.execution.tracking.model.SignalLatency;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end signal latency: one Micrometer timer per hop, from Kafka record to order fill.
+ *
+ * Timer {@code signal.latency}, tags hop / strategy / exchange, with p50/p95/p99 and a percentile
+ * histogram. Hops: consumer_parse (Kafka receipt → SignalBufferService intake), buffer_wait (intake →
+ * batch close), allocation (FundAllocationService), option_resolution (swap / deferred LTP / Greeks),
+ * create_order (VirtualEngineService.createOrder → fill), broker_submit (order submission to the
+ * executor or broker), and signal_to_fill (receipt → fill).
+ *
+ * The same durations are accumulated on the signal's {@link SignalLatency}; when a virtual order is
+ * created for the signal the breakdown is looked up by its signalId and copied onto the
+ * OrderTrackingEntry.
+ */
+@Component
+@Slf4j
+public class SignalLatencyTracker {
+
+    public static final String CONSUMER_PARSE = "consumer_parse";
+    public static final String BUFFER_WAIT = "buffer_wait";
+    public static final String ALLOCATION = "allocation";
+    public static final String OPTION_RESOLUTION = "option_resolution";
+    public static final String CREATE_ORDER = "create_order";
+    public static final String BROKER_SUBMIT = "broker_submit";
+    public static final String SIGNAL_TO_FILL = "signal_to_fill";
+
+    // Orders still pending a fill are kept this long for the breakdown hand-off
+    private static final long ORDER_TTL_MS = 30 * 60_000L;
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ExpiringMap<String, SignalLatency> byOrderSignalId = new ExpiringMap<>(64, 60_000);
+
+    public SignalLatencyTracker(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Start tracking a signal at SignalBufferService intake; records the consumer hop since receipt. */
+    public SignalLatency start(String strategy, String exchange, Instant receivedAt) {
+        long now = System.nanoTime();
+        long consumerNanos = receivedAt != null
+                ? Math.max(0, Duration.between(receivedAt, Instant.now()).toNanos()) : 0;
+        SignalLatency latency = new SignalLatency(strategy != null ? strategy : "UNKNOWN",
+                exchange != null && !exchange.isEmpty() ? exchange : "N", now - consumerNanos, now);
+        record(latency, CONSUMER_PARSE, consumerNanos);
+        return latency;
+    }
+
+    /** Record the time since the previous lap as {@code hop}. No-op for untracked signals. */
+    public void lap(SignalLatency latency, String hop) {
+        if (latency == null) return;
+        record(latency, hop, latency.lap(System.nanoTime()));
+    }
+
+    /** Record an explicitly measured duration as {@code hop}. No-op for untracked signals. */
+    public void record(SignalLatency latency, String hop, long nanos) {
+        if (latency == null) return;
+        latency.add(hop, nanos);
+        timer(hop, latency.getStrategy(), latency.getExchange()).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Record a hop not tied to a tracked signal (e.g. live broker orders from TradeManager). */
+    public void record(String hop, String strategy, String exchange, long nanos) {
+        timer(hop, strategy != null ? strategy : "UNKNOWN", exchange != null ? exchange : "N")
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Signal reached a fill: record receipt → fill and log the breakdown. */
+    public void complete(SignalLatency latency, String scripCode) {
+        if (latency == null) return;
+        record(latency, SIGNAL_TO_FILL, System.nanoTime() - latency.getOriginNanos());
+        log.info("SIGNAL_LATENCY strategy={} exchange={} scrip={} breakdownMs={}",
+                latency.getStrategy(), latency.getExchange(), scripCode, latency);
+    }
+
+    /** Hand the breakdown to the order about to be created for the signal; starts the create_order hop. */
+    public void attachToOrder(String signalId, SignalLatency latency) {
+        if (signalId == null || latency == null) return;
+        latency.mark(System.nanoTime());
+        byOrderSignalId.put(signalId, latency, ORDER_TTL_MS);
+    }
+
+    /** Breakdown so far for an order's signal, or null if the order did not come from a tracked signal. */
+    public Map<String, Double> breakdown(String signalId) {
+        SignalLatency latency = signalId != null ? byOrderSignalId.get(signalId) : null;
+        return latency != null ? latency.snapshot() : null;
+    }
+
+    /**
+     * Order filled: closes the create_order and signal_to_fill hops, returns the final breakdown. The
+     * order's entry is removed, so a repeated fill callback records nothing.
+     */
+    public Map<String, Double> orderFilled(String signalId, String scripCode) {
+        SignalLatency latency = signalId != null ? byOrderSignalId.remove(signalId) : null;
+        if (latency == null) return null;
+        lap(latency, CREATE_ORDER);
+        complete(latency, scripCode);
+        return latency.snapshot();
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void sweep() {
+        byOrderSignalId.sweep();
+    }
+
+    private Timer timer(String hop, String strategy, String exchange) {
+        return timers.computeIfAbsent(hop + '|' + strategy + '|' + exchange, k -> Timer.builder("signal.latency")
+                .tag("hop", hop)
+                .tag("strategy", strategy)
+                .tag("exchange", exchange)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
@@ -0,0 +1,134 @@
+package com.kotsin.execution.virtual;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Last-published state of every streamed position, for the delta SSE protocol.
+ *
+ * Each scrip carries a version that increases on every change; a delta names the version it applies on
+ * ({@code base}) and the version it produces ({@code v}), plus only the changed fields (removed fields
+ * as null). A client whose local version for the scrip differs from {@code base} has missed an update
+ * and must resync from a snapshot; that per-scrip check is the only gap detection. {@code seq} orders
+ * events across the stream but is not gap-free: coalescing drops the seqs of replaced deltas, and a
+ * no-op delta repeats the current seq.
+ *
+ * Not thread-safe: VirtualEventBus serialises all access under its state lock.
+ */
+public class PositionDeltaTracker {
+
+    /** A change to one scrip. {@code changes} is null for removals. */
+    public record Delta(long seq, String scrip, long base, long version, ObjectNode changes, boolean removed) {}
+
+    private record Versioned(long version, ObjectNode fields) {}
+
+    private final ObjectMapper mapper;
+    private final String streamId = UUID.randomUUID().toString();
+    private final Map<String, Versioned> state = new HashMap<>();
+    private long seq;
+
+    public PositionDeltaTracker(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public String streamId() {
+        return streamId;
+    }
+
+    /**
+     * Record a new full state for {@code scrip}. Returns the delta against the previous state,
+     * or null if nothing changed.
+     */
+    public Delta update(String scrip, ObjectNode full) {
+        Versioned prev = state.get(scrip);
+        ObjectNode changes = mapper.createObjectNode();
+        if (prev == null) {
+            changes.setAll(full);
+        } else {
+            for (Iterator<Map.Entry<String, JsonNode>> it = full.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> f = it.next();
+                if (!f.getValue().equals(prev.fields().get(f.getKey()))) changes.set(f.getKey(), f.getValue());
+            }
+            for (Iterator<String> it = prev.fields().fieldNames(); it.hasNext(); ) {
+                String name = it.next();
+                if (!full.has(name)) changes.putNull(name);
+            }
+        }
+        if (prev != null && changes.isEmpty()) return null;
+        long base = prev != null ? prev.version() : 0L;
+        state.put(scrip, new Versioned(base + 1, full));
+        return new Delta(++seq, scrip, base, base + 1, changes, false);
+    }
+
+    /** Forget {@code scrip}. Returns the removal delta, or null if it was not tracked. */
+    public Delta remove(String scrip) {
+        Versioned prev = state.remove(scrip);
+        if (prev == null) return null;
+        return new Delta(++seq, scrip, prev.version(), prev.version() + 1, null, true);
+    }
+
+    /** Current version of {@code scrip} as a delta with no changes (event without a state change). */
+    public Delta noop(String scrip) {
+        Versioned cur = state.get(scrip);
+        long v = cur != null ? cur.version() : 0L;
+        return new Delta(seq, scrip, v, v, mapper.createObjectNode(), false);
+    }
+
+    /**
+     * Reconcile with the open positions the caller knows of, scrip -> full state, before a snapshot.
+     * Scrips absent from it are dropped (closed without a removal event, e.g. by another module).
+     * Positions not published through the bus (loaded from Redis, or written by another module) are
+     * tracked at version 0; published ones are left alone.
+     */
+    public void seed(Map<String, ObjectNode> known) {
+        state.keySet().retainAll(known.keySet());
+        known.forEach((scrip, full) -> {
+            Versioned cur = state.get(scrip);
+            if (cur == null || cur.version() == 0L) state.put(scrip, new Versioned(0L, full));
+        });
+    }
+
+    /** {@code {streamId, seq, positions: [{scrip, v, position}]}}. */
+    public ObjectNode snapshot() {
+        ObjectNode out = mapper.createObjectNode();
+        out.put("streamId", streamId);
+        out.put("seq", seq);
+        ArrayNode positions = out.putArray("positions");
+        state.forEach((scrip, v) -> {
+            ObjectNode entry = positions.addObject();
+            entry.put("scrip", scrip);
+            entry.put("v", v.version());
+            entry.set("position", v.fields());
+        });
+        return out;
+    }
+
+    /** Wire form: {@code {seq, scrip, base, v, changes}} or {@code {seq, scrip, base, v, removed: true}}. */
+    public ObjectNode encode(Delta d) {
+        ObjectNode out = mapper.createObjectNode();
+        out.put("seq", d.seq());
+        out.put("scrip", d.scrip());
+        out.put("base", d.base());
+        out.put("v", d.version());
+        if (d.removed()) out.put("removed", true);
+        else out.set("changes", d.changes());
+        return out;
+    }
+
+    /** Combine two consecutive deltas of one scrip into one spanning older.base → newer.v. */
+    public static Delta merge(Delta older, Delta newer) {
+        if (newer.removed()) {
+            return new Delta(newer.seq(), newer.scrip(), older.base(), newer.version(), null, true);
+        }
+        ObjectNode changes = older.changes() != null ? older.changes().deepCopy() : newer.changes().objectNode();
+        changes.setAll(newer.changes());
+        return new Delta(newer.seq(), newer.scrip(), older.base(), newer.version(), changes, false);
+    }
+}
@@ -0,0 +1,131 @@
+package com.kotsin.execution.virtual;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-scrip sorted index of pending price levels (stops, targets, trailing anchors).
+ *
+ * Each scrip keeps two navigable maps: levels fired by an up-move (LTP >= level) and
+ * levels fired by a down-move (LTP <= level). A new LTP only walks the head of the up map
+ * and the tail of the down map, so the cost of a tick is proportional to the triggers it
+ * actually crossed rather than to the number of open positions.
+ *
+ * Levels are grouped by owner (a position scripCode, an order id, ...). Registering an owner
+ * replaces all its previous levels; a crossed level reports the owner, and the caller
+ * re-registers the owner's remaining levels after acting on it.
+ */
+public class PriceLevelTriggerIndex {
+
+    public enum Direction { UP, DOWN }
+
+    /** A single pending level. {@code kind} is informational (SL, TP1, TP2, TRAIL, LIMIT...). */
+    public record Level(Direction direction, double price, String kind) {}
+
+    private final ConcurrentHashMap<String, ScripLevels> byScrip = new ConcurrentHashMap<>();
+
+    /** Replace all levels of {@code ownerId} on {@code scrip}. An empty list unregisters the owner. */
+    public void register(String scrip, String ownerId, List<Level> levels) {
+        if (levels == null || levels.isEmpty()) {
+            unregister(scrip, ownerId);
+            return;
+        }
+        byScrip.compute(scrip, (k, existing) -> {
+            ScripLevels scripLevels = existing != null ? existing : new ScripLevels();
+            scripLevels.replace(ownerId, levels);
+            return scripLevels.isEmpty() ? null : scripLevels;
+        });
+    }
+
+    public void unregister(String scrip, String ownerId) {
+        byScrip.computeIfPresent(scrip, (k, levels) -> {
+            levels.remove(ownerId);
+            return levels.isEmpty() ? null : levels;
+        });
+    }
+
+    /** Owners on {@code scrip} with at least one level crossed by {@code ltp}. */
+    public Set<String> crossed(String scrip, double ltp) {
+        ScripLevels levels = byScrip.get(scrip);
+        return levels == null ? Collections.emptySet() : levels.crossed(ltp);
+    }
+
+    public boolean hasLevels(String scrip) {
+        return byScrip.containsKey(scrip);
+    }
+
+    /** Levels currently registered for {@code ownerId} (diagnostics). */
+    public List<Level> levelsOf(String scrip, String ownerId) {
+        ScripLevels levels = byScrip.get(scrip);
+        return levels == null ? List.of() : levels.levelsOf(ownerId);
+    }
+
+    public int scripCount() {
+        return byScrip.size();
+    }
+
+    private static final class ScripLevels {
+        private final TreeMap<Double, Set<String>> up = new TreeMap<>();
+        private final TreeMap<Double, Set<String>> down = new TreeMap<>();
+        private final Map<String, List<Level>> byOwner = new HashMap<>();
+
+        synchronized void replace(String ownerId, List<Level> levels) {
+            remove(ownerId);
+            List<Level> copy = new ArrayList<>(levels.size());
+            for (Level l : levels) {
+                if (l == null || Double.isNaN(l.price())) continue;
+                mapFor(l.direction()).computeIfAbsent(l.price(), k -> new HashSet<>(2)).add(ownerId);
+                copy.add(l);
+            }
+            if (!copy.isEmpty()) byOwner.put(ownerId, copy);
+        }
+
+        synchronized void remove(String ownerId) {
+            List<Level> old = byOwner.remove(ownerId);
+            if (old == null) return;
+            for (Level l : old) {
+                TreeMap<Double, Set<String>> map = mapFor(l.direction());
+                Set<String> owners = map.get(l.price());
+                if (owners != null && owners.remove(ownerId) && owners.isEmpty()) {
+                    map.remove(l.price());
+                }
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return byOwner.isEmpty();
+        }
+
+        synchronized Set<String> crossed(double ltp) {
+            boolean upHit = !up.isEmpty() && up.firstKey() <= ltp;
+            boolean downHit = !down.isEmpty() && down.lastKey() >= ltp;
+            if (!upHit && !downHit) return Collections.emptySet();
+
+            Set<String> fired = new HashSet<>(4);
+            if (upHit) collect(up.headMap(ltp, true), fired);
+            if (downHit) collect(down.tailMap(ltp, true), fired);
+            return fired;
+        }
+
+        synchronized List<Level> levelsOf(String ownerId) {
+            List<Level> levels = byOwner.get(ownerId);
+            return levels == null ? List.of() : List.copyOf(levels);
+        }
+
+        private TreeMap<Double, Set<String>> mapFor(Direction d) {
+            return d == Direction.UP ? up : down;
+        }
+
+        private static void collect(NavigableMap<Double, Set<String>> range, Set<String> into) {
+            for (Set<String> owners : range.values()) into.addAll(owners);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.kotsin.execution.virtual;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
@@ -9,22 +12,229 @@ import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Last traded price lookup.
+ *
+ * STREAMING-LTP: LiveMarketDataConsumer pushes every forwardtesting-data tick into a local cache keyed
+ * by numeric scripCode. getLtp serves cached prices younger than {@code execution.virtual.ltp-cache.max-age-ms}
+ * straight from memory and only calls the price API on a miss or a stale entry (illiquid contracts,
+ * instruments not on the stream); the HTTP result is cached as well.
+ *
+ * BULK-LTP: getLtps resolves many scrips in one round of parallel I/O. Concurrent misses for the same
+ * scrip share a single HTTP call (single-flight), and fan-out is bounded by a small fixed fetch pool.
+ *
+ * PRICE-ARRIVAL: awaitLtp lets a caller wait for the first tick of a freshly subscribed instrument
+ * without polling; the waiter is completed by onTick, or falls back to one API fetch at its deadline.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class PriceProvider {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private final OkHttpClient http = new OkHttpClient();
 
     @Value("${execution.virtual.price-api-base:http://localhost:8208}")
     private String priceApiBase;
 
+    @Value("${execution.virtual.ltp-cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${execution.virtual.ltp-cache.max-age-ms:3000}")
+    private long maxAgeMs;
+
+    @Value("${execution.virtual.ltp-fetch.parallelism:8}")
+    private int fetchParallelism;
+
+    @Value("${execution.virtual.ltp-fetch.timeout-ms:3000}")
+    private long bulkTimeoutMs;
+
+    // Single-flight: cache key → HTTP fetch currently running for it
+    private final ConcurrentHashMap<String, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+    private ExecutorService fetchPool;
+
+    @PostConstruct
+    void initFetchPool() {
+        AtomicInteger seq = new AtomicInteger();
+        fetchPool = Executors.newFixedThreadPool(Math.max(1, fetchParallelism), r -> {
+            Thread t = new Thread(r, "ltp-fetch-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdownFetchPool() {
+        fetchPool.shutdownNow();
+    }
+
+    /** Price plus the wall-clock time it was observed. */
+    public record CachedLtp(double ltp, long observedAt) {}
+
+    // numeric scripCode → latest observed price
+    private final ConcurrentHashMap<String, CachedLtp> cache = new ConcurrentHashMap<>();
+    // PRICE-ARRIVAL: numeric scripCode → callers waiting for its next tick
+    private final ConcurrentHashMap<String, Set<CompletableFuture<Double>>> tickWaiters = new ConcurrentHashMap<>();
+
+    /** STREAMING-LTP: record a tick. {@code token} is the numeric scripCode of the market-data feed. */
+    public void onTick(String token, double ltp) {
+        if (token == null || ltp <= 0) return;
+        if (cacheEnabled) cache.put(token, new CachedLtp(ltp, System.currentTimeMillis()));
+        if (tickWaiters.isEmpty()) return;
+        Set<CompletableFuture<Double>> waiters = tickWaiters.remove(token);
+        if (waiters != null) waiters.forEach(w -> w.complete(ltp));
+    }
+
+    /**
+     * PRICE-ARRIVAL: completes with a fresh cached price immediately, otherwise with the first tick that
+     * arrives for {@code scripCode}. If none arrives within {@code timeoutMs}, one price API fetch is made
+     * instead (completing with null if that has no price either). Never blocks the caller.
+     */
+    public CompletableFuture<Double> awaitLtp(String scripCode, long timeoutMs) {
+        Double cached = freshCached(scripCode);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+        if (scripCode == null) return CompletableFuture.completedFuture(null);
+
+        String key = cacheKey(scripCode);
+        CompletableFuture<Double> tick = new CompletableFuture<>();
+        tickWaiters.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(tick);
+        tick.whenComplete((ltp, err) -> tickWaiters.computeIfPresent(key, (k, waiters) -> {
+            waiters.remove(tick);
+            return waiters.isEmpty() ? null : waiters;
+        }));
+        // A tick may have landed between the cache check and registration
+        Double raced = freshCached(scripCode);
+        if (raced != null) tick.complete(raced);
+        tick.completeOnTimeout(null, Math.max(0, timeoutMs), TimeUnit.MILLISECONDS);
+
+        return tick.thenCompose(ltp -> ltp != null
+                ? CompletableFuture.completedFuture(ltp)
+                : fetchShared(scripCode, true));
+    }
+
+    /** Whether fetched and streamed prices are kept; when off, every getLtp goes to the price API. */
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /** Cached entry regardless of age, or null if the scrip was never seen. */
+    public CachedLtp getCached(String scripCode) {
+        return scripCode == null ? null : cache.get(cacheKey(scripCode));
+    }
+
     public Double getLtp(String scripCode){
+        Double cached = freshCached(scripCode);
+        if (cached != null) return cached;
+        if (scripCode == null) return fetchLtp(null);
+        try {
+            return fetchShared(scripCode, false).join();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * BULK-LTP: latest price for each scrip. Fresh cache entries are answered immediately, misses are
+     * fetched in parallel (bounded by execution.virtual.ltp-fetch.parallelism). Scrips without a price
+     * within execution.virtual.ltp-fetch.timeout-ms are absent from the result.
+     */
+    public Map<String, Double> getLtps(Collection<String> scripCodes){
+        Map<String, Double> out = new HashMap<>();
+        Map<String, CompletableFuture<Double>> pending = new LinkedHashMap<>();
+        for (String scripCode : scripCodes) {
+            if (scripCode == null || out.containsKey(scripCode) || pending.containsKey(scripCode)) continue;
+            Double cached = freshCached(scripCode);
+            if (cached != null) out.put(scripCode, cached);
+            else pending.put(scripCode, fetchShared(scripCode, true));
+        }
+        if (pending.isEmpty()) return out;
+
+        long deadline = System.currentTimeMillis() + bulkTimeoutMs;
+        for (var e : pending.entrySet()) {
+            try {
+                long wait = Math.max(0, deadline - System.currentTimeMillis());
+                Double ltp = e.getValue().get(wait, TimeUnit.MILLISECONDS);
+                if (ltp != null) out.put(e.getKey(), ltp);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception ex) {
+                log.debug("Bulk price fetch timed out/failed for {}: {}", e.getKey(), ex.getMessage());
+            }
+        }
+        return out;
+    }
+
+    private Double freshCached(String scripCode) {
+        if (!cacheEnabled || scripCode == null) return null;
+        CachedLtp cached = cache.get(cacheKey(scripCode));
+        if (cached != null && System.currentTimeMillis() - cached.observedAt() <= maxAgeMs) {
+            return cached.ltp();
+        }
+        return null;
+    }
+
+    /**
+     * Single-flight HTTP fetch: joins the call already running for this scrip, otherwise starts one —
+     * on the fetch pool when {@code async}, else on the calling thread.
+     */
+    private CompletableFuture<Double> fetchShared(String scripCode, boolean async) {
+        String key = cacheKey(scripCode);
+        CompletableFuture<Double> mine = new CompletableFuture<>();
+        CompletableFuture<Double> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) return running;
+
+        Runnable fetch = () -> {
+            try {
+                mine.complete(fetchAndCache(scripCode));
+            } catch (Throwable t) {
+                mine.complete(null);
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        };
+        if (async) {
+            try {
+                fetchPool.execute(fetch);
+            } catch (Exception rejected) {
+                fetch.run();
+            }
+        } else {
+            fetch.run();
+        }
+        return mine;
+    }
+
+    private Double fetchAndCache(String scripCode) {
+        long requestedAt = System.currentTimeMillis();
+        Double fetched = fetchLtp(scripCode);
+        if (cacheEnabled && fetched != null && fetched > 0) {
+            // Stamped with the request time: a tick that arrived while the call was in flight wins
+            cache.merge(cacheKey(scripCode), new CachedLtp(fetched, requestedAt),
+                    (old, fresh) -> old.observedAt() > fresh.observedAt() ? old : fresh);
+        }
+        return fetched;
+    }
+
+    private Double fetchLtp(String scripCode){
         try {
             Request req = new Request.Builder().url(priceApiBase+"/api/price/"+scripCode).build();
             try (Response r = http.newCall(req).execute()){
                 if (!r.isSuccessful() || r.body()==null) return null;
                 String raw = r.body().string();
-                JsonNode node = new com.fasterxml.jackson.databind.ObjectMapper().readTree(raw);
+                JsonNode node = MAPPER.readTree(raw);
                 if (node.has("lastRate")) return node.get("lastRate").asDouble();
                 return null;
             }
@@ -33,5 +243,10 @@ public class PriceProvider {
             return null;
         }
     }
-}
 
+    /** Ticks are keyed by numeric token; callers may pass the "N:C:18365" form. */
+    private static String cacheKey(String scripCode) {
+        int idx = scripCode.lastIndexOf(':');
+        return idx >= 0 ? scripCode.substring(idx + 1) : scripCode;
+    }
+}
@@ -0,0 +1,30 @@
+package com.kotsin.execution.virtual;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-shot startup rewrite of virtual:orders:* and virtual:positions:* into the configured codec.
+ * Reads accept both formats regardless, so this is only needed to finish (or roll back) a migration.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualCodecMigrator {
+
+    private final VirtualWalletRepository repo;
+
+    @Value("${execution.virtual.redis.codec.migrate-on-start:false}")
+    private boolean migrateOnStart;
+
+    @PostConstruct
+    public void migrate() {
+        if (!migrateOnStart) return;
+        long start = System.currentTimeMillis();
+        int rewritten = repo.migrateCodec();
+        log.info("CODEC_MIGRATION rewritten={} took={}ms", rewritten, System.currentTimeMillis() - start);
+    }
+}
@@ -23,6 +23,9 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -35,6 +38,8 @@ public class VirtualEngineService {
     private final VirtualWalletRepository repo;
     private final PriceProvider prices;
     private final VirtualEventBus bus;
+    private final VirtualPositionBook book;
+    private final VirtualOrderIndex orderIndex;
 
     @Autowired(required = false)
     private PaperTradeOutcomeProducer outcomeProducer;
@@ -69,11 +74,26 @@ public class VirtualEngineService {
     @Value("${strategy.wallet.enabled:false}")
     private boolean strategyWalletEnabled;
 
-    // BUG-009 FIX: Per-scripCode locking to prevent race conditions
-    private final ConcurrentHashMap<String, ReentrantLock> scripLocks = new ConcurrentHashMap<>();
+    @Value("${execution.virtual.tick-driven.enabled:true}")
+    private boolean tickDrivenEnabled;
 
+    @Value("${execution.virtual.safety-sweep.interval-ms:5000}")
+    private long safetySweepIntervalMs;
+
+    @Value("${execution.virtual.mark-to-market.interval-ms:500}")
+    private long markToMarketIntervalMs;
+
+    // TICK-DRIVEN: numeric market-data token → position scripCode, for positions this engine manages
+    private final ConcurrentHashMap<String, String> tickWatch = new ConcurrentHashMap<>();
+    // Pending SL / TP / trailing levels per scrip — a tick only evaluates the positions it crossed
+    private final PriceLevelTriggerIndex positionTriggers = new PriceLevelTriggerIndex();
+    // Last mark-to-market per scrip, throttles ticks that cross no level
+    private final ConcurrentHashMap<String, Long> markedAt = new ConcurrentHashMap<>();
+    private volatile long lastSweepAt;
+
+    // BUG-009 FIX: Per-scripCode locking to prevent race conditions (locks live in the position book)
     private ReentrantLock getLock(String scripCode) {
-        return scripLocks.computeIfAbsent(scripCode, k -> new ReentrantLock());
+        return book.lockFor(scripCode);
     }
 
     /**
@@ -201,6 +221,7 @@ public class VirtualEngineService {
             req.setStatus(VirtualOrder.Status.PENDING);
         }
         repo.saveOrder(req);
+        orderIndex.add(req); // Only working LIMIT orders are indexed
         bus.publish("order.created", req);
         return req;
     }
@@ -220,7 +241,7 @@ public class VirtualEngineService {
     }
 
     public Optional<VirtualPosition> closePosition(String scripCode){
-        Optional<VirtualPosition> posOpt = repo.getPosition(scripCode);
+        Optional<VirtualPosition> posOpt = book.get(scripCode);
         if (posOpt.isEmpty()) return Optional.empty();
         VirtualPosition p = posOpt.get();
         if (p.getQtyOpen() <= 0) return Optional.of(p);
@@ -231,14 +252,15 @@ public class VirtualEngineService {
         p.setUpdatedAt(System.currentTimeMillis());
         bus.publish("position.closed", p);
         // Delete closed position from Redis to prevent zombie accumulation
-        repo.deletePosition(scripCode);
+        book.remove(scripCode);
+        unwatchTicks(scripCode);
         log.info("POSITION_CLOSED_AND_DELETED scrip={} pnl={}", scripCode, p.getRealizedPnl());
         return Optional.of(p);
     }
 
     private void applyToPosition(VirtualOrder filled, double fill){
         VirtualPosition.Side side = filled.getSide()== VirtualOrder.Side.BUY ? VirtualPosition.Side.LONG : VirtualPosition.Side.SHORT;
-        VirtualPosition p = repo.getPosition(filled.getScripCode()).orElseGet(() -> {
+        VirtualPosition p = book.get(filled.getScripCode()).orElseGet(() -> {
             VirtualPosition np = new VirtualPosition();
             np.setScripCode(filled.getScripCode());
             np.setSide(side);
@@ -343,7 +365,8 @@ public class VirtualEngineService {
             p.setInstrumentSymbol(filled.getInstrumentSymbol());
         }
         p.setUpdatedAt(System.currentTimeMillis());
-        repo.savePosition(p);
+        book.persist(p);
+        refreshTriggers(p);
         bus.publish("position.updated", p);
 
         // STRATEGY-WALLET: Deduct margin from the position's wallet
@@ -379,25 +402,23 @@ public class VirtualEngineService {
 
     @org.springframework.scheduling.annotation.Scheduled(fixedDelay = 500)
     void process(){
-        // LIMIT fills
-        for (var o : repo.listOrders(500)){
-            if (o.getStatus() != VirtualOrder.Status.PENDING || o.getType()!= VirtualOrder.Type.LIMIT) continue;
-            
+        // LIMIT fills: only scrips with working orders, only the orders the LTP crossed
+        for (String scripCode : orderIndex.scrips()){
             // BUG-009 FIX: Lock per scripCode to prevent race conditions
-            ReentrantLock lock = getLock(o.getScripCode());
+            ReentrantLock lock = getLock(scripCode);
             if (!lock.tryLock()) continue; // Skip if locked by another thread
             try {
-                Double ltp = prices.getLtp(o.getScripCode());
+                Double ltp = prices.getLtp(scripCode);
                 if (ltp == null) {
-                    log.debug("No price available for limit order: {}", o.getScripCode()); // BUG-013 FIX
+                    log.debug("No price available for limit order: {}", scripCode); // BUG-013 FIX
                     continue;
                 }
-                boolean hit = (o.getSide()== VirtualOrder.Side.BUY) ? ltp <= o.getLimitPrice() : ltp >= o.getLimitPrice();
-                if (hit){
+                for (VirtualOrder o : orderIndex.crossed(scripCode, ltp)){
                     o.setEntryPrice(ltp);
                     o.setStatus(VirtualOrder.Status.FILLED);
                     o.setUpdatedAt(System.currentTimeMillis());
                     repo.saveOrder(o);
+                    orderIndex.remove(o);
                     applyToPosition(o, ltp);
                     bus.publish("order.filled", o);
                     // Track LIMIT order fill
@@ -410,168 +431,288 @@ public class VirtualEngineService {
             }
         }
 
-        // Triggers for positions
-        for (var p : repo.listPositions()){
+        // Position triggers: every cycle in polling mode; a slow safety sweep when ticks drive evaluation
+        long now = System.currentTimeMillis();
+        if (tickDrivenEnabled && now - lastSweepAt < safetySweepIntervalMs) return;
+        lastSweepAt = now;
+        sweepPositions();
+    }
+
+    /** Evaluate triggers for every position using a freshly fetched LTP (polling mode / safety sweep). */
+    private void sweepPositions() {
+        List<VirtualPosition> listedPositions = repo.listPositions();
+        // BULK-LTP: fetch every swept scrip's price in one parallel round
+        Map<String, Double> ltps = prices.getLtps(listedPositions.stream()
+                .filter(p -> !isStrategyManaged(p) && p.getQtyOpen() > 0)
+                .map(VirtualPosition::getScripCode)
+                .toList());
+        for (var listed : listedPositions){
             // Skip strategy positions — managed by StrategyTradeExecutor (dashboard module)
-            if (p.getStrategy() != null && !p.getStrategy().isEmpty()) {
+            if (isStrategyManaged(listed)) {
                 continue;
             }
             // BUG-009 FIX: Lock per scripCode
-            ReentrantLock lock = getLock(p.getScripCode());
+            ReentrantLock lock = getLock(listed.getScripCode());
             if (!lock.tryLock()) continue;
             try {
-                Double ltp = prices.getLtp(p.getScripCode());
+                // Re-read under the lock: a tick may have closed or moved this position since the listing
+                Optional<VirtualPosition> fresh = book.get(listed.getScripCode());
+                if (fresh.isEmpty()) {
+                    unwatchTicks(listed.getScripCode());
+                    continue;
+                }
+                VirtualPosition p = fresh.get();
+                Double ltp = ltps.get(p.getScripCode());
                 if (ltp == null) {
                     log.debug("No price for position triggers: {}", p.getScripCode()); // BUG-013 FIX
+                    refreshTriggers(p);
                     continue;
                 }
-                boolean changed = false;
-
-                // Update live price + unrealized P&L for dashboard display
-                if (p.getQtyOpen() > 0) {
-                    p.setCurrentPrice(ltp);
-                    double uPnl = (p.getSide() == VirtualPosition.Side.LONG)
-                            ? (ltp - p.getAvgEntry()) * p.getQtyOpen()
-                            : (p.getAvgEntry() - ltp) * p.getQtyOpen();
-                    p.setUnrealizedPnl(uPnl);
-                    changed = true;
+                evaluateTriggers(p, ltp);
+                markedAt.put(p.getScripCode(), System.currentTimeMillis());
+                refreshTriggers(p);
+            } finally {
+                lock.unlock(); // BUG-009 FIX: Always release lock
+            }
+        }
+    }
+
+    /**
+     * TICK-DRIVEN: Evaluate triggers for the position on a ticked scrip.
+     * Called by LiveMarketDataConsumer for every forwardtesting-data tick. Ticks for scrips without
+     * an engine-managed open position return after a single map lookup; ticks that cross no
+     * SL / TP / trailing level only refresh the mark-to-market, at most every markToMarketIntervalMs.
+     */
+    public void onTick(String token, double ltp) {
+        if (!tickDrivenEnabled || token == null || ltp <= 0) return;
+        String scripCode = tickWatch.get(token);
+        if (scripCode == null) return;
+
+        long now = System.currentTimeMillis();
+        boolean crossed = !positionTriggers.crossed(scripCode, ltp).isEmpty();
+        if (!crossed && now - markedAt.getOrDefault(scripCode, 0L) < markToMarketIntervalMs) return;
+
+        ReentrantLock lock = getLock(scripCode);
+        if (!lock.tryLock()) return; // Sweep or fill holds the scrip — next tick re-evaluates
+        try {
+            Optional<VirtualPosition> posOpt = book.get(scripCode);
+            if (posOpt.isEmpty() || posOpt.get().getQtyOpen() <= 0 || isStrategyManaged(posOpt.get())) {
+                unwatchTicks(scripCode);
+                return;
+            }
+            VirtualPosition p = posOpt.get();
+            evaluateTriggers(p, ltp);
+            markedAt.put(scripCode, now);
+            refreshTriggers(p);
+        } catch (Exception e) {
+            log.warn("TICK_TRIGGER_ERROR scrip={} ltp={} err={}", scripCode, ltp, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Re-index a position's pending SL / TP1 / TP2 / trailing levels and register its numeric
+     * market-data token for tick evaluation. Flat and strategy-managed positions are removed.
+     * Must be called whenever a position's levels change outside evaluateTriggers.
+     */
+    public void refreshTriggers(VirtualPosition p) {
+        if (p.getQtyOpen() <= 0 || isStrategyManaged(p)) {
+            unwatchTicks(p.getScripCode());
+            return;
+        }
+        tickWatch.put(parseNumericScripCode(p.getScripCode()), p.getScripCode());
+        positionTriggers.register(p.getScripCode(), p.getScripCode(), triggerLevels(p));
+    }
+
+    private void unwatchTicks(String scripCode) {
+        tickWatch.remove(parseNumericScripCode(scripCode));
+        positionTriggers.unregister(scripCode, scripCode);
+        markedAt.remove(scripCode);
+    }
+
+    /**
+     * Levels at which evaluateTriggers can change the position: the stop is crossed against the
+     * position, targets in its favour, and an armed trail moves on a new extreme beyond its anchor.
+     */
+    private static List<PriceLevelTriggerIndex.Level> triggerLevels(VirtualPosition p) {
+        boolean isLong = p.getSide() == VirtualPosition.Side.LONG;
+        PriceLevelTriggerIndex.Direction favour = isLong ? PriceLevelTriggerIndex.Direction.UP : PriceLevelTriggerIndex.Direction.DOWN;
+        PriceLevelTriggerIndex.Direction against = isLong ? PriceLevelTriggerIndex.Direction.DOWN : PriceLevelTriggerIndex.Direction.UP;
+
+        List<PriceLevelTriggerIndex.Level> levels = new ArrayList<>(4);
+        if (p.getSl() != null) levels.add(new PriceLevelTriggerIndex.Level(against, p.getSl(), "SL"));
+        if (Boolean.FALSE.equals(p.getTp1Hit()) && p.getTp1() != null) {
+            levels.add(new PriceLevelTriggerIndex.Level(favour, p.getTp1(), "TP1"));
+        }
+        if (p.getTp2() != null) levels.add(new PriceLevelTriggerIndex.Level(favour, p.getTp2(), "TP2"));
+        if (Boolean.TRUE.equals(p.getTrailingActive()) && p.getTrailingValue() != null) {
+            // No anchor yet: the next tick in either direction seeds it
+            double anchor = p.getTrailAnchor() != null ? p.getTrailAnchor() : (isLong ? 0.0 : Double.MAX_VALUE);
+            levels.add(new PriceLevelTriggerIndex.Level(favour, anchor, "TRAIL"));
+        }
+        return levels;
+    }
+
+    /** Strategy positions are written by StrategyTradeExecutor (dashboard module) and not managed here. */
+    private static boolean isStrategyManaged(VirtualPosition p) {
+        return p.getStrategy() != null && !p.getStrategy().isEmpty();
+    }
+
+    /**
+     * SL / TP1 / TP2 / trailing evaluation for one position at the given LTP.
+     * Caller must hold the scrip lock. Exits and level moves are persisted durably;
+     * a pure mark-to-market change is left to the position book's write-behind flush.
+     */
+    private void evaluateTriggers(VirtualPosition p, double ltp) {
+        boolean changed = false;
+        boolean durable = false;
+
+        // Update live price + unrealized P&L for dashboard display
+        if (p.getQtyOpen() > 0) {
+            p.setCurrentPrice(ltp);
+            double uPnl = (p.getSide() == VirtualPosition.Side.LONG)
+                    ? (ltp - p.getAvgEntry()) * p.getQtyOpen()
+                    : (p.getAvgEntry() - ltp) * p.getQtyOpen();
+            p.setUnrealizedPnl(uPnl);
+            changed = true;
+        }
+        // SL
+        if (p.getQtyOpen()>0 && p.getSl()!=null){
+            if (p.getSide()== VirtualPosition.Side.LONG && ltp <= p.getSl()){
+                double slPnl = (ltp - p.getAvgEntry()) * p.getQtyOpen();
+                durable |= closeAt(p, ltp, p.getQtyOpen(), false, "STOP_LOSS");
+                bus.publish("sl.hit", p);
+                // Track SL hit
+                if (orderStatusTracker != null) {
+                    orderStatusTracker.trackSlHit(p, ltp, slPnl);
                 }
-            // SL
-            if (p.getQtyOpen()>0 && p.getSl()!=null){
-                if (p.getSide()== VirtualPosition.Side.LONG && ltp <= p.getSl()){
-                    double slPnl = (ltp - p.getAvgEntry()) * p.getQtyOpen();
-                    changed |= closeAt(p, ltp, p.getQtyOpen(), false, "STOP_LOSS");
-                    bus.publish("sl.hit", p);
-                    // Track SL hit
-                    if (orderStatusTracker != null) {
-                        orderStatusTracker.trackSlHit(p, ltp, slPnl);
-                    }
-                } else if (p.getSide()== VirtualPosition.Side.SHORT && ltp >= p.getSl()){
-                    double slPnl = (p.getAvgEntry() - ltp) * p.getQtyOpen();
-                    changed |= closeAt(p, ltp, p.getQtyOpen(), false, "STOP_LOSS");
-                    bus.publish("sl.hit", p);
-                    // Track SL hit
-                    if (orderStatusTracker != null) {
-                        orderStatusTracker.trackSlHit(p, ltp, slPnl);
-                    }
+            } else if (p.getSide()== VirtualPosition.Side.SHORT && ltp >= p.getSl()){
+                double slPnl = (p.getAvgEntry() - ltp) * p.getQtyOpen();
+                durable |= closeAt(p, ltp, p.getQtyOpen(), false, "STOP_LOSS");
+                bus.publish("sl.hit", p);
+                // Track SL hit
+                if (orderStatusTracker != null) {
+                    orderStatusTracker.trackSlHit(p, ltp, slPnl);
                 }
             }
-            if (p.getQtyOpen()==0){ repo.savePosition(p); continue; }
-
-            // TP1
-            if (Boolean.FALSE.equals(p.getTp1Hit()) && p.getTp1()!=null){
-                if (p.getSide()== VirtualPosition.Side.LONG && ltp >= p.getTp1()){
-                    int rawPartial = (int)Math.max(1, Math.floor(p.getQtyOpen() * (p.getTp1ClosePercent()!=null ? p.getTp1ClosePercent() : 0.5)));
-                    // LOT-SIZE: Round partial close qty to lot size boundary
-                    int partial = (lotSizeLookup != null) ? lotSizeLookup.roundToLotSize(rawPartial, p.getScripCode()) : rawPartial;
-                    if (partial < 1) partial = (lotSizeLookup != null) ? lotSizeLookup.getLotSize(p.getScripCode()) : 1;
-                    if (partial > p.getQtyOpen()) partial = p.getQtyOpen();
-                    double tp1Pnl = (ltp - p.getAvgEntry()) * partial;
-                    changed |= closeAt(p, ltp, partial, true, "TP1_PARTIAL");
-                    p.setTp1Hit(true);
-                    // Track TP1 hit
-                    if (orderStatusTracker != null) {
-                        orderStatusTracker.trackTp1Hit(p, ltp, partial, tp1Pnl);
-                    }
-                    // Move SL to BE
-                    if (p.getSl()==null || p.getSl() < p.getAvgEntry()) p.setSl(p.getAvgEntry());
-                    // Arm trailing if configured
-                    if (p.getTrailingValue()!=null && p.getTrailingType()!=null && !"NONE".equals(p.getTrailingType())){
-                        p.setTrailingActive(true);
-                        if ("PCT".equals(p.getTrailingType())){
-                            double pct = p.getTrailingValue();
-                            double ratio = pct / 100.0;
-                            if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp * (1.0 - ratio));
-                            else p.setTrailingStop(ltp * (1.0 + ratio));
-                        } else { // FIXED
-                            if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp - p.getTrailingValue());
-                            else p.setTrailingStop(ltp + p.getTrailingValue());
-                        }
-                        p.setTrailAnchor(ltp);
-                        bus.publish("trailing.armed", p);
-                    }
-                    bus.publish("tp1.hit", p);
-                } else if (p.getSide()== VirtualPosition.Side.SHORT && ltp <= p.getTp1()){
-                    int rawPartial = (int)Math.max(1, Math.floor(p.getQtyOpen() * (p.getTp1ClosePercent()!=null ? p.getTp1ClosePercent() : 0.5)));
-                    // LOT-SIZE: Round partial close qty to lot size boundary
-                    int partial = (lotSizeLookup != null) ? lotSizeLookup.roundToLotSize(rawPartial, p.getScripCode()) : rawPartial;
-                    if (partial < 1) partial = (lotSizeLookup != null) ? lotSizeLookup.getLotSize(p.getScripCode()) : 1;
-                    if (partial > p.getQtyOpen()) partial = p.getQtyOpen();
-                    double tp1Pnl = (p.getAvgEntry() - ltp) * partial;
-                    changed |= closeAt(p, ltp, partial, true, "TP1_PARTIAL");
-                    p.setTp1Hit(true);
-                    // Track TP1 hit
-                    if (orderStatusTracker != null) {
-                        orderStatusTracker.trackTp1Hit(p, ltp, partial, tp1Pnl);
+        }
+        if (p.getQtyOpen()==0){ book.persist(p); return; }
+
+        // TP1
+        if (Boolean.FALSE.equals(p.getTp1Hit()) && p.getTp1()!=null){
+            if (p.getSide()== VirtualPosition.Side.LONG && ltp >= p.getTp1()){
+                int rawPartial = (int)Math.max(1, Math.floor(p.getQtyOpen() * (p.getTp1ClosePercent()!=null ? p.getTp1ClosePercent() : 0.5)));
+                // LOT-SIZE: Round partial close qty to lot size boundary
+                int partial = (lotSizeLookup != null) ? lotSizeLookup.roundToLotSize(rawPartial, p.getScripCode()) : rawPartial;
+                if (partial < 1) partial = (lotSizeLookup != null) ? lotSizeLookup.getLotSize(p.getScripCode()) : 1;
+                if (partial > p.getQtyOpen()) partial = p.getQtyOpen();
+                double tp1Pnl = (ltp - p.getAvgEntry()) * partial;
+                durable |= closeAt(p, ltp, partial, true, "TP1_PARTIAL");
+                p.setTp1Hit(true);
+                // Track TP1 hit
+                if (orderStatusTracker != null) {
+                    orderStatusTracker.trackTp1Hit(p, ltp, partial, tp1Pnl);
+                }
+                // Move SL to BE
+                if (p.getSl()==null || p.getSl() < p.getAvgEntry()) p.setSl(p.getAvgEntry());
+                // Arm trailing if configured
+                if (p.getTrailingValue()!=null && p.getTrailingType()!=null && !"NONE".equals(p.getTrailingType())){
+                    p.setTrailingActive(true);
+                    if ("PCT".equals(p.getTrailingType())){
+                        double pct = p.getTrailingValue();
+                        double ratio = pct / 100.0;
+                        if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp * (1.0 - ratio));
+                        else p.setTrailingStop(ltp * (1.0 + ratio));
+                    } else { // FIXED
+                        if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp - p.getTrailingValue());
+                        else p.setTrailingStop(ltp + p.getTrailingValue());
                     }
-                    if (p.getSl()==null || p.getSl() > p.getAvgEntry()) p.setSl(p.getAvgEntry());
-                    if (p.getTrailingValue()!=null && p.getTrailingType()!=null && !"NONE".equals(p.getTrailingType())){
-                        p.setTrailingActive(true);
-                        if ("PCT".equals(p.getTrailingType())){
-                            double pct = p.getTrailingValue();
-                            double ratio = pct / 100.0;
-                            if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp * (1.0 - ratio));
-                            else p.setTrailingStop(ltp * (1.0 + ratio));
-                        } else { // FIXED
-                            if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp - p.getTrailingValue());
-                            else p.setTrailingStop(ltp + p.getTrailingValue());
-                        }
-                        p.setTrailAnchor(ltp);
-                        bus.publish("trailing.armed", p);
+                    p.setTrailAnchor(ltp);
+                    bus.publish("trailing.armed", p);
+                }
+                bus.publish("tp1.hit", p);
+            } else if (p.getSide()== VirtualPosition.Side.SHORT && ltp <= p.getTp1()){
+                int rawPartial = (int)Math.max(1, Math.floor(p.getQtyOpen() * (p.getTp1ClosePercent()!=null ? p.getTp1ClosePercent() : 0.5)));
+                // LOT-SIZE: Round partial close qty to lot size boundary
+                int partial = (lotSizeLookup != null) ? lotSizeLookup.roundToLotSize(rawPartial, p.getScripCode()) : rawPartial;
+                if (partial < 1) partial = (lotSizeLookup != null) ? lotSizeLookup.getLotSize(p.getScripCode()) : 1;
+                if (partial > p.getQtyOpen()) partial = p.getQtyOpen();
+                double tp1Pnl = (p.getAvgEntry() - ltp) * partial;
+                durable |= closeAt(p, ltp, partial, true, "TP1_PARTIAL");
+                p.setTp1Hit(true);
+                // Track TP1 hit
+                if (orderStatusTracker != null) {
+                    orderStatusTracker.trackTp1Hit(p, ltp, partial, tp1Pnl);
+                }
+                if (p.getSl()==null || p.getSl() > p.getAvgEntry()) p.setSl(p.getAvgEntry());
+                if (p.getTrailingValue()!=null && p.getTrailingType()!=null && !"NONE".equals(p.getTrailingType())){
+                    p.setTrailingActive(true);
+                    if ("PCT".equals(p.getTrailingType())){
+                        double pct = p.getTrailingValue();
+                        double ratio = pct / 100.0;
+                        if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp * (1.0 - ratio));
+                        else p.setTrailingStop(ltp * (1.0 + ratio));
+                    } else { // FIXED
+                        if (p.getSide()== VirtualPosition.Side.LONG) p.setTrailingStop(ltp - p.getTrailingValue());
+                        else p.setTrailingStop(ltp + p.getTrailingValue());
                     }
-                    bus.publish("tp1.hit", p);
+                    p.setTrailAnchor(ltp);
+                    bus.publish("trailing.armed", p);
                 }
+                bus.publish("tp1.hit", p);
             }
+        }
 
-            if (p.getQtyOpen()==0){ repo.savePosition(p); continue; }
+        if (p.getQtyOpen()==0){ book.persist(p); return; }
 
-            // TP2
-            if (p.getTp2()!=null){
-                if (p.getSide()== VirtualPosition.Side.LONG && ltp >= p.getTp2()){
-                    changed |= closeAt(p, ltp, p.getQtyOpen(), false, "TARGET_HIT");
-                    bus.publish("tp2.hit", p);
-                } else if (p.getSide()== VirtualPosition.Side.SHORT && ltp <= p.getTp2()){
-                    changed |= closeAt(p, ltp, p.getQtyOpen(), false, "TARGET_HIT");
-                    bus.publish("tp2.hit", p);
-                }
+        // TP2
+        if (p.getTp2()!=null){
+            if (p.getSide()== VirtualPosition.Side.LONG && ltp >= p.getTp2()){
+                durable |= closeAt(p, ltp, p.getQtyOpen(), false, "TARGET_HIT");
+                bus.publish("tp2.hit", p);
+            } else if (p.getSide()== VirtualPosition.Side.SHORT && ltp <= p.getTp2()){
+                durable |= closeAt(p, ltp, p.getQtyOpen(), false, "TARGET_HIT");
+                bus.publish("tp2.hit", p);
             }
+        }
 
-            if (p.getQtyOpen()==0){ repo.savePosition(p); continue; }
-
-            // Trailing (FIXED and PCT)
-            if (Boolean.TRUE.equals(p.getTrailingActive()) && p.getTrailingValue()!=null){
-                boolean isPct = "PCT".equals(p.getTrailingType());
-                if (p.getSide()== VirtualPosition.Side.LONG){
-                    if (p.getTrailAnchor()==null || ltp > p.getTrailAnchor()){
-                        double newStop = isPct ? ltp * (1.0 - (p.getTrailingValue()/100.0)) : (ltp - p.getTrailingValue());
-                        boolean passStep = (p.getTrailingStop()==null) || (p.getTrailingStep()==null) || (newStop - p.getTrailingStop() >= p.getTrailingStep());
-                        if (passStep){
-                            p.setTrailingStop(newStop);
-                            p.setSl(Math.max(p.getSl()!=null?p.getSl():newStop, newStop));
-                            p.setTrailAnchor(ltp);
-                            bus.publish("trailing.update", p);
-                            changed = true;
-                        }
+        if (p.getQtyOpen()==0){ book.persist(p); return; }
+
+        // Trailing (FIXED and PCT)
+        if (Boolean.TRUE.equals(p.getTrailingActive()) && p.getTrailingValue()!=null){
+            boolean isPct = "PCT".equals(p.getTrailingType());
+            if (p.getSide()== VirtualPosition.Side.LONG){
+                if (p.getTrailAnchor()==null || ltp > p.getTrailAnchor()){
+                    double newStop = isPct ? ltp * (1.0 - (p.getTrailingValue()/100.0)) : (ltp - p.getTrailingValue());
+                    boolean passStep = (p.getTrailingStop()==null) || (p.getTrailingStep()==null) || (newStop - p.getTrailingStop() >= p.getTrailingStep());
+                    if (passStep){
+                        p.setTrailingStop(newStop);
+                        p.setSl(Math.max(p.getSl()!=null?p.getSl():newStop, newStop));
+                        p.setTrailAnchor(ltp);
+                        bus.publish("trailing.update", p);
+                        durable = true;
                     }
-                } else { // SHORT
-                    if (p.getTrailAnchor()==null || ltp < p.getTrailAnchor()){
-                        double newStop = isPct ? ltp * (1.0 + (p.getTrailingValue()/100.0)) : (ltp + p.getTrailingValue());
-                        boolean passStep = (p.getTrailingStop()==null) || (p.getTrailingStep()==null) || (p.getTrailingStop() - newStop >= p.getTrailingStep());
-                        if (passStep){
-                            p.setTrailingStop(newStop);
-                            p.setSl(Math.min(p.getSl()!=null?p.getSl():newStop, newStop));
-                            p.setTrailAnchor(ltp);
-                            bus.publish("trailing.update", p);
-                            changed = true;
-                        }
+                }
+            } else { // SHORT
+                if (p.getTrailAnchor()==null || ltp < p.getTrailAnchor()){
+                    double newStop = isPct ? ltp * (1.0 + (p.getTrailingValue()/100.0)) : (ltp + p.getTrailingValue());
+                    boolean passStep = (p.getTrailingStop()==null) || (p.getTrailingStep()==null) || (p.getTrailingStop() - newStop >= p.getTrailingStep());
+                    if (passStep){
+                        p.setTrailingStop(newStop);
+                        p.setSl(Math.min(p.getSl()!=null?p.getSl():newStop, newStop));
+                        p.setTrailAnchor(ltp);
+                        bus.publish("trailing.update", p);
+                        durable = true;
                     }
                 }
             }
+        }
 
-            if (changed){ p.setUpdatedAt(System.currentTimeMillis()); repo.savePosition(p); bus.publish("position.updated", p);}
-            } finally {
-                lock.unlock(); // BUG-009 FIX: Always release lock
-            }
+        if (changed || durable){
+            p.setUpdatedAt(System.currentTimeMillis());
+            if (durable) book.persist(p); else book.update(p);
+            bus.publish("position.updated", p);
         }
     }
 
@@ -623,20 +764,31 @@ public class VirtualEngineService {
 
     /** Close all open positions for the given exchange codes. */
     private void eodCloseByExchange(String... exchanges) {
-        for (var p : repo.listPositions()) {
+        List<VirtualPosition> listedPositions = repo.listPositions();
+        // BULK-LTP: price every position being closed in one parallel round
+        Map<String, Double> ltps = prices.getLtps(listedPositions.stream()
+                .filter(p -> !isStrategyManaged(p) && p.getQtyOpen() > 0 && matchesExchange(p, exchanges))
+                .map(VirtualPosition::getScripCode)
+                .toList());
+        for (var listed : listedPositions) {
             // Skip strategy positions — managed by StrategyTradeExecutor (dashboard module)
-            if (p.getStrategy() != null && !p.getStrategy().isEmpty()) {
+            if (isStrategyManaged(listed)) {
                 continue;
             }
-            if (p.getQtyOpen() > 0 && matchesExchange(p, exchanges)) {
-                ReentrantLock lock = getLock(p.getScripCode());
+            if (listed.getQtyOpen() > 0 && matchesExchange(listed, exchanges)) {
+                ReentrantLock lock = getLock(listed.getScripCode());
                 lock.lock();
                 try {
-                    Double ltp = prices.getLtp(p.getScripCode());
+                    // Re-read under the lock: a tick-driven SL/TP may already have closed it
+                    VirtualPosition p = book.get(listed.getScripCode()).orElse(null);
+                    if (p == null || p.getQtyOpen() <= 0) continue;
+                    Double ltp = ltps.get(p.getScripCode());
+                    if (ltp == null || ltp <= 0) ltp = prices.getLtp(p.getScripCode()); // missed the bulk deadline
                     if (ltp == null || ltp <= 0) ltp = p.getAvgEntry(); // fallback
                     closeAt(p, ltp, p.getQtyOpen(), false, "EOD");
                     p.setUpdatedAt(System.currentTimeMillis());
-                    repo.deletePosition(p.getScripCode());
+                    book.remove(p.getScripCode());
+                    unwatchTicks(p.getScripCode());
                     bus.publish("eod.close", p);
                     log.info("EOD_CLOSED_DELETED scrip={} exch={} price={} pnl={}",
                             p.getScripCode(), p.getExchange(), ltp, p.getRealizedPnl());
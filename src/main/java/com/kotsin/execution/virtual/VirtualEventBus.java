@@ -1,34 +1,353 @@
 package com.kotsin.execution.virtual;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kotsin.execution.virtual.model.VirtualOrder;
+import com.kotsin.execution.virtual.model.VirtualPosition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+/**
+ * SSE fan-out for virtual trading events.
+ *
+ * ASYNC-FANOUT: publish() never touches a socket. The payload is serialised once on the caller's thread
+ * (so later mutation of the position cannot leak into an already published event) and appended to a
+ * bounded queue per subscriber; a small sender pool drains each queue, one worker per subscriber at a
+ * time, so a slow browser only delays itself.
+ *
+ * High-frequency events (execution.virtual.event-bus.coalesce-events, default position.updated) are
+ * coalesced per scrip: while one is still queued, a newer one replaces its payload in place. Any other
+ * event for the same scrip (sl.hit, tp1.hit, ...) seals the pending entry so events never reorder.
+ *
+ * Overflow policy (execution.virtual.event-bus.overflow-policy):
+ *   DISCONNECT  - complete the emitter; EventSource reconnects and gets a fresh snapshot (default)
+ *   DROP_OLDEST - discard the oldest queued event
+ *   DROP_NEWEST - discard the event being published
+ *
+ * DELTA-STREAM: subscribers opened with subscribeDelta() first receive a "snapshot" event
+ * ({streamId, seq, positions: [{scrip, v, position}], orders}) and then, for position events, only the
+ * changed fields: {seq, scrip, base, v, changes} (or removed: true on close). A client whose version of
+ * the scrip is not {@code base} has missed an update (drop or reconnect) and resyncs from
+ * {@link #deltaSnapshot} (GET /stream/snapshot). Gaps are detected per scrip by base/v only; seq orders
+ * events but skips values under coalescing. Coalesced deltas are merged, so coalescing never creates a
+ * version gap.
+ */
 @Component
 @Slf4j
 public class VirtualEventBus {
-    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    public enum OverflowPolicy { DISCONNECT, DROP_OLDEST, DROP_NEWEST }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+    // Events drained per worker turn before yielding to other subscribers
+    private static final int DRAIN_BATCH = 64;
+    // Position events after which the scrip leaves the delta stream
+    private static final Set<String> REMOVAL_EVENTS = Set.of("position.closed", "eod.close");
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Set<String> coalesceEvents;
+    private final ExecutorService sender;
+    // DELTA-STREAM: guards tracker and keeps snapshot + subscriber registration atomic w.r.t. publishes
+    private final Object stateLock = new Object();
+    private final PositionDeltaTracker tracker = new PositionDeltaTracker(MAPPER);
+
+    private final Counter published;
+    private final Counter sent;
+    private final Counter coalesced;
+    private final Counter droppedOverflow;
+    private final Counter droppedDisconnect;
+    private final Counter sendFailures;
+
+    public VirtualEventBus(MeterRegistry registry,
+                           @Value("${execution.virtual.event-bus.queue-capacity:1000}") int queueCapacity,
+                           @Value("${execution.virtual.event-bus.overflow-policy:DISCONNECT}") OverflowPolicy overflowPolicy,
+                           @Value("${execution.virtual.event-bus.coalesce-events:position.updated}") String coalesceEvents,
+                           @Value("${execution.virtual.event-bus.sender-threads:2}") int senderThreads) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.coalesceEvents = Arrays.stream(coalesceEvents.split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toUnmodifiableSet());
+        AtomicInteger seq = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(Math.max(1, senderThreads), r -> {
+            Thread t = new Thread(r, "virtual-sse-sender-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.published = registry.counter("virtual.eventbus.published");
+        this.sent = registry.counter("virtual.eventbus.sent");
+        this.coalesced = registry.counter("virtual.eventbus.coalesced");
+        this.droppedOverflow = registry.counter("virtual.eventbus.dropped", "reason", "overflow");
+        this.droppedDisconnect = registry.counter("virtual.eventbus.dropped", "reason", "disconnect");
+        this.sendFailures = registry.counter("virtual.eventbus.send.failures");
+        registry.gaugeCollectionSize("virtual.eventbus.subscribers", List.of(), subscribers);
+        registry.gauge("virtual.eventbus.queue.depth", subscribers,
+                subs -> subs.stream().mapToInt(Subscriber::depth).sum());
+        registry.gauge("virtual.eventbus.queue.depth.max", subscribers,
+                subs -> subs.stream().mapToInt(Subscriber::depth).max().orElse(0));
+    }
 
     public SseEmitter subscribe(){
         SseEmitter emitter = new SseEmitter(0L); // no timeout
-        emitters.add(emitter);
-        emitter.onCompletion(() -> emitters.remove(emitter));
-        emitter.onTimeout(() -> emitters.remove(emitter));
+        Subscriber sub = new Subscriber(emitter, false);
+        subscribers.add(sub);
+        bindLifecycle(sub);
         try { emitter.send(SseEmitter.event().name("hello").data("ok")); } catch (IOException e) { log.debug("Hello ping failed: {}", e.getMessage()); }
         return emitter;
     }
 
+    /**
+     * DELTA-STREAM: subscribe to the delta protocol. {@code knownPositions} seeds positions that were
+     * never published through the bus; {@code orders} is included in the snapshot as-is.
+     */
+    public SseEmitter subscribeDelta(Collection<VirtualPosition> knownPositions, Object orders){
+        SseEmitter emitter = new SseEmitter(0L); // no timeout
+        Subscriber sub = new Subscriber(emitter, true);
+        synchronized (stateLock) {
+            ObjectNode snapshot = snapshotLocked(knownPositions);
+            snapshot.set("orders", MAPPER.valueToTree(orders));
+            snapshot.put("timestamp", System.currentTimeMillis());
+            // Queued before registration: the snapshot is always the first event, deltas follow it
+            sub.offer(new Event("snapshot", snapshot.toString(), null), null, null);
+            subscribers.add(sub);
+        }
+        bindLifecycle(sub);
+        schedule(sub);
+        return emitter;
+    }
+
+    /** DELTA-STREAM: resync payload, same shape as the on-connect snapshot (without orders). */
+    public ObjectNode deltaSnapshot(Collection<VirtualPosition> knownPositions){
+        synchronized (stateLock) {
+            ObjectNode snapshot = snapshotLocked(knownPositions);
+            snapshot.put("timestamp", System.currentTimeMillis());
+            return snapshot;
+        }
+    }
+
+    private ObjectNode snapshotLocked(Collection<VirtualPosition> knownPositions) {
+        Map<String, ObjectNode> known = new HashMap<>();
+        for (VirtualPosition p : knownPositions) {
+            if (p.getScripCode() != null) known.put(p.getScripCode(), MAPPER.valueToTree(p));
+        }
+        tracker.seed(known);
+        return tracker.snapshot();
+    }
+
+    private void bindLifecycle(Subscriber sub) {
+        sub.emitter.onCompletion(() -> subscribers.remove(sub));
+        sub.emitter.onTimeout(() -> subscribers.remove(sub));
+        sub.emitter.onError(err -> subscribers.remove(sub));
+    }
+
     public void publish(String event, Object data){
-        for (SseEmitter e: emitters){
-            try {
-                e.send(SseEmitter.event().name(event).data(data));
-            } catch (Exception ex){ emitters.remove(e); }
+        if (data instanceof VirtualPosition p && p.getScripCode() != null) {
+            publishPosition(event, p);
+            return;
+        }
+        if (subscribers.isEmpty()) return;
+        String json;
+        try {
+            json = MAPPER.writeValueAsString(data);
+        } catch (Exception e) {
+            log.warn("SSE_ENCODE_FAILED event={} err={}", event, e.getMessage());
+            return;
+        }
+        published.increment();
+        Event ev = new Event(event, json, null);
+        String scrip = scripOf(data);
+        String coalesceKey = (scrip != null && coalesceEvents.contains(event)) ? event + "|" + scrip : null;
+        for (Subscriber sub : subscribers) {
+            if (sub.offer(ev, coalesceKey, scrip)) schedule(sub);
+        }
+    }
+
+    /** Position events: full JSON for legacy subscribers, a versioned delta for delta subscribers. */
+    private void publishPosition(String event, VirtualPosition p) {
+        String scrip = p.getScripCode();
+        ObjectNode tree;
+        try {
+            tree = MAPPER.valueToTree(p);
+        } catch (Exception e) {
+            log.warn("SSE_ENCODE_FAILED event={} err={}", event, e.getMessage());
+            return;
+        }
+        boolean coalescable = coalesceEvents.contains(event);
+        String coalesceKey = coalescable ? event + "|" + scrip : null;
+        synchronized (stateLock) {
+            PositionDeltaTracker.Delta delta = REMOVAL_EVENTS.contains(event)
+                    ? tracker.remove(scrip) : tracker.update(scrip, tree);
+            if (subscribers.isEmpty()) return;
+            published.increment();
+            // Unchanged state: nothing for delta subscribers on a plain update, a no-op delta on a named event
+            if (delta == null && !coalescable) delta = tracker.noop(scrip);
+            Event full = null;
+            Event deltaEvent = delta != null ? new Event(event, tracker.encode(delta).toString(), delta) : null;
+            for (Subscriber sub : subscribers) {
+                Event ev;
+                if (sub.delta) {
+                    ev = deltaEvent;
+                } else {
+                    if (full == null) full = new Event(event, tree.toString(), null);
+                    ev = full;
+                }
+                if (ev != null && sub.offer(ev, coalesceKey, scrip)) schedule(sub);
+            }
         }
     }
-}
 
+    private void schedule(Subscriber sub) {
+        if (!sub.draining.compareAndSet(false, true)) return; // A worker already owns this subscriber
+        try {
+            sender.execute(() -> drain(sub));
+        } catch (Exception rejected) {
+            sub.draining.set(false);
+        }
+    }
+
+    private void drain(Subscriber sub) {
+        try {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                Event ev = sub.poll();
+                if (ev == null) break;
+                try {
+                    sub.emitter.send(SseEmitter.event().name(ev.name()).data(ev.json(), MediaType.APPLICATION_JSON));
+                    sent.increment();
+                } catch (Exception ex) {
+                    sendFailures.increment();
+                    disconnect(sub);
+                    return;
+                }
+            }
+        } finally {
+            sub.draining.set(false);
+        }
+        if (sub.depth() > 0 && subscribers.contains(sub)) schedule(sub);
+    }
+
+    private void disconnect(Subscriber sub) {
+        if (!subscribers.remove(sub)) return;
+        droppedDisconnect.increment(sub.clear());
+        try { sub.emitter.complete(); } catch (Exception ignore) { }
+    }
+
+    private static String scripOf(Object data) {
+        if (data instanceof VirtualPosition p) return p.getScripCode();
+        if (data instanceof VirtualOrder o) return o.getScripCode();
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /** {@code delta} is set for delta-protocol events so queued ones can be merged. */
+    private record Event(String name, String json, PositionDeltaTracker.Delta delta) {}
+
+    /** Queue slot; a coalesced event replaces {@code event} in place while the slot is still queued. */
+    private static final class Slot {
+        Event event;
+        final String coalesceKey;
+        Slot(Event event, String coalesceKey) { this.event = event; this.coalesceKey = coalesceKey; }
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final boolean delta;
+        final AtomicBoolean draining = new AtomicBoolean();
+        private final ArrayDeque<Slot> queue = new ArrayDeque<>();
+        private final Map<String, Slot> pendingByKey = new HashMap<>();
+
+        Subscriber(SseEmitter emitter, boolean delta) { this.emitter = emitter; this.delta = delta; }
+
+        /** @return true if the subscriber needs a drain pass */
+        boolean offer(Event ev, String coalesceKey, String scrip) {
+            boolean overflowDisconnect = false;
+            synchronized (this) {
+                if (coalesceKey != null) {
+                    Slot pending = pendingByKey.get(coalesceKey);
+                    if (pending != null) {
+                        if (pending.event.delta() != null && ev.delta() != null) {
+                            // Deltas accumulate: the merged one spans the pending base to the newest version
+                            PositionDeltaTracker.Delta merged = PositionDeltaTracker.merge(pending.event.delta(), ev.delta());
+                            pending.event = new Event(ev.name(), tracker.encode(merged).toString(), merged);
+                        } else {
+                            pending.event = ev; // latest wins
+                        }
+                        coalesced.increment();
+                        return false;
+                    }
+                } else if (scrip != null && !pendingByKey.isEmpty()) {
+                    // Seal coalescable entries of this scrip so later updates queue behind this event
+                    for (String name : coalesceEvents) pendingByKey.remove(name + "|" + scrip);
+                }
+                if (queue.size() >= queueCapacity) {
+                    switch (overflowPolicy) {
+                        case DROP_NEWEST -> {
+                            droppedOverflow.increment();
+                            return false;
+                        }
+                        case DROP_OLDEST -> {
+                            Slot oldest = queue.pollFirst();
+                            if (oldest != null && oldest.coalesceKey != null) pendingByKey.remove(oldest.coalesceKey, oldest);
+                            droppedOverflow.increment();
+                        }
+                        case DISCONNECT -> overflowDisconnect = true;
+                    }
+                }
+                if (!overflowDisconnect) {
+                    Slot slot = new Slot(ev, coalesceKey);
+                    queue.addLast(slot);
+                    if (coalesceKey != null) pendingByKey.put(coalesceKey, slot);
+                    return true;
+                }
+            }
+            log.warn("SSE_SUBSCRIBER_OVERFLOW queued={} — disconnecting slow subscriber", queueCapacity);
+            droppedOverflow.increment();
+            disconnect(this);
+            return false;
+        }
+
+        synchronized Event poll() {
+            Slot slot = queue.pollFirst();
+            if (slot == null) return null;
+            if (slot.coalesceKey != null) pendingByKey.remove(slot.coalesceKey, slot);
+            return slot.event;
+        }
+
+        synchronized int depth() {
+            return queue.size();
+        }
+
+        synchronized int clear() {
+            int n = queue.size();
+            queue.clear();
+            pendingByKey.clear();
+            return n;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.util.Map;
 public class VirtualOrderController {
     private final VirtualEngineService engine;
     private final VirtualWalletRepository repo;
+    private final VirtualPositionBook book;
     private final VirtualEventBus bus;
 
     @PostMapping("/orders")
@@ -54,7 +55,7 @@ public class VirtualOrderController {
 
     @GetMapping("/positions")
     public ResponseEntity<?> listPositions() {
-        return ResponseEntity.ok(repo.listPositions());
+        return ResponseEntity.ok(book.overlay(repo.listPositions()));
     }
 
     @PostMapping("/close/{scripCode}")
@@ -71,19 +72,20 @@ public class VirtualOrderController {
 
     @PatchMapping("/positions/{scripCode}")
     public ResponseEntity<?> modify(@PathVariable String scripCode, @RequestBody ModifyPosition req){
-        var posOpt = repo.getPosition(scripCode);
+        var posOpt = book.modify(scripCode, p -> {
+            if (req.sl != null) p.setSl(req.sl);
+            if (req.tp1 != null) { p.setTp1(req.tp1); p.setTp1Hit(Boolean.FALSE); }
+            if (req.tp2 != null) p.setTp2(req.tp2);
+            if (req.tp1ClosePercent != null) p.setTp1ClosePercent(req.tp1ClosePercent);
+            if (req.trailingType != null) p.setTrailingType(req.trailingType);
+            if (req.trailingValue != null) p.setTrailingValue(req.trailingValue);
+            if (req.trailingStep != null) p.setTrailingStep(req.trailingStep);
+            if (req.trailingActive != null) p.setTrailingActive(req.trailingActive);
+            p.setUpdatedAt(System.currentTimeMillis());
+            engine.refreshTriggers(p);
+        });
         if (posOpt.isEmpty()) return ResponseEntity.status(404).body(Map.of("error","no position"));
         var p = posOpt.get();
-        if (req.sl != null) p.setSl(req.sl);
-        if (req.tp1 != null) { p.setTp1(req.tp1); p.setTp1Hit(Boolean.FALSE); }
-        if (req.tp2 != null) p.setTp2(req.tp2);
-        if (req.tp1ClosePercent != null) p.setTp1ClosePercent(req.tp1ClosePercent);
-        if (req.trailingType != null) p.setTrailingType(req.trailingType);
-        if (req.trailingValue != null) p.setTrailingValue(req.trailingValue);
-        if (req.trailingStep != null) p.setTrailingStep(req.trailingStep);
-        if (req.trailingActive != null) p.setTrailingActive(req.trailingActive);
-        p.setUpdatedAt(System.currentTimeMillis());
-        repo.savePosition(p);
         try { bus.publish("position.updated", p); } catch (Exception ignore) {}
         return ResponseEntity.ok(p);
     }
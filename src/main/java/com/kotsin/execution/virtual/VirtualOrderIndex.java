@@ -0,0 +1,163 @@
+package com.kotsin.execution.virtual;
+
+import com.kotsin.execution.virtual.PriceLevelTriggerIndex.Direction;
+import com.kotsin.execution.virtual.PriceLevelTriggerIndex.Level;
+import com.kotsin.execution.virtual.model.VirtualOrder;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Working (PENDING LIMIT) virtual orders, indexed per scrip.
+ *
+ * Redis keeps the durable index ({@code virtual:order-index:pending:{scrip}} sets), memory keeps the
+ * orders themselves plus their limit prices in a {@link PriceLevelTriggerIndex}: a BUY limit fires
+ * on a down-move to its price, a SELL limit on an up-move. The fill loop therefore only visits scrips
+ * with working orders and only the orders a price actually crossed.
+ *
+ * Terminal orders (filled, rejected, cancelled, completed) are moved out of {@code virtual:orders:*}
+ * into per-day {@code virtual:order-archive:{date}} hashes once older than the retention window;
+ * each archive hash expires after execution.virtual.order-archive.keep-days.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualOrderIndex {
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
+    private static final Set<VirtualOrder.Status> TERMINAL = Set.of(
+            VirtualOrder.Status.FILLED, VirtualOrder.Status.CANCELED,
+            VirtualOrder.Status.COMPLETED, VirtualOrder.Status.REJECTED);
+
+    private final VirtualWalletRepository repo;
+
+    @Value("${execution.virtual.order-archive.retain-hours:24}")
+    private long archiveRetainHours;
+
+    // scripCode → (orderId → order)
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, VirtualOrder>> pending = new ConcurrentHashMap<>();
+    private final PriceLevelTriggerIndex limitLevels = new PriceLevelTriggerIndex();
+    private volatile boolean loaded;
+
+    /**
+     * Load the index from Redis; only when it has never been built (no virtual:order-index:initialised
+     * marker) rebuild it from a one-time order scan. A Redis error rebuilds nothing: the load is retried
+     * by {@link #retryLoad} until it succeeds.
+     */
+    @PostConstruct
+    public void load() {
+        try {
+            loadOrRebuild();
+            loaded = true;
+        } catch (Exception e) {
+            log.error("PENDING_INDEX_LOAD_FAILED, retrying: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${execution.virtual.order-index.load-retry-ms:30000}")
+    public void retryLoad() {
+        if (!loaded) load();
+    }
+
+    private void loadOrRebuild() {
+        Map<String, Set<String>> stored = repo.loadPendingIndex();
+        List<VirtualOrder> orders;
+        if (stored == null) {
+            orders = repo.scanOrdersStrict();
+            log.info("PENDING_INDEX_REBUILD scanned {} orders", orders.size());
+        } else {
+            orders = repo.getOrdersStrict(stored.values().stream().flatMap(Collection::stream).toList());
+            // Drop index entries whose order has vanished
+            Set<String> found = orders.stream().map(VirtualOrder::getId).collect(Collectors.toSet());
+            stored.forEach((scrip, ids) -> ids.stream().filter(id -> !found.contains(id))
+                    .forEach(id -> repo.unindexPendingOrder(scrip, id)));
+        }
+        int working = 0;
+        for (VirtualOrder o : orders) {
+            if (isWorking(o)) {
+                add(o);
+                working++;
+            } else if (stored != null) {
+                repo.unindexPendingOrder(o.getScripCode(), o.getId());
+            }
+        }
+        if (stored == null) repo.markPendingIndexBuilt();
+        log.info("PENDING_INDEX_LOADED orders={} scrips={}", working, pending.size());
+    }
+
+    public static boolean isWorking(VirtualOrder o) {
+        return o.getStatus() == VirtualOrder.Status.PENDING && o.getType() == VirtualOrder.Type.LIMIT
+                && o.getLimitPrice() != null && o.getScripCode() != null;
+    }
+
+    /** Track a working order. Caller has already saved the order itself. */
+    public void add(VirtualOrder o) {
+        if (!isWorking(o)) return;
+        pending.computeIfAbsent(o.getScripCode(), k -> new ConcurrentHashMap<>()).put(o.getId(), o);
+        Direction d = o.getSide() == VirtualOrder.Side.BUY ? Direction.DOWN : Direction.UP;
+        limitLevels.register(o.getScripCode(), o.getId(), List.of(new Level(d, o.getLimitPrice(), "LIMIT")));
+        repo.indexPendingOrder(o.getScripCode(), o.getId());
+    }
+
+    /** Stop tracking an order that left the PENDING state. */
+    public void remove(VirtualOrder o) {
+        pending.computeIfPresent(o.getScripCode(), (k, byId) -> {
+            byId.remove(o.getId());
+            return byId.isEmpty() ? null : byId;
+        });
+        limitLevels.unregister(o.getScripCode(), o.getId());
+        repo.unindexPendingOrder(o.getScripCode(), o.getId());
+    }
+
+    /** Scrips with at least one working order. */
+    public Set<String> scrips() {
+        return new HashSet<>(pending.keySet());
+    }
+
+    /** Working orders on {@code scrip} whose limit price is crossed by {@code ltp}. */
+    public List<VirtualOrder> crossed(String scrip, double ltp) {
+        Set<String> ids = limitLevels.crossed(scrip, ltp);
+        if (ids.isEmpty()) return List.of();
+        Map<String, VirtualOrder> byId = pending.get(scrip);
+        if (byId == null) return List.of();
+        List<VirtualOrder> out = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            VirtualOrder o = byId.get(id);
+            if (o != null) out.add(o);
+        }
+        return out;
+    }
+
+    public int size() {
+        return pending.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /** Move terminal orders older than the retention window into per-day archive hashes. */
+    @Scheduled(cron = "${execution.virtual.order-archive.cron:0 30 0 * * *}", zone = "Asia/Kolkata")
+    public void archiveTerminalOrders() {
+        long cutoff = System.currentTimeMillis() - archiveRetainHours * 3_600_000L;
+        Map<String, List<VirtualOrder>> byDate = repo.listOrders(Integer.MAX_VALUE).stream()
+                .filter(o -> o.getStatus() != null && TERMINAL.contains(o.getStatus()))
+                .filter(o -> Math.max(o.getUpdatedAt(), o.getCreatedAt()) < cutoff)
+                .collect(Collectors.groupingBy(o -> LocalDate.ofInstant(
+                        Instant.ofEpochMilli(Math.max(o.getUpdatedAt(), o.getCreatedAt())), IST).toString()));
+        int archived = 0;
+        for (var e : byDate.entrySet()) archived += repo.archiveOrders(e.getKey(), e.getValue());
+        if (archived > 0) log.info("ORDER_ARCHIVE archived={} days={}", archived, byDate.size());
+    }
+}
@@ -0,0 +1,179 @@
+package com.kotsin.execution.virtual;
+
+import com.kotsin.execution.virtual.model.VirtualPosition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process, authoritative book of the positions managed by VirtualEngineService.
+ *
+ * Hot-path updates (mark-to-market, trailing moves) only mutate the in-memory position and mark
+ * it dirty; a scheduled flusher coalesces all dirty positions into one MSET per cycle, so a scrip
+ * ticking 50 times between flushes costs one Redis write. Fills, exits and manual edits go through
+ * {@link #persist} / {@link #remove}, which write synchronously before returning.
+ *
+ * Positions are adopted lazily from Redis on first access. Strategy positions written by the
+ * dashboard's StrategyTradeExecutor share the key space but are never held here.
+ *
+ * Mutations must happen under {@link #lockFor(String)}; the flusher snapshots a position under the
+ * same lock and skips (keeps dirty) any scrip that is currently locked.
+ */
+@Component
+@Slf4j
+public class VirtualPositionBook {
+
+    private final VirtualWalletRepository repo;
+
+    private final ConcurrentHashMap<String, VirtualPosition> positions = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    // BUG-009 FIX: Per-scripCode locking to prevent race conditions (shared with VirtualEngineService)
+    private final ConcurrentHashMap<String, ReentrantLock> scripLocks = new ConcurrentHashMap<>();
+    // Orders Redis writes: a flush snapshot can never land after a later durable write or delete
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final Counter deferredUpdates;
+    private final Counter flushedWrites;
+    private final Counter durableWrites;
+
+    public VirtualPositionBook(VirtualWalletRepository repo, MeterRegistry registry) {
+        this.repo = repo;
+        this.deferredUpdates = registry.counter("virtual.position.book.updates", "mode", "write-behind");
+        this.flushedWrites = registry.counter("virtual.position.book.redis.writes", "mode", "write-behind");
+        this.durableWrites = registry.counter("virtual.position.book.redis.writes", "mode", "durable");
+        registry.gaugeMapSize("virtual.position.book.size", List.of(), positions);
+        registry.gaugeCollectionSize("virtual.position.book.dirty", List.of(), dirty);
+    }
+
+    public ReentrantLock lockFor(String scripCode) {
+        return scripLocks.computeIfAbsent(scripCode, k -> new ReentrantLock());
+    }
+
+    /** Book copy if held, otherwise adopt the Redis copy (engine-managed positions only). */
+    public Optional<VirtualPosition> get(String scripCode) {
+        VirtualPosition held = positions.get(scripCode);
+        if (held != null) return Optional.of(held);
+        Optional<VirtualPosition> stored = repo.getPosition(scripCode);
+        if (stored.isEmpty() || isStrategyManaged(stored.get())) return stored;
+        return Optional.of(positions.computeIfAbsent(scripCode, k -> stored.get()));
+    }
+
+    /** Engine-managed positions currently held in memory. */
+    public List<VirtualPosition> list() {
+        return new ArrayList<>(positions.values());
+    }
+
+    /** Replace stored (possibly not yet flushed) copies with the book's live positions. */
+    public List<VirtualPosition> overlay(List<VirtualPosition> stored) {
+        List<VirtualPosition> out = new ArrayList<>(stored.size());
+        for (VirtualPosition p : stored) out.add(positions.getOrDefault(p.getScripCode(), p));
+        return out;
+    }
+
+    /** Write-behind: keep the change in memory, Redis catches up on the next flush. */
+    public void update(VirtualPosition p) {
+        if (isStrategyManaged(p)) {
+            repo.savePosition(p);
+            return;
+        }
+        positions.put(p.getScripCode(), p);
+        dirty.add(p.getScripCode());
+        deferredUpdates.increment();
+    }
+
+    /** Durable: write to Redis before returning. Used for fills, exits and manual edits. */
+    public void persist(VirtualPosition p) {
+        if (!isStrategyManaged(p)) {
+            positions.put(p.getScripCode(), p);
+        }
+        writeLock.lock();
+        try {
+            dirty.remove(p.getScripCode());
+            repo.savePosition(p);
+            durableWrites.increment();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Durable delete from both the book and Redis. */
+    public void remove(String scripCode) {
+        positions.remove(scripCode);
+        writeLock.lock();
+        try {
+            dirty.remove(scripCode);
+            repo.deletePosition(scripCode);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Apply a change under the scrip lock and persist it durably. No-op if the position does not exist. */
+    public Optional<VirtualPosition> modify(String scripCode, Consumer<VirtualPosition> change) {
+        ReentrantLock lock = lockFor(scripCode);
+        lock.lock();
+        try {
+            Optional<VirtualPosition> posOpt = get(scripCode);
+            posOpt.ifPresent(p -> {
+                change.accept(p);
+                persist(p);
+            });
+            return posOpt;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Coalescing write-behind flush: latest state of every dirty position in one MSET. */
+    @Scheduled(fixedDelayString = "${execution.virtual.position-book.flush-interval-ms:1000}")
+    public void flush() {
+        if (dirty.isEmpty()) return;
+        writeLock.lock();
+        try {
+            Map<String, byte[]> batch = new HashMap<>();
+            for (String scripCode : dirty) {
+                ReentrantLock lock = lockFor(scripCode);
+                if (!lock.tryLock()) continue; // Mid-mutation — stays dirty for the next flush
+                try {
+                    dirty.remove(scripCode);
+                    VirtualPosition p = positions.get(scripCode);
+                    byte[] encoded = p != null ? repo.encodePosition(p) : null;
+                    if (encoded != null) batch.put(scripCode, encoded);
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (batch.isEmpty()) return;
+            if (repo.savePositionsEncoded(batch)) {
+                flushedWrites.increment(batch.size());
+            } else {
+                dirty.addAll(batch.keySet()); // Redis unavailable — retry next cycle
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("VirtualPositionBook flushing {} dirty positions before shutdown", dirty.size());
+        flush();
+    }
+
+    private static boolean isStrategyManaged(VirtualPosition p) {
+        return p.getStrategy() != null && !p.getStrategy().isEmpty();
+    }
+}
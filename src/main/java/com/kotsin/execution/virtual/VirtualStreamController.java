@@ -1,11 +1,13 @@
 package com.kotsin.execution.virtual;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
@@ -21,15 +23,23 @@ import java.util.Map;
 public class VirtualStreamController {
     private final VirtualEventBus bus;
     private final VirtualWalletRepository repo;
+    private final VirtualPositionBook book;
 
+    /**
+     * mode=full (default): legacy stream, every position event carries the whole VirtualPosition.
+     * mode=delta: "snapshot" on connect, then versioned per-scrip deltas (see VirtualEventBus).
+     */
     @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter stream(){
+    public SseEmitter stream(@RequestParam(defaultValue = "full") String mode){
+        if ("delta".equalsIgnoreCase(mode)) {
+            return bus.subscribeDelta(book.overlay(repo.listPositions()), repo.listOrders(200));
+        }
         SseEmitter emitter = bus.subscribe();
         // Send initial wallet snapshot (orders + positions)
         try {
             Map<String, Object> snapshot = new HashMap<>();
             snapshot.put("orders", repo.listOrders(200));
-            snapshot.put("positions", repo.listPositions());
+            snapshot.put("positions", book.overlay(repo.listPositions()));
             snapshot.put("timestamp", System.currentTimeMillis());
             emitter.send(SseEmitter.event().name("wallet").data(snapshot));
         } catch (IOException e) {
@@ -38,4 +48,10 @@ public class VirtualStreamController {
         }
         return emitter;
     }
+
+    /** DELTA-STREAM: resync after a version gap — positions with their current versions. */
+    @GetMapping("/stream/snapshot")
+    public ObjectNode snapshot(){
+        return bus.deltaSnapshot(book.overlay(repo.listPositions()));
+    }
 }
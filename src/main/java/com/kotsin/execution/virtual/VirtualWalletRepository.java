@@ -1,72 +1,194 @@
 package com.kotsin.execution.virtual;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kotsin.execution.virtual.codec.DualReadCodec;
+import com.kotsin.execution.virtual.codec.EntityCodec;
+import com.kotsin.execution.virtual.codec.VirtualCodecs;
 import com.kotsin.execution.virtual.model.VirtualOrder;
 import com.kotsin.execution.virtual.model.VirtualPosition;
 import com.kotsin.execution.virtual.model.VirtualSettings;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
 @Slf4j
 public class VirtualWalletRepository {
     private final RedisTemplate<String, String> executionStringRedisTemplate;
+    // Order/position values are raw bytes: JSON or tagged binary, decided by VirtualCodecs
+    private final RedisTemplate<String, byte[]> executionBinaryRedisTemplate;
+    private final VirtualCodecs codecs;
+    private final MeterRegistry meterRegistry;
     private final ObjectMapper mapper = new ObjectMapper();
 
+    @Value("${execution.virtual.redis.bulk-read.enabled:true}")
+    private boolean bulkReadEnabled;
+
+    @Value("${execution.virtual.redis.mget-chunk-size:200}")
+    private int mgetChunkSize;
+
+    @Value("${execution.virtual.order-archive.keep-days:30}")
+    private long archiveKeepDays;
+
+    // Below this many values, parallel decoding costs more than it saves
+    private static final int PARALLEL_DECODE_THRESHOLD = 64;
+    // SCAN page size; one cursor round trip per page
+    private static final int SCAN_COUNT = 1000;
+
     private String orderKey(String id){ return "virtual:orders:"+id; }
     private String posKey(String scrip){ return "virtual:positions:"+scrip; }
     private String settingsKey(){ return "virtual:settings"; }
+    // Kept outside the virtual:orders:* pattern so order SCANs never see them
+    private String pendingIndexKey(String scrip){ return "virtual:order-index:pending:"+scrip; }
+    private String pendingScripsKey(){ return "virtual:order-index:pending-scrips"; }
+    // Written once the index has been built; Redis deletes empty sets, so the scrip set cannot tell
+    private String pendingIndexBuiltKey(){ return "virtual:order-index:initialised"; }
+    private String archiveKey(String date){ return "virtual:order-archive:"+date; }
 
     public void saveOrder(VirtualOrder o) {
-        try { executionStringRedisTemplate.opsForValue().set(orderKey(o.getId()), mapper.writeValueAsString(o)); }
+        try { executionBinaryRedisTemplate.opsForValue().set(orderKey(o.getId()), codecs.getOrders().encode(o)); }
         catch (Exception e){ log.warn("saveOrder failed: {}", e.getMessage()); }
     }
 
     public Optional<VirtualOrder> getOrder(String id) {
         try {
-            String raw = executionStringRedisTemplate.opsForValue().get(orderKey(id));
-            return raw == null ? Optional.empty() : Optional.of(mapper.readValue(raw, VirtualOrder.class));
+            byte[] raw = executionBinaryRedisTemplate.opsForValue().get(orderKey(id));
+            return raw == null ? Optional.empty() : Optional.of(codecs.getOrders().decode(raw));
         } catch (Exception e){ return Optional.empty(); }
     }
 
     public List<VirtualOrder> listOrders(int max) {
-        List<VirtualOrder> out = new ArrayList<>();
-        try (var c = executionStringRedisTemplate.scan(org.springframework.data.redis.core.ScanOptions.scanOptions().match("virtual:orders:*").count(1000).build())) {
-            while (c.hasNext() && out.size() < max){
-                String raw = executionStringRedisTemplate.opsForValue().get(c.next());
-                if (raw != null) try { out.add(mapper.readValue(raw, VirtualOrder.class)); } catch (Exception e) { log.warn("Failed to parse order: {}", e.getMessage()); }
-            }
-        } catch (Exception e) { log.error("Failed to list orders from Redis: {}", e.getMessage()); }
+        List<VirtualOrder> out = readAll("listOrders", "virtual:orders:*", max, codecs.getOrders());
         out.sort(Comparator.comparingLong(VirtualOrder::getCreatedAt).reversed());
         return out;
     }
 
+    /** Bulk fetch of orders by id; missing or unparseable ids are skipped. */
+    public List<VirtualOrder> getOrders(Collection<String> ids) {
+        return readKeys("getOrders", ids.stream().map(this::orderKey).toList(), codecs.getOrders(), 0);
+    }
+
+    // ==================== PENDING LIMIT INDEX / ARCHIVE ====================
+
+    public void indexPendingOrder(String scrip, String orderId) {
+        try {
+            executionStringRedisTemplate.opsForSet().add(pendingIndexKey(scrip), orderId);
+            executionStringRedisTemplate.opsForSet().add(pendingScripsKey(), scrip);
+        } catch (Exception e) { log.warn("indexPendingOrder failed for {}: {}", orderId, e.getMessage()); }
+    }
+
+    public void unindexPendingOrder(String scrip, String orderId) {
+        try {
+            executionStringRedisTemplate.opsForSet().remove(pendingIndexKey(scrip), orderId);
+            Long left = executionStringRedisTemplate.opsForSet().size(pendingIndexKey(scrip));
+            if (left == null || left == 0) executionStringRedisTemplate.opsForSet().remove(pendingScripsKey(), scrip);
+        } catch (Exception e) { log.warn("unindexPendingOrder failed for {}: {}", orderId, e.getMessage()); }
+    }
+
+    /**
+     * scripCode → pending LIMIT order ids (empty when none are working), or null if the index has never
+     * been built. A Redis failure throws rather than reading as "never built".
+     */
+    public Map<String, Set<String>> loadPendingIndex() {
+        if (!Boolean.TRUE.equals(executionStringRedisTemplate.hasKey(pendingIndexBuiltKey()))) {
+            // Index written before the marker existed: a non-empty scrip set proves it was built
+            if (!Boolean.TRUE.equals(executionStringRedisTemplate.hasKey(pendingScripsKey()))) return null;
+            markPendingIndexBuilt();
+        }
+        Set<String> scrips = executionStringRedisTemplate.opsForSet().members(pendingScripsKey());
+        Map<String, Set<String>> out = new HashMap<>();
+        if (scrips != null) {
+            for (String scrip : scrips) {
+                Set<String> ids = executionStringRedisTemplate.opsForSet().members(pendingIndexKey(scrip));
+                if (ids != null && !ids.isEmpty()) out.put(scrip, ids);
+            }
+        }
+        return out;
+    }
+
+    public void markPendingIndexBuilt() {
+        try { executionStringRedisTemplate.opsForValue().set(pendingIndexBuiltKey(), "1"); }
+        catch (Exception e) { log.warn("markPendingIndexBuilt failed, the next start rebuilds again: {}", e.getMessage()); }
+    }
+
+    /** Every stored order, for the one-off index rebuild. Unlike listOrders, a Redis failure throws. */
+    public List<VirtualOrder> scanOrdersStrict() {
+        return decodeAll(fetchValues(scanKeys("virtual:orders:*", Integer.MAX_VALUE)), codecs.getOrders());
+    }
+
+    /** Orders by id, for the index load. Unlike getOrders, a Redis failure throws instead of reading as missing. */
+    public List<VirtualOrder> getOrdersStrict(Collection<String> ids) {
+        List<String> keys = ids.stream().map(this::orderKey).toList();
+        return keys.isEmpty() ? new ArrayList<>() : decodeAll(fetchValues(keys), codecs.getOrders());
+    }
+
+    /** Move orders into the {@code date} archive hash (id → encoded order) and drop their live keys. */
+    public int archiveOrders(String date, List<VirtualOrder> orders) {
+        Map<String, byte[]> byId = new HashMap<>();
+        for (VirtualOrder o : orders) {
+            try { byId.put(o.getId(), codecs.getOrders().encode(o)); }
+            catch (Exception e) { log.warn("archiveOrders: failed to encode {}: {}", o.getId(), e.getMessage()); }
+        }
+        if (byId.isEmpty()) return 0;
+        try {
+            executionBinaryRedisTemplate.opsForHash().putAll(archiveKey(date), byId);
+            executionBinaryRedisTemplate.expire(archiveKey(date), Duration.ofDays(archiveKeepDays));
+            executionBinaryRedisTemplate.delete(byId.keySet().stream().map(this::orderKey).toList());
+            return byId.size();
+        } catch (Exception e) {
+            log.error("Failed to archive {} orders for {}: {}", byId.size(), date, e.getMessage());
+            return 0;
+        }
+    }
+
     public void savePosition(VirtualPosition p){
-        try { executionStringRedisTemplate.opsForValue().set(posKey(p.getScripCode()), mapper.writeValueAsString(p)); }
+        try { executionBinaryRedisTemplate.opsForValue().set(posKey(p.getScripCode()), codecs.getPositions().encode(p)); }
         catch (Exception e){ log.warn("savePosition failed: {}", e.getMessage()); }
     }
 
+    /** Stored form of a position, or null if it cannot be serialised. */
+    public byte[] encodePosition(VirtualPosition p){
+        try { return codecs.getPositions().encode(p); }
+        catch (Exception e){ log.warn("encodePosition failed for {}: {}", p.getScripCode(), e.getMessage()); return null; }
+    }
+
+    /** Write pre-encoded positions (scripCode → encoded value) in a single MSET. */
+    public boolean savePositionsEncoded(Map<String, byte[]> encodedByScrip){
+        if (encodedByScrip.isEmpty()) return true;
+        Map<String, byte[]> byKey = new HashMap<>(encodedByScrip.size() * 2);
+        encodedByScrip.forEach((scrip, value) -> byKey.put(posKey(scrip), value));
+        try { executionBinaryRedisTemplate.opsForValue().multiSet(byKey); return true; }
+        catch (Exception e){ log.warn("savePositionsEncoded failed for {} positions: {}", byKey.size(), e.getMessage()); return false; }
+    }
+
     public Optional<VirtualPosition> getPosition(String scrip){
         try {
-            String raw = executionStringRedisTemplate.opsForValue().get(posKey(scrip));
-            return raw == null ? Optional.empty() : Optional.of(mapper.readValue(raw, VirtualPosition.class));
+            byte[] raw = executionBinaryRedisTemplate.opsForValue().get(posKey(scrip));
+            return raw == null ? Optional.empty() : Optional.of(codecs.getPositions().decode(raw));
         } catch (Exception e){ return Optional.empty(); }
     }
 
     public List<VirtualPosition> listPositions(){
-        List<VirtualPosition> out = new ArrayList<>();
-        try (var c = executionStringRedisTemplate.scan(org.springframework.data.redis.core.ScanOptions.scanOptions().match("virtual:positions:*").count(1000).build())) {
-            while (c.hasNext()){
-                String raw = executionStringRedisTemplate.opsForValue().get(c.next());
-                if (raw != null) try { out.add(mapper.readValue(raw, VirtualPosition.class)); } catch (Exception e) { log.warn("Failed to parse position: {}", e.getMessage()); }
-            }
-        } catch (Exception e) { log.error("Failed to list positions from Redis: {}", e.getMessage()); }
-        return out;
+        return readAll("listPositions", "virtual:positions:*", Integer.MAX_VALUE, codecs.getPositions());
+    }
+
+    /** Bulk fetch of positions by scripCode; missing or unparseable scrips are skipped. */
+    public List<VirtualPosition> getPositions(Collection<String> scrips){
+        return readKeys("getPositions", scrips.stream().map(this::posKey).toList(), codecs.getPositions(), 0);
     }
 
     public void deletePosition(String scrip) {
@@ -86,5 +208,123 @@ public class VirtualWalletRepository {
     public void saveSettings(VirtualSettings s){
         try { executionStringRedisTemplate.opsForValue().set(settingsKey(), mapper.writeValueAsString(s)); } catch (Exception e) { log.error("Failed to save settings: {}", e.getMessage()); }
     }
-}
 
+    // ==================== CODEC MIGRATION ====================
+
+    /** Re-encode stored orders and positions that are not in the configured write format. */
+    public int migrateCodec() {
+        return migrate("virtual:orders:*", codecs.getOrders()) + migrate("virtual:positions:*", codecs.getPositions());
+    }
+
+    private <T> int migrate(String pattern, DualReadCodec<T> codec) {
+        int rewritten = 0;
+        try (var c = executionBinaryRedisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build())) {
+            while (c.hasNext()) {
+                String key = c.next();
+                byte[] raw = executionBinaryRedisTemplate.opsForValue().get(key);
+                if (raw == null || !codec.needsRewrite(raw)) continue;
+                try {
+                    executionBinaryRedisTemplate.opsForValue().set(key, codec.encode(codec.decode(raw)));
+                    rewritten++;
+                } catch (Exception e) {
+                    log.warn("Codec migration skipped {}: {}", key, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Codec migration of {} failed: {}", pattern, e.getMessage());
+        }
+        return rewritten;
+    }
+
+    // ==================== BULK READS ====================
+
+    /** SCAN up to {@code max} keys matching {@code pattern}, then fetch and decode them in bulk. */
+    private List<String> scanKeys(String pattern, int max) {
+        List<String> keys = new ArrayList<>();
+        try (var c = executionStringRedisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build())) {
+            while (c.hasNext() && keys.size() < max) keys.add(c.next());
+        }
+        return keys;
+    }
+
+    private <T> List<T> readAll(String op, String pattern, int max, EntityCodec<T> codec) {
+        List<String> keys;
+        try {
+            keys = scanKeys(pattern, max);
+        } catch (Exception e) {
+            log.error("Failed to scan {} from Redis: {}", pattern, e.getMessage());
+            return new ArrayList<>();
+        }
+        // Cursor pages are not exposed; approximate as one round trip per SCAN_COUNT keys
+        return readKeys(op, keys, codec, 1 + keys.size() / SCAN_COUNT);
+    }
+
+    private <T> List<T> readKeys(String op, List<String> keys, EntityCodec<T> codec, int roundTrips) {
+        if (keys.isEmpty()) {
+            recordRoundTrips(op, roundTrips);
+            return new ArrayList<>();
+        }
+        List<byte[]> raws = new ArrayList<>(keys.size());
+        try {
+            raws.addAll(fetchValues(keys));
+            roundTrips += bulkReadEnabled ? 1 : keys.size();
+        } catch (Exception e) {
+            log.error("Failed to read {} keys for {}: {}", keys.size(), op, e.getMessage());
+        }
+        recordRoundTrips(op, roundTrips);
+        return decodeAll(raws, codec);
+    }
+
+    private List<byte[]> fetchValues(List<String> keys) {
+        if (bulkReadEnabled) return multiGetPipelined(keys);
+        // Legacy path: one GET per key
+        List<byte[]> raws = new ArrayList<>(keys.size());
+        for (String key : keys) raws.add(executionBinaryRedisTemplate.opsForValue().get(key));
+        return raws;
+    }
+
+    /** All chunks' MGETs are sent in one pipeline, so the whole read is a single network round trip. */
+    @SuppressWarnings("unchecked")
+    private List<byte[]> multiGetPipelined(List<String> keys) {
+        int chunk = Math.max(1, mgetChunkSize);
+        if (keys.size() <= chunk) {
+            List<byte[]> values = executionBinaryRedisTemplate.opsForValue().multiGet(keys);
+            return values != null ? values : List.of();
+        }
+        List<Object> replies = executionBinaryRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, byte[]> ops = (RedisOperations<String, byte[]>) operations;
+                for (int i = 0; i < keys.size(); i += chunk) {
+                    ops.opsForValue().multiGet(keys.subList(i, Math.min(keys.size(), i + chunk)));
+                }
+                return null;
+            }
+        });
+        List<byte[]> values = new ArrayList<>(keys.size());
+        for (Object reply : replies) {
+            if (reply instanceof List<?> list) {
+                for (Object v : list) values.add((byte[]) v);
+            }
+        }
+        return values;
+    }
+
+    private <T> List<T> decodeAll(List<byte[]> raws, EntityCodec<T> codec) {
+        Function<byte[], T> decode = raw -> {
+            if (raw == null) return null;
+            try { return codec.decode(raw); }
+            catch (Exception e) { log.warn("Failed to parse {} value: {}", codec.name(), e.getMessage()); return null; }
+        };
+        var stream = raws.size() >= PARALLEL_DECODE_THRESHOLD ? raws.parallelStream() : raws.stream();
+        return stream.map(decode).filter(Objects::nonNull).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private void recordRoundTrips(String op, int roundTrips) {
+        meterRegistry.counter("virtual.redis.roundtrips", "op", op).increment(roundTrips);
+        DistributionSummary.builder("virtual.redis.roundtrips.per.call")
+                .tag("op", op)
+                .register(meterRegistry)
+                .record(roundTrips);
+    }
+}
@@ -0,0 +1,44 @@
+package com.kotsin.execution.virtual.codec;
+
+/**
+ * Migration codec: writes with the configured format, reads either format.
+ *
+ * A value starting with {@link TaggedBinaryWriter#MAGIC} is decoded as tagged binary, anything else as
+ * JSON, so a key space can hold both while it is being migrated (or rolled back).
+ */
+public class DualReadCodec<T> implements EntityCodec<T> {
+
+    private final EntityCodec<T> json;
+    private final EntityCodec<T> binary;
+    private final EntityCodec<T> writer;
+
+    public DualReadCodec(EntityCodec<T> json, EntityCodec<T> binary, boolean writeBinary) {
+        this.json = json;
+        this.binary = binary;
+        this.writer = writeBinary ? binary : json;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+        return writer.encode(value);
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        return isBinary(bytes) ? binary.decode(bytes) : json.decode(bytes);
+    }
+
+    @Override
+    public String name() {
+        return writer.name();
+    }
+
+    /** True if {@code bytes} is not in the format this codec writes (candidate for migration). */
+    public boolean needsRewrite(byte[] bytes) {
+        return isBinary(bytes) != (writer == binary);
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == TaggedBinaryWriter.MAGIC;
+    }
+}
@@ -0,0 +1,14 @@
+package com.kotsin.execution.virtual.codec;
+
+/**
+ * Converts an entity to and from its Redis value bytes.
+ */
+public interface EntityCodec<T> {
+
+    byte[] encode(T value);
+
+    T decode(byte[] bytes);
+
+    /** Format name as used in execution.virtual.redis.codec (json, binary). */
+    String name();
+}
@@ -0,0 +1,43 @@
+package com.kotsin.execution.virtual.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Plain Jackson JSON — the historical format, readable with redis-cli and shared with the dashboard.
+ */
+public class JsonEntityCodec<T> implements EntityCodec<T> {
+
+    private final ObjectMapper mapper;
+    private final Class<T> type;
+
+    public JsonEntityCodec(ObjectMapper mapper, Class<T> type) {
+        this.mapper = mapper;
+        this.type = type;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        try {
+            return mapper.readValue(bytes, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "json";
+    }
+}
@@ -0,0 +1,128 @@
+package com.kotsin.execution.virtual.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader for the format written by {@link TaggedBinaryWriter}. Call {@link #next()} until it returns
+ * false, dispatch on {@link #fieldId()} and read the value with the matching accessor; fields the
+ * caller does not handle are skipped automatically.
+ */
+public final class TaggedBinaryReader {
+
+    private final byte[] buf;
+    private int pos;
+    private final byte schemaVersion;
+
+    private int fieldId;
+    private int wireType;
+    private boolean consumed = true;
+
+    public TaggedBinaryReader(byte[] bytes, byte expectedEntityType) {
+        if (bytes.length < 3 || bytes[0] != TaggedBinaryWriter.MAGIC) {
+            throw new IllegalArgumentException("Not a tagged binary payload");
+        }
+        if (bytes[1] != expectedEntityType) {
+            throw new IllegalArgumentException("Entity type mismatch: expected " + expectedEntityType + " got " + bytes[1]);
+        }
+        this.buf = bytes;
+        this.schemaVersion = bytes[2];
+        this.pos = 3;
+    }
+
+    public byte schemaVersion() {
+        return schemaVersion;
+    }
+
+    /** Advance to the next field; skips the previous one if its value was not read. */
+    public boolean next() {
+        if (!consumed) skip();
+        if (pos >= buf.length) return false;
+        long key = varint();
+        fieldId = (int) (key >>> 3);
+        wireType = (int) (key & 0x7);
+        consumed = false;
+        return true;
+    }
+
+    public int fieldId() {
+        return fieldId;
+    }
+
+    public long readLong() {
+        expect(TaggedBinaryWriter.WIRE_VARINT);
+        long raw = varint();
+        consumed = true;
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public int readInt() {
+        return (int) readLong();
+    }
+
+    public double readDouble() {
+        expect(TaggedBinaryWriter.WIRE_DOUBLE);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) bits |= (buf[pos++] & 0xFFL) << (8 * i);
+        consumed = true;
+        return Double.longBitsToDouble(bits);
+    }
+
+    public boolean readBoolean() {
+        if (wireType != TaggedBinaryWriter.WIRE_TRUE && wireType != TaggedBinaryWriter.WIRE_FALSE) {
+            throw new IllegalStateException("Field " + fieldId + " is not a boolean");
+        }
+        consumed = true;
+        return wireType == TaggedBinaryWriter.WIRE_TRUE;
+    }
+
+    public String readString() {
+        expect(TaggedBinaryWriter.WIRE_STRING);
+        int len = (int) varint();
+        String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+        pos += len;
+        consumed = true;
+        return s;
+    }
+
+    /** Unknown constant names (written by a newer build) decode as null. */
+    public <E extends Enum<E>> E readEnum(Class<E> type) {
+        String name = readString();
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void skip() {
+        switch (wireType) {
+            case TaggedBinaryWriter.WIRE_VARINT -> varint();
+            case TaggedBinaryWriter.WIRE_DOUBLE -> pos += 8;
+            case TaggedBinaryWriter.WIRE_STRING -> {
+                int len = (int) varint();
+                pos += len;
+            }
+            case TaggedBinaryWriter.WIRE_TRUE, TaggedBinaryWriter.WIRE_FALSE -> { }
+            default -> throw new IllegalStateException("Unknown wire type " + wireType + " for field " + fieldId);
+        }
+        consumed = true;
+    }
+
+    private void expect(int type) {
+        if (wireType != type) {
+            throw new IllegalStateException("Field " + fieldId + " has wire type " + wireType + ", expected " + type);
+        }
+    }
+
+    private long varint() {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf[pos++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+            shift += 7;
+            if (shift > 63) throw new IllegalStateException("Malformed varint");
+        }
+    }
+}
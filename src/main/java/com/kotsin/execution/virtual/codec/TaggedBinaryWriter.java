@@ -0,0 +1,109 @@
+package com.kotsin.execution.virtual.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writer for the tagged binary format.
+ *
+ * Layout: {@code MAGIC, entityType, schemaVersion} followed by fields. Each field is a varint key
+ * {@code (fieldId << 3) | wireType} and a payload. Null fields are simply not written, and readers skip
+ * field ids they do not know, so fields can be added (new id) or retired (id never reused) without
+ * breaking older or newer readers.
+ */
+public final class TaggedBinaryWriter {
+
+    public static final byte MAGIC = (byte) 0xB1; // Never the first byte of a JSON document
+
+    static final int WIRE_VARINT = 0;   // zig-zag varint (int, long, enum ordinal)
+    static final int WIRE_DOUBLE = 1;   // 8 bytes, little-endian IEEE 754
+    static final int WIRE_STRING = 2;   // varint length + UTF-8
+    static final int WIRE_TRUE = 3;     // no payload
+    static final int WIRE_FALSE = 4;    // no payload
+
+    private byte[] buf;
+    private int pos;
+
+    public TaggedBinaryWriter(byte entityType, byte schemaVersion, int initialCapacity) {
+        buf = new byte[Math.max(16, initialCapacity)];
+        buf[pos++] = MAGIC;
+        buf[pos++] = entityType;
+        buf[pos++] = schemaVersion;
+    }
+
+    public TaggedBinaryWriter writeLong(int fieldId, long value) {
+        if (value == 0) return this; // Absent == 0 for primitive fields
+        key(fieldId, WIRE_VARINT);
+        varint((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    /** Always written, for primitive fields whose Java default is not 0 (e.g. lotSize = 1). */
+    public TaggedBinaryWriter writeLongAlways(int fieldId, long value) {
+        key(fieldId, WIRE_VARINT);
+        varint((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    public TaggedBinaryWriter writeDouble(int fieldId, double value) {
+        if (value == 0.0 && Double.doubleToRawLongBits(value) == 0L) return this;
+        key(fieldId, WIRE_DOUBLE);
+        ensure(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) buf[pos++] = (byte) (bits >>> (8 * i));
+        return this;
+    }
+
+    /** Nullable double: null is omitted, 0.0 is written explicitly. */
+    public TaggedBinaryWriter writeDouble(int fieldId, Double value) {
+        if (value == null) return this;
+        key(fieldId, WIRE_DOUBLE);
+        ensure(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) buf[pos++] = (byte) (bits >>> (8 * i));
+        return this;
+    }
+
+    public TaggedBinaryWriter writeBoolean(int fieldId, Boolean value) {
+        if (value == null) return this;
+        key(fieldId, value ? WIRE_TRUE : WIRE_FALSE);
+        return this;
+    }
+
+    public TaggedBinaryWriter writeString(int fieldId, String value) {
+        if (value == null) return this;
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        key(fieldId, WIRE_STRING);
+        varint(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, buf, pos, utf8.length);
+        pos += utf8.length;
+        return this;
+    }
+
+    /** Enums are stored by name so constants can be reordered or added safely. */
+    public TaggedBinaryWriter writeEnum(int fieldId, Enum<?> value) {
+        return value == null ? this : writeString(fieldId, value.name());
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private void key(int fieldId, int wireType) {
+        varint(((long) fieldId << 3) | wireType);
+    }
+
+    private void varint(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void ensure(int extra) {
+        if (pos + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+    }
+}
@@ -0,0 +1,37 @@
+package com.kotsin.execution.virtual.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kotsin.execution.virtual.model.VirtualOrder;
+import com.kotsin.execution.virtual.model.VirtualPosition;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Codecs for the virtual:orders:* and virtual:positions:* values.
+ *
+ * execution.virtual.redis.codec selects the write format: json (default) or binary. Reads always
+ * accept both. Keep json while any other process (dashboard StrategyTradeExecutor, redis-cli tooling)
+ * reads these keys as JSON; wallet:entity:* is deliberately not covered because its Lua scripts
+ * decode it with cjson inside Redis.
+ */
+@Component
+@Getter
+@Slf4j
+public class VirtualCodecs {
+
+    private final DualReadCodec<VirtualPosition> positions;
+    private final DualReadCodec<VirtualOrder> orders;
+
+    public VirtualCodecs(@Value("${execution.virtual.redis.codec:json}") String format) {
+        boolean binary = "binary".equalsIgnoreCase(format);
+        ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.positions = new DualReadCodec<>(new JsonEntityCodec<>(mapper, VirtualPosition.class),
+                new VirtualPositionBinaryCodec(), binary);
+        this.orders = new DualReadCodec<>(new JsonEntityCodec<>(mapper, VirtualOrder.class),
+                new VirtualOrderBinaryCodec(), binary);
+        log.info("Virtual Redis codec: write={} read=json+binary", binary ? "binary" : "json");
+    }
+}
@@ -0,0 +1,119 @@
+package com.kotsin.execution.virtual.codec;
+
+import com.kotsin.execution.virtual.model.VirtualOrder;
+
+/**
+ * Reflection-free tagged binary codec for VirtualOrder (see {@link TaggedBinaryWriter} for the layout).
+ *
+ * Field ids are part of the stored format: never renumber or reuse one. New fields take the next
+ * free id; retired fields keep their id reserved. Bump SCHEMA_VERSION only for changes a reader must
+ * know about (the id table itself evolves without it).
+ *
+ * Field ids:
+ *    1 id
+ *    2 scripCode
+ *    3 side
+ *    4 type
+ *    5 qty
+ *    6 limitPrice
+ *    7 currentPrice
+ *    8 entryPrice
+ *    9 sl
+ *   10 tp1
+ *   11 tp2
+ *   12 tp1ClosePercent
+ *   13 trailingType
+ *   14 trailingValue
+ *   15 trailingStep
+ *   16 createdAt
+ *   17 updatedAt
+ *   18 status
+ *   19 rejectionReason
+ *   20 exchange
+ *   21 signalId
+ *   22 signalType
+ *   23 signalSource
+ *   24 rationale
+ *   25 instrumentSymbol
+ *   26 lotSize
+ */
+public class VirtualOrderBinaryCodec implements EntityCodec<VirtualOrder> {
+
+    static final byte ENTITY_TYPE = 'O';
+    static final byte SCHEMA_VERSION = 1;
+
+    @Override
+    public byte[] encode(VirtualOrder v) {
+        TaggedBinaryWriter w = new TaggedBinaryWriter(ENTITY_TYPE, SCHEMA_VERSION, 256);
+        w.writeString(1, v.getId());
+        w.writeString(2, v.getScripCode());
+        w.writeEnum(3, v.getSide());
+        w.writeEnum(4, v.getType());
+        w.writeLong(5, v.getQty());
+        w.writeDouble(6, v.getLimitPrice());
+        w.writeDouble(7, v.getCurrentPrice());
+        w.writeDouble(8, v.getEntryPrice());
+        w.writeDouble(9, v.getSl());
+        w.writeDouble(10, v.getTp1());
+        w.writeDouble(11, v.getTp2());
+        w.writeDouble(12, v.getTp1ClosePercent());
+        w.writeString(13, v.getTrailingType());
+        w.writeDouble(14, v.getTrailingValue());
+        w.writeDouble(15, v.getTrailingStep());
+        w.writeLong(16, v.getCreatedAt());
+        w.writeLong(17, v.getUpdatedAt());
+        w.writeEnum(18, v.getStatus());
+        w.writeString(19, v.getRejectionReason());
+        w.writeString(20, v.getExchange());
+        w.writeString(21, v.getSignalId());
+        w.writeString(22, v.getSignalType());
+        w.writeString(23, v.getSignalSource());
+        w.writeString(24, v.getRationale());
+        w.writeString(25, v.getInstrumentSymbol());
+        w.writeLongAlways(26, v.getLotSize());
+        return w.toBytes();
+    }
+
+    @Override
+    public VirtualOrder decode(byte[] bytes) {
+        TaggedBinaryReader r = new TaggedBinaryReader(bytes, ENTITY_TYPE);
+        VirtualOrder v = new VirtualOrder();
+        while (r.next()) {
+            switch (r.fieldId()) {
+                case 1 -> v.setId(r.readString());
+                case 2 -> v.setScripCode(r.readString());
+                case 3 -> v.setSide(r.readEnum(VirtualOrder.Side.class));
+                case 4 -> v.setType(r.readEnum(VirtualOrder.Type.class));
+                case 5 -> v.setQty(r.readInt());
+                case 6 -> v.setLimitPrice(r.readDouble());
+                case 7 -> v.setCurrentPrice(r.readDouble());
+                case 8 -> v.setEntryPrice(r.readDouble());
+                case 9 -> v.setSl(r.readDouble());
+                case 10 -> v.setTp1(r.readDouble());
+                case 11 -> v.setTp2(r.readDouble());
+                case 12 -> v.setTp1ClosePercent(r.readDouble());
+                case 13 -> v.setTrailingType(r.readString());
+                case 14 -> v.setTrailingValue(r.readDouble());
+                case 15 -> v.setTrailingStep(r.readDouble());
+                case 16 -> v.setCreatedAt(r.readLong());
+                case 17 -> v.setUpdatedAt(r.readLong());
+                case 18 -> v.setStatus(r.readEnum(VirtualOrder.Status.class));
+                case 19 -> v.setRejectionReason(r.readString());
+                case 20 -> v.setExchange(r.readString());
+                case 21 -> v.setSignalId(r.readString());
+                case 22 -> v.setSignalType(r.readString());
+                case 23 -> v.setSignalSource(r.readString());
+                case 24 -> v.setRationale(r.readString());
+                case 25 -> v.setInstrumentSymbol(r.readString());
+                case 26 -> v.setLotSize(r.readInt());
+                default -> { } // Unknown (newer) field: skipped by the reader
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+}
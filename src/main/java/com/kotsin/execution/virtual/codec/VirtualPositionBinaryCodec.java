@@ -0,0 +1,224 @@
+package com.kotsin.execution.virtual.codec;
+
+import com.kotsin.execution.virtual.model.VirtualPosition;
+
+/**
+ * Reflection-free tagged binary codec for VirtualPosition (see {@link TaggedBinaryWriter} for the layout).
+ *
+ * Field ids are part of the stored format: never renumber or reuse one. New fields take the next
+ * free id; retired fields keep their id reserved. Bump SCHEMA_VERSION only for changes a reader must
+ * know about (the id table itself evolves without it).
+ *
+ * Field ids:
+ *    1 scripCode
+ *    2 side
+ *    3 qtyOpen
+ *    4 avgEntry
+ *    5 realizedPnl
+ *    6 sl
+ *    7 tp1
+ *    8 tp2
+ *    9 tp1ClosePercent
+ *   10 tp1Hit
+ *   11 trailingType
+ *   12 trailingValue
+ *   13 trailingStep
+ *   14 trailingActive
+ *   15 trailingStop
+ *   16 trailAnchor
+ *   17 openedAt
+ *   18 updatedAt
+ *   19 currentPrice
+ *   20 unrealizedPnl
+ *   21 exchange
+ *   22 signalId
+ *   23 signalType
+ *   24 signalSource
+ *   25 walletId
+ *   26 positionSizeMultiplier
+ *   27 instrumentSymbol
+ *   28 strategy
+ *   29 status
+ *   30 instrumentType
+ *   31 delta
+ *   32 underlyingScripCode
+ *   33 confidence
+ *   34 equitySl
+ *   35 equityT1
+ *   36 equityT2
+ *   37 equityT3
+ *   38 equityT4
+ *   39 equityLtp
+ *   40 optionSl
+ *   41 optionT1
+ *   42 optionT2
+ *   43 optionT3
+ *   44 optionT4
+ *   45 target3
+ *   46 target4
+ *   47 smartTargets
+ *   48 t1Hit
+ *   49 t2Hit
+ *   50 t3Hit
+ *   51 t4Hit
+ *   52 slHit
+ *   53 exitReason
+ *   54 totalCharges
+ *   55 chargesBrokerage
+ *   56 chargesStt
+ *   57 chargesExchange
+ *   58 chargesGst
+ *   59 chargesSebi
+ *   60 chargesStamp
+ *   61 lotSize
+ */
+public class VirtualPositionBinaryCodec implements EntityCodec<VirtualPosition> {
+
+    static final byte ENTITY_TYPE = 'P';
+    static final byte SCHEMA_VERSION = 1;
+
+    @Override
+    public byte[] encode(VirtualPosition v) {
+        TaggedBinaryWriter w = new TaggedBinaryWriter(ENTITY_TYPE, SCHEMA_VERSION, 384);
+        w.writeString(1, v.getScripCode());
+        w.writeEnum(2, v.getSide());
+        w.writeLong(3, v.getQtyOpen());
+        w.writeDouble(4, v.getAvgEntry());
+        w.writeDouble(5, v.getRealizedPnl());
+        w.writeDouble(6, v.getSl());
+        w.writeDouble(7, v.getTp1());
+        w.writeDouble(8, v.getTp2());
+        w.writeDouble(9, v.getTp1ClosePercent());
+        w.writeBoolean(10, v.getTp1Hit());
+        w.writeString(11, v.getTrailingType());
+        w.writeDouble(12, v.getTrailingValue());
+        w.writeDouble(13, v.getTrailingStep());
+        w.writeBoolean(14, v.getTrailingActive());
+        w.writeDouble(15, v.getTrailingStop());
+        w.writeDouble(16, v.getTrailAnchor());
+        w.writeLong(17, v.getOpenedAt());
+        w.writeLong(18, v.getUpdatedAt());
+        w.writeDouble(19, v.getCurrentPrice());
+        w.writeDouble(20, v.getUnrealizedPnl());
+        w.writeString(21, v.getExchange());
+        w.writeString(22, v.getSignalId());
+        w.writeString(23, v.getSignalType());
+        w.writeString(24, v.getSignalSource());
+        w.writeString(25, v.getWalletId());
+        w.writeDouble(26, v.getPositionSizeMultiplier());
+        w.writeString(27, v.getInstrumentSymbol());
+        w.writeString(28, v.getStrategy());
+        w.writeString(29, v.getStatus());
+        w.writeString(30, v.getInstrumentType());
+        w.writeDouble(31, v.getDelta());
+        w.writeString(32, v.getUnderlyingScripCode());
+        w.writeDouble(33, v.getConfidence());
+        w.writeDouble(34, v.getEquitySl());
+        w.writeDouble(35, v.getEquityT1());
+        w.writeDouble(36, v.getEquityT2());
+        w.writeDouble(37, v.getEquityT3());
+        w.writeDouble(38, v.getEquityT4());
+        w.writeDouble(39, v.getEquityLtp());
+        w.writeDouble(40, v.getOptionSl());
+        w.writeDouble(41, v.getOptionT1());
+        w.writeDouble(42, v.getOptionT2());
+        w.writeDouble(43, v.getOptionT3());
+        w.writeDouble(44, v.getOptionT4());
+        w.writeDouble(45, v.getTarget3());
+        w.writeDouble(46, v.getTarget4());
+        w.writeBoolean(47, v.getSmartTargets());
+        w.writeBoolean(48, v.getT1Hit());
+        w.writeBoolean(49, v.getT2Hit());
+        w.writeBoolean(50, v.getT3Hit());
+        w.writeBoolean(51, v.getT4Hit());
+        w.writeBoolean(52, v.getSlHit());
+        w.writeString(53, v.getExitReason());
+        w.writeDouble(54, v.getTotalCharges());
+        w.writeDouble(55, v.getChargesBrokerage());
+        w.writeDouble(56, v.getChargesStt());
+        w.writeDouble(57, v.getChargesExchange());
+        w.writeDouble(58, v.getChargesGst());
+        w.writeDouble(59, v.getChargesSebi());
+        w.writeDouble(60, v.getChargesStamp());
+        w.writeLongAlways(61, v.getLotSize());
+        return w.toBytes();
+    }
+
+    @Override
+    public VirtualPosition decode(byte[] bytes) {
+        TaggedBinaryReader r = new TaggedBinaryReader(bytes, ENTITY_TYPE);
+        VirtualPosition v = new VirtualPosition();
+        while (r.next()) {
+            switch (r.fieldId()) {
+                case 1 -> v.setScripCode(r.readString());
+                case 2 -> v.setSide(r.readEnum(VirtualPosition.Side.class));
+                case 3 -> v.setQtyOpen(r.readInt());
+                case 4 -> v.setAvgEntry(r.readDouble());
+                case 5 -> v.setRealizedPnl(r.readDouble());
+                case 6 -> v.setSl(r.readDouble());
+                case 7 -> v.setTp1(r.readDouble());
+                case 8 -> v.setTp2(r.readDouble());
+                case 9 -> v.setTp1ClosePercent(r.readDouble());
+                case 10 -> v.setTp1Hit(r.readBoolean());
+                case 11 -> v.setTrailingType(r.readString());
+                case 12 -> v.setTrailingValue(r.readDouble());
+                case 13 -> v.setTrailingStep(r.readDouble());
+                case 14 -> v.setTrailingActive(r.readBoolean());
+                case 15 -> v.setTrailingStop(r.readDouble());
+                case 16 -> v.setTrailAnchor(r.readDouble());
+                case 17 -> v.setOpenedAt(r.readLong());
+                case 18 -> v.setUpdatedAt(r.readLong());
+                case 19 -> v.setCurrentPrice(r.readDouble());
+                case 20 -> v.setUnrealizedPnl(r.readDouble());
+                case 21 -> v.setExchange(r.readString());
+                case 22 -> v.setSignalId(r.readString());
+                case 23 -> v.setSignalType(r.readString());
+                case 24 -> v.setSignalSource(r.readString());
+                case 25 -> v.setWalletId(r.readString());
+                case 26 -> v.setPositionSizeMultiplier(r.readDouble());
+                case 27 -> v.setInstrumentSymbol(r.readString());
+                case 28 -> v.setStrategy(r.readString());
+                case 29 -> v.setStatus(r.readString());
+                case 30 -> v.setInstrumentType(r.readString());
+                case 31 -> v.setDelta(r.readDouble());
+                case 32 -> v.setUnderlyingScripCode(r.readString());
+                case 33 -> v.setConfidence(r.readDouble());
+                case 34 -> v.setEquitySl(r.readDouble());
+                case 35 -> v.setEquityT1(r.readDouble());
+                case 36 -> v.setEquityT2(r.readDouble());
+                case 37 -> v.setEquityT3(r.readDouble());
+                case 38 -> v.setEquityT4(r.readDouble());
+                case 39 -> v.setEquityLtp(r.readDouble());
+                case 40 -> v.setOptionSl(r.readDouble());
+                case 41 -> v.setOptionT1(r.readDouble());
+                case 42 -> v.setOptionT2(r.readDouble());
+                case 43 -> v.setOptionT3(r.readDouble());
+                case 44 -> v.setOptionT4(r.readDouble());
+                case 45 -> v.setTarget3(r.readDouble());
+                case 46 -> v.setTarget4(r.readDouble());
+                case 47 -> v.setSmartTargets(r.readBoolean());
+                case 48 -> v.setT1Hit(r.readBoolean());
+                case 49 -> v.setT2Hit(r.readBoolean());
+                case 50 -> v.setT3Hit(r.readBoolean());
+                case 51 -> v.setT4Hit(r.readBoolean());
+                case 52 -> v.setSlHit(r.readBoolean());
+                case 53 -> v.setExitReason(r.readString());
+                case 54 -> v.setTotalCharges(r.readDouble());
+                case 55 -> v.setChargesBrokerage(r.readDouble());
+                case 56 -> v.setChargesStt(r.readDouble());
+                case 57 -> v.setChargesExchange(r.readDouble());
+                case 58 -> v.setChargesGst(r.readDouble());
+                case 59 -> v.setChargesSebi(r.readDouble());
+                case 60 -> v.setChargesStamp(r.readDouble());
+                case 61 -> v.setLotSize(r.readInt());
+                default -> { } // Unknown (newer) field: skipped by the reader
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+}
@@ -0,0 +1,92 @@
+package com.kotsin.execution.broker;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the asynchronous BrokerOrderService defaults
+ * Tests that blocking brokers still surface acks and failures through the returned futures
+ */
+class BrokerOrderServiceAsyncTest {
+
+    /** Broker that acks every order with "<kind>-<scrip>" and rejects scrip "0". */
+    private static final class StubBroker implements BrokerOrderService {
+        private String ack(String kind, String scripCode) {
+            if ("0".equals(scripCode)) throw new BrokerException(kind + " rejected");
+            return kind + "-" + scripCode;
+        }
+
+        @Override
+        public String placeMarketOrder(String scripCode, String exch, String exchType, Side side, int quantity) {
+            return ack("MKT", scripCode);
+        }
+
+        @Override
+        public String placeLimitOrder(String scripCode, String exch, String exchType, Side side, int quantity, double price) {
+            return ack("LMT", scripCode);
+        }
+
+        @Override
+        public String placeStopLossLimitOrder(String scripCode, String exch, String exchType, Side side, int quantity, double price) {
+            return ack("SL", scripCode);
+        }
+
+        @Override
+        public void squareOffPosition(String scripCode, String exch, String exchType, Side currentSide, int remainingQty) {
+        }
+
+        @Override
+        public void squareOffAll() {
+        }
+    }
+
+    @Test
+    @DisplayName("Entry and stop legs complete with the broker order ids")
+    void testLegsAck() {
+        BrokerOrderService broker = new StubBroker();
+        CompletableFuture<OrderAck> entry = broker.placeMarketOrderAsync("49081", "N", "C", BrokerOrderService.Side.BUY, 1);
+        CompletableFuture<OrderAck> stop = broker.placeStopLossLimitOrderAsync("49081", "N", "C", BrokerOrderService.Side.SELL, 1, 99.5);
+
+        CompletableFuture.allOf(entry, stop).join();
+        assertEquals("MKT-49081", entry.join().orderId());
+        assertEquals("SL-49081", stop.join().orderId());
+        assertEquals("N", stop.join().exch());
+        assertTrue(entry.join().latencyNanos() >= 0);
+    }
+
+    @Test
+    @DisplayName("A rejected leg fails its future with the BrokerException instead of throwing")
+    void testRejectedLeg() {
+        CompletableFuture<OrderAck> leg = new StubBroker()
+                .placeLimitOrderAsync("0", "M", "D", BrokerOrderService.Side.BUY, 1, 10.0);
+
+        assertTrue(leg.isCompletedExceptionally());
+        CompletionException e = assertThrows(CompletionException.class, leg::join);
+        assertInstanceOf(BrokerException.class, e.getCause());
+        assertEquals("LMT rejected", e.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("A broker without cancellation says so rather than silently leaving the order working")
+    void testCancelUnsupported() {
+        BrokerException e = assertThrows(BrokerException.class, () -> new StubBroker().cancelOrder("N", "SL-49081"));
+        assertTrue(e.getMessage().contains("not supported"));
+    }
+
+    @Test
+    @DisplayName("A broker without fill tracking never sends a stop ahead of its entry and says why it cannot follow the fill")
+    void testStopWaitsForFillByDefault() {
+        BrokerOrderService broker = new StubBroker();
+        assertFalse(broker.acceptsStopBeforeFill("N", "C", true));
+
+        CompletableFuture<Void> fill = broker.whenFilled("N", "MKT-49081");
+        CompletionException e = assertThrows(CompletionException.class, fill::join);
+        assertInstanceOf(BrokerException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("not supported"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.kotsin.execution.broker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for FivePaisaTokenManager
+ * Tests volatile token reads, inline login only without a usable token, failed refreshes keeping
+ * the current token, and proactive refresh scheduling
+ */
+class FivePaisaTokenManagerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicInteger prewarms = new AtomicInteger();
+    private volatile boolean failLogin;
+    private volatile long tokenLifetimeSec = 6 * 3600;
+
+    private FivePaisaTokenManager manager() {
+        return new FivePaisaTokenManager(
+                () -> {
+                    if (failLogin) throw new IllegalStateException("TOTP service down");
+                    return "token-" + logins.incrementAndGet();
+                },
+                token -> System.currentTimeMillis() / 1000 + tokenLifetimeSec,
+                token -> { },
+                prewarms::incrementAndGet,
+                scheduler, registry, 1800, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Without a token the first caller logs in inline; later reads reuse it")
+    void testInlineLoginOnlyWhenEmpty() {
+        FivePaisaTokenManager tokens = manager();
+        assertNull(tokens.peek());
+
+        assertEquals("token-1", tokens.token());
+        assertEquals("token-1", tokens.token());
+        assertEquals(1, logins.get());
+        assertEquals(1.0, registry.counter("fivepaisa.token.inline.logins").count());
+        assertEquals(1, prewarms.get());
+    }
+
+    @Test
+    @DisplayName("A forced refresh publishes a new token; a failed one keeps serving the current token")
+    void testRefreshAndFailure() {
+        FivePaisaTokenManager tokens = manager();
+        tokens.refresh(true);
+        tokens.refresh(true);
+        assertEquals("token-2", tokens.token());
+
+        failLogin = true;
+        assertThrows(IllegalStateException.class, () -> tokens.refresh(true));
+        assertEquals("token-2", tokens.token());
+        assertEquals(1.0, registry.counter("fivepaisa.token.refresh.failed").count());
+        assertEquals(0.0, registry.counter("fivepaisa.token.inline.logins").count());
+    }
+
+    @Test
+    @DisplayName("Refresh runs at the earlier of the lead time before expiry and half-life")
+    void testRefreshDelay() {
+        FivePaisaTokenManager tokens = manager();
+        long now = 1_760_000_000_000L;
+        long nowSec = now / 1000;
+
+        assertEquals(3 * 3600 * 1000L,
+                tokens.nextRefreshDelayMs(new FivePaisaTokenManager.Token("t", nowSec + 6 * 3600, now), now));
+        assertEquals(600_000L,
+                tokens.nextRefreshDelayMs(new FivePaisaTokenManager.Token("t", nowSec + 2400, now), now));
+        assertEquals(600_000L,
+                tokens.nextRefreshDelayMs(new FivePaisaTokenManager.Token("t", nowSec + 1200, now), now));
+        assertEquals(5_000L,
+                tokens.nextRefreshDelayMs(new FivePaisaTokenManager.Token("t", nowSec - 10, now), now));
+    }
+}
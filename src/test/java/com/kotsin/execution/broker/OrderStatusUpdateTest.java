@@ -0,0 +1,43 @@
+package com.kotsin.execution.broker;
+
+import com.kotsin.execution.broker.OrderStatusUpdate.Source;
+import com.kotsin.execution.broker.OrderStatusUpdate.State;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OrderStatusUpdate
+ * Tests the shared status normalisation and which updates end an order's lifecycle
+ */
+class OrderStatusUpdateTest {
+
+    private static OrderStatusUpdate update(String status, int orderQty, int pendingQty, Source source) {
+        return new OrderStatusUpdate("r-1", "N", null, status, orderQty, pendingQty, 0.0, "", source);
+    }
+
+    @Test
+    @DisplayName("Broker wordings map onto one state regardless of case")
+    void testClassify() {
+        assertEquals(State.FILLED, OrderStatusUpdate.classify("Fully Executed"));
+        assertEquals(State.FILLED, OrderStatusUpdate.classify("COMPLETE"));
+        assertEquals(State.PARTIAL, OrderStatusUpdate.classify("Partially Executed"));
+        assertEquals(State.REJECTED, OrderStatusUpdate.classify("Rejected By 5P"));
+        assertEquals(State.REJECTED, OrderStatusUpdate.classify("Rejected by Exch"));
+        assertEquals(State.CANCELLED, OrderStatusUpdate.classify("Cancelled"));
+        assertEquals(State.PENDING, OrderStatusUpdate.classify("Trigger Pending"));
+        assertEquals(State.PENDING, OrderStatusUpdate.classify("open"));
+        assertEquals(State.UNKNOWN, OrderStatusUpdate.classify(""));
+        assertEquals(State.UNKNOWN, OrderStatusUpdate.classify(null));
+    }
+
+    @Test
+    @DisplayName("A push without a status is not terminal, even with nothing pending")
+    void testTerminal() {
+        assertFalse(update("", 0, 0, Source.PUSH).isTerminal());
+        assertFalse(update("Partially Executed", 10, 4, Source.POLL).isTerminal());
+        assertTrue(update("Rejected By 5P", 10, 10, Source.PUSH).isTerminal());
+        assertTrue(update("Fully Executed", 10, 0, Source.POLL).isTerminal());
+    }
+}
@@ -0,0 +1,178 @@
+package com.kotsin.execution.broker.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kotsin.execution.broker.BrokerOrderService.Side;
+import com.kotsin.execution.broker.OrderStatusUpdate;
+import com.kotsin.execution.model.NetPosition;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests and micro-benchmark for FivePaisaCodec
+ * Tests request encoding against the json-simple payloads it replaces, typed response decoding and
+ * broker rejections, and compares encode/decode time with the json-simple path; the benchmark is tagged
+ * "benchmark" and runs only under -Pbenchmark
+ */
+class FivePaisaCodecBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private static final String REMOTE_ID = "7d1c0b7e-1111-2222-3333-444455556666";
+    private static final byte[] ORDER_REPLY = bytes("{\"head\":{\"responseCode\":\"5PPlaceOrdReqV1\",\"status\":\"0\","
+            + "\"statusDescription\":\"Success\"},\"body\":{\"BrokerOrderID\":412345678,\"ClientCode\":\"52162730\","
+            + "\"Exch\":\"N\",\"ExchOrderID\":\"0\",\"ExchType\":\"D\",\"LocalOrderID\":0,\"Message\":\"Success\","
+            + "\"RMSResponseCode\":0,\"RemoteOrderID\":\"" + REMOTE_ID + "\",\"ScripCode\":52343,\"Status\":0,"
+            + "\"Time\":\"/Date(1760000000000+0530)/\"}}");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final FivePaisaCodec codec = new FivePaisaCodec("API-KEY", "52162730", 23312);
+
+    @Test
+    @DisplayName("PlaceOrderRequest matches the json-simple payload field for field")
+    void testPlaceOrderEncoding() throws IOException {
+        assertEquals(mapper.readTree(legacyPlaceOrder("52343", "N", "D", Side.BUY, 75, 182.35, true, false)),
+                mapper.readTree(codec.placeOrder("52343", "N", "D", Side.BUY, 75, 182.35, true, REMOTE_ID, false)));
+        // Market order: no Price; stop-loss adds WithSL / SLTriggerRate
+        assertEquals(mapper.readTree(legacyPlaceOrder("1660", "N", "C", Side.SELL, 10, 0, false, false)),
+                mapper.readTree(codec.placeOrder("1660", "N", "C", Side.SELL, 10, 0, false, REMOTE_ID, false)));
+        assertEquals(mapper.readTree(legacyPlaceOrder("466583", "M", "D", Side.SELL, 1, 7250.0, false, true)),
+                mapper.readTree(codec.placeOrder("466583", "M", "D", Side.SELL, 1, 7250.0, false, REMOTE_ID, true)));
+    }
+
+    @Test
+    @DisplayName("OrderStatus request lists every pending order and client queries are constant")
+    void testStatusAndClientRequests() throws IOException {
+        Map<String, String> orders = new LinkedHashMap<>();
+        orders.put("r-1", "N");
+        orders.put("r-\"2\"", "M");
+        var json = mapper.readTree(codec.orderStatus(orders));
+        assertEquals("API-KEY", json.path("head").path("key").asText());
+        assertEquals("52162730", json.path("body").path("ClientCode").asText());
+        assertEquals(2, json.path("body").path("OrdStatusReqList").size());
+        assertEquals("r-\"2\"", json.path("body").path("OrdStatusReqList").get(1).path("RemoteOrderID").asText());
+        assertEquals("M", json.path("body").path("OrdStatusReqList").get(1).path("Exch").asText());
+
+        assertEquals(mapper.readTree("{\"head\":{\"key\":\"API-KEY\"},\"body\":{\"ClientCode\":\"52162730\"}}"),
+                mapper.readTree(codec.clientRequest()));
+    }
+
+    @Test
+    @DisplayName("Responses decode into typed records; rejections raise IOException")
+    void testDecoding() throws IOException {
+        FivePaisaCodec.OrderReply reply = codec.decodeOrderReply(ORDER_REPLY);
+        assertEquals(REMOTE_ID, reply.remoteOrderId());
+        assertEquals("412345678", reply.brokerOrderId());
+
+        IOException rms = assertThrows(IOException.class, () -> codec.decodeOrderReply(bytes(
+                "{\"head\":{\"status\":\"0\"},\"body\":{\"Status\":1,\"Message\":\"Insufficient margin\"}}")));
+        assertEquals("BrokerRMS Insufficient margin", rms.getMessage());
+        assertThrows(IOException.class, () -> codec.decodeOrderReply(bytes("{\"head\":{\"status\":\"2\"},\"body\":{}}")));
+        assertThrows(IOException.class, () -> codec.decodeOrderReply(bytes("{\"body\":{}}")));
+
+        List<OrderStatusUpdate> statuses = codec.decodeOrderStatus(bytes("{\"head\":{\"status\":\"0\"},\"body\":{"
+                + "\"OrdStatusResLst\":[{\"Exch\":\"N\",\"ExchOrderID\":\"1100000012345\",\"RemoteOrderID\":\"r-1\",\"Status\":\"Fully Executed\","
+                + "\"OrderQty\":75,\"PendingQty\":0,\"OrderRate\":182.35,\"Extra\":{\"x\":[1,2]}},"
+                + "{\"Exch\":\"M\",\"ExchOrderID\":\"0\",\"RemoteOrderID\":\"r-2\",\"Status\":\"Pending\",\"OrderQty\":\"2\",\"PendingQty\":\"2\"}]}}"));
+        assertEquals(2, statuses.size());
+        assertEquals("1100000012345", statuses.get(0).exchOrderId());
+        assertNull(statuses.get(1).exchOrderId()); // "0" until the exchange assigns one
+        assertEquals(75, statuses.get(0).filledQty());
+        assertTrue(statuses.get(0).isTerminal());
+        assertEquals(182.35, statuses.get(0).avgPrice());
+        assertEquals(2, statuses.get(1).pendingQty());
+        assertFalse(statuses.get(1).isTerminal());
+
+        List<NetPosition> positions = codec.decodeNetPositions(bytes("{\"head\":{\"status\":\"0\"},\"body\":{"
+                + "\"Status\":0,\"NetPositionDetail\":[{\"ScripCode\":52343,\"Exch\":\"N\",\"ExchType\":\"D\","
+                + "\"NetQty\":-75,\"BuyAvgRate\":0,\"SellAvgRate\":184.1,\"MTM\":131.25}]}}"));
+        assertEquals(new NetPosition("52343", "N", "D", -75, 0.0, 184.1, 131.25), positions.get(0));
+
+        List<FivePaisaCodec.OrderBookEntry> book = codec.decodeOrderBook(bytes("{\"head\":{\"status\":\"0\"},\"body\":{"
+                + "\"OrderBookDetail\":[{\"ExchOrderID\":\"1100000012345\",\"RemoteOrderID\":\"r-1\",\"ScripCode\":52343,"
+                + "\"OrderStatus\":\"Pending\",\"Qty\":75,\"PendingQty\":75,\"Rate\":180.0}]}}"));
+        assertEquals("1100000012345", book.get(0).exchOrderId());
+        assertEquals(75, book.get(0).pendingQty());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Benchmark: codec vs json-simple for order encode and reply decode")
+    void benchmarkEncodeDecode() {
+        long legacyEncode = timeNanos(() -> legacyPlaceOrder("52343", "N", "D", Side.BUY, 75, 182.35, true, false));
+        long codecEncode = timeNanos(() -> codec.placeOrder("52343", "N", "D", Side.BUY, 75, 182.35, true, REMOTE_ID, false));
+        long legacyDecode = timeNanos(() -> legacyOrderReply(ORDER_REPLY));
+        long codecDecode = timeNanos(() -> codec.decodeOrderReply(ORDER_REPLY).remoteOrderId());
+
+        assertTrue(codecEncode < legacyEncode, "codec encode " + codecEncode + " ns/op vs json-simple " + legacyEncode + " ns/op");
+        assertTrue(codecDecode < legacyDecode, "codec decode " + codecDecode + " ns/op vs json-simple " + legacyDecode + " ns/op");
+    }
+
+    /** The payload FivePaisaBrokerService built before the codec: json-simple graph + toJSONString(). */
+    @SuppressWarnings("unchecked")
+    private static byte[] legacyPlaceOrder(String scripCode, String exch, String exchType, Side side, int qty,
+                                           double price, boolean isIntraday, boolean withSl) {
+        JSONObject head = new JSONObject();
+        head.put("key", "API-KEY");
+        JSONObject body = new JSONObject();
+        body.put("ClientCode", "52162730");
+        body.put("Exchange", exch);
+        body.put("ExchangeType", exchType);
+        body.put("ScripCode", scripCode);
+        if (price > 0) {
+            body.put("Price", price);
+        }
+        body.put("OrderType", side == Side.BUY ? "Buy" : "Sell");
+        body.put("Qty", qty);
+        body.put("DisQty", 0);
+        body.put("IsIntraday", isIntraday);
+        body.put("AHPlaced", "N");
+        body.put("RemoteOrderID", REMOTE_ID);
+        body.put("AppSource", 23312);
+        body.put("iOrderValidity", 0);
+        if (withSl) {
+            body.put("WithSL", "Y");
+            body.put("SLTriggerRate", price);
+        }
+        JSONObject req = new JSONObject();
+        req.put("head", head);
+        req.put("body", body);
+        return req.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String legacyOrderReply(byte[] resp) throws Exception {
+        JSONObject json = (JSONObject) new JSONParser().parse(new String(resp, StandardCharsets.UTF_8));
+        JSONObject body = (JSONObject) json.get("body");
+        return String.valueOf(body.get("RemoteOrderID"));
+    }
+
+    private static long timeNanos(Callable<?> op) {
+        try {
+            Object sink = null;
+            for (int i = 0; i < WARMUP; i++) sink = op.call();
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) sink = op.call();
+            long perOp = (System.nanoTime() - start) / ITERATIONS;
+            assertNotNull(sink);
+            return perOp;
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
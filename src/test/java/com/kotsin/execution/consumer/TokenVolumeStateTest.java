@@ -0,0 +1,59 @@
+package com.kotsin.execution.consumer;
+
+import com.kotsin.execution.logic.TokenRelevance;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TokenVolumeState and TokenRelevance
+ * Tests minute-volume aggregation from cumulative quantities, table growth and the token bitset
+ */
+class TokenVolumeStateTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    @DisplayName("First tick contributes nothing; deltas accumulate within a minute and reset on the next")
+    void testMinuteVolume() {
+        TokenVolumeState state = new TokenVolumeState(16);
+        assertEquals(0, state.addVolume(49081, MINUTE, 1_000));
+        assertEquals(150, state.addVolume(49081, MINUTE, 1_150));
+        assertEquals(200, state.addVolume(49081, MINUTE, 1_200));
+        // Cumulative qty going backwards (feed reset) adds nothing
+        assertEquals(200, state.addVolume(49081, MINUTE, 900));
+        assertEquals(75, state.addVolume(49081, 2 * MINUTE, 975));
+    }
+
+    @Test
+    @DisplayName("Growth keeps every token's state intact")
+    void testGrowth() {
+        TokenVolumeState state = new TokenVolumeState(16);
+        for (int token = 1; token <= 5_000; token++) state.addVolume(token, MINUTE, token);
+        for (int token = 1; token <= 5_000; token++) {
+            assertEquals(10, state.addVolume(token, MINUTE, token + 10L));
+        }
+        assertEquals(5_000, state.size());
+    }
+
+    @Test
+    @DisplayName("Relevance bitset matches only exact numeric tokens and follows rebuilds")
+    void testRelevance() {
+        TokenRelevance relevance = new TokenRelevance();
+        assertFalse(relevance.contains(49081));
+
+        relevance.rebuild(List.of("49081", "1", "0123", "NIFTY", "99999999999"));
+        assertTrue(relevance.contains(49081));
+        assertTrue(relevance.contains(1));
+        assertFalse(relevance.contains(123));
+        assertFalse(relevance.contains(49082));
+        assertFalse(relevance.contains(Integer.MAX_VALUE));
+        assertFalse(relevance.contains(-1));
+
+        relevance.rebuild(List.of());
+        assertFalse(relevance.contains(49081));
+    }
+}
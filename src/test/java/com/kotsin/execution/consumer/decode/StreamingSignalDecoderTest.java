@@ -0,0 +1,74 @@
+package com.kotsin.execution.consumer.decode;
+
+import com.kotsin.execution.model.StrategySignal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for StreamingSignalDecoder
+ * Tests builder bindings and captures against JsonNode.asX semantics, and early reject on gates
+ */
+class StreamingSignalDecoderTest {
+
+    private final AtomicReference<Double> minScore = new AtomicReference<>(50.0);
+
+    private final SignalFieldMapping mapping = SignalFieldMapping.forStrategy("FUDKII")
+            .requireTrue("triggered")
+            .minimum("triggerScore", minScore::get)
+            .capture("scripCode", "companyName", "triggerPrice", "optionLotSize", "pivotSource", "timestamp")
+            .optionGreeks()
+            .bindText("exchange", "N", StrategySignal.StrategySignalBuilder::exchange)
+            .build();
+
+    @Test
+    @DisplayName("Bound fields land on the builder, captured fields on the result, unmapped and nested fields are skipped")
+    void testDecode() throws Exception {
+        DecodedSignal d = StreamingSignalDecoder.decode("{\"scripCode\":12345,\"triggered\":true,"
+                + "\"triggerScore\":72.5,\"nested\":{\"greekDelta\":9,\"x\":[1,2]},\"greekDelta\":0.45,"
+                + "\"greekDte\":\"7\",\"greekSlMethod\":null,\"triggerPrice\":\"101.5\",\"optionLotSize\":50.0,"
+                + "\"pivotSource\":\"true\",\"companyName\":null,\"unused\":[{\"a\":1}]}", mapping);
+
+        assertFalse(d.isRejected());
+        assertEquals("12345", d.text("scripCode"));
+        assertEquals(101.5, d.dbl("triggerPrice", 0), 0.0001);
+        assertEquals(50, d.integer("optionLotSize", 0));
+        assertTrue(d.bool("pivotSource", false));
+        assertEquals("RELIANCE", d.text("companyName", "RELIANCE"));
+        assertEquals(1_700_000_000_000L, d.lng("timestamp", 1_700_000_000_000L));
+        assertEquals("", d.text("nested"));
+
+        StrategySignal signal = d.builder().build();
+        assertEquals(0.45, signal.getGreekDelta(), 0.0001);
+        assertEquals(7, signal.getGreekDte());
+        assertNull(signal.getGreekSlMethod());
+        assertEquals("N", signal.getExchange());
+    }
+
+    @Test
+    @DisplayName("triggered=false rejects before the rest of the payload is read")
+    void testRejectNotTriggered() throws Exception {
+        // Trailing garbage after the gate is never reached
+        DecodedSignal d = StreamingSignalDecoder.decode("{\"scripCode\":\"500\",\"triggered\":false,\"greekDelta\":}", mapping);
+        assertTrue(d.isRejected());
+        assertTrue(d.getRejection().startsWith("not_triggered"));
+        assertEquals("500", d.text("scripCode"));
+    }
+
+    @Test
+    @DisplayName("Score gate reads the current minimum; absent gate fields are left to the consumer")
+    void testScoreGate() throws Exception {
+        String payload = "{\"triggered\":true,\"triggerScore\":45,\"exchange\":\"M\"}";
+        assertTrue(StreamingSignalDecoder.decode(payload, mapping).getRejection().startsWith("below_threshold"));
+
+        minScore.set(40.0);
+        DecodedSignal d = StreamingSignalDecoder.decode(payload, mapping);
+        assertFalse(d.isRejected());
+        assertEquals("M", d.builder().build().getExchange());
+
+        assertFalse(StreamingSignalDecoder.decode("{\"scripCode\":\"500\"}", mapping).isRejected());
+    }
+}
@@ -0,0 +1,112 @@
+package com.kotsin.execution.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AdaptiveBatchWindow
+ * Tests early close when signals are sparse, extension during bursts, the ceiling and the fixed fallback
+ */
+class AdaptiveBatchWindowTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final long[] now = {System.currentTimeMillis()};
+
+    private AdaptiveBatchWindow window(boolean enabled) {
+        return new AdaptiveBatchWindow(registry, enabled, 1000, 8000, 500, 0.25, 600_000, () -> now[0]);
+    }
+
+    private BatchAccumulator.WindowPolicy<String, Integer> policy(AdaptiveBatchWindow w) {
+        return w.policy(() -> 5000);
+    }
+
+    private BatchAccumulator.Batch<String, Integer> openBatch() {
+        BatchAccumulator.Batch<String, Integer> batch = new BatchAccumulator.Batch<>();
+        batch.entries().put("FUDKII|100", 1);
+        now[0] = batch.createdAtMillis();
+        return batch;
+    }
+
+    private double closes(String reason) {
+        var c = registry.find("signal.batch.window.decisions").tag("decision", reason).counter();
+        return c != null ? c.count() : 0;
+    }
+
+    @Test
+    @DisplayName("Sparse arrivals: batch closes at the floor")
+    void testSparseClosesEarly() {
+        AdaptiveBatchWindow w = window(true);
+        BatchAccumulator.Batch<String, Integer> batch = openBatch();
+        w.recordArrival("N");
+        var p = policy(w);
+
+        assertEquals(1000, p.firstCheckMs(batch));
+        now[0] += 1000;
+        assertEquals(0, p.extendMs(batch));
+        assertEquals(1, closes(AdaptiveBatchWindow.REASON_LOW_BENEFIT));
+        assertEquals(1000, registry.find("signal.batch.window.ms").summary().max());
+    }
+
+    @Test
+    @DisplayName("Burst of arrivals every 200ms: batch holds open")
+    void testBurstExtends() {
+        AdaptiveBatchWindow w = window(true);
+        BatchAccumulator.Batch<String, Integer> batch = openBatch();
+        long start = now[0];
+        for (int i = 0; i < 30; i++) {
+            now[0] = start - 4800 + i * 200L; // Still arriving: last one at start + 1000
+            w.recordArrival("N");
+        }
+        w.recordArrival("M");
+        now[0] = start + 1100;
+
+        assertEquals(500, policy(w).extendMs(batch));
+        assertEquals(1, closes(AdaptiveBatchWindow.DECISION_EXTEND));
+    }
+
+    @Test
+    @DisplayName("Window never exceeds the ceiling, even mid-burst")
+    void testCeiling() {
+        AdaptiveBatchWindow w = window(true);
+        BatchAccumulator.Batch<String, Integer> batch = openBatch();
+        long start = now[0];
+        for (int i = 0; i < 60; i++) {
+            now[0] = start + i * 130L;
+            w.recordArrival("N");
+        }
+        now[0] = start + 8000;
+        assertEquals(0, policy(w).extendMs(batch));
+        assertEquals(1, closes(AdaptiveBatchWindow.REASON_CEILING));
+    }
+
+    @Test
+    @DisplayName("Disabled: fixed time-of-day window, single check")
+    void testDisabledUsesFixedWindow() {
+        AdaptiveBatchWindow w = window(false);
+        BatchAccumulator.Batch<String, Integer> batch = openBatch();
+        var p = policy(w);
+        assertEquals(5000, p.firstCheckMs(batch));
+        assertEquals(0, p.extendMs(batch));
+        assertEquals(1, closes(AdaptiveBatchWindow.REASON_FIXED));
+    }
+
+    @Test
+    @DisplayName("Arrival probability grows with the horizon and is zero without history")
+    void testArrivalProbability() {
+        AdaptiveBatchWindow w = window(true);
+        assertEquals(0.0, w.arrivalProbability(1000));
+        long start = now[0];
+        for (int i = 0; i < 20; i++) {
+            now[0] = start + i * 1000L;
+            w.recordArrival("N");
+        }
+        now[0] += 100;
+        double shortHorizon = w.arrivalProbability(200);
+        double longHorizon = w.arrivalProbability(2000);
+        assertTrue(shortHorizon < longHorizon);
+        assertEquals(1.0, longHorizon, 1e-9);
+    }
+}
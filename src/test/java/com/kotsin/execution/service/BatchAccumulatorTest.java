@@ -0,0 +1,159 @@
+package com.kotsin.execution.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests and contention benchmark for BatchAccumulator
+ * Tests timer arming, batch rollover and that concurrent submitters never lose or duplicate entries, and
+ * compares lock-free intake with a synchronized batch under many concurrent submitters; the benchmark is
+ * tagged "benchmark" and runs only under -Pbenchmark
+ */
+class BatchAccumulatorTest {
+
+    private static final int THREADS = 16;
+    private static final int PER_THREAD = 20_000;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    private final List<BatchAccumulator.Batch<String, Integer>> closed = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Only the first add arms the timer; the batch closes once with every entry")
+    void testTimerArmedOnce() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        BatchAccumulator<String, Integer> acc = new BatchAccumulator<>(scheduler, () -> 50, b -> {
+            closed.add(b);
+            fired.countDown();
+        });
+
+        assertEquals(50, acc.add("FUKAA|100", 1));
+        assertEquals(-1, acc.add("FUDKII|200", 2));
+        assertEquals(-1, acc.add("FUKAA|100", 3)); // Same key replaces
+        assertEquals(2, acc.openSize());
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertEquals(1, closed.size());
+        assertEquals(Map.of("FUKAA|100", 3, "FUDKII|200", 2), closed.get(0).entries());
+        assertEquals(0, acc.openSize());
+    }
+
+    @Test
+    @DisplayName("An add after close opens a new batch with its own timer")
+    void testRollover() {
+        BatchAccumulator<String, Integer> acc = new BatchAccumulator<>(scheduler, () -> 60_000, closed::add);
+        acc.add("a", 1);
+        BatchAccumulator.Batch<String, Integer> first = acc.closeNow();
+        assertNotNull(first);
+        assertEquals(60_000, acc.add("b", 2));
+
+        BatchAccumulator.Batch<String, Integer> second = acc.closeNow();
+        assertNotSame(first, second);
+        assertEquals(Map.of("b", 2), second.entries());
+        assertNull(acc.closeNow());
+    }
+
+    @Test
+    @DisplayName("Concurrent submitters across rapidly closing batches: no entry lost or duplicated")
+    void testNoLossUnderContention() throws Exception {
+        BatchAccumulator<String, Integer> acc = new BatchAccumulator<>(scheduler, () -> 1, closed::add);
+        runSubmitters(acc::add);
+
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        BatchAccumulator.Batch<String, Integer> rest = acc.closeNow();
+        if (rest != null) closed.add(rest);
+
+        Map<String, Integer> seen = new HashMap<>();
+        for (BatchAccumulator.Batch<String, Integer> b : closed) {
+            for (String key : b.entries().keySet()) {
+                assertNull(seen.put(key, 1), "entry evaluated twice: " + key);
+            }
+        }
+        assertEquals(THREADS * PER_THREAD, seen.size());
+        assertTrue(closed.size() > 1, "expected many batch rollovers");
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Benchmark: lock-free intake vs a synchronized batch under contention")
+    void benchmarkIntakeContention() throws Exception {
+        // Long window: no batch closes mid-run, so this compares pure intake cost.
+        // One warm-up round for each, so neither side is measured cold
+        runSubmitters(new BatchAccumulator<String, Integer>(scheduler, () -> 60_000, closed::add)::add);
+        runSubmitters(new SynchronizedBatch()::add);
+
+        BatchAccumulator<String, Integer> lockFree = new BatchAccumulator<>(scheduler, () -> 60_000, closed::add);
+        long lockFreeNs = runSubmitters(lockFree::add);
+
+        SynchronizedBatch synchronizedBatch = new SynchronizedBatch();
+        long synchronizedNs = runSubmitters(synchronizedBatch::add);
+
+        int ops = THREADS * PER_THREAD;
+        assertEquals(ops, lockFree.closeNow().entries().size());
+        assertEquals(ops, synchronizedBatch.entries.size());
+        assertTrue(lockFreeNs < synchronizedNs, "lock-free intake " + lockFreeNs / ops + " ns/op vs synchronized "
+                + synchronizedNs / ops + " ns/op");
+    }
+
+    /** Start all submitters together; returns wall time in ns until the last one finishes. */
+    private long runSubmitters(BiConsumer<String, Integer> add) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        AtomicInteger failures = new AtomicInteger();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            Thread submitter = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < PER_THREAD; i++) add.accept("S" + thread + "|" + i, i);
+                } catch (Throwable e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+            submitter.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - begin;
+        assertEquals(0, failures.get());
+        return elapsed;
+    }
+
+    /** The previous intake: one monitor around the batch reference, map and timer check. */
+    private static final class SynchronizedBatch {
+        private final Object lock = new Object();
+        private final Map<String, Integer> entries = new ConcurrentHashMap<>();
+        private boolean timerArmed;
+
+        void add(String key, Integer value) {
+            synchronized (lock) {
+                entries.put(key, value);
+                if (!timerArmed) timerArmed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.kotsin.execution.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ExpiringMap and DailyKeySet
+ * Tests expiry visibility, wheel eviction (including TTLs beyond one rotation and re-puts) and day rollover
+ */
+class ExpiringMapTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    @DisplayName("Expired entries are invisible before the sweep and evicted by it")
+    void testExpiry() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(8, 100, clock::get);
+        map.put("A", "FUKAA", 250);
+        map.put("B", "FUDKII", 1_000);
+
+        clock.addAndGet(300);
+        assertNull(map.get("A"));
+        assertEquals("FUDKII", map.get("B"));
+
+        map.put("C", "MERE", 100);
+        clock.addAndGet(250);
+        map.sweep();
+        assertFalse(map.containsKey("C"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    @DisplayName("TTL longer than the wheel span survives early rotations, then is evicted")
+    void testLongTtl() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(4, 100, clock::get); // 400ms span
+        map.put("A", "FUKAA", 1_000);
+        for (int i = 0; i < 9; i++) {
+            clock.addAndGet(100);
+            map.sweep();
+        }
+        assertEquals("FUKAA", map.get("A"));
+
+        clock.addAndGet(200);
+        map.sweep();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    @DisplayName("A re-put extends the entry; the old wheel slot does not evict it")
+    void testRePutExtends() {
+        ExpiringMap<String, String> map = new ExpiringMap<>(16, 100, clock::get);
+        map.put("A", "FUKAA", 200);
+        clock.addAndGet(150);
+        map.put("A", "FUDKOI", 500);
+
+        clock.addAndGet(200);
+        map.sweep();
+        assertEquals("FUDKOI", map.get("A"));
+
+        clock.addAndGet(500);
+        map.sweep();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    @DisplayName("Memory stays flat: many short-lived entries are all evicted by periodic sweeps")
+    void testFlatMemory() {
+        ExpiringMap<Integer, String> map = new ExpiringMap<>(64, 1000, clock::get);
+        for (int sec = 0; sec < 3_600; sec++) {
+            for (int i = 0; i < 10; i++) map.put(sec * 10 + i, "S", 10_000);
+            clock.addAndGet(1000);
+            map.sweep();
+            assertTrue(map.size() <= 120, "size " + map.size());
+        }
+    }
+
+    @Test
+    @DisplayName("DailyKeySet forgets yesterday's keys on the first access of a new day")
+    void testDailyRollover() {
+        AtomicReference<LocalDate> today = new AtomicReference<>(LocalDate.of(2026, 2, 26));
+        DailyKeySet fired = new DailyKeySet(today::get);
+
+        assertTrue(fired.add("FUDKII:N"));
+        assertFalse(fired.add("FUDKII:N"));
+        assertTrue(fired.contains("FUDKII:N"));
+
+        today.set(LocalDate.of(2026, 2, 27));
+        assertFalse(fired.contains("FUDKII:N"));
+        assertEquals(0, fired.size());
+        assertTrue(fired.add("FUDKII:N"));
+    }
+}
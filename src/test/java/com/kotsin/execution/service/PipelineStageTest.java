@@ -0,0 +1,103 @@
+package com.kotsin.execution.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PipelineStage
+ * Tests FIFO processing, shedding when the queue stays full, result hand-off and drain on shutdown
+ */
+class PipelineStageTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PipelineStage stage;
+
+    @AfterEach
+    void tearDown() {
+        if (stage != null) stage.shutdown(1000);
+    }
+
+    @Test
+    @DisplayName("Single-worker stage processes items in submission order")
+    void testFifoOrder() throws Exception {
+        stage = new PipelineStage("order", 1, 100, 50, registry);
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            final int n = i;
+            assertTrue(stage.offer(() -> {
+                seen.add(n);
+                done.countDown();
+            }));
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) assertEquals(i, seen.get(i));
+    }
+
+    @Test
+    @DisplayName("Full queue sheds after the offer timeout instead of blocking the producer")
+    void testShedWhenFull() throws Exception {
+        stage = new PipelineStage("shed", 1, 1, 20, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        assertTrue(stage.offer(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertTrue(stage.offer(() -> {}));   // Fills the single queue slot
+
+        long begin = System.nanoTime();
+        assertFalse(stage.offer(() -> {}));
+        assertTrue(System.nanoTime() - begin < TimeUnit.SECONDS.toNanos(1));
+
+        CompletableFuture<String> rejected = stage.submit(() -> "never");
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("submit() returns the worker's result and surfaces its failure")
+    void testSubmitResult() throws Exception {
+        stage = new PipelineStage("submit", 2, 10, 50, registry);
+        assertEquals(42, stage.submit(() -> 42).get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> failing = stage.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failing.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    @DisplayName("shutdown() runs everything already queued and rejects new work")
+    void testShutdownDrains() {
+        stage = new PipelineStage("drain", 1, 100, 50, registry);
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int n = i;
+            stage.offer(() -> seen.add(n));
+        }
+        stage.shutdown(2000);
+        assertEquals(20, seen.size());
+        assertFalse(stage.offer(() -> seen.add(-1)));
+        assertEquals(20, seen.size());
+    }
+}
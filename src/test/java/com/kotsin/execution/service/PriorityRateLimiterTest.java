@@ -0,0 +1,99 @@
+package com.kotsin.execution.service;
+
+import com.kotsin.execution.service.PriorityRateLimiter.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PriorityRateLimiter
+ * Tests non-blocking acquisition, priority ordering of queued permits, wait-time expiry and the
+ * adaptive rate on broker throttling
+ */
+class PriorityRateLimiterTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("tryAcquire spends the burst, then fails without blocking")
+    void testTryAcquire() {
+        PriorityRateLimiter limiter = new PriorityRateLimiter("test", 1, 2, 1_000, scheduler, registry);
+        assertTrue(limiter.tryAcquire(Priority.ENTRY));
+        assertTrue(limiter.tryAcquire(Priority.STATUS));
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire(Priority.EXIT));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    @DisplayName("Queued permits are granted exits first, then entries, then status polls")
+    void testPriorityOrder() throws Exception {
+        PriorityRateLimiter limiter = new PriorityRateLimiter("test", 20, 1, 5_000, scheduler, registry);
+        assertTrue(limiter.tryAcquire(Priority.ENTRY));
+
+        List<Priority> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<?> status = limiter.acquire(Priority.STATUS).thenRun(() -> order.add(Priority.STATUS));
+        CompletableFuture<?> entry = limiter.acquire(Priority.ENTRY).thenRun(() -> order.add(Priority.ENTRY));
+        CompletableFuture<?> exit = limiter.acquire(Priority.EXIT).thenRun(() -> order.add(Priority.EXIT));
+        // Queued work of higher priority blocks an immediate grant
+        assertFalse(limiter.tryAcquire(Priority.STATUS));
+
+        CompletableFuture.allOf(status, entry, exit).get(2, TimeUnit.SECONDS);
+        assertEquals(List.of(Priority.EXIT, Priority.ENTRY, Priority.STATUS), order);
+        assertEquals(0, limiter.queued());
+        assertEquals(1, registry.get("broker.ratelimit.wait").tag("class", "STATUS").timer().count());
+    }
+
+    @Test
+    @DisplayName("Waiters past the max wait fail; a blocking caller that gives up spends no token")
+    void testExpiry() throws Exception {
+        PriorityRateLimiter limiter = new PriorityRateLimiter("test", 2, 1, 100, scheduler, registry);
+        assertTrue(limiter.tryAcquire(Priority.ENTRY));
+
+        assertFalse(limiter.acquire(Priority.ENTRY, 50, TimeUnit.MILLISECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> limiter.acquire(Priority.ENTRY).get(2, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(1.0, registry.get("broker.ratelimit.timeouts").counter().count());
+
+        // The refilled token went to neither the abandoned nor the expired waiter
+        assertEquals(0, limiter.queued());
+        assertTrue(limiter.tryAcquire(Priority.ENTRY));
+    }
+
+    @Test
+    @DisplayName("Throttling halves the rate once per burst; recovery waits for the cool-down")
+    void testAdaptiveRate() {
+        PriorityRateLimiter limiter = new PriorityRateLimiter("test", 16, 4, 1_000, scheduler, registry);
+        limiter.onThrottled();
+        limiter.onThrottled(); // same burst of 429s
+        assertEquals(8.0, limiter.getRate());
+        // Fresh throttle: no saved burst left
+        assertFalse(limiter.tryAcquire(Priority.EXIT));
+        // Recovery waits for the cool-down
+        limiter.onSuccess();
+        assertEquals(8.0, limiter.getRate());
+
+        limiter.setRate(16);
+        assertEquals(16.0, limiter.getRate());
+        assertEquals(1.0, registry.get("broker.ratelimit.throttled").counter().count());
+    }
+}
@@ -0,0 +1,63 @@
+package com.kotsin.execution.service;
+
+import com.kotsin.execution.virtual.PriceProvider;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the option pre-resolution freshness checks in SignalBufferService
+ * Tests that a prep finished early in the batch window is still used at execution
+ */
+class SignalBufferServiceOptionPrepTest {
+
+    private static final long MAX_AGE_MS = 1000;
+
+    private static SignalBufferService.OptionPrep prep(double ltp, long resolvedAt) {
+        return new SignalBufferService.OptionPrep(ltp, 22_500, LocalDate.now().plusDays(7), 7, false, null, resolvedAt);
+    }
+
+    @Test
+    @DisplayName("A prep finished inside the window is current at batch fire and used at execution")
+    void testPrepInsideWindowUsedAtExecution() {
+        long windowOpen = 1_000_000;
+        SignalBufferService.OptionPrep early = prep(101.5, windowOpen + 200);
+        long firedAt = windowOpen + 8000; // adaptive ceiling
+        long executedAt = firedAt + 300;
+
+        // Without the check at fire, the window alone outlasts the max age
+        assertTrue(SignalBufferService.isOptionLtpStale(early.resolvedAt(), executedAt, MAX_AGE_MS));
+
+        SignalBufferService.OptionPrep confirmed = SignalBufferService.confirmAtFire(early,
+                new PriceProvider.CachedLtp(101.5, windowOpen + 150), firedAt);
+        assertNotNull(confirmed);
+        assertEquals(firedAt, confirmed.resolvedAt());
+        assertEquals(101.5, confirmed.ltp());
+        assertFalse(SignalBufferService.isOptionLtpStale(confirmed.resolvedAt(), executedAt, MAX_AGE_MS));
+    }
+
+    @Test
+    @DisplayName("A prep whose option has ticked to a new price since is recomputed at batch fire")
+    void testMovedPriceRecomputed() {
+        SignalBufferService.OptionPrep early = prep(101.5, 1_000_200);
+        assertNull(SignalBufferService.confirmAtFire(early, new PriceProvider.CachedLtp(103.0, 1_006_000), 1_008_000));
+    }
+
+    @Test
+    @DisplayName("No cached tick to compare against: the prep's price is the latest known")
+    void testNoTickKeepsPrep() {
+        SignalBufferService.OptionPrep early = prep(101.5, 1_000_200);
+        SignalBufferService.OptionPrep confirmed = SignalBufferService.confirmAtFire(early, null, 1_008_000);
+        assertNotNull(confirmed);
+        assertEquals(1_008_000, confirmed.resolvedAt());
+    }
+
+    @Test
+    @DisplayName("An LTP that was never pre-resolved is never stale")
+    void testUnresolvedNeverStale() {
+        assertFalse(SignalBufferService.isOptionLtpStale(0, 5_000_000, MAX_AGE_MS));
+    }
+}
@@ -0,0 +1,68 @@
+package com.kotsin.execution.tracking.service;
+
+import com.kotsin.execution.tracking.model.SignalLatency;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SignalLatencyTracker
+ * Tests per-hop timers, breakdown accumulation and the hand-off of the breakdown to the filled order
+ */
+class SignalLatencyTrackerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SignalLatencyTracker tracker = new SignalLatencyTracker(registry);
+
+    @Test
+    @DisplayName("Consumer hop is measured from Kafka receipt; hops are timed per strategy and exchange")
+    void testHopTimers() {
+        SignalLatency latency = tracker.start("FUDKII", "N", Instant.now().minusMillis(40));
+        tracker.lap(latency, SignalLatencyTracker.BUFFER_WAIT);
+        tracker.record(latency, SignalLatencyTracker.ALLOCATION, 2_000_000);
+
+        Map<String, Double> hops = latency.snapshot();
+        assertEquals(List.of("consumer_parse", "buffer_wait", "allocation"), List.copyOf(hops.keySet()));
+        assertTrue(hops.get("consumer_parse") >= 40.0);
+        assertEquals(2.0, hops.get("allocation"), 0.001);
+
+        assertEquals(1, registry.find("signal.latency")
+                .tag("hop", "allocation").tag("strategy", "FUDKII").tag("exchange", "N")
+                .timer().count());
+    }
+
+    @Test
+    @DisplayName("Repeated hops accumulate in the breakdown")
+    void testHopAccumulates() {
+        SignalLatency latency = tracker.start("FUKAA", "M", Instant.now());
+        tracker.record(latency, SignalLatencyTracker.OPTION_RESOLUTION, 3_000_000);
+        tracker.record(latency, SignalLatencyTracker.OPTION_RESOLUTION, 1_500_000);
+        assertEquals(4.5, latency.snapshot().get("option_resolution"), 0.001);
+    }
+
+    @Test
+    @DisplayName("Filled order receives the full breakdown via its signalId; untracked orders get none")
+    void testOrderHandOff() {
+        SignalLatency latency = tracker.start("FUKAA", "N", Instant.now());
+        tracker.attachToOrder("BUY_12345_1700000000", latency);
+
+        assertFalse(tracker.breakdown("BUY_12345_1700000000").containsKey("create_order"));
+        Map<String, Double> filled = tracker.orderFilled("BUY_12345_1700000000", "12345");
+        assertTrue(filled.containsKey("create_order"));
+        assertTrue(filled.get("signal_to_fill") >= filled.get("create_order"));
+        // A second fill callback for the same order is ignored
+        assertNull(tracker.orderFilled("BUY_12345_1700000000", "12345"));
+        assertEquals(1, registry.find("signal.latency")
+                .tag("hop", "signal_to_fill").tag("strategy", "FUKAA").tag("exchange", "N")
+                .timer().count());
+
+        assertNull(tracker.breakdown("manual-order"));
+        assertNull(tracker.orderFilled(null, "12345"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.kotsin.execution.virtual;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kotsin.execution.virtual.PositionDeltaTracker.Delta;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PositionDeltaTracker
+ * Tests changed-field deltas, versioning, removal and merging of queued deltas
+ */
+class PositionDeltaTrackerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final PositionDeltaTracker tracker = new PositionDeltaTracker(mapper);
+
+    private ObjectNode position(double ltp, double uPnl) {
+        ObjectNode n = mapper.createObjectNode();
+        n.put("scripCode", "100");
+        n.put("qtyOpen", 10);
+        n.put("currentPrice", ltp);
+        n.put("unrealizedPnl", uPnl);
+        return n;
+    }
+
+    @Test
+    @DisplayName("First publish carries every field at version 1")
+    void testFirstPublishIsFull() {
+        Delta d = tracker.update("100", position(100.0, 0.0));
+        assertEquals(0, d.base());
+        assertEquals(1, d.version());
+        assertEquals(4, d.changes().size());
+    }
+
+    @Test
+    @DisplayName("Mark-to-market only ships the changed fields")
+    void testOnlyChangedFields() {
+        tracker.update("100", position(100.0, 0.0));
+        Delta d = tracker.update("100", position(101.0, 10.0));
+        assertEquals(1, d.base());
+        assertEquals(2, d.version());
+        assertEquals(2, d.changes().size());
+        assertEquals(101.0, d.changes().get("currentPrice").asDouble());
+        assertFalse(d.changes().has("qtyOpen"));
+    }
+
+    @Test
+    @DisplayName("Unchanged state produces no delta and no version bump")
+    void testNoChange() {
+        tracker.update("100", position(100.0, 0.0));
+        assertNull(tracker.update("100", position(100.0, 0.0)));
+        assertEquals(1, tracker.noop("100").version());
+    }
+
+    @Test
+    @DisplayName("Seeded positions start at version 0 and diff against the seed")
+    void testSeed() {
+        tracker.seed(Map.of("100", position(100.0, 0.0)));
+        Delta d = tracker.update("100", position(100.5, 5.0));
+        assertEquals(0, d.base());
+        assertEquals(2, d.changes().size());
+    }
+
+    @Test
+    @DisplayName("Seeding drops scrips that are no longer open, published or not")
+    void testSeedPrunesClosed() {
+        tracker.update("100", position(100.0, 0.0));
+        tracker.seed(Map.of("200", position(50.0, 0.0)));
+        tracker.seed(Map.of("300", position(75.0, 0.0)));
+
+        var positions = tracker.snapshot().get("positions");
+        assertEquals(1, positions.size());
+        assertEquals("300", positions.get(0).get("scrip").asText());
+    }
+
+    @Test
+    @DisplayName("Merged deltas span both versions and keep the newest values")
+    void testMerge() {
+        tracker.update("100", position(100.0, 0.0));
+        Delta first = tracker.update("100", position(101.0, 10.0));
+        ObjectNode withQty = position(102.0, 20.0);
+        withQty.put("qtyOpen", 5);
+        Delta second = tracker.update("100", withQty);
+
+        Delta merged = PositionDeltaTracker.merge(first, second);
+        assertEquals(1, merged.base());
+        assertEquals(3, merged.version());
+        assertEquals(102.0, merged.changes().get("currentPrice").asDouble());
+        assertEquals(5, merged.changes().get("qtyOpen").asInt());
+    }
+
+    @Test
+    @DisplayName("Removal drops the scrip from the snapshot")
+    void testRemove() {
+        tracker.update("100", position(100.0, 0.0));
+        Delta d = tracker.remove("100");
+        assertTrue(d.removed());
+        assertEquals(0, tracker.snapshot().get("positions").size());
+        assertNull(tracker.remove("100"));
+    }
+
+    @Test
+    @DisplayName("Sequence increases across scrips")
+    void testSequence() {
+        long a = tracker.update("100", position(100.0, 0.0)).seq();
+        long b = tracker.update("200", position(50.0, 0.0)).seq();
+        assertTrue(b > a);
+        assertEquals(b, tracker.snapshot().get("seq").asLong());
+    }
+}
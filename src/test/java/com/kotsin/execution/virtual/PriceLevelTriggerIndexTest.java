@@ -0,0 +1,102 @@
+package com.kotsin.execution.virtual;
+
+import com.kotsin.execution.virtual.PriceLevelTriggerIndex.Direction;
+import com.kotsin.execution.virtual.PriceLevelTriggerIndex.Level;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PriceLevelTriggerIndex
+ * Tests up/down crossing, owner replacement and removal
+ */
+class PriceLevelTriggerIndexTest {
+
+    private final PriceLevelTriggerIndex index = new PriceLevelTriggerIndex();
+
+    private void registerLong(String scrip, double sl, double tp1, double tp2) {
+        index.register(scrip, scrip, List.of(
+                new Level(Direction.DOWN, sl, "SL"),
+                new Level(Direction.UP, tp1, "TP1"),
+                new Level(Direction.UP, tp2, "TP2")));
+    }
+
+    @Test
+    @DisplayName("LTP between stop and target crosses nothing")
+    void testNoCrossInsideRange() {
+        registerLong("100", 95.0, 105.0, 110.0);
+        assertTrue(index.crossed("100", 100.0).isEmpty());
+        assertTrue(index.crossed("100", 95.05).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Down-move through the stop fires the owner, inclusive of the level")
+    void testDownCross() {
+        registerLong("100", 95.0, 105.0, 110.0);
+        assertEquals(Set.of("100"), index.crossed("100", 95.0));
+        assertEquals(Set.of("100"), index.crossed("100", 90.0));
+    }
+
+    @Test
+    @DisplayName("Up-move through a target fires the owner")
+    void testUpCross() {
+        registerLong("100", 95.0, 105.0, 110.0);
+        assertEquals(Set.of("100"), index.crossed("100", 105.0));
+        assertEquals(Set.of("100"), index.crossed("100", 120.0));
+    }
+
+    @Test
+    @DisplayName("Only owners whose levels were crossed are reported")
+    void testOnlyCrossedOwners() {
+        index.register("200", "order-a", List.of(new Level(Direction.DOWN, 50.0, "LIMIT")));
+        index.register("200", "order-b", List.of(new Level(Direction.DOWN, 48.0, "LIMIT")));
+        index.register("200", "order-c", List.of(new Level(Direction.UP, 55.0, "LIMIT")));
+
+        assertEquals(Set.of("order-a"), index.crossed("200", 49.0));
+        assertEquals(Set.of("order-a", "order-b"), index.crossed("200", 47.5));
+        assertEquals(Set.of("order-c"), index.crossed("200", 56.0));
+    }
+
+    @Test
+    @DisplayName("Re-registering an owner replaces its previous levels")
+    void testReplaceLevels() {
+        registerLong("100", 95.0, 105.0, 110.0);
+        // SL trailed up to break-even, TP1 consumed
+        index.register("100", "100", List.of(
+                new Level(Direction.DOWN, 100.0, "SL"),
+                new Level(Direction.UP, 110.0, "TP2")));
+
+        assertEquals(Set.of("100"), index.crossed("100", 99.0));
+        assertTrue(index.crossed("100", 106.0).isEmpty());
+        assertEquals(2, index.levelsOf("100", "100").size());
+    }
+
+    @Test
+    @DisplayName("Unregistering the last owner drops the scrip")
+    void testUnregister() {
+        registerLong("100", 95.0, 105.0, 110.0);
+        index.unregister("100", "100");
+
+        assertFalse(index.hasLevels("100"));
+        assertEquals(0, index.scripCount());
+        assertTrue(index.crossed("100", 1.0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Empty level list unregisters the owner")
+    void testEmptyRegistrationUnregisters() {
+        registerLong("100", 95.0, 105.0, 110.0);
+        index.register("100", "100", List.of());
+        assertFalse(index.hasLevels("100"));
+    }
+
+    @Test
+    @DisplayName("Unknown scrip never fires")
+    void testUnknownScrip() {
+        assertTrue(index.crossed("999", 100.0).isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+package com.kotsin.execution.virtual.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kotsin.execution.virtual.model.VirtualOrder;
+import com.kotsin.execution.virtual.model.VirtualPosition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests and micro-benchmark for the virtual order/position codecs
+ * Tests binary round-trips, dual-read, schema evolution, and compares payload size and
+ * encode/decode time against Jackson JSON; the benchmark is tagged "benchmark" and runs only under -Pbenchmark
+ */
+class VirtualCodecBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonEntityCodec<VirtualPosition> jsonPositions = new JsonEntityCodec<>(mapper, VirtualPosition.class);
+    private final VirtualPositionBinaryCodec binaryPositions = new VirtualPositionBinaryCodec();
+
+    private static VirtualPosition samplePosition() {
+        VirtualPosition p = new VirtualPosition();
+        p.setScripCode("52343");
+        p.setSide(VirtualPosition.Side.LONG);
+        p.setQtyOpen(75);
+        p.setAvgEntry(182.35);
+        p.setSl(171.0);
+        p.setTp1(195.5);
+        p.setTp2(210.0);
+        p.setTp1ClosePercent(0.5);
+        p.setTp1Hit(Boolean.FALSE);
+        p.setTrailingType("PCT");
+        p.setTrailingValue(1.0);
+        p.setTrailingStep(0.5);
+        p.setTrailingActive(Boolean.FALSE);
+        p.setOpenedAt(1_760_000_000_000L);
+        p.setUpdatedAt(1_760_000_123_456L);
+        p.setCurrentPrice(184.1);
+        p.setUnrealizedPnl(131.25);
+        p.setExchange("N");
+        p.setSignalId("FUDKII-52343-1760000000");
+        p.setSignalType("FUDKII_LONG");
+        p.setSignalSource("FUDKII");
+        p.setWalletId("strategy-wallet-FUDKII");
+        p.setPositionSizeMultiplier(1.0);
+        p.setInstrumentSymbol("BDL 1300 CE");
+        p.setLotSize(75);
+        return p;
+    }
+
+    @Test
+    @DisplayName("Binary position round-trips every field")
+    void testPositionRoundTrip() {
+        VirtualPosition p = samplePosition();
+        p.setSl(0.0); // explicit zero on a nullable field must survive
+        VirtualPosition back = binaryPositions.decode(binaryPositions.encode(p));
+        assertEquals(mapper.valueToTree(p), mapper.valueToTree(back));
+    }
+
+    @Test
+    @DisplayName("Binary order round-trips every field")
+    void testOrderRoundTrip() {
+        VirtualOrder o = new VirtualOrder();
+        o.setId("7d1c0b7e-1111-2222-3333-444455556666");
+        o.setScripCode("52343");
+        o.setSide(VirtualOrder.Side.SELL);
+        o.setType(VirtualOrder.Type.LIMIT);
+        o.setQty(150);
+        o.setLimitPrice(190.0);
+        o.setStatus(VirtualOrder.Status.PENDING);
+        o.setCreatedAt(1_760_000_000_000L);
+        o.setSignalSource("MANUAL");
+        o.setLotSize(0);
+        VirtualOrderBinaryCodec codec = new VirtualOrderBinaryCodec();
+        assertEquals(mapper.valueToTree(o), mapper.valueToTree(codec.decode(codec.encode(o))));
+    }
+
+    @Test
+    @DisplayName("Dual-read decodes legacy JSON and binary values alike")
+    void testDualRead() {
+        VirtualPosition p = samplePosition();
+        DualReadCodec<VirtualPosition> dual = new DualReadCodec<>(jsonPositions, binaryPositions, true);
+        byte[] legacy = jsonPositions.encode(p);
+
+        assertTrue(dual.needsRewrite(legacy));
+        assertFalse(dual.needsRewrite(dual.encode(p)));
+        assertEquals(mapper.valueToTree(p), mapper.valueToTree(dual.decode(legacy)));
+        assertEquals(mapper.valueToTree(p), mapper.valueToTree(dual.decode(dual.encode(p))));
+    }
+
+    @Test
+    @DisplayName("Fields unknown to this build are skipped")
+    void testUnknownFieldsSkipped() {
+        TaggedBinaryWriter w = new TaggedBinaryWriter(VirtualPositionBinaryCodec.ENTITY_TYPE,
+                VirtualPositionBinaryCodec.SCHEMA_VERSION, 64);
+        w.writeString(1, "52343");
+        w.writeString(900, "field from a newer build");
+        w.writeDouble(901, 1.5);
+        w.writeLong(3, 10);
+        VirtualPosition back = binaryPositions.decode(w.toBytes());
+        assertEquals("52343", back.getScripCode());
+        assertEquals(10, back.getQtyOpen());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Benchmark: binary is smaller and faster than JSON")
+    void benchmarkPayloadSizeAndSpeed() {
+        VirtualPosition p = samplePosition();
+        byte[] json = jsonPositions.encode(p);
+        byte[] binary = binaryPositions.encode(p);
+
+        long jsonEncode = timeNanos(() -> jsonPositions.encode(p));
+        long binEncode = timeNanos(() -> binaryPositions.encode(p));
+        long jsonDecode = timeNanos(() -> jsonPositions.decode(json));
+        long binDecode = timeNanos(() -> binaryPositions.decode(binary));
+
+        assertTrue(binary.length * 3 < json.length, "binary payload should be several times smaller");
+        assertTrue(binEncode < jsonEncode, "binary encode " + binEncode + " ns/op vs json " + jsonEncode + " ns/op");
+        assertTrue(binDecode < jsonDecode, "binary decode " + binDecode + " ns/op vs json " + jsonDecode + " ns/op");
+    }
+
+    private static long timeNanos(Supplier<?> op) {
+        Object sink = null;
+        for (int i = 0; i < WARMUP; i++) sink = op.get();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) sink = op.get();
+        long perOp = (System.nanoTime() - start) / ITERATIONS;
+        assertNotNull(sink);
+        return perOp;
+    }
+}